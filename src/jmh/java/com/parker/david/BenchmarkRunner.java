@@ -0,0 +1,24 @@
+package com.parker.david;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * runs the benchmarks with the gc profiler always on, so every result comes with its allocation rate and bytes per operation.
+ * any of the usual jmh command line options can be given, eg: a regular expression to pick the benchmarks to run
+ */
+public class BenchmarkRunner {
+	/**
+	 * entry point, runs the benchmarks picked by the command line with allocation profiling
+	 */
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		new Runner(new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+}
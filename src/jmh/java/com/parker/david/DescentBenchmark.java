@@ -0,0 +1,84 @@
+package com.parker.david;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * benchmarks a full descent, from the empty solution to a local optimum, with single bit compliment neighbourhoods
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DescentBenchmark {
+
+	/**
+	 * the number of decision variables
+	 */
+	@Param({"1000", "5000"})
+	public int numberOfDecisionVariables;
+
+	/**
+	 * the number of constraints
+	 */
+	@Param({"1", "10"})
+	public int numberOfConstraints;
+
+	/**
+	 * the fraction of non zero weights in each constraint
+	 */
+	@Param({"0.05", "1.0"})
+	public double weightDensity;
+
+	/**
+	 * the generated problem
+	 */
+	private SyntheticProblem problem;
+
+	/**
+	 * the empty solution that every descent starts from
+	 */
+	private CandidateSolution startSolution;
+
+	/**
+	 * generates the problem for this set of parameters
+	 */
+	@Setup
+	public void setUp() {
+		problem = new SyntheticProblem(numberOfDecisionVariables, numberOfConstraints, weightDensity, 42);
+		startSolution = new CandidateSolution(numberOfDecisionVariables);
+	}
+
+	/**
+	 * @return the result of a best improvement descent
+	 */
+	@Benchmark
+	public SearchResult bestImprovementDescent() {
+		return new LocalSearch(problem.objectiveFunction, problem.constraints,
+				new BestImprovementSelection(problem.objectiveFunction, problem.constraints), new SingleBitComplimentGenerator())
+				.run(startSolution);
+	}
+
+	/**
+	 * @return the result of a sequential first improvement descent
+	 */
+	@Benchmark
+	public SearchResult firstImprovementDescent() {
+		return new LocalSearch(problem.objectiveFunction, problem.constraints,
+				new FirstImprovementSelection(problem.objectiveFunction, problem.constraints), new SingleBitComplimentGenerator())
+				.run(startSolution);
+	}
+}
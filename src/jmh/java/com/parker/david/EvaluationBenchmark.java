@@ -0,0 +1,124 @@
+package com.parker.david;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * benchmarks for the per solution hot paths: full fitness and feasibility evaluation, copying a solution,
+ * and scoring a whole single bit neighbourhood incrementally
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+
+	/**
+	 * the number of decision variables
+	 */
+	@Param({"1000", "10000"})
+	public int numberOfDecisionVariables;
+
+	/**
+	 * the number of constraints
+	 */
+	@Param({"1", "10"})
+	public int numberOfConstraints;
+
+	/**
+	 * the fraction of non zero weights in each constraint
+	 */
+	@Param({"0.05", "1.0"})
+	public double weightDensity;
+
+	/**
+	 * the generated problem
+	 */
+	private SyntheticProblem problem;
+
+	/**
+	 * a half full solution to evaluate
+	 */
+	private CandidateSolution solution;
+
+	/**
+	 * an evaluator holding the same solution, for the incremental benchmarks
+	 */
+	private IncrementalEvaluator evaluator;
+
+	/**
+	 * the single bit neighbourhood of the solution
+	 */
+	private MoveNeighbourhood neighbourhood;
+
+	/**
+	 * generates the problem and solution for this set of parameters
+	 */
+	@Setup
+	public void setUp() {
+		problem = new SyntheticProblem(numberOfDecisionVariables, numberOfConstraints, weightDensity, 42);
+		solution = problem.randomSolution(0.5);
+		evaluator = new IncrementalEvaluator(problem.objectiveFunction, problem.constraints, solution);
+		neighbourhood = new SingleBitComplimentGenerator().generateMoveNeighbourhood(solution);
+	}
+
+	/**
+	 * @return the full fitness of the solution
+	 */
+	@Benchmark
+	public int evaluateFitness() {
+		return problem.objectiveFunction.evaluateFitness(solution);
+	}
+
+	/**
+	 * @return the feasibility of the solution against the first constraint only
+	 */
+	@Benchmark
+	public boolean constraintIsFeasible() {
+		return problem.constraints.getIthConstraint(0).isFeasible(solution);
+	}
+
+	/**
+	 * @return the feasibility of the solution against every constraint
+	 */
+	@Benchmark
+	public boolean constraintSetIsFeasible() {
+		return problem.constraints.isFeasible(solution);
+	}
+
+	/**
+	 * @return a deep copy of the solution
+	 */
+	@Benchmark
+	public CandidateSolution copy() {
+		return solution.copy();
+	}
+
+	/**
+	 * scores every single bit neighbour of the solution from the evaluator's cached sums, the inner loop of a best improvement step
+	 *
+	 * @param blackhole consumes the scores so they aren't optimised away
+	 */
+	@Benchmark
+	public void scoreNeighbourhoodIncrementally(Blackhole blackhole) {
+		for (int i = 0; i < neighbourhood.size(); i++) {
+			Move move = neighbourhood.getIthMove(i);
+			blackhole.consume(evaluator.fitnessAfter(move));
+			blackhole.consume(evaluator.isFeasibleAfter(move));
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.parker.david;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * a randomly generated knapsack style problem for the benchmarks: maximise the value of the items picked,
+ * subject to a number of "total weight of the picked items <= capacity" constraints.
+ * generation is seeded, so every benchmark run sees the same problem for the same parameters
+ */
+class SyntheticProblem {
+
+	/**
+	 * the objective function, a value between 1 and 100 for each decision variable
+	 */
+	final ObjectiveFunction objectiveFunction;
+
+	/**
+	 * the constraints, each with a weight between 1 and 20 on roughly weightDensity of the decision variables and 0 on the rest.
+	 * each capacity is half the total weight of its constraint, so about half of the items fit
+	 */
+	final ConstraintSet constraints;
+
+	/**
+	 * the number of decision variables
+	 */
+	final int numberOfDecisionVariables;
+
+	/**
+	 * the random number generator that the problem was built with, carried on to build solutions
+	 */
+	private final Random random;
+
+	/**
+	 * generates a problem
+	 *
+	 * @param numberOfDecisionVariables the number of decision variables
+	 * @param numberOfConstraints       the number of constraints
+	 * @param weightDensity             the fraction of decision variables with a non zero weight in each constraint, between 0 and 1
+	 * @param seed                      the seed for the random number generator
+	 */
+	SyntheticProblem(int numberOfDecisionVariables, int numberOfConstraints, double weightDensity, long seed) {
+		this.numberOfDecisionVariables = numberOfDecisionVariables;
+		this.random = new Random(seed);
+
+		ArrayList<Integer> objectiveWeights = new ArrayList<>(numberOfDecisionVariables);
+		for (int i = 0; i < numberOfDecisionVariables; i++) {
+			objectiveWeights.add(1 + random.nextInt(100));
+		}
+		objectiveFunction = new ObjectiveFunction(objectiveWeights);
+
+		constraints = new ConstraintSet();
+		for (int c = 0; c < numberOfConstraints; c++) {
+			ArrayList<Integer> constraintWeights = new ArrayList<>(numberOfDecisionVariables);
+			int totalWeight = 0;
+			for (int i = 0; i < numberOfDecisionVariables; i++) {
+				int weight = (random.nextDouble() < weightDensity) ? 1 + random.nextInt(20) : 0;
+				constraintWeights.add(weight);
+				totalWeight += weight;
+			}
+			constraints.add(new Constraint(constraintWeights, Constraint.Operators.LESS_THAN_OR_EQUAL, totalWeight / 2));
+		}
+	}
+
+	/**
+	 * builds a random solution
+	 *
+	 * @param fillRatio the chance of each decision variable being set, between 0 and 1
+	 * @return a new random solution, which may or may not be feasible
+	 */
+	CandidateSolution randomSolution(double fillRatio) {
+		CandidateSolution solution = new CandidateSolution(numberOfDecisionVariables);
+		for (int i = 0; i < numberOfDecisionVariables; i++) {
+			if (random.nextDouble() < fillRatio)
+				solution.flipIthDecisionVariable(i);
+		}
+		return solution;
+	}
+}
@@ -0,0 +1,121 @@
+package com.parker.david;
+
+import de.vandermeer.asciitable.AsciiTable;
+import de.vandermeer.asciitable.CWC_LongestLine;
+import de.vandermeer.asciithemes.TA_Grid;
+import de.vandermeer.asciithemes.TA_GridConfig;
+import de.vandermeer.skb.interfaces.transformers.textformat.TextAlignment;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * the original trace: every neighbour of every iteration in an ascii table, which is appended to a file and printed to the console
+ * at the end of each run. The table lines up its columns on the longest entry, so a whole run is kept in memory until it ends.
+ * fine for small problems, for long runs use a StreamingTraceSink or a SampledTraceSink instead
+ */
+public class AsciiTableTraceSink implements TraceSink {
+
+	/**
+	 * the file each table is appended to
+	 */
+	private final File outputFile;
+
+	/**
+	 * the table for the current run
+	 */
+	private AsciiTable outputTable;
+
+	/**
+	 * the constructor, takes the file to append tables to
+	 *
+	 * @param outputFile the file each table is appended to
+	 */
+	AsciiTableTraceSink(File outputFile) {
+		this.outputFile = outputFile;
+	}
+
+	/**
+	 * create table and add header to it
+	 *
+	 * @param evaluator the evaluator holding the start solution
+	 */
+	@Override
+	public void startRun(IncrementalEvaluator evaluator) {
+		outputTable = new AsciiTable();
+		outputTable.addHeavyRule();
+		outputTable.addRow("t", "s^(t)", "z", "Neighbour", "Bit", "New z", " ");
+	}
+
+	/**
+	 * this generates rows for elements in the following order:
+	 * t | s^(t) | z | Neighbour | Bit | New z |
+	 * neighbours are only built here, for printing. The current solution changes in place once the selected move
+	 * is applied, so the table is given strings instead of the solutions themselves
+	 *
+	 * @param iteration     the current iteration, t
+	 * @param evaluator     the evaluator holding the current solution that this iteration used as a starting point,
+	 *                      used to calculate the fitness values and feasibility in the table
+	 * @param neighbourhood the moves to each neighbour of the current solution
+	 * @param selectedMove  the move contained in the neighbourhood that was selected
+	 */
+	@Override
+	public void iteration(int iteration, IncrementalEvaluator evaluator, MoveNeighbourhood neighbourhood, Move selectedMove) {
+		//add in a line to split off this iteration
+		outputTable.addLightRule();
+
+		CandidateSolution currentSolution = evaluator.getCurrentSolution();
+
+		// loop through all neighbours and print them out nicely, with the first line being a full line
+		for (int i = 0; i < neighbourhood.size(); i++) {
+			//grab the move from the neighbourhood
+			Move move = neighbourhood.getIthMove(i);
+			outputTable.addRow(
+					//first row needs to contain iteration number, current solution, and fitness value, rest of rows they are blank
+					(i == 0) ? iteration : "",
+					(i == 0) ? currentSolution.toString() : "",
+					(i == 0) ? evaluator.getCurrentFitness() : "",
+					move.applyTo(currentSolution).toString(),
+					move, // the 1-indexed (instead of 0 indexed) bits that were flipped
+					(evaluator.isFeasibleAfter(move)) ? evaluator.fitnessAfter(move) : "infeasible", //if feasible, the current fitness, otherwise "infeasible"
+					(selectedMove == move) ? "<---" : "" //if this move is selected, put in arrow, else nothing
+			);
+
+		}
+	}
+
+	/**
+	 * search is over, print out the first half of the last step to indicate it is complete,
+	 * then format the table, and print to console and the output file
+	 *
+	 * @param result    the result of the run
+	 * @param evaluator the evaluator holding the solution the run finished on
+	 * @throws IOException if the output file can't be written
+	 */
+	@Override
+	public void endRun(SearchResult result, IncrementalEvaluator evaluator) throws IOException {
+		outputTable.addLightRule();
+		outputTable.addRow(result.getIterations(), evaluator.getCurrentSolution().toString(), evaluator.getCurrentFitness(), "", "", "", "");
+		outputTable.addHeavyRule();
+
+		outputTable.getRenderer().setCWC(new CWC_LongestLine());
+		TA_Grid grid = TA_Grid.create("an ascii compliant grid")
+				.addCharacterMap(TA_GridConfig.RULESET_HEAVY, ' ', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#')
+				.addCharacterMap(TA_GridConfig.RULESET_NORMAL, ' ', '~', ' ', '+', '+', '+', '+', '~', '~', '~', ' ', ' ')
+				.addCharacterMap(TA_GridConfig.RULESET_LIGHT, ' ', '-', ' ', '+', '+', '+', '+', '-', '-', '-', ' ', ' ');
+		outputTable.getContext().setGrid(grid);
+		outputTable.setPaddingLeft(1);
+		outputTable.setPaddingRight(1);
+		outputTable.setTextAlignment(TextAlignment.CENTER);
+
+		//render once and use the same text for both outputs
+		String renderedTable = outputTable.render();
+		FileWriter output = new FileWriter(outputFile, true);
+		output.append(renderedTable).append("\n\n").close();
+		System.out.println(renderedTable + "\n\n");
+
+		//the run is written out, so the table can be let go
+		outputTable = null;
+	}
+}
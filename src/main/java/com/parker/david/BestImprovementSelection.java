@@ -71,6 +71,39 @@ public class BestImprovementSelection implements NextSolutionSelector {
 		return bestSolution;
 	}
 
+	/**
+	 * the same selection as getNewSolution, but over moves scored from the evaluator's cached sums,
+	 * so no neighbour is copied or evaluated in full and an iteration costs O(n*m) instead of O(n^2*m).
+	 * returns null if there is no move better than the current solution, and sets searchTerminationFlag to true
+	 *
+	 * @param evaluator     the evaluator holding the current solution
+	 * @param neighbourhood the moves leading to each neighbour
+	 * @return the move to the best neighbour, or null
+	 */
+	@Override
+	public Move selectMove(IncrementalEvaluator evaluator, MoveNeighbourhood neighbourhood) {
+		Move bestMove = null;
+		//define the score to beat as the score of the current solution
+		int scoreToBeat = evaluator.getCurrentFitness();
+
+		//loop through the moves in neighbourhood order, so ties resolve the same way as getNewSolution
+		for (int i = 0; i < neighbourhood.size(); i++) {
+			Move move = neighbourhood.getIthMove(i);
+
+			//the fitness check is cheap, so do it first and only check feasibility of moves that would be an improvement
+			int neighbourScore = evaluator.fitnessAfter(move);
+			if (neighbourScore > scoreToBeat && evaluator.isFeasibleAfter(move)) {
+				bestMove = move;
+				scoreToBeat = neighbourScore;
+			}
+		}
+
+		if (bestMove == null)
+			//we can't improve the solution, terminate the search
+			searchTerminationFlag = true;
+		return bestMove;
+	}
+
 	/**
 	 * accessor for searchTerminationFlag, returns true when the search has completed
 	 *
@@ -0,0 +1,112 @@
+package com.parker.david;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * a ranking of the decision variables by how much objective each one gives per unit of constraint it uses, used to cut
+ * the large multi flip neighbourhoods down to the moves that are worth scoring.
+ * the ratio of variable i is w_i / (1 + sum over constraints c of |a_ci| / max(1, |b_c|)), where w is the objective weight,
+ * a the constraint weight and b the constraint's value threshold, so weights in tight constraints count for more.
+ * it is the knapsack greedy ratio generalised to several constraints, and like it, it is a heuristic: variables near
+ * the top are the best to set and variables near the bottom the best to unset.
+ * the ranking only depends on the problem, so it is worked out once and shared, only the lookups depend on the current solution
+ */
+public class CandidateList {
+
+	/**
+	 * the decision variables, best ratio first. Ties keep index order
+	 */
+	private final int[] rankedVariables;
+
+	/**
+	 * the constructor, ranks every decision variable of the problem
+	 *
+	 * @param objectiveFunction         the objective function
+	 * @param constraints               the set of constraints
+	 * @param numberOfDecisionVariables the number of decision variables
+	 */
+	CandidateList(ObjectiveFunction objectiveFunction, ConstraintSet constraints, int numberOfDecisionVariables) {
+		double[] usage = new double[numberOfDecisionVariables];
+		for (int c = 0; c < constraints.size(); c++) {
+			Constraint constraint = constraints.getIthConstraint(c);
+			double capacity = Math.max(1, Math.abs((double) constraint.getValueThreshold()));
+			int[] variables = constraint.getNonZeroVariables();
+			int[] weights = constraint.getNonZeroWeights();
+			for (int k = 0; k < variables.length && variables[k] < numberOfDecisionVariables; k++) {
+				usage[variables[k]] += Math.abs((double) weights[k]) / capacity;
+			}
+		}
+
+		double[] ratio = new double[numberOfDecisionVariables];
+		for (int i = 0; i < numberOfDecisionVariables; i++) {
+			ratio[i] = objectiveFunction.getIthWeight(i) / (1 + usage[i]);
+		}
+
+		//the boxed sort is only paid once per problem
+		rankedVariables = IntStream.range(0, numberOfDecisionVariables).boxed()
+				.sorted((a, b) -> Double.compare(ratio[b], ratio[a]))
+				.mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * the number of ranked decision variables
+	 *
+	 * @return the number of decision variables
+	 */
+	public int size() {
+		return rankedVariables.length;
+	}
+
+	/**
+	 * the decision variable at a given rank
+	 *
+	 * @param rank the rank, 0 is the best ratio
+	 * @return the index of the decision variable
+	 */
+	public int getVariableAtRank(int rank) {
+		return rankedVariables[rank];
+	}
+
+	/**
+	 * finds the unset decision variables with the best ratios, the best candidates to set
+	 *
+	 * @param currentSolution the current solution
+	 * @param into            the array to fill, best first, its length is the most that are found
+	 * @return the number found, less than the array length if fewer variables are unset
+	 */
+	public int bestUnset(CandidateSolution currentSolution, int[] into) {
+		int found = 0;
+		for (int rank = 0; rank < rankedVariables.length && found < into.length; rank++) {
+			if (!currentSolution.getIthDecisionVariable(rankedVariables[rank]))
+				into[found++] = rankedVariables[rank];
+		}
+		return found;
+	}
+
+	/**
+	 * finds the set decision variables with the worst ratios, the best candidates to unset
+	 *
+	 * @param currentSolution the current solution
+	 * @param into            the array to fill, worst first, its length is the most that are found
+	 * @return the number found, less than the array length if fewer variables are set
+	 */
+	public int worstSet(CandidateSolution currentSolution, int[] into) {
+		int found = 0;
+		for (int rank = rankedVariables.length - 1; rank >= 0 && found < into.length; rank--) {
+			if (currentSolution.getIthDecisionVariable(rankedVariables[rank]))
+				into[found++] = rankedVariables[rank];
+		}
+		return found;
+	}
+
+	/**
+	 * the variables in rank order, for debugging
+	 *
+	 * @return the ranked variables, 1-indexed like the rest of the output
+	 */
+	@Override
+	public String toString() {
+		return Arrays.toString(Arrays.stream(rankedVariables).map(i -> i + 1).toArray());
+	}
+}
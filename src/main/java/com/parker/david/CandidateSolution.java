@@ -1,19 +1,32 @@
 package com.parker.david;
 
 import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.util.Arrays;
 
 /**
  * This is our data class that stores a candidate solution.
- * It is mostly just a wrapper for arraylist, but also contains a method that makes a deepcopy of itself
+ * The decision variables are packed 64 to a word in a long array, so a solution with n variables costs n/8 bytes
+ * instead of an ArrayList of boxed Booleans. It also contains a method that makes a deepcopy of itself
  * (thus creating a new entity that is the same as this entity with underlying data
  * that is a copy of the previous object instead of a reference to the same underlying data)
  */
 public class CandidateSolution {
 	/**
-	 * our decision variables encoded as a boolean vector
+	 * the number of bits in each word of the packed representation
 	 */
-	private final ArrayList<Boolean> decisionVariables;
+	static final int BITS_PER_WORD = 64;
+
+	/**
+	 * our decision variables encoded as a packed bit vector, decision variable i is bit (i % 64) of word (i / 64).
+	 * bits past numberOfDecisionVariables in the last word are always kept at 0, so word-level operations
+	 * (popcount, equals, hashCode) never need to mask them out
+	 */
+	private final long[] decisionVariables;
+
+	/**
+	 * the number of decision variables, the packed array can hold up to 63 more bits than this
+	 */
+	private final int numberOfDecisionVariables;
 
 	/**
 	 * the number of decision variables in this problem, needed for iterating through the candidate solution
@@ -21,19 +34,20 @@ public class CandidateSolution {
 	 * @return the number of decision variables
 	 */
 	public int numberOfDecisionVariables() {
-		return decisionVariables.size();
+		return numberOfDecisionVariables;
 	}
 
 	/**
 	 * get the ith decision variable
-	 * given: [5,3,2,7,4,0,6]
-	 * getIthDecisionVariable(0) = 5, 1 = 3, etc
+	 * given: [1,0,0,1,1,0,1]
+	 * getIthDecisionVariable(0) = true, 1 = false, etc
 	 *
 	 * @param i the ith decision variable's value
 	 * @return a boolean corresponding to the decision variable at the ith position
 	 */
-	public Boolean getIthDecisionVariable(int i) {
-		return decisionVariables.get(i);
+	public boolean getIthDecisionVariable(int i) {
+		checkIndex(i);
+		return (decisionVariables[i >>> 6] & (1L << i)) != 0;
 	}
 
 	/**
@@ -42,41 +56,190 @@ public class CandidateSolution {
 	 * @param i        the ith decision variable's value
 	 * @param newValue the value to set the decision variable to
 	 */
-	public void setIthDecisionVariable(int i, Boolean newValue) {
-		decisionVariables.set(i, newValue);
+	public void setIthDecisionVariable(int i, boolean newValue) {
+		checkIndex(i);
+		if (newValue)
+			decisionVariables[i >>> 6] |= (1L << i);
+		else
+			decisionVariables[i >>> 6] &= ~(1L << i);
+	}
+
+	/**
+	 * compliments the ith decision variable in place, the equivalent of setIthDecisionVariable(i, !getIthDecisionVariable(i))
+	 * without reading the value first
+	 *
+	 * @param i the index of the decision variable to flip
+	 */
+	public void flipIthDecisionVariable(int i) {
+		checkIndex(i);
+		decisionVariables[i >>> 6] ^= (1L << i);
+	}
+
+	/**
+	 * counts the decision variables that are set to true, one popcount per word
+	 *
+	 * @return the number of decision variables that are true
+	 */
+	public int countSetDecisionVariables() {
+		int count = 0;
+		for (long word : decisionVariables) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * finds the next decision variable that is set to true, starting from (and including) fromIndex.
+	 * this allows the set variables to be iterated in O(words + set bits) instead of O(n), eg:
+	 * for (int i = solution.nextSetDecisionVariable(0); i >= 0; i = solution.nextSetDecisionVariable(i + 1))
+	 *
+	 * @param fromIndex the index to start searching from
+	 * @return the index of the next true decision variable, or -1 if there are none
+	 */
+	public int nextSetDecisionVariable(int fromIndex) {
+		if (fromIndex >= numberOfDecisionVariables)
+			return -1;
+		int wordIndex = fromIndex >>> 6;
+		long word = decisionVariables[wordIndex] & (-1L << fromIndex);
+		while (true) {
+			if (word != 0)
+				return wordIndex * BITS_PER_WORD + Long.numberOfTrailingZeros(word);
+			if (++wordIndex == decisionVariables.length)
+				return -1;
+			word = decisionVariables[wordIndex];
+		}
 	}
 
 	/**
-	 * our constructor, take an arraylist of booleans and wraps it to create com.parker.david.CandidateSolution
+	 * our constructor, take an arraylist of booleans and packs it to create com.parker.david.CandidateSolution
 	 *
 	 * @param decisionVariables an arraylist of booleans correlating to the decision variables
 	 */
 	CandidateSolution(ArrayList<Boolean> decisionVariables) {
+		this(decisionVariables.size());
+		for (int i = 0; i < decisionVariables.size(); i++) {
+			if (decisionVariables.get(i))
+				this.decisionVariables[i >>> 6] |= (1L << i);
+		}
+	}
+
+	/**
+	 * creates a solution with every decision variable set to false
+	 *
+	 * @param numberOfDecisionVariables the number of decision variables in the problem
+	 */
+	CandidateSolution(int numberOfDecisionVariables) {
+		this(new long[wordsFor(numberOfDecisionVariables)], numberOfDecisionVariables);
+	}
+
+	/**
+	 * wraps an already packed array of words, the array is not copied
+	 *
+	 * @param decisionVariables         the packed decision variables
+	 * @param numberOfDecisionVariables the number of decision variables held in the words
+	 */
+	private CandidateSolution(long[] decisionVariables, int numberOfDecisionVariables) {
 		this.decisionVariables = decisionVariables;
+		this.numberOfDecisionVariables = numberOfDecisionVariables;
+	}
+
+	/**
+	 * wraps words that have been read from somewhere else, such as a problem file. The array is not copied
+	 *
+	 * @param words                     the packed decision variables
+	 * @param numberOfDecisionVariables the number of decision variables held in the words
+	 * @return a solution backed by the words
+	 * @throws IllegalArgumentException if the number of words is wrong for the number of decision variables, or a bit past the last variable is set
+	 */
+	static CandidateSolution fromWords(long[] words, int numberOfDecisionVariables) {
+		if (words.length != wordsFor(numberOfDecisionVariables))
+			throw new IllegalArgumentException(numberOfDecisionVariables + " decision variables need " + wordsFor(numberOfDecisionVariables) + " words, got " + words.length);
+		int usedBits = numberOfDecisionVariables % BITS_PER_WORD;
+		if (usedBits != 0 && (words[words.length - 1] >>> usedBits) != 0)
+			throw new IllegalArgumentException("bits are set past the last of the " + numberOfDecisionVariables + " decision variables");
+		return new CandidateSolution(words, numberOfDecisionVariables);
 	}
 
 	/**
 	 * our deep copy method. Creates a brand new CandidateSolution that is a copy of this CandidateSolution.
 	 * Changing data in one object does not affect data in the other object.
+	 * The copy is a single array clone of the packed words.
 	 *
 	 * @return a new solution that is a copy of the current one
 	 */
 	CandidateSolution copy() {
-		ArrayList<Boolean> copyOfDecisionVariables = new ArrayList<>();
-		for (Boolean decisionVariable : decisionVariables) {
-			copyOfDecisionVariables.add(decisionVariable);
-		}
-		return new CandidateSolution(copyOfDecisionVariables);
+		return new CandidateSolution(decisionVariables.clone(), numberOfDecisionVariables);
+	}
+
+	/**
+	 * gives direct access to the packed words, so that evaluation code can work a word at a time.
+	 * callers must not modify the returned array
+	 *
+	 * @return the packed decision variables
+	 */
+	long[] getWords() {
+		return decisionVariables;
+	}
+
+	/**
+	 * the number of words needed to hold a given number of decision variables
+	 *
+	 * @param numberOfDecisionVariables the number of decision variables
+	 * @return the number of longs needed to pack them
+	 */
+	static int wordsFor(int numberOfDecisionVariables) {
+		return (numberOfDecisionVariables + BITS_PER_WORD - 1) / BITS_PER_WORD;
+	}
+
+	/**
+	 * the packed words ignore bounds within the last word, so we check the index explicitly to keep the
+	 * IndexOutOfBoundsException behaviour of the old list backed implementation
+	 *
+	 * @param i the index to check
+	 */
+	private void checkIndex(int i) {
+		if (i < 0 || i >= numberOfDecisionVariables)
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + numberOfDecisionVariables);
+	}
+
+	/**
+	 * two solutions are equal when they have the same number of decision variables all with the same values
+	 *
+	 * @param o the object to compare to
+	 * @return true if o is a candidate solution with the same decision variables
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof CandidateSolution))
+			return false;
+		CandidateSolution other = (CandidateSolution) o;
+		return numberOfDecisionVariables == other.numberOfDecisionVariables && Arrays.equals(decisionVariables, other.decisionVariables);
+	}
+
+	/**
+	 * hash over the packed words, consistent with equals
+	 *
+	 * @return the hash code for this solution
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(decisionVariables) + numberOfDecisionVariables;
 	}
 
 	/**
 	 * toString method formats out Candidate solution nicely as an array of 0 and 1.
-	 * example output: [0,1,0,0,0,1]
+	 * example output: [010001]
 	 *
 	 * @return a string representation of the decision variables encoded in 1s and 0s
 	 */
 	@Override
 	public String toString() {
-		return "[" + decisionVariables.stream().map(aBoolean -> aBoolean ? "1" : "0").collect(Collectors.joining()) + "]";
+		StringBuilder builder = new StringBuilder(numberOfDecisionVariables + 2).append('[');
+		for (int i = 0; i < numberOfDecisionVariables; i++) {
+			builder.append((decisionVariables[i >>> 6] & (1L << i)) != 0 ? '1' : '0');
+		}
+		return builder.append(']').toString();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,89 @@
+package com.parker.david;
+
+import java.util.Random;
+
+/**
+ * a java.util.Random whose whole state is one long that can be read and set, so that a selector's generator can be
+ * written into a checkpoint as 8 bytes and read back without java serialisation.
+ * it runs the same 48 bit linear congruential generator as Random, so a seed gives exactly the numbers Random would.
+ * nextGaussian keeps a second value between calls that isn't part of the state, so a selector that is checkpointed
+ * shouldn't use it. Unlike Random this is not safe to share between threads, each selector has its own
+ */
+final class CheckpointableRandom extends Random {
+
+	/**
+	 * Random is serializable, this keeps its state in the long below so a serialised copy carries on the same sequence
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * the multiplier of the generator, the same as Random's
+	 */
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+
+	/**
+	 * the increment of the generator, the same as Random's
+	 */
+	private static final long ADDEND = 0xBL;
+
+	/**
+	 * the state is kept to 48 bits
+	 */
+	private static final long MASK = (1L << 48) - 1;
+
+	/**
+	 * the 48 bit state of the generator. This has no initialiser, as Random's constructor sets it through setSeed
+	 * before the fields of this class would be initialised
+	 */
+	private long state;
+
+	/**
+	 * the constructor
+	 *
+	 * @param seed the seed, which gives the same numbers as new Random(seed)
+	 */
+	CheckpointableRandom(long seed) {
+		super(seed);
+	}
+
+	/**
+	 * sets the seed in the same way as Random
+	 *
+	 * @param seed the seed
+	 */
+	@Override
+	public synchronized void setSeed(long seed) {
+		super.setSeed(seed);
+		state = (seed ^ MULTIPLIER) & MASK;
+	}
+
+	/**
+	 * steps the generator and returns the high bits of the new state, as Random does
+	 *
+	 * @param bits the number of random bits to return
+	 * @return the random bits
+	 */
+	@Override
+	protected int next(int bits) {
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return (int) (state >>> (48 - bits));
+	}
+
+	/**
+	 * the state of the generator, a generator given it with setState gives the same numbers from then on
+	 *
+	 * @return the 48 bit state
+	 */
+	long getState() {
+		return state;
+	}
+
+	/**
+	 * replaces the state of the generator with one from getState
+	 *
+	 * @param state the 48 bit state
+	 */
+	void setState(long state) {
+		this.state = state & MASK;
+	}
+}
@@ -0,0 +1,278 @@
+package com.parker.david;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * takes snapshots of a multi-start search and writes them to a checkpoint file in the background.
+ * the descent that is running asks isDue every iteration, which only reads the clock, and when a snapshot is due it hands
+ * over its state with saveRun. The snapshot is encoded on the search thread, which is a copy of two solutions and the
+ * selector's memory, and written on a writer thread, so the search never waits on the disk. If the writer falls behind
+ * only the newest snapshot is written. Each write goes to a temporary file next to the checkpoint, is forced to disk,
+ * and is then renamed over the checkpoint, so a crash part way through a write leaves the previous checkpoint whole.
+ * a checkpointer is used by one multi-start search at a time, from the thread running its descents
+ */
+public class Checkpointer implements Closeable {
+
+	/**
+	 * the checkpoint file
+	 */
+	private final Path file;
+
+	/**
+	 * the temporary file each snapshot is written to before it is renamed over the checkpoint
+	 */
+	private final Path temporaryFile;
+
+	/**
+	 * the time between snapshots of a running descent, in nanoseconds
+	 */
+	private final long intervalNanos;
+
+	/**
+	 * the number of decision variables of the problem being searched
+	 */
+	private final int numberOfDecisionVariables;
+
+	/**
+	 * the results of the starts that have finished, including those from the checkpoint that was resumed
+	 */
+	private final List<SearchResult> finishedRuns = new ArrayList<>();
+
+	/**
+	 * the part way descent from the checkpoint that was resumed, null once it has been taken or if there wasn't one
+	 */
+	private SearchCheckpoint resumableRun;
+
+	/**
+	 * the System.nanoTime of the last snapshot
+	 */
+	private long lastSaveTime = System.nanoTime();
+
+	/**
+	 * the newest snapshot that hasn't been written yet, null if there isn't one
+	 */
+	private final AtomicReference<byte[]> pendingSnapshot = new AtomicReference<>();
+
+	/**
+	 * the thread that writes the snapshots
+	 */
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "checkpoint-writer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * the first write that failed, which is thrown from the next call on the search thread
+	 */
+	private volatile IOException failure;
+
+	/**
+	 * the constructor, starts a new checkpoint. Nothing is written until the first snapshot
+	 *
+	 * @param file                      the checkpoint file, this is replaced by each snapshot
+	 * @param interval                  the time between snapshots of a running descent
+	 * @param unit                      the unit of the interval
+	 * @param numberOfDecisionVariables the number of decision variables of the problem being searched
+	 */
+	Checkpointer(Path file, long interval, TimeUnit unit, int numberOfDecisionVariables) {
+		if (interval < 0)
+			throw new IllegalArgumentException("the checkpoint interval can't be negative, was " + interval);
+		this.file = file;
+		this.temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+		this.intervalNanos = unit.toNanos(interval);
+		this.numberOfDecisionVariables = numberOfDecisionVariables;
+	}
+
+	/**
+	 * creates a checkpointer that carries on from the checkpoint in a file, or starts a new checkpoint if there is no file yet
+	 *
+	 * @param file                      the checkpoint file
+	 * @param interval                  the time between snapshots of a running descent
+	 * @param unit                      the unit of the interval
+	 * @param numberOfDecisionVariables the number of decision variables of the problem being searched
+	 * @return the checkpointer, holding the finished starts and the part way descent of the checkpoint
+	 * @throws IOException if the file can't be read, isn't a checkpoint, or is of a problem with a different number of variables
+	 */
+	static Checkpointer resume(Path file, long interval, TimeUnit unit, int numberOfDecisionVariables) throws IOException {
+		Checkpointer checkpointer = new Checkpointer(file, interval, unit, numberOfDecisionVariables);
+		if (!Files.exists(file))
+			return checkpointer;
+
+		SearchCheckpoint checkpoint = SearchCheckpoint.read(file);
+		if (checkpoint.numberOfDecisionVariables() != numberOfDecisionVariables)
+			throw new IOException(file + ": the checkpoint is of a problem with " + checkpoint.numberOfDecisionVariables() + " decision variables, not " + numberOfDecisionVariables);
+		checkpointer.finishedRuns.addAll(checkpoint.getFinishedRuns());
+		checkpointer.resumableRun = checkpoint.isPartWay() ? checkpoint : null;
+		return checkpointer;
+	}
+
+	/**
+	 * checks if a start finished before the checkpoint was taken, so that it can be skipped
+	 *
+	 * @param startNumber   the position of the start in the order the starts are run
+	 * @param startSolution the start solution
+	 * @return true if the start has finished
+	 * @throws IllegalStateException if the start that finished at that position had a different start solution
+	 */
+	boolean isFinished(int startNumber, CandidateSolution startSolution) {
+		if (startNumber >= finishedRuns.size())
+			return false;
+		if (!finishedRuns.get(startNumber).getStartSolution().equals(startSolution))
+			throw new IllegalStateException("start " + startNumber + " of the checkpoint was " + finishedRuns.get(startNumber).getStartSolution() + ", not " + startSolution);
+		return true;
+	}
+
+	/**
+	 * hands over the part way descent of the resumed checkpoint, if it is the descent of this start. It is only handed over once
+	 *
+	 * @param startSolution the start solution of the descent that is about to run
+	 * @return the snapshot to resume the descent from, or null to run it from the start
+	 * @throws IllegalStateException if the part way descent had a different start solution
+	 */
+	SearchCheckpoint takeResumableRun(CandidateSolution startSolution) {
+		SearchCheckpoint run = resumableRun;
+		if (run == null)
+			return null;
+		if (!run.getStartSolution().equals(startSolution))
+			throw new IllegalStateException("the checkpoint was part way through the start " + run.getStartSolution() + ", not " + startSolution);
+		resumableRun = null;
+		return run;
+	}
+
+	/**
+	 * checks if a snapshot of the running descent is due, this only reads the clock
+	 *
+	 * @return true if the interval has passed since the last snapshot
+	 */
+	boolean isDue() {
+		return System.nanoTime() - lastSaveTime >= intervalNanos;
+	}
+
+	/**
+	 * takes a snapshot of a running descent and queues it to be written
+	 *
+	 * @param startSolution              the start solution of the descent
+	 * @param currentSolution            the solution the descent is at, this is copied
+	 * @param bestSolution               the best solution the descent has seen, this is copied
+	 * @param bestFitness                the fitness of the best solution
+	 * @param bestFeasible               whether the best solution is feasible
+	 * @param iterations                 the number of iterations the descent has made
+	 * @param iterationsSinceImprovement the number of iterations since the last new best feasible solution
+	 * @param elapsedNanos               the time the descent has run for
+	 * @param selector                   the selector of the descent, whose state is written with writeState
+	 * @throws IOException if the selector can't write its state, or an earlier snapshot couldn't be written
+	 */
+	void saveRun(CandidateSolution startSolution, CandidateSolution currentSolution, CandidateSolution bestSolution, int bestFitness, boolean bestFeasible,
+				 int iterations, int iterationsSinceImprovement, long elapsedNanos, NextSolutionSelector selector) throws IOException {
+		ByteArrayOutputStream selectorState = new ByteArrayOutputStream();
+		try (DataOutputStream output = new DataOutputStream(selectorState)) {
+			selector.writeState(output);
+		}
+		save(new SearchCheckpoint(numberOfDecisionVariables, finishedRuns, startSolution, currentSolution.copy(), bestSolution.copy(), bestFitness, bestFeasible,
+				iterations, iterationsSinceImprovement, elapsedNanos, selector.getClass().getName(), selectorState.toByteArray()));
+	}
+
+	/**
+	 * records that a start has finished and queues a snapshot, whether or not one is due, so that it is never run again
+	 *
+	 * @param result the result of the start
+	 * @throws IOException if an earlier snapshot couldn't be written
+	 */
+	void runFinished(SearchResult result) throws IOException {
+		finishedRuns.add(result);
+		save(new SearchCheckpoint(numberOfDecisionVariables, finishedRuns));
+	}
+
+	/**
+	 * accessor, returns the results of the starts that have finished, including those from the resumed checkpoint
+	 *
+	 * @return a copy of the results, in the order the starts were run
+	 */
+	public List<SearchResult> getFinishedRuns() {
+		return new ArrayList<>(finishedRuns);
+	}
+
+	/**
+	 * waits for the last snapshot to be written and stops the writer thread
+	 *
+	 * @throws IOException if a snapshot couldn't be written
+	 */
+	@Override
+	public void close() throws IOException {
+		writer.shutdown();
+		try {
+			if (!writer.awaitTermination(1, TimeUnit.MINUTES))
+				throw new IOException("timed out writing the checkpoint " + file);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while writing the checkpoint " + file, e);
+		}
+		throwIfFailed();
+	}
+
+	/**
+	 * encodes a snapshot and queues it, replacing a snapshot that is still waiting to be written
+	 *
+	 * @param checkpoint the snapshot
+	 * @throws IOException if an earlier snapshot couldn't be written
+	 */
+	private void save(SearchCheckpoint checkpoint) throws IOException {
+		throwIfFailed();
+		lastSaveTime = System.nanoTime();
+		if (pendingSnapshot.getAndSet(checkpoint.toBytes()) == null)
+			writer.execute(this::writePendingSnapshot);
+	}
+
+	/**
+	 * writes the newest snapshot, on the writer thread
+	 */
+	private void writePendingSnapshot() {
+		byte[] snapshot = pendingSnapshot.getAndSet(null);
+		if (snapshot == null || failure != null)
+			return;
+		try {
+			try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(true);
+			}
+			try {
+				Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			failure = new IOException("couldn't write the checkpoint " + file, e);
+		}
+	}
+
+	/**
+	 * throws the failure of an earlier write, if there was one
+	 *
+	 * @throws IOException the failure
+	 */
+	private void throwIfFailed() throws IOException {
+		IOException writeFailure = failure;
+		if (writeFailure != null)
+			throw writeFailure;
+	}
+}
@@ -0,0 +1,68 @@
+package com.parker.david;
+
+import java.util.ArrayList;
+
+/**
+ * joins the neighbourhoods of several generators into one, in the order the generators are given, eg: single flips followed by swaps.
+ * a neighbour that more than one generator reaches appears once for each of them
+ */
+public class CombinedNeighbourhoodGenerator implements NeighbourhoodGenerator, MoveNeighbourhoodGenerator {
+
+	/**
+	 * the generators whose neighbourhoods are joined
+	 */
+	private final MoveNeighbourhoodGenerator[] generators;
+
+	/**
+	 * the constructor
+	 *
+	 * @param generators the generators whose neighbourhoods are joined, in order
+	 */
+	CombinedNeighbourhoodGenerator(MoveNeighbourhoodGenerator... generators) {
+		this.generators = generators;
+	}
+
+	/**
+	 * builds every neighbour of every generator
+	 *
+	 * @param currentSolution the solution for which a new neighbourhood needs to be found
+	 * @return an array of candidate solutions that are in the neighbourhood of the current solution
+	 */
+	@Override
+	public ArrayList<CandidateSolution> generateSolutionNeighbourhood(CandidateSolution currentSolution) {
+		return generateMoveNeighbourhood(currentSolution).materialise(currentSolution);
+	}
+
+	/**
+	 * the moves of every generator, one after another
+	 *
+	 * @param currentSolution the solution for which a new neighbourhood needs to be found
+	 * @return the joined neighbourhood
+	 */
+	@Override
+	public MoveNeighbourhood generateMoveNeighbourhood(CandidateSolution currentSolution) {
+		MoveNeighbourhood[] neighbourhoods = new MoveNeighbourhood[generators.length];
+		int[] starts = new int[generators.length + 1];
+		for (int g = 0; g < generators.length; g++) {
+			neighbourhoods[g] = generators[g].generateMoveNeighbourhood(currentSolution);
+			starts[g + 1] = Math.addExact(starts[g], neighbourhoods[g].size());
+		}
+
+		return new MoveNeighbourhood() {
+			@Override
+			public int size() {
+				return starts[generators.length];
+			}
+
+			@Override
+			public Move getIthMove(int i) {
+				//there are only ever a few generators, so a linear search for the one holding index i is fine
+				int g = 0;
+				while (i >= starts[g + 1]) {
+					g++;
+				}
+				return neighbourhoods[g].getIthMove(i - starts[g]);
+			}
+		};
+	}
+}
@@ -1,17 +1,40 @@
 package com.parker.david;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
 /**
  * this class represents a single constraint. It is of the form [list of weights] [operator] [value] eg: (-1 * X1) + (3 * X2) <= 7
- * it has a method to initialise it, and a method to check if the constraint is satisfied for a candidate solution
+ * it has a method to initialise it, and a method to check if the constraint is satisfied for a candidate solution.
+ * weights are stored densely, one per decision variable, unless most of them are 0, in which case only the non zero
+ * weights are kept together with the index of their decision variable (one row of a compressed sparse row matrix),
+ * so memory scales with the number of non zero weights instead of the number of decision variables
  */
 public class Constraint {
 
 	/**
-	 * an array list that contains the weights correlating to the various constraints
+	 * an array that contains the weights correlating to the various constraints, as a primitive array so evaluation never unboxes.
+	 * this is null when the constraint is stored sparsely
 	 */
-	private final ArrayList<Integer> constraintFunctionEncoded;
+	private final int[] constraintFunctionEncoded;
+
+	/**
+	 * the indices of the decision variables with a non zero weight, in ascending order. This is null when the constraint is stored densely
+	 */
+	private final int[] nonZeroVariables;
+
+	/**
+	 * the non zero weights, nonZeroWeights[k] is the weight of decision variable nonZeroVariables[k]. This is null when the constraint is stored densely
+	 */
+	private final int[] nonZeroWeights;
+
+	/**
+	 * the indices and the values of the non zero weights of a dense constraint, built the first time they are asked for so
+	 * that the indexes built from them don't each collect them again. Two threads may both build them, which only
+	 * wastes the work of one of them. This is null for a sparse constraint
+	 */
+	private volatile int[][] denseNonZeroWeights;
 
 	/**
 	 * an operator enum, this defines the comparison method used for evaluating feasibility
@@ -23,6 +46,27 @@ public class Constraint {
 	 */
 	private final int valueThreshold;
 
+	/**
+	 * every operator is normalised to (sign * left hand side) <= normalisedThreshold, so checking feasibility is a single
+	 * comparison instead of a branch on the operator. sign is -1 for the greater than operators, 1 for the less than operators
+	 */
+	private final int sign;
+
+	/**
+	 * the right hand side of the normalised comparison, as a long so that moving the strict operators by 1 can't overflow
+	 */
+	private final long normalisedThreshold;
+
+	/**
+	 * the largest amount that setting a single variable can add to the normalised left hand side, 0 if none can add anything
+	 */
+	private final long largestIncrease;
+
+	/**
+	 * the normalised left hand side with every variable that adds to it set, the largest it can ever be
+	 */
+	private final long totalIncrease;
+
 	/**
 	 * these are the operators that are permissible
 	 * an example is:
@@ -44,9 +88,102 @@ public class Constraint {
 	 * @param valueThreshold            this is the value threshold that the operator applies to
 	 */
 	Constraint(ArrayList<Integer> constraintFunctionEncoded, Operators operator, int valueThreshold) {
+		this(ObjectiveFunction.toIntArray(constraintFunctionEncoded), operator, valueThreshold);
+	}
+
+	/**
+	 * our constructor from an array of weights, the array is not copied.
+	 * if less than half of the weights are non zero the constraint is stored sparsely instead, and the array is not kept
+	 *
+	 * @param constraintFunctionEncoded this is the set of weights that are multiplied by the encoded values
+	 * @param operator                  this is the operator to be used
+	 * @param valueThreshold            this is the value threshold that the operator applies to
+	 */
+	Constraint(int[] constraintFunctionEncoded, Operators operator, int valueThreshold) {
+		this(constraintFunctionEncoded, isWorthStoringSparsely(constraintFunctionEncoded), operator, valueThreshold);
+	}
+
+	/**
+	 * picks the storage for a dense weight array, once it is known which one is smaller
+	 *
+	 * @param constraintFunctionEncoded this is the set of weights that are multiplied by the encoded values
+	 * @param storeSparsely             true to keep only the non zero weights
+	 * @param operator                  this is the operator to be used
+	 * @param valueThreshold            this is the value threshold that the operator applies to
+	 */
+	private Constraint(int[] constraintFunctionEncoded, boolean storeSparsely, Operators operator, int valueThreshold) {
+		this(storeSparsely ? null : constraintFunctionEncoded,
+				storeSparsely ? nonZeroIndices(constraintFunctionEncoded) : null,
+				storeSparsely ? nonZeroValues(constraintFunctionEncoded) : null,
+				operator, valueThreshold);
+	}
+
+	/**
+	 * our constructor for a sparse constraint, only the non zero weights are given. The arrays are not copied unless some
+	 * of the weights are zero, which are dropped so that every sparse entry really is a non zero weight
+	 *
+	 * @param nonZeroVariables the indices of the decision variables with a non zero weight, strictly ascending
+	 * @param nonZeroWeights   the weight of each of those decision variables
+	 * @param operator         this is the operator to be used
+	 * @param valueThreshold   this is the value threshold that the operator applies to
+	 */
+	Constraint(int[] nonZeroVariables, int[] nonZeroWeights, Operators operator, int valueThreshold) {
+		this(withoutZeroWeights(nonZeroVariables, nonZeroWeights), operator, valueThreshold);
+	}
+
+	/**
+	 * unpacks the checked sparse weights of the sparse constructor
+	 *
+	 * @param sparseWeights  the indices and the weights, with no zero weights
+	 * @param operator       this is the operator to be used
+	 * @param valueThreshold this is the value threshold that the operator applies to
+	 */
+	private Constraint(int[][] sparseWeights, Operators operator, int valueThreshold) {
+		this(null, sparseWeights[0], sparseWeights[1], operator, valueThreshold);
+	}
+
+	/**
+	 * the constructor that every other constructor ends up at, exactly one of the dense weights and the sparse weights is given
+	 *
+	 * @param constraintFunctionEncoded the dense weights, or null
+	 * @param nonZeroVariables          the indices of the sparse weights, or null
+	 * @param nonZeroWeights            the sparse weights, or null
+	 * @param operator                  this is the operator to be used
+	 * @param valueThreshold            this is the value threshold that the operator applies to
+	 */
+	private Constraint(int[] constraintFunctionEncoded, int[] nonZeroVariables, int[] nonZeroWeights, Operators operator, int valueThreshold) {
 		this.constraintFunctionEncoded = constraintFunctionEncoded;
+		this.nonZeroVariables = nonZeroVariables;
+		this.nonZeroWeights = nonZeroWeights;
 		this.operator = operator;
 		this.valueThreshold = valueThreshold;
+
+		//the values are integers, so x < v is the same as x <= v - 1, and x >= v is the same as -x <= -v
+		if (operator == Operators.LESS_THAN) {
+			sign = 1;
+			normalisedThreshold = (long) valueThreshold - 1;
+		} else if (operator == Operators.LESS_THAN_OR_EQUAL) {
+			sign = 1;
+			normalisedThreshold = valueThreshold;
+		} else if (operator == Operators.GREATER_THAN) {
+			sign = -1;
+			normalisedThreshold = -(long) valueThreshold - 1;
+		} else if (operator == Operators.GREATER_THAN_OR_EQUAL) {
+			sign = -1;
+			normalisedThreshold = -(long) valueThreshold;
+		} else throw new ExceptionInInitializerError("no operator selected, this should never happen");
+
+		long largest = 0;
+		long total = 0;
+		for (int weight : (constraintFunctionEncoded != null) ? constraintFunctionEncoded : nonZeroWeights) {
+			long increase = (long) sign * weight;
+			if (increase > 0) {
+				largest = Math.max(largest, increase);
+				total += increase;
+			}
+		}
+		largestIncrease = largest;
+		totalIncrease = total;
 	}
 
 	/**
@@ -56,24 +193,206 @@ public class Constraint {
 	 * @return a boolean indicating if this particular constraint is satisfied
 	 */
 	public boolean isFeasible(CandidateSolution solution) {
-		//set an initial value
-		int solutionConstraintValue = 0;
+		return isSatisfiedBy(evaluateLeftHandSide(solution));
+	}
+
+	/**
+	 * calculates the left hand side of the constraint for a solution, the sum of the weights of all variables that are set
+	 *
+	 * @param solution the candidate solution to sum the weights for
+	 * @return the value of the left hand side of the constraint
+	 */
+	long evaluateLeftHandSide(CandidateSolution solution) {
+		if (constraintFunctionEncoded == null)
+			return WeightKernels.sparseMaskedSum(nonZeroVariables, nonZeroWeights, solution.getWords());
+		return WeightKernels.maskedSum(constraintFunctionEncoded, solution.getWords());
+	}
+
+	/**
+	 * compares an already calculated left hand side against the threshold using the normalised form of this constraint's operator.
+	 * this lets callers that keep the left hand side up to date themselves check feasibility without re-summing
+	 *
+	 * @param solutionConstraintValue the left hand side of the constraint
+	 * @return a boolean indicating if the constraint is satisfied by that left hand side
+	 */
+	boolean isSatisfiedBy(long solutionConstraintValue) {
+		return sign * solutionConstraintValue <= normalisedThreshold;
+	}
+
+	/**
+	 * a bound that proves the constraint is satisfied without summing it. With k variables set the normalised left hand side
+	 * is at most k times the largest single increase, and never more than every increase together, so if that is within
+	 * the threshold every such solution is feasible. A false result proves nothing, the constraint still has to be evaluated
+	 *
+	 * @param numberOfSetVariables the number of decision variables that are set in the solution
+	 * @return true if every solution with that many variables set satisfies this constraint
+	 */
+	boolean isSatisfiedByAnyWith(int numberOfSetVariables) {
+		return Math.min(totalIncrease, numberOfSetVariables * largestIncrease) <= normalisedThreshold;
+	}
+
+	/**
+	 * the most variables a solution can have set for isSatisfiedByAnyWith to prove this constraint satisfied
+	 *
+	 * @return the number of set variables, Integer.MAX_VALUE if any number is, -1 if not even the empty solution is
+	 */
+	int mostSetVariablesSatisfiedByAny() {
+		if (totalIncrease <= normalisedThreshold)
+			return Integer.MAX_VALUE;
+		if (normalisedThreshold < 0)
+			return -1;
+		return (int) Math.min(Integer.MAX_VALUE - 1, normalisedThreshold / largestIncrease);
+	}
+
+	/**
+	 * the weight of a single decision variable in this constraint, variables past the end of the weight list have weight 0.
+	 * this is O(1) for a dense constraint and O(log(non zero weights)) for a sparse one
+	 *
+	 * @param i the index of the decision variable
+	 * @return the weight of the ith decision variable
+	 */
+	int getIthWeight(int i) {
+		if (constraintFunctionEncoded == null) {
+			int position = Arrays.binarySearch(nonZeroVariables, i);
+			return (position >= 0) ? nonZeroWeights[position] : 0;
+		}
+		return (i < constraintFunctionEncoded.length) ? constraintFunctionEncoded[i] : 0;
+	}
+
+	/**
+	 * accessor, returns the operator of the constraint as it was given, before normalisation
+	 *
+	 * @return the operator
+	 */
+	Operators getOperator() {
+		return operator;
+	}
+
+	/**
+	 * accessor, returns the value threshold of the constraint as it was given, before normalisation
+	 *
+	 * @return the value threshold
+	 */
+	int getValueThreshold() {
+		return valueThreshold;
+	}
+
+	/**
+	 * accessor, returns the sign of the normalised comparison, 1 for the less than operators and -1 for the greater than operators
+	 *
+	 * @return the sign that the left hand side is multiplied by
+	 */
+	int getSign() {
+		return sign;
+	}
+
+	/**
+	 * accessor, returns the right hand side of the normalised comparison (sign * left hand side) <= normalised threshold
+	 *
+	 * @return the normalised threshold
+	 */
+	long getNormalisedThreshold() {
+		return normalisedThreshold;
+	}
+
+	/**
+	 * the indices of the decision variables that have a non zero weight, in ascending order.
+	 * for a dense constraint these are collected the first time they are asked for and then kept
+	 *
+	 * @return the indices of the non zero weights, callers must not modify this
+	 */
+	int[] getNonZeroVariables() {
+		return (constraintFunctionEncoded == null) ? nonZeroVariables : getDenseNonZeroWeights()[0];
+	}
+
+	/**
+	 * the non zero weights, in the same order as getNonZeroVariables.
+	 * for a dense constraint these are collected the first time they are asked for and then kept
+	 *
+	 * @return the non zero weights, callers must not modify this
+	 */
+	int[] getNonZeroWeights() {
+		return (constraintFunctionEncoded == null) ? nonZeroWeights : getDenseNonZeroWeights()[1];
+	}
 
-		//add up all the weights that are used by the candidate solution
-		for (int i = 0; i < constraintFunctionEncoded.size(); i++) {
-			if (solution.getIthDecisionVariable(i))
-				solutionConstraintValue += constraintFunctionEncoded.get(i);
+	/**
+	 * the indices and the values of the non zero weights of a dense constraint, collecting them if they haven't been yet
+	 *
+	 * @return the indices and the values
+	 */
+	private int[][] getDenseNonZeroWeights() {
+		int[][] weights = denseNonZeroWeights;
+		if (weights == null) {
+			weights = new int[][]{nonZeroIndices(constraintFunctionEncoded), nonZeroValues(constraintFunctionEncoded)};
+			denseNonZeroWeights = weights;
 		}
+		return weights;
+	}
 
-		//handle the various possible operators
-		if (operator == Operators.LESS_THAN)
-			return solutionConstraintValue < valueThreshold;
-		else if (operator == Operators.LESS_THAN_OR_EQUAL)
-			return solutionConstraintValue <= valueThreshold;
-		else if (operator == Operators.GREATER_THAN)
-			return solutionConstraintValue > valueThreshold;
-		else if (operator == Operators.GREATER_THAN_OR_EQUAL)
-			return solutionConstraintValue >= valueThreshold;
-		else throw new ExceptionInInitializerError("no operator selected, this should never happen");
+	/**
+	 * checks if a dense weight array would take less memory as a sparse one, which needs two ints per non zero weight
+	 *
+	 * @param weights the dense weights
+	 * @return true if fewer than half of the weights are non zero
+	 */
+	private static boolean isWorthStoringSparsely(int[] weights) {
+		int nonZeroCount = 0;
+		for (int weight : weights) {
+			if (weight != 0)
+				nonZeroCount++;
+		}
+		return nonZeroCount * 2 < weights.length;
+	}
+
+	/**
+	 * checks the sparse weights given to the sparse constructor and drops any that are zero
+	 *
+	 * @param variables the indices of the decision variables, strictly ascending
+	 * @param weights   the weight of each of those decision variables
+	 * @return the indices and the weights, the arrays given if none of the weights are zero
+	 * @throws IllegalArgumentException if the arrays differ in length or the indices aren't non negative and strictly ascending
+	 */
+	private static int[][] withoutZeroWeights(int[] variables, int[] weights) {
+		if (variables.length != weights.length)
+			throw new IllegalArgumentException("there are " + variables.length + " variable indices but " + weights.length + " weights");
+		int nonZeroCount = 0;
+		for (int k = 0; k < variables.length; k++) {
+			if (variables[k] < 0 || (k > 0 && variables[k] <= variables[k - 1]))
+				throw new IllegalArgumentException("variable indices must be non negative and strictly ascending, found " + variables[k] + " at position " + k);
+			if (weights[k] != 0)
+				nonZeroCount++;
+		}
+		if (nonZeroCount == variables.length)
+			return new int[][]{variables, weights};
+
+		int[] nonZeroVariables = new int[nonZeroCount];
+		int[] nonZeroWeights = new int[nonZeroCount];
+		for (int k = 0, kept = 0; k < variables.length; k++) {
+			if (weights[k] != 0) {
+				nonZeroVariables[kept] = variables[k];
+				nonZeroWeights[kept++] = weights[k];
+			}
+		}
+		return new int[][]{nonZeroVariables, nonZeroWeights};
+	}
+
+	/**
+	 * collects the indices of the non zero entries of a dense weight array
+	 *
+	 * @param weights the dense weights
+	 * @return the indices of the non zero weights in ascending order
+	 */
+	private static int[] nonZeroIndices(int[] weights) {
+		return IntStream.range(0, weights.length).filter(i -> weights[i] != 0).toArray();
+	}
+
+	/**
+	 * collects the non zero entries of a dense weight array
+	 *
+	 * @param weights the dense weights
+	 * @return the non zero weights in index order
+	 */
+	private static int[] nonZeroValues(int[] weights) {
+		return Arrays.stream(weights).filter(weight -> weight != 0).toArray();
 	}
 }
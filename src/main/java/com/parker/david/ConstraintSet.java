@@ -1,17 +1,104 @@
 package com.parker.david;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
- * a holder for all constraints so it is simpler to check if all constraints are feasible at once
+ * a holder for all constraints so it is simpler to check if all constraints are feasible at once.
+ * isFeasible stops at the first violated constraint, so the order constraints are checked in decides how much work an
+ * infeasible solution costs. With the adaptive order on, the set keeps how often each constraint rejects a solution and
+ * how long it takes to check, and every so often reorders them so the ones most likely to fail per nanosecond are checked
+ * first. The counts are halved at each reorder so that the order follows the part of the search space the search is
+ * currently in. Each thread counts into its own arrays, which are only merged into the shared counts under a lock when
+ * that thread reorders, so descents and selectors checking on several threads at once never contend on a counter.
+ * the incremental evaluator checks moves in the same order, reading each column of the reverse index through a
+ * permutation of its entries, and a sample of its checks is counted too.
+ * the adaptive order is off by default, when it is off the constraints are checked in the order they were added and
+ * nothing is counted
  */
 public class ConstraintSet {
 
+	/**
+	 * the number of feasibility checks a thread makes between reorders
+	 */
+	private static final int REORDER_INTERVAL = 4096;
+
+	/**
+	 * one in this many checks has each of its constraints timed, timing every check would cost about as much as a small constraint
+	 */
+	private static final int COST_SAMPLE_INTERVAL = 64;
+
+	/**
+	 * one in this many incremental checks is counted, and each one counted stands for this many. An incremental check is
+	 * O(1) per constraint, so counting every one of them would cost more than the checks themselves
+	 */
+	private static final int INCREMENTAL_SAMPLE_INTERVAL = 64;
+
 	/**
 	 * this is an array of the constraints that we want to check
 	 */
 	private ArrayList<Constraint> constraintSet;
 
+	/**
+	 * the reverse index from decision variables to the constraints they appear in. It is built the first time
+	 * it is asked for and thrown away whenever a constraint is added
+	 */
+	private volatile VariableConstraintIndex variableIndex;
+
+	/**
+	 * the check order together with the entries of every column of the reverse index in that order, for the incremental
+	 * evaluator. It is built the first time it is asked for after the order changes, and two threads may both build it,
+	 * which only wastes the work of one of them
+	 */
+	private volatile ColumnEntriesInOrder columnEntriesInCheckOrder;
+
+	/**
+	 * the indices of the constraints in the order they are checked. This is never changed once published, a reorder
+	 * publishes a new array so a check that is part way through keeps the order it started with
+	 */
+	private volatile int[] checkOrder = new int[0];
+
+	/**
+	 * checks[c] is the number of times constraint c has been evaluated since the counts were last halved, merged from
+	 * every thread. This and the other shared counts are only read and written holding the set's lock
+	 */
+	private long[] checks = new long[0];
+
+	/**
+	 * rejections[c] is the number of those evaluations that found constraint c violated
+	 */
+	private long[] rejections = new long[0];
+
+	/**
+	 * costNanos[c] is the total time of the timed evaluations of constraint c
+	 */
+	private long[] costNanos = new long[0];
+
+	/**
+	 * costSamples[c] is the number of timed evaluations of constraint c
+	 */
+	private long[] costSamples = new long[0];
+
+	/**
+	 * the counts each thread has made since it last merged them
+	 */
+	private final ThreadLocal<CheckCounts> threadCounts = ThreadLocal.withInitial(CheckCounts::new);
+
+	/**
+	 * whether to count the checks and reorder the constraints
+	 */
+	private volatile boolean adaptiveOrder;
+
+	/**
+	 * whether to skip constraints that a slack bound proves are satisfied
+	 */
+	private volatile boolean slackBounds;
+
+	/**
+	 * the most variables a solution can have set for the slack bounds to prove every constraint satisfied, -1 if none
+	 */
+	private int slackBoundSetVariables = Integer.MAX_VALUE;
+
 	/**
 	 * in order to feel similar to the ArrayList.add method, this accepts a new constraint.
 	 * it adds it to the internal constraint set
@@ -19,8 +106,20 @@ public class ConstraintSet {
 	 * @param constraint this is the constraint that we want to add in to the existing set of constraints
 	 * @return returns the constraint set object so that the .add() function can be chained multiple times.
 	 */
-	public ConstraintSet add(Constraint constraint) {
+	public synchronized ConstraintSet add(Constraint constraint) {
 		constraintSet.add(constraint);
+		variableIndex = null;
+		slackBoundSetVariables = Math.min(slackBoundSetVariables, constraint.mostSetVariablesSatisfiedByAny());
+
+		//a new constraint starts with no history, and is checked last until the next reorder
+		int size = constraintSet.size();
+		checks = Arrays.copyOf(checks, size);
+		rejections = Arrays.copyOf(rejections, size);
+		costNanos = Arrays.copyOf(costNanos, size);
+		costSamples = Arrays.copyOf(costSamples, size);
+		int[] order = Arrays.copyOf(checkOrder, size);
+		order[size - 1] = size - 1;
+		checkOrder = order;
 		return this;
 	}
 
@@ -32,15 +131,415 @@ public class ConstraintSet {
 	}
 
 	/**
-	 * this loops through all constraints that are present, and returns false if one of them is violated
+	 * this loops through all constraints that are present, and returns false if one of them is violated.
+	 * the constraints are checked in the check order, skipping any that a slack bound proves are satisfied if those are on
 	 * @param solution this is the solution that we want to check feasibility for
 	 * @return a boolean, if true solution is feasible, if false, solution is unfeasible
 	 * */
 	public boolean isFeasible(CandidateSolution solution) {
-		for (Constraint constraint : constraintSet) {
-			if (!constraint.isFeasible(solution))
+		int[] order = checkOrder;
+		boolean useSlackBounds = slackBounds;
+		int setVariables = useSlackBounds ? solution.countSetDecisionVariables() : 0;
+		CheckCounts counts = adaptiveOrder ? threadCounts.get().sizedFor(order.length) : null;
+		boolean timed = counts != null && counts.isTimedCheck();
+
+		boolean feasible = true;
+		for (int c : order) {
+			Constraint constraint = constraintSet.get(c);
+			if (useSlackBounds && constraint.isSatisfiedByAnyWith(setVariables))
+				continue;
+
+			boolean satisfied;
+			if (timed) {
+				long start = System.nanoTime();
+				satisfied = constraint.isFeasible(solution);
+				counts.timed(c, System.nanoTime() - start);
+			} else {
+				satisfied = constraint.isFeasible(solution);
+			}
+			if (counts != null)
+				counts.count(c, !satisfied, 1);
+			if (!satisfied) {
+				feasible = false;
+				break;
+			}
+		}
+
+		if (counts != null && counts.finishCheck(1))
+			reorder(counts);
+		return feasible;
+	}
+
+	/**
+	 * the counts of this thread if the incremental check about to be made is one of the sample that is counted
+	 *
+	 * @return the counts to count the check into with CheckCounts.countIncremental and finishIncrementalCheck, or null
+	 * if the check isn't counted
+	 */
+	CheckCounts countedIncrementalCheck() {
+		if (!adaptiveOrder)
+			return null;
+		CheckCounts counts = threadCounts.get().sizedFor(checkOrder.length);
+		return counts.isCountedIncrementalCheck() ? counts : null;
+	}
+
+	/**
+	 * ends a counted incremental check, reordering the constraints if this thread has made enough checks since it last did
+	 *
+	 * @param counts the counts from countedIncrementalCheck
+	 */
+	void finishIncrementalCheck(CheckCounts counts) {
+		if (counts.finishCheck(INCREMENTAL_SAMPLE_INTERVAL))
+			reorder(counts);
+	}
+
+	/**
+	 * merges a thread's counts into the shared ones, then reorders the constraints by their chance of rejecting a solution
+	 * divided by their cost, highest first, which is the order that minimises the expected time to find a violated
+	 * constraint. The chance is smoothed so that a constraint which is rarely reached isn't judged on a handful of checks,
+	 * and a constraint that has never been timed is assumed to cost the average. Constraints with the same score keep
+	 * their current relative order
+	 *
+	 * @param counts the counts of the thread that is reordering, these are cleared
+	 */
+	private synchronized void reorder(CheckCounts counts) {
+		int size = checkOrder.length;
+		//counts made before a constraint was added don't line up with the shared ones, so they are dropped
+		if (counts.checks.length == size)
+			counts.mergeInto(checks, rejections, costNanos, costSamples);
+		counts.clear();
+
+		long totalNanos = 0;
+		long totalSamples = 0;
+		for (int c = 0; c < size; c++) {
+			totalNanos += costNanos[c];
+			totalSamples += costSamples[c];
+		}
+		double averageCost = (totalSamples == 0) ? 1 : Math.max(1.0, (double) totalNanos / totalSamples);
+
+		double[] score = new double[size];
+		for (int c = 0; c < size; c++) {
+			double rejectionRate = (rejections[c] + 1.0) / (checks[c] + 2.0);
+			double cost = (costSamples[c] == 0) ? averageCost : Math.max(1.0, (double) costNanos[c] / costSamples[c]);
+			score[c] = rejectionRate / cost;
+
+			//halve the history so recent checks count for more than old ones
+			checks[c] >>= 1;
+			rejections[c] >>= 1;
+			costNanos[c] >>= 1;
+			costSamples[c] >>= 1;
+		}
+
+		Integer[] order = new Integer[size];
+		for (int k = 0; k < size; k++) {
+			order[k] = checkOrder[k];
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(score[b], score[a]));
+
+		//the order is only republished when it changes, so the column entries in check order are only rebuilt then
+		int[] newOrder = Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+		if (!Arrays.equals(newOrder, checkOrder))
+			checkOrder = newOrder;
+	}
+
+	/**
+	 * turns the adaptive order on or off. With it on, the constraints are reordered as described above, which pays off
+	 * when some constraints reject far more often than others. The counting costs a thread local lookup and a few array
+	 * increments per check, and each reorder makes the incremental evaluator build a new permutation of the column entries
+	 *
+	 * @param adaptiveOrder true to count the checks and reorder the constraints
+	 */
+	public void setAdaptiveOrder(boolean adaptiveOrder) {
+		this.adaptiveOrder = adaptiveOrder;
+	}
+
+	/**
+	 * accessor, returns whether the constraints are reordered
+	 *
+	 * @return true if they are
+	 */
+	public boolean isUsingAdaptiveOrder() {
+		return adaptiveOrder;
+	}
+
+	/**
+	 * turns the slack bounds on or off. With them on, a constraint is skipped when the number of set variables in the
+	 * solution is too small for it to be violated (see Constraint.isSatisfiedByAnyWith). This costs a popcount of the
+	 * solution per check, so it pays off when many constraints have plenty of slack, eg capacities that only a large
+	 * fraction of the items could fill
+	 *
+	 * @param slackBounds true to use the bounds
+	 */
+	public void setSlackBounds(boolean slackBounds) {
+		this.slackBounds = slackBounds;
+	}
+
+	/**
+	 * accessor, returns whether the slack bounds are used
+	 *
+	 * @return true if they are
+	 */
+	public boolean isUsingSlackBounds() {
+		return slackBounds;
+	}
+
+	/**
+	 * the most variables a solution can have set for the slack bounds to prove that it satisfies every constraint,
+	 * so that the incremental evaluator can accept a neighbour with no more than this set without looking at its column
+	 *
+	 * @return the number of set variables, -1 if even the empty solution isn't proved feasible
+	 */
+	int getSlackBoundSetVariables() {
+		return slackBoundSetVariables;
+	}
+
+	/**
+	 * the order the constraints are currently checked in
+	 *
+	 * @return a copy of the indices of the constraints, first checked first
+	 */
+	int[] getCheckOrder() {
+		return checkOrder.clone();
+	}
+
+	/**
+	 * the number of constraints in the set
+	 *
+	 * @return the number of constraints
+	 */
+	public int size() {
+		return constraintSet.size();
+	}
+
+	/**
+	 * gets a constraint by its position in the set, in the order that they were added
+	 *
+	 * @param i the index of the constraint
+	 * @return the ith constraint
+	 */
+	Constraint getIthConstraint(int i) {
+		return constraintSet.get(i);
+	}
+
+	/**
+	 * the reverse index from each decision variable to the constraints it has a non zero weight in.
+	 * it is built once and shared, so descents running at the same time on this constraint set all use the same index
+	 *
+	 * @return the index for the current constraints
+	 */
+	VariableConstraintIndex getVariableIndex() {
+		VariableConstraintIndex index = variableIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = variableIndex;
+				if (index == null) {
+					index = new VariableConstraintIndex(constraintSet);
+					variableIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * the entries of every column of the reverse index listed in the current check order, so that the incremental
+	 * evaluator finds a violated constraint as soon as a full check would. They are rebuilt when the order changes
+	 *
+	 * @return the positions of the entries in check order, see VariableConstraintIndex.entriesInOrder, or null if the
+	 * adaptive order is off and the columns are walked as they are
+	 */
+	int[] getColumnEntriesInCheckOrder() {
+		if (!adaptiveOrder)
+			return null;
+		int[] order = checkOrder;
+		ColumnEntriesInOrder entries = columnEntriesInCheckOrder;
+		if (entries == null || entries.order != order) {
+			entries = new ColumnEntriesInOrder(order, getVariableIndex().entriesInOrder(constraintSet, order));
+			columnEntriesInCheckOrder = entries;
+		}
+		return entries.entries;
+	}
+
+	/**
+	 * a check order together with the column entries listed in it
+	 */
+	private static final class ColumnEntriesInOrder {
+
+		/**
+		 * the check order the entries were listed in
+		 */
+		final int[] order;
+
+		/**
+		 * the positions of the entries of each column in that order
+		 */
+		final int[] entries;
+
+		/**
+		 * the constructor
+		 *
+		 * @param order   the check order
+		 * @param entries the positions of the entries of each column in that order
+		 */
+		ColumnEntriesInOrder(int[] order, int[] entries) {
+			this.order = order;
+			this.entries = entries;
+		}
+	}
+
+	/**
+	 * the checks one thread has counted since it last reordered the constraints. Only that thread touches them, until
+	 * it merges them into the shared counts holding the set's lock
+	 */
+	static final class CheckCounts {
+
+		/**
+		 * checks[c] is the number of times constraint c has been evaluated
+		 */
+		private long[] checks = new long[0];
+
+		/**
+		 * rejections[c] is the number of those evaluations that found constraint c violated
+		 */
+		private long[] rejections = new long[0];
+
+		/**
+		 * costNanos[c] is the total time of the timed evaluations of constraint c
+		 */
+		private long[] costNanos = new long[0];
+
+		/**
+		 * costSamples[c] is the number of timed evaluations of constraint c
+		 */
+		private long[] costSamples = new long[0];
+
+		/**
+		 * the number of checks, counting each counted incremental check as the checks it stands for
+		 */
+		private int checksSinceReorder;
+
+		/**
+		 * the number of full checks until the next one is timed
+		 */
+		private int checksUntilTimed = COST_SAMPLE_INTERVAL;
+
+		/**
+		 * the number of incremental checks until the next one is counted
+		 */
+		private int incrementalChecksUntilCounted = INCREMENTAL_SAMPLE_INTERVAL;
+
+		/**
+		 * makes sure there is a count for every constraint, starting again if constraints have been added
+		 *
+		 * @param size the number of constraints
+		 * @return these counts
+		 */
+		CheckCounts sizedFor(int size) {
+			if (checks.length != size) {
+				checks = new long[size];
+				rejections = new long[size];
+				costNanos = new long[size];
+				costSamples = new long[size];
+			}
+			return this;
+		}
+
+		/**
+		 * decides whether the full check about to be made has its constraints timed
+		 *
+		 * @return true for one in COST_SAMPLE_INTERVAL checks
+		 */
+		boolean isTimedCheck() {
+			if (--checksUntilTimed > 0)
+				return false;
+			checksUntilTimed = COST_SAMPLE_INTERVAL;
+			return true;
+		}
+
+		/**
+		 * decides whether the incremental check about to be made is counted
+		 *
+		 * @return true for one in INCREMENTAL_SAMPLE_INTERVAL checks
+		 */
+		boolean isCountedIncrementalCheck() {
+			if (--incrementalChecksUntilCounted > 0)
 				return false;
+			incrementalChecksUntilCounted = INCREMENTAL_SAMPLE_INTERVAL;
+			return true;
+		}
+
+		/**
+		 * counts an evaluation of a constraint
+		 *
+		 * @param c        the index of the constraint
+		 * @param rejected true if the constraint was violated
+		 * @param weight   the number of evaluations this one stands for
+		 */
+		void count(int c, boolean rejected, int weight) {
+			checks[c] += weight;
+			if (rejected)
+				rejections[c] += weight;
+		}
+
+		/**
+		 * counts a constraint that a counted incremental check looked at. Incremental checks aren't timed, every
+		 * constraint costs the same O(1) to check from a left hand side, so only the chance of a rejection is learnt from them
+		 *
+		 * @param c        the index of the constraint
+		 * @param rejected true if the constraint was violated
+		 */
+		void countIncremental(int c, boolean rejected) {
+			count(c, rejected, INCREMENTAL_SAMPLE_INTERVAL);
+		}
+
+		/**
+		 * adds the time of a timed evaluation of a constraint
+		 *
+		 * @param c     the index of the constraint
+		 * @param nanos how long it took
+		 */
+		void timed(int c, long nanos) {
+			costNanos[c] += nanos;
+			costSamples[c]++;
+		}
+
+		/**
+		 * ends a check
+		 *
+		 * @param weight the number of checks this one stands for
+		 * @return true if enough checks have been made since the last reorder for this thread to reorder
+		 */
+		boolean finishCheck(int weight) {
+			checksSinceReorder += weight;
+			return checksSinceReorder >= REORDER_INTERVAL;
+		}
+
+		/**
+		 * adds these counts to the shared ones, which must have the same length
+		 *
+		 * @param sharedChecks      the shared evaluation counts
+		 * @param sharedRejections  the shared rejection counts
+		 * @param sharedCostNanos   the shared total times
+		 * @param sharedCostSamples the shared numbers of timed evaluations
+		 */
+		void mergeInto(long[] sharedChecks, long[] sharedRejections, long[] sharedCostNanos, long[] sharedCostSamples) {
+			for (int c = 0; c < checks.length; c++) {
+				sharedChecks[c] += checks[c];
+				sharedRejections[c] += rejections[c];
+				sharedCostNanos[c] += costNanos[c];
+				sharedCostSamples[c] += costSamples[c];
+			}
+		}
+
+		/**
+		 * starts counting again from zero
+		 */
+		void clear() {
+			Arrays.fill(checks, 0);
+			Arrays.fill(rejections, 0);
+			Arrays.fill(costNanos, 0);
+			Arrays.fill(costSamples, 0);
+			checksSinceReorder = 0;
 		}
-		return true;
 	}
 }
@@ -0,0 +1,54 @@
+package com.parker.david;
+
+/**
+ * the cooling schedule of simulated annealing: how the temperature drops from one step to the next.
+ * the common schedules are available from the static factory methods, but any function of the current temperature and step can be used
+ */
+@FunctionalInterface
+public interface CoolingSchedule {
+
+	/**
+	 * works out the temperature for the next step
+	 *
+	 * @param temperature the temperature of the step that has just been taken
+	 * @param step        the number of steps taken so far, starting at 1 after the first step
+	 * @return the temperature for the next step
+	 */
+	double nextTemperature(double temperature, int step);
+
+	/**
+	 * geometric cooling, the temperature is multiplied by alpha every step
+	 *
+	 * @param alpha the cooling factor, between 0 and 1 exclusive, typically 0.95 to 0.9999
+	 * @return the schedule
+	 */
+	static CoolingSchedule geometric(double alpha) {
+		if (!(alpha > 0 && alpha < 1))
+			throw new IllegalArgumentException("alpha must be between 0 and 1, was " + alpha);
+		return (temperature, step) -> temperature * alpha;
+	}
+
+	/**
+	 * linear cooling, the temperature drops by the same amount every step until it reaches 0
+	 *
+	 * @param decrement the amount the temperature drops each step, must be positive
+	 * @return the schedule
+	 */
+	static CoolingSchedule linear(double decrement) {
+		if (!(decrement > 0))
+			throw new IllegalArgumentException("decrement must be positive, was " + decrement);
+		return (temperature, step) -> Math.max(0, temperature - decrement);
+	}
+
+	/**
+	 * lundy and mees cooling, t / (1 + beta * t), which drops quickly while hot and slowly once cold
+	 *
+	 * @param beta the cooling rate, must be positive
+	 * @return the schedule
+	 */
+	static CoolingSchedule lundyMees(double beta) {
+		if (!(beta > 0))
+			throw new IllegalArgumentException("beta must be positive, was " + beta);
+		return (temperature, step) -> temperature / (1 + beta * temperature);
+	}
+}
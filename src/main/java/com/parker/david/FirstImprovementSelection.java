@@ -0,0 +1,290 @@
+package com.parker.david;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * An implementation of a solution selection interface.
+ * selects the first feasible neighbour that is better than the current solution, instead of the best one,
+ * so a step stops scanning the neighbourhood as soon as it finds an improvement.
+ * the order the neighbourhood is scanned in is configurable, and the number of neighbours evaluated is counted
+ */
+public class FirstImprovementSelection implements NextSolutionSelector {
+
+	/**
+	 * the orders that the neighbourhood can be scanned in
+	 */
+	public enum ScanOrder {
+		/**
+		 * always scan from the first neighbour to the last
+		 */
+		SEQUENTIAL,
+		/**
+		 * scan in a new random order every step
+		 */
+		RANDOM_PERMUTATION,
+		/**
+		 * start each scan at the neighbour that gave the last improvement, wrapping around at the end of the neighbourhood
+		 */
+		RESUME_FROM_LAST_IMPROVEMENT
+	}
+
+	/**
+	 * this flag is set to true once a scan finds no improving neighbour
+	 */
+	private boolean searchTerminationFlag = false;
+
+	/**
+	 * this is the objective function, used for evaluating fitness of the candidate solution
+	 */
+	private final ObjectiveFunction objectiveFunction;
+
+	/**
+	 * this is the set of constraints which we use to determine if a solution is feasible
+	 */
+	private final ConstraintSet constraints;
+
+	/**
+	 * the order that each step scans the neighbourhood in
+	 */
+	private final ScanOrder scanOrder;
+
+	/**
+	 * the random number generator used for the RANDOM_PERMUTATION order
+	 */
+	private CheckpointableRandom random;
+
+	/**
+	 * the scan order for RANDOM_PERMUTATION. It is shuffled lazily, one position per neighbour looked at,
+	 * so a step that stops early only pays for the part of the permutation it used
+	 */
+	private int[] permutation = new int[0];
+
+	/**
+	 * the index of the neighbour that gave the last improvement, used by RESUME_FROM_LAST_IMPROVEMENT
+	 */
+	private int lastImprovingIndex = 0;
+
+	/**
+	 * the number of neighbours evaluated in the last step
+	 */
+	private int neighboursEvaluatedLastStep = 0;
+
+	/**
+	 * the number of neighbours evaluated over every step
+	 */
+	private long totalNeighboursEvaluated = 0;
+
+	/**
+	 * the number of steps taken, including the last step which found no improvement
+	 */
+	private int numberOfSteps = 0;
+
+	/**
+	 * the constructor for a sequential scan
+	 *
+	 * @param objectiveFunction the objective function
+	 * @param constraints       the set of constraints
+	 */
+	FirstImprovementSelection(ObjectiveFunction objectiveFunction, ConstraintSet constraints) {
+		this(objectiveFunction, constraints, ScanOrder.SEQUENTIAL, 0);
+	}
+
+	/**
+	 * the constructor, takes the scan order to use
+	 *
+	 * @param objectiveFunction the objective function
+	 * @param constraints       the set of constraints
+	 * @param scanOrder         the order that the neighbourhood is scanned in
+	 * @param seed              the seed for the random scan order, so that a run can be repeated
+	 */
+	FirstImprovementSelection(ObjectiveFunction objectiveFunction, ConstraintSet constraints, ScanOrder scanOrder, long seed) {
+		this.objectiveFunction = objectiveFunction;
+		this.constraints = constraints;
+		this.scanOrder = scanOrder;
+		this.random = new CheckpointableRandom(seed);
+	}
+
+	/**
+	 * our function to get a new solution from the neighbourhood given the current solution.
+	 * returns the first feasible neighbour in scan order that is better than the current solution,
+	 * or null if there is none, in which case searchTerminationFlag is also set to true
+	 *
+	 * @param currentSolution the current selected solution
+	 * @param neighbourhood   the neighbourhood of solutions around the current solution as found by some neighbourhood function
+	 * @return the first improving solution from the neighbourhood or null
+	 */
+	@Override
+	public CandidateSolution getNewSolution(CandidateSolution currentSolution, ArrayList<CandidateSolution> neighbourhood) {
+		int scoreToBeat = objectiveFunction.evaluateFitness(currentSolution);
+		startStep();
+
+		for (int k = 0; k < neighbourhood.size(); k++) {
+			int i = ithScanIndex(k, neighbourhood.size());
+			CandidateSolution neighbour = neighbourhood.get(i);
+			neighboursEvaluatedLastStep++;
+
+			//if the neighbour is feasible and better, we take it straight away
+			if (constraints.isFeasible(neighbour) && objectiveFunction.evaluateFitness(neighbour) > scoreToBeat)
+				return endStep(i, neighbour);
+		}
+		return endStep(-1, null);
+	}
+
+	/**
+	 * the move based form of getNewSolution, scoring each move with the evaluator's cached sums
+	 *
+	 * @param evaluator     the evaluator holding the current solution
+	 * @param neighbourhood the moves leading to each neighbour
+	 * @return the first improving move in scan order, or null
+	 */
+	@Override
+	public Move selectMove(IncrementalEvaluator evaluator, MoveNeighbourhood neighbourhood) {
+		int scoreToBeat = evaluator.getCurrentFitness();
+		startStep();
+
+		for (int k = 0; k < neighbourhood.size(); k++) {
+			int i = ithScanIndex(k, neighbourhood.size());
+			Move move = neighbourhood.getIthMove(i);
+			neighboursEvaluatedLastStep++;
+
+			//the fitness check is cheap, so do it first and only check feasibility of moves that would be an improvement
+			if (evaluator.fitnessAfter(move) > scoreToBeat && evaluator.isFeasibleAfter(move))
+				return endStep(i, move);
+		}
+		return endStep(-1, null);
+	}
+
+	/**
+	 * resets the per step counter at the start of a scan
+	 */
+	private void startStep() {
+		numberOfSteps++;
+		neighboursEvaluatedLastStep = 0;
+	}
+
+	/**
+	 * records the result of a scan, setting searchTerminationFlag if nothing was found
+	 *
+	 * @param improvingIndex the index of the selected neighbour, or -1 if there was none
+	 * @param selected       the selected neighbour or move, or null if there was none
+	 * @param <T>            the type of the selected neighbour, a solution or a move
+	 * @return the selected neighbour
+	 */
+	private <T> T endStep(int improvingIndex, T selected) {
+		totalNeighboursEvaluated += neighboursEvaluatedLastStep;
+		if (selected == null)
+			//we can't improve the solution, terminate the search
+			searchTerminationFlag = true;
+		else
+			lastImprovingIndex = improvingIndex;
+		return selected;
+	}
+
+	/**
+	 * works out which neighbour to look at kth in this step's scan
+	 *
+	 * @param k    the position in the scan, starting at 0 each step
+	 * @param size the size of the neighbourhood
+	 * @return the index of the neighbour to look at
+	 */
+	private int ithScanIndex(int k, int size) {
+		if (scanOrder == ScanOrder.SEQUENTIAL)
+			return k;
+		else if (scanOrder == ScanOrder.RESUME_FROM_LAST_IMPROVEMENT)
+			return (int) (((long) lastImprovingIndex + k) % size);
+		else if (scanOrder == ScanOrder.RANDOM_PERMUTATION) {
+			if (permutation.length != size) {
+				permutation = new int[size];
+				for (int i = 0; i < size; i++) {
+					permutation[i] = i;
+				}
+			}
+
+			//one step of a fisher-yates shuffle, swapping position k with a random position that hasn't been used yet.
+			//the array is left as whatever permutation the last step made, shuffling that is just as random as shuffling 0..n-1
+			int swapWith = k + random.nextInt(size - k);
+			int index = permutation[swapWith];
+			permutation[swapWith] = permutation[k];
+			permutation[k] = index;
+			return index;
+		} else throw new ExceptionInInitializerError("no scan order selected, this should never happen");
+	}
+
+	/**
+	 * the number of neighbours that were evaluated in the most recent step
+	 *
+	 * @return the number of neighbours evaluated in the last step
+	 */
+	public int getNeighboursEvaluatedLastStep() {
+		return neighboursEvaluatedLastStep;
+	}
+
+	/**
+	 * the number of neighbours that were evaluated over all steps so far
+	 *
+	 * @return the total number of neighbours evaluated
+	 */
+	public long getTotalNeighboursEvaluated() {
+		return totalNeighboursEvaluated;
+	}
+
+	/**
+	 * the number of steps taken so far, including a final step that found no improvement
+	 *
+	 * @return the number of steps
+	 */
+	public int getNumberOfSteps() {
+		return numberOfSteps;
+	}
+
+	/**
+	 * accessor for searchTerminationFlag, returns true when the search has completed
+	 *
+	 * @return a boolean, true if no more better solutions are found, false if there are still better solutions
+	 */
+	@Override
+	public boolean isSearchComplete() {
+		return searchTerminationFlag;
+	}
+
+	/**
+	 * writes the step counts, where the last improvement was, the permutation and the random number generator
+	 *
+	 * @param output where to write the state
+	 * @throws IOException if it can't be written
+	 */
+	@Override
+	public void writeState(DataOutput output) throws IOException {
+		output.writeInt(numberOfSteps);
+		output.writeInt(lastImprovingIndex);
+		output.writeInt(neighboursEvaluatedLastStep);
+		output.writeLong(totalNeighboursEvaluated);
+		output.writeInt(permutation.length);
+		for (int index : permutation) {
+			output.writeInt(index);
+		}
+		SearchCheckpoint.writeRandom(output, random);
+	}
+
+	/**
+	 * reads the step counts, where the last improvement was, the permutation and the random number generator
+	 *
+	 * @param input where to read the state from
+	 * @throws IOException if it can't be read
+	 */
+	@Override
+	public void readState(DataInput input) throws IOException {
+		numberOfSteps = input.readInt();
+		lastImprovingIndex = input.readInt();
+		neighboursEvaluatedLastStep = input.readInt();
+		totalNeighboursEvaluated = input.readLong();
+		permutation = new int[input.readInt()];
+		for (int k = 0; k < permutation.length; k++) {
+			permutation[k] = input.readInt();
+		}
+		random = SearchCheckpoint.readRandom(input);
+	}
+}
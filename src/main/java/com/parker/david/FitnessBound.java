@@ -0,0 +1,140 @@
+package com.parker.david;
+
+import java.math.BigInteger;
+import java.util.stream.IntStream;
+
+/**
+ * a cheap upper bound on the fitness of any feasible solution, so that a search can stop once it has a solution that
+ * provably can't be beaten, or can't be beaten by more than a given gap.
+ * every constraint is normalised to (sign * weights) . x <= threshold, and any single constraint of that form is a knapsack
+ * once the variables with a negative weight are complemented. The linear relaxation of a knapsack is solved exactly by
+ * Dantzig's rule: take the items in order of objective per weight until the next one doesn't fit, then the fraction of it
+ * that does. Dropping the other constraints and the integrality only makes more solutions feasible, so the bound of each
+ * constraint holds for the whole problem. So does the bound of the surrogate constraint, the sum of every constraint scaled
+ * by roughly one over its threshold, which is usually the tightest when several constraints bind at once. The smallest is used.
+ * the sums are integers and the last fraction is rounded down exactly, so the bound is never a floating point estimate
+ */
+final class FitnessBound {
+
+	/**
+	 * the bound when some constraint can't be satisfied by any solution
+	 */
+	static final long NO_FEASIBLE_SOLUTION = Long.MIN_VALUE;
+
+	/**
+	 * each constraint is scaled by about this over its threshold in the surrogate constraint
+	 */
+	private static final long SURROGATE_SCALE = 1L << 20;
+
+	/**
+	 * this class only has static methods
+	 */
+	private FitnessBound() {
+	}
+
+	/**
+	 * works out the bound, the smallest of the relaxation bounds of each constraint and of their surrogate, or the sum of
+	 * the positive objective weights if there are no constraints. This sorts the variables once per constraint, so it is
+	 * only meant to be run once per problem
+	 *
+	 * @param objectiveFunction         the objective function
+	 * @param constraints               the set of constraints
+	 * @param numberOfDecisionVariables the number of decision variables
+	 * @return the bound, or NO_FEASIBLE_SOLUTION if some constraint can't be satisfied
+	 */
+	static long upperBound(ObjectiveFunction objectiveFunction, ConstraintSet constraints, int numberOfDecisionVariables) {
+		long bound = 0;
+		for (int i = 0; i < numberOfDecisionVariables; i++) {
+			bound += Math.max(0, objectiveFunction.getIthWeight(i));
+		}
+
+		long[] surrogateWeights = new long[numberOfDecisionVariables];
+		long surrogateThreshold = 0;
+		boolean surrogateOverflowed = false;
+		for (int c = 0; c < constraints.size(); c++) {
+			Constraint constraint = constraints.getIthConstraint(c);
+			long[] weights = normalisedWeights(constraint, numberOfDecisionVariables);
+			bound = Math.min(bound, relaxationBound(objectiveFunction, weights, constraint.getNormalisedThreshold()));
+
+			//any non negative multiple of a constraint can be added to the surrogate, a huge problem just goes without it
+			long multiplier = Math.max(1, SURROGATE_SCALE / Math.max(1, Math.abs(constraint.getNormalisedThreshold())));
+			try {
+				for (int i = 0; i < numberOfDecisionVariables; i++) {
+					surrogateWeights[i] = Math.addExact(surrogateWeights[i], Math.multiplyExact(multiplier, weights[i]));
+				}
+				surrogateThreshold = Math.addExact(surrogateThreshold, Math.multiplyExact(multiplier, constraint.getNormalisedThreshold()));
+			} catch (ArithmeticException e) {
+				surrogateOverflowed = true;
+			}
+		}
+		if (constraints.size() > 1 && !surrogateOverflowed)
+			bound = Math.min(bound, relaxationBound(objectiveFunction, surrogateWeights, surrogateThreshold));
+		return bound;
+	}
+
+	/**
+	 * the weights of a constraint in its normalised form, so that it reads weights . x <= normalised threshold
+	 *
+	 * @param constraint                the constraint
+	 * @param numberOfDecisionVariables the number of decision variables
+	 * @return the normalised weight of every decision variable
+	 */
+	private static long[] normalisedWeights(Constraint constraint, int numberOfDecisionVariables) {
+		long[] weights = new long[numberOfDecisionVariables];
+		int[] variables = constraint.getNonZeroVariables();
+		int[] variableWeights = constraint.getNonZeroWeights();
+		for (int k = 0; k < variables.length && variables[k] < numberOfDecisionVariables; k++) {
+			weights[variables[k]] = (long) constraint.getSign() * variableWeights[k];
+		}
+		return weights;
+	}
+
+	/**
+	 * solves the linear relaxation of the knapsack weights . x <= capacity
+	 *
+	 * @param objectiveFunction the objective function
+	 * @param constraintWeights the weight of every decision variable in the constraint, this is not changed
+	 * @param capacity          the right hand side of the constraint
+	 * @return the relaxation's optimum rounded down, or NO_FEASIBLE_SOLUTION if the constraint can't be satisfied
+	 */
+	private static long relaxationBound(ObjectiveFunction objectiveFunction, long[] constraintWeights, long capacity) {
+		int n = constraintWeights.length;
+		long[] weights = new long[n];
+		long[] profits = new long[n];
+
+		//complement every variable with a negative weight, so it is set for free and unsetting it costs capacity,
+		//then every item left has a weight of at least 0 and the ones that are free or worthless can be settled at once
+		long fixedProfit = 0;
+		for (int i = 0; i < n; i++) {
+			long profit = objectiveFunction.getIthWeight(i);
+			long weight = constraintWeights[i];
+			if (weight < 0) {
+				fixedProfit += profit;
+				capacity -= weight;
+				profit = -profit;
+				weight = -weight;
+			}
+			if (weight == 0 && profit > 0)
+				fixedProfit += profit;
+			weights[i] = weight;
+			profits[i] = (weight == 0) ? 0 : profit;
+		}
+		if (capacity < 0)
+			return NO_FEASIBLE_SOLUTION;
+
+		//the items worth taking, best profit per weight first. The order only affects how tight the bound is, not whether it holds
+		int[] items = IntStream.range(0, n).filter(i -> profits[i] > 0).boxed()
+				.sorted((a, b) -> Double.compare((double) profits[b] / weights[b], (double) profits[a] / weights[a]))
+				.mapToInt(Integer::intValue).toArray();
+		long bound = fixedProfit;
+		for (int item : items) {
+			if (weights[item] > capacity) {
+				//the fraction of the item that fits, rounded down without overflowing
+				return bound + BigInteger.valueOf(profits[item]).multiply(BigInteger.valueOf(capacity)).divide(BigInteger.valueOf(weights[item])).longValue();
+			}
+			bound += profits[item];
+			capacity -= weights[item];
+		}
+		return bound;
+	}
+}
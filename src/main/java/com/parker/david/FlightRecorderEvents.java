@@ -0,0 +1,154 @@
+package com.parker.david;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * the java flight recorder events for the search. Everything that touches jdk.jfr is kept in this class, and it is only
+ * loaded when SearchMetrics is asked for flight recorder events, so the rest of the search runs on jvms without jdk.jfr.
+ * committing an event that the recording hasn't enabled costs a single check
+ */
+final class FlightRecorderEvents {
+
+	/**
+	 * this class only has static methods
+	 */
+	private FlightRecorderEvents() {
+	}
+
+	/**
+	 * checks for jdk.jfr without loading any of the event classes
+	 *
+	 * @return true if flight recorder events can be sent
+	 */
+	static boolean isAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event", false, FlightRecorderEvents.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * sends a new best solution event
+	 *
+	 * @param run       the run
+	 * @param iteration the iteration it was found at
+	 * @param fitness   its fitness
+	 */
+	static void newBest(RunMetrics run, int iteration, int fitness) {
+		NewBestEvent event = new NewBestEvent();
+		if (!event.isEnabled())
+			return;
+		event.run = run.getRunNumber();
+		event.iteration = iteration;
+		event.fitness = fitness;
+		event.commit();
+	}
+
+	/**
+	 * sends a run event with the totals of the run
+	 *
+	 * @param run the run
+	 */
+	static void endRun(RunMetrics run) {
+		RunEvent event = new RunEvent();
+		if (!event.isEnabled())
+			return;
+		event.run = run.getRunNumber();
+		event.iterations = run.getIterations();
+		event.neighboursGenerated = run.getNeighboursGenerated();
+		event.neighboursEvaluated = run.getNeighboursEvaluated();
+		event.feasibilityChecks = run.getFeasibilityChecks();
+		event.bestFitness = run.getResult().getBestFitness();
+		event.bestFeasible = run.getResult().isBestFeasible();
+		event.elapsed = run.getElapsedNanos();
+		event.generate = run.getGenerateNanos();
+		event.select = run.getSelectNanos();
+		event.apply = run.getApplyNanos();
+		event.trace = run.getTraceNanos();
+		event.allocated = run.getAllocatedBytes();
+		event.commit();
+	}
+
+	/**
+	 * the end of a run, with its totals
+	 */
+	@Name("com.parker.david.SearchRun")
+	@Label("Search Run")
+	@Category("Local Search")
+	@Description("the totals of a single local search run")
+	@StackTrace(false)
+	static class RunEvent extends Event {
+		@Label("Run")
+		int run;
+
+		@Label("Iterations")
+		long iterations;
+
+		@Label("Neighbours Generated")
+		long neighboursGenerated;
+
+		@Label("Neighbours Evaluated")
+		long neighboursEvaluated;
+
+		@Label("Feasibility Checks")
+		long feasibilityChecks;
+
+		@Label("Best Fitness")
+		int bestFitness;
+
+		@Label("Best Feasible")
+		boolean bestFeasible;
+
+		@Label("Elapsed")
+		@Timespan(Timespan.NANOSECONDS)
+		long elapsed;
+
+		@Label("Generate Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long generate;
+
+		@Label("Select Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long select;
+
+		@Label("Apply Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long apply;
+
+		@Label("Trace Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long trace;
+
+		@Label("Allocated")
+		@DataAmount
+		long allocated;
+	}
+
+	/**
+	 * a new best feasible solution, one point of the best so far trajectory
+	 */
+	@Name("com.parker.david.NewBest")
+	@Label("New Best Solution")
+	@Category("Local Search")
+	@Description("a run found a new best feasible solution")
+	@StackTrace(false)
+	static class NewBestEvent extends Event {
+		@Label("Run")
+		int run;
+
+		@Label("Iteration")
+		int iteration;
+
+		@Label("Fitness")
+		int fitness;
+	}
+}
@@ -0,0 +1,387 @@
+package com.parker.david;
+
+/**
+ * this class keeps a current solution together with its fitness and the left hand side of every constraint.
+ * flipping bit i changes the fitness and each left hand side by exactly the weight of variable i, so with these sums
+ * cached a neighbour can be scored in O(1) per constraint instead of re-summing the whole solution.
+ * when a move is accepted the cached sums are updated instead of being recalculated.
+ * only the constraints that the flipped variable has a non zero weight in are looked at, using the constraint set's
+ * reverse index, together with a count of how many constraints the current solution violates. With the adaptive order
+ * on the column is walked in the constraint set's check order, through its permutation of the column entries, and with
+ * slack bounds on a neighbour with few enough variables set is accepted without walking it at all.
+ * an objective function that overrides evaluateFitness isn't a weighted sum, so its neighbours are scored in full with
+ * evaluateFitness instead
+ */
+public class IncrementalEvaluator {
+
+	/**
+	 * the objective function, used for the initial fitness and for the weights of each decision variable
+	 */
+	private final ObjectiveFunction objectiveFunction;
+
+	/**
+	 * whether the fitness changes by exactly the weight of a flipped variable, otherwise every neighbour is evaluated in full
+	 */
+	private final boolean weightedSumObjective;
+
+	/**
+	 * the constraints, used for the initial left hand sides and for the weights of each decision variable
+	 */
+	private final ConstraintSet constraints;
+
+	/**
+	 * the solution that the cached sums belong to. This is owned by the evaluator and changed in place when a flip is applied
+	 */
+	private final CandidateSolution currentSolution;
+
+	/**
+	 * the fitness of the current solution
+	 */
+	private int currentFitness;
+
+	/**
+	 * the left hand side of each constraint for the current solution, in the same order as the constraint set
+	 */
+	private final long[] constraintLeftHandSides;
+
+	/**
+	 * the reverse index from each decision variable to the constraints it appears in
+	 */
+	private final VariableConstraintIndex variableIndex;
+
+	/**
+	 * the number of constraints that the current solution does not satisfy. A neighbour can only be feasible if every one
+	 * of these is in a column that the move touches
+	 */
+	private int violatedConstraintCount;
+
+	/**
+	 * the number of decision variables set in the current solution, for the slack bounds
+	 */
+	private int setVariableCount;
+
+	/**
+	 * where evaluations and feasibility rejections are counted, null when they aren't being counted.
+	 * LocalSearch only sets this while the selector is choosing a move, so that scoring done by a trace sink isn't counted
+	 */
+	private RunMetrics metrics;
+
+	/**
+	 * the constructor, evaluates the start solution in full once so that every later move can be scored incrementally
+	 *
+	 * @param objectiveFunction the objective function
+	 * @param constraints       the set of constraints
+	 * @param startSolution     the solution to start from, this is copied so the caller's solution is never changed
+	 */
+	IncrementalEvaluator(ObjectiveFunction objectiveFunction, ConstraintSet constraints, CandidateSolution startSolution) {
+		this.objectiveFunction = objectiveFunction;
+		this.weightedSumObjective = objectiveFunction.isWeightedSum();
+		this.constraints = constraints;
+		this.currentSolution = startSolution.copy();
+		this.currentFitness = objectiveFunction.evaluateFitness(currentSolution);
+		this.constraintLeftHandSides = new long[constraints.size()];
+		for (int c = 0; c < constraintLeftHandSides.length; c++) {
+			constraintLeftHandSides[c] = constraints.getIthConstraint(c).evaluateLeftHandSide(currentSolution);
+			if (!constraints.getIthConstraint(c).isSatisfiedBy(constraintLeftHandSides[c]))
+				violatedConstraintCount++;
+		}
+		this.variableIndex = constraints.getVariableIndex();
+		this.setVariableCount = currentSolution.countSetDecisionVariables();
+	}
+
+	/**
+	 * the current solution. This is the evaluator's own copy and will change when a flip is applied,
+	 * so callers that want to keep it should take a copy
+	 *
+	 * @return the current solution
+	 */
+	public CandidateSolution getCurrentSolution() {
+		return currentSolution;
+	}
+
+	/**
+	 * the cached fitness of the current solution
+	 *
+	 * @return the fitness of the current solution
+	 */
+	public int getCurrentFitness() {
+		return currentFitness;
+	}
+
+	/**
+	 * checks if every constraint is satisfied by the current solution, from the cached count of violated constraints
+	 *
+	 * @return true if the current solution is feasible
+	 */
+	public boolean isCurrentSolutionFeasible() {
+		return violatedConstraintCount == 0;
+	}
+
+	/**
+	 * starts or stops counting evaluations and feasibility rejections
+	 *
+	 * @param metrics where to count them, or null to stop counting
+	 */
+	void recordInto(RunMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * where evaluations and feasibility rejections are being counted
+	 *
+	 * @return the metrics, or null if they aren't being counted
+	 */
+	RunMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * the fitness that the current solution would have if bit i were flipped, in O(1)
+	 *
+	 * @param i the index of the decision variable to flip
+	 * @return the fitness of the neighbour
+	 */
+	public int fitnessAfterFlip(int i) {
+		if (metrics != null)
+			metrics.neighbourEvaluated();
+		if (!weightedSumObjective)
+			return evaluateNeighbour(new Move(i));
+		return currentFitness + flipSign(i) * objectiveFunction.getIthWeight(i);
+	}
+
+	/**
+	 * checks if the current solution would be feasible if bit i were flipped, in O(1) per constraint that variable i appears in.
+	 * like ConstraintSet.isFeasible this checks the constraints in the check order and stops at the first violated one
+	 *
+	 * @param i the index of the decision variable to flip
+	 * @return true if the neighbour is feasible
+	 */
+	public boolean isFeasibleAfterFlip(int i) {
+		if (metrics != null)
+			metrics.feasibilityChecked();
+		int sign = flipSign(i);
+		if (isFeasibleBySlackBounds(setVariableCount + sign))
+			return true;
+		int columnStart = variableIndex.columnStart(i);
+		int columnEnd = variableIndex.columnEnd(i);
+
+		//constraints outside the column keep their current state, so if more are violated than the column could fix it's infeasible
+		if (violatedConstraintCount > columnEnd - columnStart)
+			return rejectedBy(-1);
+
+		int[] entriesInOrder = constraints.getColumnEntriesInCheckOrder();
+		ConstraintSet.CheckCounts counts = constraints.countedIncrementalCheck();
+		int stillViolated = violatedConstraintCount;
+		for (int k = columnStart; k < columnEnd; k++) {
+			int entry = (entriesInOrder == null) ? k : entriesInOrder[k];
+			int c = variableIndex.getIthConstraintIndex(entry);
+			Constraint constraint = constraints.getIthConstraint(c);
+			boolean satisfied = constraint.isSatisfiedBy(constraintLeftHandSides[c] + sign * variableIndex.getIthWeight(entry));
+			if (counts != null)
+				counts.countIncremental(c, !satisfied);
+			if (!satisfied)
+				return rejectedBy(c, counts);
+			if (!constraint.isSatisfiedBy(constraintLeftHandSides[c]))
+				stillViolated--;
+		}
+		if (counts != null)
+			constraints.finishIncrementalCheck(counts);
+		return stillViolated == 0 || rejectedBy(-1);
+	}
+
+	/**
+	 * checks if the slack bounds, when they are on, prove that a neighbour satisfies every constraint. A bound per constraint
+	 * would cost as much as the O(1) check from its left hand side, so only the bound over the whole set is used
+	 *
+	 * @param setVariablesAfter the number of variables the neighbour has set
+	 * @return true if the neighbour is proved feasible, false if it still has to be checked
+	 */
+	private boolean isFeasibleBySlackBounds(int setVariablesAfter) {
+		return constraints.isUsingSlackBounds() && setVariablesAfter <= constraints.getSlackBoundSetVariables();
+	}
+
+	/**
+	 * counts a failed feasibility check if counting is on
+	 *
+	 * @param constraint the index of the constraint that failed, or -1 if constraints that were already violated are still violated
+	 * @return false, so that a check can return this directly
+	 */
+	private boolean rejectedBy(int constraint) {
+		if (metrics != null)
+			metrics.rejectedBy(constraint);
+		return false;
+	}
+
+	/**
+	 * counts a failed feasibility check, and ends it in the constraint set's counts if it was counted there
+	 *
+	 * @param constraint the index of the constraint that failed
+	 * @param counts     the constraint set's counts if the check is one of the incremental checks it counts, or null
+	 * @return false, so that a check can return this directly
+	 */
+	private boolean rejectedBy(int constraint, ConstraintSet.CheckCounts counts) {
+		if (counts != null)
+			constraints.finishIncrementalCheck(counts);
+		return rejectedBy(constraint);
+	}
+
+	/**
+	 * moves to the neighbour with bit i flipped, updating the fitness and the left hand side of each constraint that variable i appears in
+	 *
+	 * @param i the index of the decision variable to flip
+	 */
+	public void applyFlip(int i) {
+		flip(i);
+		if (!weightedSumObjective)
+			currentFitness = objectiveFunction.evaluateFitness(currentSolution);
+	}
+
+	/**
+	 * flips bit i of the current solution, updating the fitness by the weight of variable i and the left hand side of
+	 * each constraint that variable i appears in
+	 *
+	 * @param i the index of the decision variable to flip
+	 */
+	private void flip(int i) {
+		int sign = flipSign(i);
+		currentFitness += sign * objectiveFunction.getIthWeight(i);
+		for (int k = variableIndex.columnStart(i); k < variableIndex.columnEnd(i); k++) {
+			int c = variableIndex.getIthConstraintIndex(k);
+			Constraint constraint = constraints.getIthConstraint(c);
+			boolean wasSatisfied = constraint.isSatisfiedBy(constraintLeftHandSides[c]);
+			constraintLeftHandSides[c] += sign * variableIndex.getIthWeight(k);
+			boolean isSatisfied = constraint.isSatisfiedBy(constraintLeftHandSides[c]);
+			if (wasSatisfied != isSatisfied)
+				violatedConstraintCount += isSatisfied ? -1 : 1;
+		}
+		setVariableCount += sign;
+		currentSolution.flipIthDecisionVariable(i);
+	}
+
+	/**
+	 * the fitness that the current solution would have after a move, in O(1) per flipped bit
+	 *
+	 * @param move the move to score
+	 * @return the fitness of the neighbour
+	 */
+	public int fitnessAfter(Move move) {
+		if (metrics != null)
+			metrics.neighbourEvaluated();
+		if (!weightedSumObjective)
+			return evaluateNeighbour(move);
+		int fitness = currentFitness;
+		for (int f = 0; f < move.numberOfFlips(); f++) {
+			int i = move.getIthFlippedBit(f);
+			fitness += flipSign(i) * objectiveFunction.getIthWeight(i);
+		}
+		return fitness;
+	}
+
+	/**
+	 * checks if the current solution would be feasible after a move, in O(1) per flipped bit per constraint
+	 *
+	 * @param move the move to check
+	 * @return true if the neighbour is feasible
+	 */
+	public boolean isFeasibleAfter(Move move) {
+		//most moves are single flips, which don't need the per constraint sum below
+		if (move.numberOfFlips() == 1)
+			return isFeasibleAfterFlip(move.getIthFlippedBit(0));
+
+		if (metrics != null)
+			metrics.feasibilityChecked();
+		int setVariablesAfter = setVariableCount;
+		for (int f = 0; f < move.numberOfFlips(); f++) {
+			setVariablesAfter += flipSign(move.getIthFlippedBit(f));
+		}
+		if (isFeasibleBySlackBounds(setVariablesAfter))
+			return true;
+
+		//every constraint in the column of any flipped bit is checked once, at the first flipped bit whose column it is in,
+		//using the combined change of all the flipped bits. Each column is walked in check order
+		int[] entriesInOrder = constraints.getColumnEntriesInCheckOrder();
+		ConstraintSet.CheckCounts counts = constraints.countedIncrementalCheck();
+		int stillViolated = violatedConstraintCount;
+		for (int f = 0; f < move.numberOfFlips(); f++) {
+			int i = move.getIthFlippedBit(f);
+			for (int k = variableIndex.columnStart(i); k < variableIndex.columnEnd(i); k++) {
+				int entry = (entriesInOrder == null) ? k : entriesInOrder[k];
+				int c = variableIndex.getIthConstraintIndex(entry);
+				if (isInColumnOfEarlierFlip(c, move, f))
+					continue;
+				Constraint constraint = constraints.getIthConstraint(c);
+
+				long leftHandSide = constraintLeftHandSides[c] + flipSign(i) * variableIndex.getIthWeight(entry);
+				for (int g = f + 1; g < move.numberOfFlips(); g++) {
+					int j = move.getIthFlippedBit(g);
+					leftHandSide += flipSign(j) * constraint.getIthWeight(j);
+				}
+				boolean satisfied = constraint.isSatisfiedBy(leftHandSide);
+				if (counts != null)
+					counts.countIncremental(c, !satisfied);
+				if (!satisfied)
+					return rejectedBy(c, counts);
+				if (!constraint.isSatisfiedBy(constraintLeftHandSides[c]))
+					stillViolated--;
+			}
+		}
+		if (counts != null)
+			constraints.finishIncrementalCheck(counts);
+		return stillViolated == 0 || rejectedBy(-1);
+	}
+
+	/**
+	 * checks if a constraint is in the column of any of the bits flipped before the fth, in which case it has already been checked.
+	 * this asks the variable index rather than the weights, so it agrees exactly with the columns the check walks
+	 *
+	 * @param c    the index of the constraint
+	 * @param move the move being checked
+	 * @param f    the position of the current flip in the move
+	 * @return true if one of the earlier flipped bits appears in the constraint
+	 */
+	private boolean isInColumnOfEarlierFlip(int c, Move move, int f) {
+		for (int g = 0; g < f; g++) {
+			if (variableIndex.isInColumn(move.getIthFlippedBit(g), c))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * moves to the neighbour described by a move, applying each of its flips in turn
+	 *
+	 * @param move the move to apply
+	 */
+	public void applyMove(Move move) {
+		for (int f = 0; f < move.numberOfFlips(); f++) {
+			flip(move.getIthFlippedBit(f));
+		}
+		if (!weightedSumObjective)
+			currentFitness = objectiveFunction.evaluateFitness(currentSolution);
+	}
+
+	/**
+	 * evaluates a neighbour in full, for an objective function that isn't a weighted sum. The neighbour is a copy,
+	 * as the selectors that score moves on several threads share the current solution
+	 *
+	 * @param move the move to the neighbour
+	 * @return the fitness of the neighbour
+	 */
+	private int evaluateNeighbour(Move move) {
+		CandidateSolution neighbour = currentSolution.copy();
+		for (int f = 0; f < move.numberOfFlips(); f++) {
+			neighbour.flipIthDecisionVariable(move.getIthFlippedBit(f));
+		}
+		return objectiveFunction.evaluateFitness(neighbour);
+	}
+
+	/**
+	 * flipping a 0 to 1 adds the weight of the variable to every sum, flipping a 1 to 0 removes it
+	 *
+	 * @param i the index of the decision variable
+	 * @return +1 if the bit is currently 0, -1 if it is currently 1
+	 */
+	private int flipSign(int i) {
+		return currentSolution.getIthDecisionVariable(i) ? -1 : 1;
+	}
+}
@@ -0,0 +1,594 @@
+package com.parker.david;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the coordinator of an island model search: worker processes connect to it, each becomes an island, and it hands out
+ * descents to them until a budget of descents has been run. The problem's own starts go out first, split across the
+ * islands as they ask for work. After that each descent an island is given starts from its own best solution with a few
+ * random bits flipped, so every island improves on its own line of solutions, except that every migration interval
+ * descents an island is given the best solution of its neighbour in a ring of islands instead, so good solutions spread
+ * between islands without all of them collapsing onto the same one.
+ * workers send a heartbeat while they run a descent, so a worker that disconnects, or goes quiet for the worker timeout
+ * however long its descent is, is dropped and the descent it was running is handed to the next island that asks, so
+ * losing a worker only costs the time of its last descent. A descent that loses its worker MAX_ATTEMPTS times is given up
+ * on rather than handed out again, in case it is the descent that is bringing the workers down. With a worker timeout,
+ * the coordinator also gives up on the descents that are left once every worker has been gone for a whole timeout.
+ * only the base solution of each descent is sent, as a few hundred bytes at most, so even remote islands stay busy
+ */
+public class IslandCoordinator {
+
+	/**
+	 * the most times a descent is handed out before it is given up on
+	 */
+	static final int MAX_ATTEMPTS = 3;
+
+	/**
+	 * the shortest worker timeout, as a timeout shorter than a scheduling delay or a garbage collection pause would drop
+	 * healthy workers between heartbeats
+	 */
+	static final int MIN_WORKER_TIMEOUT_MILLIS = 1000;
+
+	/**
+	 * the problem being searched
+	 */
+	private final Problem problem;
+
+	/**
+	 * the problem in the binary format, as it is sent to every worker
+	 */
+	private final byte[] problemBytes;
+
+	/**
+	 * the --selector style option the workers use for each descent
+	 */
+	private final String selectorOption;
+
+	/**
+	 * the --neighbourhood style option the workers use for each descent
+	 */
+	private final String neighbourhoodOption;
+
+	/**
+	 * the budgets and fitness target of each descent, a descent that reaches the target also ends the whole search
+	 */
+	private final TerminationCriteria terminationCriteria;
+
+	/**
+	 * the seed that each descent's seed is made from
+	 */
+	private final long seed;
+
+	/**
+	 * the number of descents to run in total, at least one per start
+	 */
+	private final int totalDescents;
+
+	/**
+	 * every this many descents an island is given its neighbour's best solution instead of its own, 0 for never
+	 */
+	private final int migrationInterval;
+
+	/**
+	 * the number of random bits flipped in the base solution of each descent after the starts
+	 */
+	private final int perturbation;
+
+	/**
+	 * the time a worker can go without a heartbeat or result before it is dropped, in milliseconds, 0 for no limit
+	 */
+	private final int workerTimeoutMillis;
+
+	/**
+	 * the descents that have been made but not handed out, including those of dropped workers
+	 */
+	private final Deque<Unit> pendingUnits = new ArrayDeque<>();
+
+	/**
+	 * the islands, in the order their workers connected
+	 */
+	private final List<Island> islands = new ArrayList<>();
+
+	/**
+	 * the result of every descent, in the order they finished
+	 */
+	private final List<SearchResult> results = new ArrayList<>();
+
+	/**
+	 * the best result over every island
+	 */
+	private SearchResult bestResult;
+
+	/**
+	 * the number of descents made so far
+	 */
+	private int unitsCreated;
+
+	/**
+	 * the number of descents handed out and not yet answered
+	 */
+	private int unitsInFlight;
+
+	/**
+	 * the number of descents that started from a neighbouring island's best solution
+	 */
+	private int migrations;
+
+	/**
+	 * the number of descents handed out again after their worker was dropped
+	 */
+	private int reassignedUnits;
+
+	/**
+	 * the number of workers dropped
+	 */
+	private int lostWorkers;
+
+	/**
+	 * the number of descents given up on after losing their worker MAX_ATTEMPTS times
+	 */
+	private int abandonedUnits;
+
+	/**
+	 * the number of workers that are connected
+	 */
+	private int connectedWorkers;
+
+	/**
+	 * the System.nanoTime the last connected worker left
+	 */
+	private long lastWorkerLeftTime;
+
+	/**
+	 * set once the coordinator has given up on the descents that are left, or a descent has reached the fitness target,
+	 * after which no more are handed out
+	 */
+	private boolean givenUp;
+
+	/**
+	 * set once a descent has reached the fitness target of the termination criteria
+	 */
+	private boolean targetReached;
+
+	/**
+	 * the constructor
+	 *
+	 * @param problem             the problem to search
+	 * @param selectorOption      the --selector style option the workers use for each descent
+	 * @param neighbourhoodOption the --neighbourhood style option the workers use for each descent
+	 * @param terminationCriteria the budgets and fitness target of each descent, reaching the target ends the whole search
+	 * @param seed                the seed that each descent's seed is made from
+	 * @param totalDescents       the number of descents to run in total, raised to the number of starts if it is less
+	 * @param migrationInterval   every this many descents an island starts from its neighbour's best solution, 0 for never
+	 * @param perturbation        the number of random bits flipped in the base solution of each descent after the starts
+	 * @param workerTimeoutMillis the time a worker can go without a heartbeat or result before it is dropped, 0 for no limit
+	 */
+	IslandCoordinator(Problem problem, String selectorOption, String neighbourhoodOption, TerminationCriteria terminationCriteria, long seed,
+					  int totalDescents, int migrationInterval, int perturbation, int workerTimeoutMillis) {
+		if (totalDescents < 1 || migrationInterval < 0 || perturbation < 0 || workerTimeoutMillis < 0)
+			throw new IllegalArgumentException("there must be at least 1 descent, and the migration interval, perturbation and worker timeout can't be negative");
+		if (workerTimeoutMillis > 0 && workerTimeoutMillis < MIN_WORKER_TIMEOUT_MILLIS)
+			throw new IllegalArgumentException("the worker timeout must be 0 for none or at least " + MIN_WORKER_TIMEOUT_MILLIS + "ms, was " + workerTimeoutMillis);
+		this.problem = problem;
+		this.selectorOption = selectorOption;
+		this.neighbourhoodOption = neighbourhoodOption;
+		this.terminationCriteria = terminationCriteria;
+		this.seed = seed;
+		this.totalDescents = Math.max(totalDescents, problem.getStartSolutions().size());
+		this.migrationInterval = migrationInterval;
+		this.perturbation = perturbation;
+		this.workerTimeoutMillis = workerTimeoutMillis;
+
+		//check the strategy here, rather than have every worker fail on it
+		Main.createSelector(selectorOption, problem.getObjectiveFunction(), problem.getConstraints(), seed);
+		Main.createNeighbourhoodGenerator(neighbourhoodOption, problem);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			ProblemLoader.writeBinary(problem, output);
+		} catch (IOException e) {
+			//a byte array never throws
+			throw new IllegalStateException(e);
+		}
+		problemBytes = bytes.toByteArray();
+
+		for (CandidateSolution startSolution : problem.getStartSolutions()) {
+			pendingUnits.add(new Unit(unitsCreated, startSolution, 0, seed + unitsCreated));
+			unitsCreated++;
+		}
+	}
+
+	/**
+	 * listens for workers and hands out descents until every descent has been run. This waits for as long as it takes
+	 * the first worker to connect, and keeps going as long as at least one worker is left. Once every worker has gone
+	 * it waits a worker timeout for another to connect, or for ever if there is no worker timeout
+	 *
+	 * @param address the address to listen on
+	 * @return the result of every descent, in the order they finished, and the best of them
+	 * @throws IOException          if the address can't be listened on
+	 * @throws InterruptedException if interrupted while waiting for the descents
+	 */
+	public MultiStartResult run(InetSocketAddress address) throws IOException, InterruptedException {
+		long startTime = System.nanoTime();
+		List<Thread> workerThreads = new ArrayList<>();
+		try (ServerSocket server = new ServerSocket()) {
+			server.bind(address);
+			Thread acceptor = new Thread(() -> acceptWorkers(server, workerThreads), "island-acceptor");
+			acceptor.setDaemon(true);
+			acceptor.start();
+
+			synchronized (this) {
+				while (results.size() + abandonedUnits < totalDescents && !targetReached) {
+					if (workerTimeoutMillis == 0 || islands.isEmpty() || connectedWorkers > 0) {
+						wait();
+						continue;
+					}
+					long quietMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastWorkerLeftTime);
+					if (quietMillis >= workerTimeoutMillis) {
+						givenUp = true;
+						abandonedUnits = totalDescents - results.size();
+						break;
+					}
+					wait(workerTimeoutMillis - quietMillis);
+				}
+			}
+		}
+
+		//let the workers that are still connected be told to stop
+		List<Thread> threads;
+		synchronized (workerThreads) {
+			threads = new ArrayList<>(workerThreads);
+		}
+		for (Thread thread : threads) {
+			thread.join(1000);
+		}
+		synchronized (this) {
+			return new MultiStartResult(new ArrayList<>(results), System.nanoTime() - startTime);
+		}
+	}
+
+	/**
+	 * accepts workers until the server is closed, serving each on its own thread
+	 *
+	 * @param server        the server socket
+	 * @param workerThreads the list the thread of each worker is added to
+	 */
+	private void acceptWorkers(ServerSocket server, List<Thread> workerThreads) {
+		try {
+			while (true) {
+				Socket socket = server.accept();
+				Island island;
+				synchronized (this) {
+					island = new Island(islands.size());
+					islands.add(island);
+					connectedWorkers++;
+				}
+				Thread thread = new Thread(() -> serveWorker(socket, island), "island-" + island.number);
+				thread.setDaemon(true);
+				synchronized (workerThreads) {
+					workerThreads.add(thread);
+				}
+				thread.start();
+			}
+		} catch (SocketException e) {
+			//the server was closed, every descent has been run
+		} catch (IOException e) {
+			//no more workers can connect, the ones already connected carry on
+		}
+	}
+
+	/**
+	 * runs one island: sends the problem to its worker, then one descent at a time until there are none left
+	 *
+	 * @param socket the connection to the worker
+	 * @param island the island
+	 */
+	private void serveWorker(Socket socket, Island island) {
+		Unit unit = null;
+		try (Socket worker = socket) {
+			worker.setSoTimeout(workerTimeoutMillis);
+			worker.setTcpNoDelay(true);
+			DataInputStream input = new DataInputStream(new BufferedInputStream(worker.getInputStream()));
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(worker.getOutputStream()));
+			if (input.readInt() != IslandProtocol.MAGIC)
+				throw new IOException("not an island worker");
+			int version = input.readInt();
+			if (version != IslandProtocol.VERSION)
+				throw new IOException("worker speaks version " + version + " of the protocol, not " + IslandProtocol.VERSION);
+
+			output.writeByte(IslandProtocol.PROBLEM);
+			output.writeUTF(selectorOption);
+			output.writeUTF(neighbourhoodOption);
+			terminationCriteria.writeTo(output);
+			output.writeInt((workerTimeoutMillis == 0) ? 0 : Math.max(1, workerTimeoutMillis / 4));
+			output.writeInt(problemBytes.length);
+			output.write(problemBytes);
+			output.flush();
+
+			int n = problem.getNumberOfDecisionVariables();
+			while ((unit = nextUnit(island)) != null) {
+				output.writeByte(IslandProtocol.UNIT);
+				output.writeInt(unit.id);
+				output.writeInt(unit.perturbation);
+				output.writeLong(unit.seed);
+				IslandProtocol.writeSolution(output, unit.baseSolution);
+				output.flush();
+
+				//each heartbeat restarts the timeout of the read, so only a worker that goes quiet times out
+				byte type;
+				do {
+					type = input.readByte();
+				} while (type == IslandProtocol.HEARTBEAT);
+				if (type != IslandProtocol.RESULT)
+					throw new IOException("expected message " + IslandProtocol.RESULT + " but received " + type);
+				int unitId = input.readInt();
+				if (unitId != unit.id)
+					throw new IOException("expected the result of descent " + unit.id + " but received " + unitId);
+				CandidateSolution startSolution = IslandProtocol.readSolution(input, n);
+				CandidateSolution bestSolution = IslandProtocol.readSolution(input, n);
+				SearchResult result = new SearchResult(startSolution, bestSolution, input.readInt(), input.readBoolean(), input.readInt(), input.readLong());
+				finished(island, result);
+				unit = null;
+			}
+			output.writeByte(IslandProtocol.STOP);
+			output.flush();
+		} catch (IOException e) {
+			dropped(unit);
+		} catch (InterruptedException e) {
+			dropped(unit);
+			Thread.currentThread().interrupt();
+		} finally {
+			left();
+		}
+	}
+
+	/**
+	 * records that a worker's connection has closed, for whatever reason
+	 */
+	private synchronized void left() {
+		if (--connectedWorkers == 0)
+			lastWorkerLeftTime = System.nanoTime();
+		notifyAll();
+	}
+
+	/**
+	 * hands out the next descent for an island, waiting if every descent has been handed out but some may yet come back
+	 *
+	 * @param island the island asking
+	 * @return the descent, or null if every descent has been run
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private synchronized Unit nextUnit(Island island) throws InterruptedException {
+		while (true) {
+			if (givenUp)
+				return null;
+			if (!pendingUnits.isEmpty()) {
+				unitsInFlight++;
+				return pendingUnits.poll();
+			}
+			if (unitsCreated < totalDescents) {
+				unitsInFlight++;
+				return createUnit(island);
+			}
+			if (unitsInFlight == 0)
+				return null;
+			wait();
+		}
+	}
+
+	/**
+	 * makes a descent from an island's own best solution, or on a migration from its neighbour's best solution.
+	 * the neighbour is the nearest island before it in connection order that has a best solution, wrapping around
+	 *
+	 * @param island the island the descent is for
+	 * @return the descent
+	 */
+	private Unit createUnit(Island island) {
+		island.descentsCreated++;
+		SearchResult base = island.best;
+		if (migrationInterval > 0 && island.descentsCreated % migrationInterval == 0) {
+			for (int k = 1; k < islands.size(); k++) {
+				Island neighbour = islands.get(Math.floorMod(island.number - k, islands.size()));
+				if (neighbour.best != null) {
+					base = neighbour.best;
+					migrations++;
+					break;
+				}
+			}
+		}
+		if (base == null)
+			base = bestResult;
+
+		//before any descent has finished there is nothing to improve on, so start from one of the problem's starts
+		List<CandidateSolution> startSolutions = problem.getStartSolutions();
+		CandidateSolution baseSolution = (base != null) ? base.getBestSolution()
+				: startSolutions.isEmpty() ? new CandidateSolution(problem.getNumberOfDecisionVariables()) : startSolutions.get(unitsCreated % startSolutions.size());
+		Unit unit = new Unit(unitsCreated, baseSolution, perturbation, seed + unitsCreated);
+		unitsCreated++;
+		return unit;
+	}
+
+	/**
+	 * records the result of a descent
+	 *
+	 * @param island the island that ran it
+	 * @param result the result
+	 */
+	private synchronized void finished(Island island, SearchResult result) {
+		unitsInFlight--;
+		results.add(result);
+		if (result.isBetterThan(island.best))
+			island.best = result;
+		if (result.isBetterThan(bestResult))
+			bestResult = result;
+		if (terminationCriteria.isTargetReached(result.getBestFitness(), result.isBestFeasible())) {
+			targetReached = true;
+			givenUp = true;
+		}
+		notifyAll();
+	}
+
+	/**
+	 * drops a worker, putting the descent it was running back to be handed out first, unless it has used up its attempts
+	 *
+	 * @param unit the descent it was running, or null if it wasn't running one
+	 */
+	private synchronized void dropped(Unit unit) {
+		lostWorkers++;
+		if (unit != null) {
+			unitsInFlight--;
+			if (++unit.attempts < MAX_ATTEMPTS) {
+				reassignedUnits++;
+				pendingUnits.addFirst(unit);
+			} else {
+				abandonedUnits++;
+			}
+		}
+		notifyAll();
+	}
+
+	/**
+	 * accessor, returns the number of islands that have connected
+	 *
+	 * @return the number of islands
+	 */
+	public synchronized int numberOfIslands() {
+		return islands.size();
+	}
+
+	/**
+	 * accessor, returns the number of descents that started from a neighbouring island's best solution
+	 *
+	 * @return the number of migrations
+	 */
+	public synchronized int getMigrations() {
+		return migrations;
+	}
+
+	/**
+	 * accessor, returns the number of descents handed out again after their worker was dropped
+	 *
+	 * @return the number of reassigned descents
+	 */
+	public synchronized int getReassignedUnits() {
+		return reassignedUnits;
+	}
+
+	/**
+	 * accessor, returns whether a descent reached the fitness target, which ends the search without waiting for the rest
+	 *
+	 * @return true if the target was reached
+	 */
+	public synchronized boolean isTargetReached() {
+		return targetReached;
+	}
+
+	/**
+	 * accessor, returns the number of descents given up on, after losing their worker MAX_ATTEMPTS times or because
+	 * every worker had gone
+	 *
+	 * @return the number of abandoned descents
+	 */
+	public synchronized int getAbandonedUnits() {
+		return abandonedUnits;
+	}
+
+	/**
+	 * accessor, returns the number of workers that were dropped, by disconnecting, timing out or breaking the protocol
+	 *
+	 * @return the number of lost workers
+	 */
+	public synchronized int getLostWorkers() {
+		return lostWorkers;
+	}
+
+	/**
+	 * a descent to hand out: the solution to start from, and how to perturb it first
+	 */
+	private static final class Unit {
+
+		/**
+		 * the number of the descent, in the order they were made
+		 */
+		final int id;
+
+		/**
+		 * the solution the descent starts from once perturbed
+		 */
+		final CandidateSolution baseSolution;
+
+		/**
+		 * the number of random bits to flip in the base solution
+		 */
+		final int perturbation;
+
+		/**
+		 * the seed for the perturbation and the selector
+		 */
+		final long seed;
+
+		/**
+		 * the number of times the descent has lost its worker, guarded by the coordinator
+		 */
+		int attempts;
+
+		/**
+		 * the constructor
+		 *
+		 * @param id           the number of the descent
+		 * @param baseSolution the solution the descent starts from once perturbed
+		 * @param perturbation the number of random bits to flip in the base solution
+		 * @param seed         the seed for the perturbation and the selector
+		 */
+		Unit(int id, CandidateSolution baseSolution, int perturbation, long seed) {
+			this.id = id;
+			this.baseSolution = baseSolution;
+			this.perturbation = perturbation;
+			this.seed = seed;
+		}
+	}
+
+	/**
+	 * one worker's island, guarded by the coordinator
+	 */
+	private static final class Island {
+
+		/**
+		 * the position of the island in the ring, the order its worker connected in
+		 */
+		final int number;
+
+		/**
+		 * the best result the island has found, null until its first descent finishes
+		 */
+		SearchResult best;
+
+		/**
+		 * the number of descents made for the island after the starts
+		 */
+		int descentsCreated;
+
+		/**
+		 * the constructor
+		 *
+		 * @param number the position of the island in the ring
+		 */
+		Island(int number) {
+			this.number = number;
+		}
+	}
+}
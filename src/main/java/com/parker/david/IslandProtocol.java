@@ -0,0 +1,130 @@
+package com.parker.david;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * the binary protocol between an island coordinator and its workers, big endian as written by a DataOutputStream.
+ * after connecting the worker sends a handshake, the coordinator answers with the problem, and then sends one unit of work
+ * at a time, each of which the worker answers with its result, until the coordinator sends stop. While it is connected
+ * the worker also sends a heartbeat at the interval the coordinator asked for, so that the coordinator can tell a
+ * worker that has gone quiet from one that is part way through a long descent:
+ * <pre>
+ * handshake (worker):      int magic ("LSIM"), int version
+ * problem (coordinator):   byte PROBLEM, utf selector option, utf neighbourhood option, the termination criteria of each descent
+ *                          (long time budget nanos, int iteration budget, int stagnation budget, long fitness target),
+ *                          int heartbeat interval in milliseconds (0 for none), int problem length, the problem in the binary problem format
+ * unit (coordinator):      byte UNIT, int unit id, int bits to flip, long seed, base solution words
+ * result (worker):         byte RESULT, int unit id, start solution words, best solution words, int best fitness,
+ *                          byte best feasible, int iterations, long elapsed nanos
+ * heartbeat (worker):      byte HEARTBEAT
+ * stop (coordinator):      byte STOP
+ * </pre>
+ * where each solution is its packed words as longs, as in the binary problem format
+ */
+final class IslandProtocol {
+
+	/**
+	 * the first int of the handshake, "LSIM"
+	 */
+	static final int MAGIC = 0x4c53494d;
+
+	/**
+	 * the version of the protocol
+	 */
+	static final int VERSION = 3;
+
+	/**
+	 * the problem and the strategy to search it with
+	 */
+	static final byte PROBLEM = 1;
+
+	/**
+	 * a descent to run
+	 */
+	static final byte UNIT = 2;
+
+	/**
+	 * the result of a descent
+	 */
+	static final byte RESULT = 3;
+
+	/**
+	 * there is no more work
+	 */
+	static final byte STOP = 4;
+
+	/**
+	 * the worker is still there
+	 */
+	static final byte HEARTBEAT = 5;
+
+	/**
+	 * this class only has static methods
+	 */
+	private IslandProtocol() {
+	}
+
+	/**
+	 * writes the packed words of a solution
+	 *
+	 * @param output   where to write the solution
+	 * @param solution the solution
+	 * @throws IOException if it can't be written
+	 */
+	static void writeSolution(DataOutput output, CandidateSolution solution) throws IOException {
+		for (long word : solution.getWords()) {
+			output.writeLong(word);
+		}
+	}
+
+	/**
+	 * reads the packed words of a solution
+	 *
+	 * @param input where to read the solution from
+	 * @param n     the number of decision variables
+	 * @return the solution
+	 * @throws IOException if it can't be read or has bits set past the last decision variable
+	 */
+	static CandidateSolution readSolution(DataInput input, int n) throws IOException {
+		long[] words = new long[CandidateSolution.wordsFor(n)];
+		for (int w = 0; w < words.length; w++) {
+			words[w] = input.readLong();
+		}
+		try {
+			return CandidateSolution.fromWords(words, n);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * reads the type of the next message and checks it is the one expected
+	 *
+	 * @param input    where to read the message from
+	 * @param expected the type expected
+	 * @throws IOException if it can't be read or is a different type
+	 */
+	static void expect(DataInput input, byte expected) throws IOException {
+		byte type = input.readByte();
+		if (type != expected)
+			throw new IOException("expected message " + expected + " but received " + type);
+	}
+
+	/**
+	 * parses a [host:]port option, the host defaults to the loopback address
+	 *
+	 * @param option the option
+	 * @return the address
+	 * @throws IllegalArgumentException if the port isn't a number
+	 */
+	static InetSocketAddress parseAddress(String option) {
+		int colon = option.lastIndexOf(':');
+		if (colon < 0)
+			return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(option));
+		return new InetSocketAddress(option.substring(0, colon), Integer.parseInt(option.substring(colon + 1)));
+	}
+}
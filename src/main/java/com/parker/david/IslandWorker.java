@@ -0,0 +1,152 @@
+package com.parker.david;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * a worker of an island model search: connects to a coordinator, receives the problem, and then runs each descent it is
+ * given until it is told to stop. Each descent starts from the base solution it is sent with some random bits flipped,
+ * the flips and the selector both seeded from the seed of the descent, so a descent gives the same result whichever worker runs it.
+ * while a descent runs a background thread sends heartbeats at the interval the coordinator asked for
+ */
+public final class IslandWorker {
+
+	/**
+	 * this class only has static methods
+	 */
+	private IslandWorker() {
+	}
+
+	/**
+	 * runs descents for a coordinator until it says there are none left
+	 *
+	 * @param coordinator the address of the coordinator
+	 * @return the number of descents run
+	 * @throws IOException if the coordinator can't be reached or the connection fails
+	 */
+	public static int run(InetSocketAddress coordinator) throws IOException {
+		ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "island-heartbeat");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try (Socket socket = new Socket()) {
+			socket.connect(coordinator);
+			socket.setTcpNoDelay(true);
+			DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			output.writeInt(IslandProtocol.MAGIC);
+			output.writeInt(IslandProtocol.VERSION);
+			output.flush();
+
+			IslandProtocol.expect(input, IslandProtocol.PROBLEM);
+			String selectorOption = input.readUTF();
+			String neighbourhoodOption = input.readUTF();
+			TerminationCriteria terminationCriteria = TerminationCriteria.readFrom(input);
+			int heartbeatMillis = input.readInt();
+			byte[] problemBytes = new byte[input.readInt()];
+			input.readFully(problemBytes);
+			Problem problem = ProblemLoader.parse(ByteBuffer.wrap(problemBytes), Paths.get(coordinator.toString()));
+			ObjectiveFunction objectiveFunction = problem.getObjectiveFunction();
+			ConstraintSet constraints = problem.getConstraints();
+			int n = problem.getNumberOfDecisionVariables();
+
+			//the output is shared with the heartbeat thread, so every message is written holding its lock
+			AtomicBoolean runningDescent = new AtomicBoolean();
+			if (heartbeatMillis > 0) {
+				heartbeats.scheduleAtFixedRate(() -> {
+					if (!runningDescent.get())
+						return;
+					try {
+						synchronized (output) {
+							output.writeByte(IslandProtocol.HEARTBEAT);
+							output.flush();
+						}
+					} catch (IOException e) {
+						//the descent finds out when it sends its result
+					}
+				}, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+			}
+
+			int descents = 0;
+			while (true) {
+				byte type = input.readByte();
+				if (type == IslandProtocol.STOP)
+					return descents;
+				if (type != IslandProtocol.UNIT)
+					throw new IOException("expected a descent or stop but received message " + type);
+				int unitId = input.readInt();
+				int perturbation = input.readInt();
+				long seed = input.readLong();
+				CandidateSolution startSolution = perturb(IslandProtocol.readSolution(input, n), perturbation, seed, constraints);
+
+				runningDescent.set(true);
+				SearchResult result = new LocalSearch(objectiveFunction, constraints, Main.createSelector(selectorOption, objectiveFunction, constraints, seed),
+						Main.createNeighbourhoodGenerator(neighbourhoodOption, problem), terminationCriteria).run(startSolution);
+				runningDescent.set(false);
+				descents++;
+
+				synchronized (output) {
+					output.writeByte(IslandProtocol.RESULT);
+					output.writeInt(unitId);
+					IslandProtocol.writeSolution(output, result.getStartSolution());
+					IslandProtocol.writeSolution(output, result.getBestSolution());
+					output.writeInt(result.getBestFitness());
+					output.writeBoolean(result.isBestFeasible());
+					output.writeInt(result.getIterations());
+					output.writeLong(result.getElapsedNanos());
+					output.flush();
+				}
+			}
+		} finally {
+			heartbeats.shutdownNow();
+		}
+	}
+
+	/**
+	 * flips distinct random bits of a solution. If the solution is feasible any flip that would make it infeasible is
+	 * skipped, since a descent only moves between feasible solutions and would otherwise be stuck at its start
+	 *
+	 * @param solution     the solution, this is not changed
+	 * @param perturbation the number of bits to try flipping, all of them if it is more than the number of decision variables
+	 * @param seed         the seed of the random choice
+	 * @param constraints  the constraints to keep the solution feasible under
+	 * @return a perturbed copy of the solution
+	 */
+	static CandidateSolution perturb(CandidateSolution solution, int perturbation, long seed, ConstraintSet constraints) {
+		CandidateSolution perturbed = solution.copy();
+		int n = solution.numberOfDecisionVariables();
+		if (perturbation == 0 || n == 0)
+			return perturbed;
+
+		//a partial fisher-yates shuffle picks the bits without repeats
+		int[] variables = new int[n];
+		for (int i = 0; i < n; i++) {
+			variables[i] = i;
+		}
+		boolean keepFeasible = constraints.isFeasible(perturbed);
+		Random random = new Random(seed);
+		for (int k = 0; k < Math.min(perturbation, n); k++) {
+			int swapWith = k + random.nextInt(n - k);
+			int variable = variables[swapWith];
+			variables[swapWith] = variables[k];
+			variables[k] = variable;
+			perturbed.flipIthDecisionVariable(variable);
+			if (keepFeasible && !constraints.isFeasible(perturbed))
+				perturbed.flipIthDecisionVariable(variable);
+		}
+		return perturbed;
+	}
+}
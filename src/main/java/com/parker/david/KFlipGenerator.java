@@ -0,0 +1,155 @@
+package com.parker.david;
+
+import java.util.ArrayList;
+
+/**
+ * this is an implementation of a neighbourhood generation strategy where each move flips between 1 and k decision variables.
+ * the full neighbourhood has O(n^k) moves, so the flips are only chosen from a pool of candidates: the unset variables with
+ * the best ratio and the set variables with the worst ratio, half of the pool each where there are enough of them.
+ * the neighbourhood holds every combination of 1 to k pool members, C(L,1) + ... + C(L,k) moves for a pool of L,
+ * and each move is unranked from its index on demand, so nothing is built for moves that are never looked at
+ */
+public class KFlipGenerator implements NeighbourhoodGenerator, MoveNeighbourhoodGenerator {
+
+	/**
+	 * the ranking the candidates are taken from
+	 */
+	private final CandidateList candidateList;
+
+	/**
+	 * the most decision variables a move flips
+	 */
+	private final int k;
+
+	/**
+	 * the size of the candidate pool
+	 */
+	private final int candidateListLength;
+
+	/**
+	 * binomial[l][j] is l choose j, for l up to the pool size and j up to k
+	 */
+	private final long[][] binomial;
+
+	/**
+	 * the constructor
+	 *
+	 * @param candidateList       the ranking the candidates are taken from
+	 * @param k                   the most decision variables a move flips, at least 1
+	 * @param candidateListLength the size of the candidate pool, at least 1
+	 */
+	KFlipGenerator(CandidateList candidateList, int k, int candidateListLength) {
+		if (k < 1 || candidateListLength < 1)
+			throw new IllegalArgumentException("k and the candidate list length must be at least 1, were " + k + " and " + candidateListLength);
+		this.candidateList = candidateList;
+		this.k = k;
+		this.candidateListLength = candidateListLength;
+
+		//pascal's triangle, capped so that an overflowing count is caught below rather than wrapping
+		binomial = new long[candidateListLength + 1][k + 1];
+		for (int l = 0; l <= candidateListLength; l++) {
+			binomial[l][0] = 1;
+			for (int j = 1; j <= Math.min(l, k); j++) {
+				binomial[l][j] = Math.min(Integer.MAX_VALUE + 1L, binomial[l - 1][j - 1] + binomial[l - 1][j]);
+			}
+		}
+		if (numberOfMoves(candidateListLength) > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("a pool of " + candidateListLength + " with k = " + k + " has more than " + Integer.MAX_VALUE + " moves");
+	}
+
+	/**
+	 * builds every neighbour
+	 *
+	 * @param currentSolution the solution for which a new neighbourhood needs to be found
+	 * @return an array of candidate solutions that are in the neighbourhood of the current solution
+	 */
+	@Override
+	public ArrayList<CandidateSolution> generateSolutionNeighbourhood(CandidateSolution currentSolution) {
+		return generateMoveNeighbourhood(currentSolution).materialise(currentSolution);
+	}
+
+	/**
+	 * the moves flipping 1 to k members of the candidate pool for the current solution. The single flips come first,
+	 * then the pairs, and so on, each size in lexicographic order of pool position, so the better candidates come first
+	 *
+	 * @param currentSolution the solution for which a new neighbourhood needs to be found
+	 * @return the multi flip moves
+	 */
+	@Override
+	public MoveNeighbourhood generateMoveNeighbourhood(CandidateSolution currentSolution) {
+		int[] pool = candidatePool(currentSolution);
+		return new LazyMoveNeighbourhood((int) numberOfMoves(pool.length)) {
+			@Override
+			Move createIthMove(int i) {
+				return unrank(i, pool);
+			}
+		};
+	}
+
+	/**
+	 * picks the candidate pool, alternating between the best unset and the worst set variables so that both kinds are near the front
+	 *
+	 * @param currentSolution the current solution
+	 * @return the pool, at most candidateListLength distinct decision variables
+	 */
+	private int[] candidatePool(CandidateSolution currentSolution) {
+		int[] toSet = new int[candidateListLength];
+		int[] toUnset = new int[candidateListLength];
+		int setCount = candidateList.bestUnset(currentSolution, toSet);
+		int unsetCount = candidateList.worstSet(currentSolution, toUnset);
+
+		int[] pool = new int[Math.min(candidateListLength, setCount + unsetCount)];
+		int s = 0;
+		int u = 0;
+		for (int p = 0; p < pool.length; p++) {
+			//take from each side in turn, and from whichever side is left once the other runs out
+			boolean takeSet = (u >= unsetCount) || (s < setCount && (p % 2 == 0));
+			pool[p] = takeSet ? toSet[s++] : toUnset[u++];
+		}
+		return pool;
+	}
+
+	/**
+	 * the number of moves for a pool, C(L,1) + ... + C(L,k)
+	 *
+	 * @param poolSize the size of the pool
+	 * @return the number of moves, more than Integer.MAX_VALUE if it would overflow
+	 */
+	private long numberOfMoves(int poolSize) {
+		long moves = 0;
+		for (int j = 1; j <= k; j++) {
+			moves += binomial[poolSize][j];
+		}
+		return moves;
+	}
+
+	/**
+	 * works out the move at an index: first which size of combination it is, then which combination of that size,
+	 * using the combinatorial number system
+	 *
+	 * @param index the index of the move
+	 * @param pool  the candidate pool
+	 * @return the move flipping that combination of pool members
+	 */
+	private Move unrank(int index, int[] pool) {
+		long rank = index;
+		int size = 1;
+		while (rank >= binomial[pool.length][size]) {
+			rank -= binomial[pool.length][size];
+			size++;
+		}
+
+		//pick each member in turn, skipping past the positions whose combinations all come before this rank
+		int[] flippedBits = new int[size];
+		int position = 0;
+		for (int f = 0; f < size; f++) {
+			int remaining = size - f - 1;
+			while (rank >= binomial[pool.length - position - 1][remaining]) {
+				rank -= binomial[pool.length - position - 1][remaining];
+				position++;
+			}
+			flippedBits[f] = pool[position++];
+		}
+		return new Move(flippedBits);
+	}
+}
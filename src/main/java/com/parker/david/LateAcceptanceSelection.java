@@ -0,0 +1,180 @@
+package com.parker.david;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * An implementation of a solution selection interface for late acceptance hill climbing.
+ * like simulated annealing, each step samples one neighbour at random and only scores that one. The sampled neighbour is
+ * accepted if it is feasible and no worse than either the current solution or the solution of historyLength steps ago,
+ * so the search can make worsening moves without a temperature to tune, only the length of the history.
+ * a rejected neighbour is reported as no move, and the current solution stays as it is for that step.
+ * the search ends after maxIdleSteps steps in a row without an improvement to the current solution
+ */
+public class LateAcceptanceSelection implements NextSolutionSelector {
+
+	/**
+	 * this flag is set to true once the search has gone maxIdleSteps without an improvement
+	 */
+	private boolean searchTerminationFlag = false;
+
+	/**
+	 * this is the objective function, used for evaluating fitness of the candidate solution
+	 */
+	private final ObjectiveFunction objectiveFunction;
+
+	/**
+	 * this is the set of constraints which we use to determine if a solution is feasible
+	 */
+	private final ConstraintSet constraints;
+
+	/**
+	 * the number of steps in a row without an improvement after which the search ends
+	 */
+	private final int maxIdleSteps;
+
+	/**
+	 * the random number generator used to sample neighbours
+	 */
+	private CheckpointableRandom random;
+
+	/**
+	 * the fitness of the current solution at each of the last historyLength steps, used as a circular buffer.
+	 * filled with the start fitness at the first step
+	 */
+	private final int[] fitnessHistory;
+
+	/**
+	 * the number of steps taken so far
+	 */
+	private int numberOfSteps = 0;
+
+	/**
+	 * the number of steps in a row without an improvement to the current solution
+	 */
+	private int idleSteps = 0;
+
+	/**
+	 * the constructor
+	 *
+	 * @param objectiveFunction the objective function
+	 * @param constraints       the set of constraints
+	 * @param historyLength     the number of steps back that a neighbour is compared against, must be at least 1
+	 * @param maxIdleSteps      the number of steps in a row without an improvement after which the search ends
+	 * @param seed              the seed for the random number generator, so that a run can be repeated
+	 */
+	LateAcceptanceSelection(ObjectiveFunction objectiveFunction, ConstraintSet constraints, int historyLength, int maxIdleSteps, long seed) {
+		if (historyLength < 1 || maxIdleSteps < 1)
+			throw new IllegalArgumentException("history length and max idle steps must be at least 1, were " + historyLength + " and " + maxIdleSteps);
+		this.objectiveFunction = objectiveFunction;
+		this.constraints = constraints;
+		this.fitnessHistory = new int[historyLength];
+		this.maxIdleSteps = maxIdleSteps;
+		this.random = new CheckpointableRandom(seed);
+	}
+
+	/**
+	 * our function to get a new solution from the neighbourhood given the current solution.
+	 * the neighbours are turned into moves and the selection is made by selectMove
+	 *
+	 * @param currentSolution the current selected solution
+	 * @param neighbourhood   the neighbourhood of solutions around the current solution as found by some neighbourhood function
+	 * @return the accepted neighbour, or null if the sampled neighbour was rejected
+	 */
+	@Override
+	public CandidateSolution getNewSolution(CandidateSolution currentSolution, ArrayList<CandidateSolution> neighbourhood) {
+		return NextSolutionSelector.selectNeighbourByMove(this, objectiveFunction, constraints, currentSolution, neighbourhood);
+	}
+
+	/**
+	 * samples one move from the neighbourhood and accepts or rejects it against the current fitness and the fitness historyLength steps ago
+	 *
+	 * @param evaluator     the evaluator holding the current solution
+	 * @param neighbourhood the moves leading to each neighbour, only one of which is looked at
+	 * @return the sampled move if it was accepted, or null
+	 */
+	@Override
+	public Move selectMove(IncrementalEvaluator evaluator, MoveNeighbourhood neighbourhood) {
+		int currentFitness = evaluator.getCurrentFitness();
+		if (numberOfSteps == 0)
+			Arrays.fill(fitnessHistory, currentFitness);
+		if (neighbourhood.size() == 0) {
+			//there is nowhere to go, terminate the search
+			searchTerminationFlag = true;
+			return null;
+		}
+
+		Move move = neighbourhood.getIthMove(random.nextInt(neighbourhood.size()));
+		int neighbourFitness = evaluator.fitnessAfter(move);
+		int v = numberOfSteps % fitnessHistory.length;
+		boolean accepted = (neighbourFitness >= currentFitness || neighbourFitness >= fitnessHistory[v]) && evaluator.isFeasibleAfter(move);
+
+		numberOfSteps++;
+		idleSteps = (accepted && neighbourFitness > currentFitness) ? 0 : idleSteps + 1;
+		if (idleSteps >= maxIdleSteps)
+			searchTerminationFlag = true;
+
+		//the history takes the fitness the current solution has after this step, so that historyLength steps from now
+		//a neighbour is compared with the solution the search was at then, whether that was better or worse
+		fitnessHistory[v] = accepted ? neighbourFitness : currentFitness;
+		return accepted ? move : null;
+	}
+
+	/**
+	 * the number of steps taken so far
+	 *
+	 * @return the number of steps
+	 */
+	public int getNumberOfSteps() {
+		return numberOfSteps;
+	}
+
+	/**
+	 * accessor for searchTerminationFlag, returns true when the search has completed
+	 *
+	 * @return a boolean, true if the search has stopped improving, false if it is still running
+	 */
+	@Override
+	public boolean isSearchComplete() {
+		return searchTerminationFlag;
+	}
+
+	/**
+	 * writes the step counts, the fitness history and the random number generator
+	 *
+	 * @param output where to write the state
+	 * @throws IOException if it can't be written
+	 */
+	@Override
+	public void writeState(DataOutput output) throws IOException {
+		output.writeInt(numberOfSteps);
+		output.writeInt(idleSteps);
+		output.writeInt(fitnessHistory.length);
+		for (int fitness : fitnessHistory) {
+			output.writeInt(fitness);
+		}
+		SearchCheckpoint.writeRandom(output, random);
+	}
+
+	/**
+	 * reads the step counts, the fitness history and the random number generator
+	 *
+	 * @param input where to read the state from
+	 * @throws IOException if it can't be read, or the history is a different length to this selector's
+	 */
+	@Override
+	public void readState(DataInput input) throws IOException {
+		numberOfSteps = input.readInt();
+		idleSteps = input.readInt();
+		int historyLength = input.readInt();
+		if (historyLength != fitnessHistory.length)
+			throw new IOException("the saved history is " + historyLength + " steps long, this selector's is " + fitnessHistory.length);
+		for (int v = 0; v < historyLength; v++) {
+			fitnessHistory[v] = input.readInt();
+		}
+		random = SearchCheckpoint.readRandom(input);
+	}
+}
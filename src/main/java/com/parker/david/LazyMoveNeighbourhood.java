@@ -0,0 +1,59 @@
+package com.parker.david;
+
+/**
+ * a move neighbourhood whose moves are only created when they are first asked for, and are then kept so that asking for
+ * the same index again gives the same move object, which selectors and trace sinks rely on to recognise the selected move.
+ * this is for the large multi flip neighbourhoods, where a selector that stops early or samples at random would otherwise
+ * pay for creating every move.
+ * two threads must not ask for the same index at the same time. The parallel selector gives each index to one thread only
+ */
+abstract class LazyMoveNeighbourhood implements MoveNeighbourhood {
+
+	/**
+	 * the moves created so far, null where a move hasn't been asked for yet
+	 */
+	private final Move[] moves;
+
+	/**
+	 * the constructor
+	 *
+	 * @param size the number of moves in the neighbourhood
+	 */
+	LazyMoveNeighbourhood(int size) {
+		this.moves = new Move[size];
+	}
+
+	/**
+	 * the number of moves in the neighbourhood
+	 *
+	 * @return the number of moves
+	 */
+	@Override
+	public int size() {
+		return moves.length;
+	}
+
+	/**
+	 * get the ith move, creating it the first time it is asked for
+	 *
+	 * @param i the index of the move, between 0 and size() - 1
+	 * @return the ith move
+	 */
+	@Override
+	public Move getIthMove(int i) {
+		Move move = moves[i];
+		if (move == null) {
+			move = createIthMove(i);
+			moves[i] = move;
+		}
+		return move;
+	}
+
+	/**
+	 * creates the ith move. This is only called once per index
+	 *
+	 * @param i the index of the move
+	 * @return the ith move
+	 */
+	abstract Move createIthMove(int i);
+}
@@ -0,0 +1,218 @@
+package com.parker.david;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * runs a single descent from a start solution: generate the moves around the current solution, let the selector pick one,
+ * apply it, and repeat until the selector says the search is complete or one of the termination criteria is reached.
+ * what is recorded along the way is up to the trace sink the run is given, by default nothing is.
+ * a LocalSearch holds its selector, and selectors keep state between steps, so a new LocalSearch is needed for each descent
+ */
+public class LocalSearch {
+
+	/**
+	 * the objective function which we aim to optimise for
+	 */
+	private final ObjectiveFunction objectiveFunction;
+
+	/**
+	 * the set of constraints which define the valid solution space
+	 */
+	private final ConstraintSet constraints;
+
+	/**
+	 * the selector that picks the next move
+	 */
+	private final NextSolutionSelector solutionSelector;
+
+	/**
+	 * the generator that describes the neighbourhood of the current solution
+	 */
+	private final MoveNeighbourhoodGenerator neighbourhoodGenerator;
+
+	/**
+	 * the budgets that end the run before the selector does
+	 */
+	private final TerminationCriteria terminationCriteria;
+
+	/**
+	 * the constructor, takes the problem and the strategy used to search it. The run ends only when the selector says so
+	 *
+	 * @param objectiveFunction      the objective function which we aim to optimise for
+	 * @param constraints            the set of constraints which define the valid solution space
+	 * @param solutionSelector       the selector that picks the next move, this must not be shared with another descent
+	 * @param neighbourhoodGenerator the generator that describes the neighbourhood of the current solution
+	 */
+	LocalSearch(ObjectiveFunction objectiveFunction, ConstraintSet constraints, NextSolutionSelector solutionSelector, MoveNeighbourhoodGenerator neighbourhoodGenerator) {
+		this(objectiveFunction, constraints, solutionSelector, neighbourhoodGenerator, TerminationCriteria.NONE);
+	}
+
+	/**
+	 * the constructor, takes the problem, the strategy used to search it, and the budgets for the run
+	 *
+	 * @param objectiveFunction      the objective function which we aim to optimise for
+	 * @param constraints            the set of constraints which define the valid solution space
+	 * @param solutionSelector       the selector that picks the next move, this must not be shared with another descent
+	 * @param neighbourhoodGenerator the generator that describes the neighbourhood of the current solution
+	 * @param terminationCriteria    the budgets that end the run before the selector does
+	 */
+	LocalSearch(ObjectiveFunction objectiveFunction, ConstraintSet constraints, NextSolutionSelector solutionSelector, MoveNeighbourhoodGenerator neighbourhoodGenerator,
+				TerminationCriteria terminationCriteria) {
+		this.objectiveFunction = objectiveFunction;
+		this.constraints = constraints;
+		this.solutionSelector = solutionSelector;
+		this.neighbourhoodGenerator = neighbourhoodGenerator;
+		this.terminationCriteria = terminationCriteria;
+	}
+
+	/**
+	 * runs the descent to completion without recording a trace
+	 *
+	 * @param startSolution the start solution, this is not changed
+	 * @return the result of the descent
+	 */
+	public SearchResult run(CandidateSolution startSolution) {
+		try {
+			return run(startSolution, TraceSink.OFF);
+		} catch (IOException e) {
+			//the OFF sink never writes anything
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * runs the descent to completion. The best feasible solution seen is kept, not just the last one,
+	 * so selectors that are allowed to make worsening moves still report the best solution they passed through
+	 *
+	 * @param startSolution the start solution, this is not changed
+	 * @param traceSink     the sink that is told about the run and each of its iterations
+	 * @return the result of the descent
+	 * @throws IOException if the trace sink can't write the trace
+	 */
+	public SearchResult run(CandidateSolution startSolution, TraceSink traceSink) throws IOException {
+		return run(startSolution, traceSink, null);
+	}
+
+	/**
+	 * runs the descent to completion, recording its metrics. Without metrics every hook below is a single null check
+	 *
+	 * @param startSolution the start solution, this is not changed
+	 * @param traceSink     the sink that is told about the run and each of its iterations
+	 * @param searchMetrics where the metrics of the run are recorded, or null to not record any
+	 * @return the result of the descent
+	 * @throws IOException if the trace sink can't write the trace
+	 */
+	public SearchResult run(CandidateSolution startSolution, TraceSink traceSink, SearchMetrics searchMetrics) throws IOException {
+		return run(startSolution, traceSink, searchMetrics, null);
+	}
+
+	/**
+	 * runs the descent to completion, recording its metrics and taking snapshots of it. If the checkpointer was resumed from
+	 * a checkpoint that was part way through this start, the descent carries on from the snapshot instead of the start solution,
+	 * and the trace of the run begins at the snapshot
+	 *
+	 * @param startSolution the start solution, this is not changed
+	 * @param traceSink     the sink that is told about the run and each of its iterations
+	 * @param searchMetrics where the metrics of the run are recorded, or null to not record any
+	 * @param checkpointer  where the snapshots of the run are sent, or null to not take any
+	 * @return the result of the descent
+	 * @throws IOException if the trace sink can't write the trace, or the checkpoint can't be written or resumed
+	 */
+	public SearchResult run(CandidateSolution startSolution, TraceSink traceSink, SearchMetrics searchMetrics, Checkpointer checkpointer) throws IOException {
+		SearchCheckpoint resumeFrom = (checkpointer == null) ? null : checkpointer.takeResumableRun(startSolution);
+		long startTime = System.nanoTime() - ((resumeFrom == null) ? 0 : resumeFrom.getElapsedNanos());
+		RunMetrics metrics = (searchMetrics == null) ? null : searchMetrics.startRun(constraints.size());
+		long allocatedAtStart = (metrics == null) ? 0 : SearchMetrics.currentThreadAllocatedBytes();
+
+		//the evaluator holds our current solution, starting from a copy of the initial solution decision variables,
+		//and keeps its fitness and constraint sums up to date so that moves can be scored without building the neighbours
+		IncrementalEvaluator evaluator = new IncrementalEvaluator(objectiveFunction, constraints, (resumeFrom == null) ? startSolution : resumeFrom.getCurrentSolution());
+		traceSink.startRun(evaluator);
+
+		CandidateSolution bestSolution = evaluator.getCurrentSolution().copy();
+		int bestFitness = evaluator.getCurrentFitness();
+		boolean bestFeasible = evaluator.isCurrentSolutionFeasible();
+		int iterationCounter = 0;
+		int iterationsSinceImprovement = 0;
+		if (resumeFrom != null) {
+			bestSolution = resumeFrom.getBestSolution().copy();
+			bestFitness = resumeFrom.getBestFitness();
+			bestFeasible = resumeFrom.isBestFeasible();
+			iterationCounter = resumeFrom.getIterations();
+			iterationsSinceImprovement = resumeFrom.getIterationsSinceImprovement();
+			resumeFrom.restoreSelector(solutionSelector);
+		}
+		if (metrics != null && bestFeasible)
+			metrics.newBest(iterationCounter, System.nanoTime() - startTime, bestFitness);
+
+		//while our solution selector indicates that the search is not complete, and no budget has run out:
+		//  1.  generate the moves in the neighbourhood of the current solution
+		//  2.  select a move from that neighbourhood
+		//  3.  trace the iteration (first iteration thus is our initial solution, last is the solution before we can't find a new solution)
+		//  4.  apply the move to the current solution
+		while (!solutionSelector.isSearchComplete() && !isBudgetReached(iterationCounter, iterationsSinceImprovement, startTime, bestFitness, bestFeasible)) {
+			long generateStart = (metrics == null) ? 0 : System.nanoTime();
+			MoveNeighbourhood solutionNeighbourhood = neighbourhoodGenerator.generateMoveNeighbourhood(evaluator.getCurrentSolution());
+
+			long selectStart = (metrics == null) ? 0 : System.nanoTime();
+			evaluator.recordInto(metrics);
+			Move selectedMove = solutionSelector.selectMove(evaluator, solutionNeighbourhood);
+			evaluator.recordInto(null);
+
+			long traceStart = (metrics == null) ? 0 : System.nanoTime();
+			traceSink.iteration(iterationCounter++, evaluator, solutionNeighbourhood, selectedMove);
+			iterationsSinceImprovement++;
+
+			long applyStart = (metrics == null) ? 0 : System.nanoTime();
+			if (selectedMove != null) {
+				evaluator.applyMove(selectedMove);
+
+				//keep a copy of the current solution if it is the best feasible solution so far
+				if ((!bestFeasible || evaluator.getCurrentFitness() > bestFitness) && evaluator.isCurrentSolutionFeasible()) {
+					bestSolution = evaluator.getCurrentSolution().copy();
+					bestFitness = evaluator.getCurrentFitness();
+					bestFeasible = true;
+					iterationsSinceImprovement = 0;
+					if (metrics != null)
+						metrics.newBest(iterationCounter, System.nanoTime() - startTime, bestFitness);
+				}
+			}
+
+			if (metrics != null) {
+				long applyEnd = System.nanoTime();
+				metrics.iteration(solutionNeighbourhood.size(), selectStart - generateStart, traceStart - selectStart, applyStart - traceStart, applyEnd - applyStart);
+			}
+
+			//a snapshot is only useful if there is another iteration to resume into
+			if (checkpointer != null && checkpointer.isDue() && !solutionSelector.isSearchComplete())
+				checkpointer.saveRun(startSolution, evaluator.getCurrentSolution(), bestSolution, bestFitness, bestFeasible, iterationCounter,
+						iterationsSinceImprovement, System.nanoTime() - startTime, solutionSelector);
+		}
+
+		SearchResult result = new SearchResult(startSolution, bestSolution, bestFitness, bestFeasible, iterationCounter, System.nanoTime() - startTime);
+		traceSink.endRun(result, evaluator);
+		if (checkpointer != null)
+			checkpointer.runFinished(result);
+		if (metrics != null) {
+			long allocatedAtEnd = SearchMetrics.currentThreadAllocatedBytes();
+			metrics.endRun(result, (allocatedAtStart < 0 || allocatedAtEnd < 0) ? -1 : allocatedAtEnd - allocatedAtStart);
+		}
+		return result;
+	}
+
+	/**
+	 * checks the termination criteria, only reading the clock if there is a time budget
+	 *
+	 * @param iterations                 the number of iterations so far
+	 * @param iterationsSinceImprovement the number of iterations since the last new best feasible solution
+	 * @param startTime                  the System.nanoTime the run started at
+	 * @param bestFitness                the fitness of the best solution so far
+	 * @param bestFeasible               whether the best solution is feasible
+	 * @return true if the run should stop
+	 */
+	private boolean isBudgetReached(int iterations, int iterationsSinceImprovement, long startTime, int bestFitness, boolean bestFeasible) {
+		long elapsedNanos = terminationCriteria.hasTimeBudget() ? System.nanoTime() - startTime : 0;
+		return terminationCriteria.isReached(iterations, iterationsSinceImprovement, elapsedNanos) || terminationCriteria.isTargetReached(bestFitness, bestFeasible);
+	}
+}
@@ -1,18 +1,16 @@
 package com.parker.david;
 
-import de.vandermeer.asciitable.AsciiTable;
-import de.vandermeer.asciitable.CWC_LongestLine;
-import de.vandermeer.asciithemes.TA_Grid;
-import de.vandermeer.asciithemes.TA_GridConfig;
-import de.vandermeer.asciithemes.a7.A7_Grids;
-import de.vandermeer.asciithemes.a8.A8_Grids;
-import de.vandermeer.skb.interfaces.transformers.textformat.TextAlignment;
-
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -20,133 +18,594 @@ import java.util.stream.Collectors;
  */
 public class Main {
 	/**
-	 * entry point, just runs the problem over the given set of starts
+	 * the number of candidates on each side of a swap, and the pool size for k flips, unless it is given
+	 */
+	private static final int DEFAULT_CANDIDATE_LIST_LENGTH = 32;
+
+	/**
+	 * the time between snapshots of a running descent when --checkpoint is given, unless --checkpoint-interval-ms is
+	 */
+	private static final long DEFAULT_CHECKPOINT_INTERVAL_MILLIS = 60_000;
+
+	/**
+	 * the number of jobs that can wait for a thread in the solver service, unless --service-queue is given
+	 */
+	private static final int DEFAULT_SERVICE_QUEUE_CAPACITY = 64;
+
+	/**
+	 * every this many descents an island starts from its neighbour's best solution, unless --migration-interval is given
+	 */
+	private static final int DEFAULT_MIGRATION_INTERVAL = 3;
+
+	/**
+	 * the number of variables each step of a randomised greedy construction picks between, unless it is given
+	 */
+	private static final int DEFAULT_RESTRICTED_LIST_LENGTH = 4;
+
+	/**
+	 * entry point, just runs the problem over the given set of starts.
+	 * the problem is the built in example unless --problem=path gives a problem file in the text or binary format of ProblemLoader.
+	 * --write-problem=text:path or --write-problem=binary:path writes the problem out in that format instead of searching it
+	 * --construct=greedy adds the greedy start by objective per constraint weight before the problem's starts, and
+	 * --construct=grasp:N[:L] adds it and randomised greedy starts picking between L variables (4 by default), N distinct starts in all
+	 * the trace of each run is controlled by the arguments:
+	 * --trace=table (the default, an ascii table per run), off, summary, sampled:N[:text|csv|binary] or full[:text|csv|binary]
+	 * --trace-file=path (defaults to output.txt)
+	 * the search is controlled by:
+	 * --selector=best (the default), parallel-best, first[:sequential|random|resume], tabu, annealing or late-acceptance
+	 * --time-budget-ms=N, --iteration-budget=N and --stagnation-budget=N to end each run early
+	 * --neighbourhood=single (the default), swap (single flips and swaps) or kflip:K[:L] (1 to K flips from a pool of L candidates, 32 by default)
+	 * --seed=N for the stochastic selectors (defaults to 0)
+	 * --bound-gap=G to stop once a feasible solution is within G (a fraction, 0 for none) of an upper bound on the fitness,
+	 * ending the run that found it and skipping the starts after it, see FitnessBound
+	 * --slack-bounds to skip checking constraints that too few items are set to violate
+	 * --adaptive-order to keep reordering the constraints so the ones most likely to reject a solution are checked first
+	 * --threads=N to run the starts N at a time through MultiStartSearch (1 by default, in order), which needs --trace=off or
+	 * summary and no checkpoint, as the other traces and the checkpoint follow one descent at a time
+	 * --metrics=path to write a json summary of the work, rejections, phase times, allocation and best-so-far trajectory of every run,
+	 * and --metrics-jfr to also send them as java flight recorder events
+	 * --checkpoint=path to snapshot the search to a file every --checkpoint-interval-ms=N (a minute by default) and after each start,
+	 * and --resume to carry on from that file, skipping the starts that finished and resuming the one that was part way through
+	 * --serve to run as a solver service on stdin and stdout, or --serve=port on a loopback socket, instead of solving one problem.
+	 * --service-threads=N jobs run at once (one per core by default) and --service-queue=N more can wait (64 by default), see SolverService
+	 * --coordinator=[host:]port to hand the descents of an island model search to workers that connect, and --worker=[host:]port
+	 * to run as one of those workers. --island-descents=N descents are run in all (4 per start by default), each island starts
+	 * from its neighbour's best every --migration-interval=N descents (3 by default), after flipping --perturbation=N bits
+	 * (a tenth of the variables by default), and a worker that sends no heartbeat or result for --worker-timeout-ms=N is dropped, see IslandCoordinator
 	 */
 	public static void main(String[] args) throws IOException, InterruptedException {
-		//set our objective function from the problem
-		ObjectiveFunction objectiveFunction = new ObjectiveFunction(new ArrayList<>(Arrays.asList(8, 12, 9, 14, 16, 10, 6, 7, 11, 13)));
+		String traceOption = "table";
+		File traceFile = new File("output.txt");
+		String selectorOption = "best";
+		String neighbourhoodOption = "single";
+		TerminationCriteria terminationCriteria = TerminationCriteria.NONE;
+		long seed = 0;
+		double boundGap = -1;
+		File problemFile = null;
+		String writeProblemOption = null;
+		String constructOption = null;
+		File metricsFile = null;
+		boolean metricsFlightRecorder = false;
+		boolean slackBounds = false;
+		boolean adaptiveOrder = false;
+		int threads = 1;
+		File checkpointFile = null;
+		long checkpointIntervalMillis = DEFAULT_CHECKPOINT_INTERVAL_MILLIS;
+		boolean resume = false;
+		String serveOption = null;
+		int serviceThreads = Runtime.getRuntime().availableProcessors();
+		int serviceQueue = DEFAULT_SERVICE_QUEUE_CAPACITY;
+		String coordinatorOption = null;
+		String workerOption = null;
+		int islandDescents = -1;
+		int migrationInterval = DEFAULT_MIGRATION_INTERVAL;
+		int perturbation = -1;
+		int workerTimeoutMillis = 0;
+		for (String arg : args) {
+			if (arg.startsWith("--trace="))
+				traceOption = arg.substring("--trace=".length());
+			else if (arg.startsWith("--trace-file="))
+				traceFile = new File(arg.substring("--trace-file=".length()));
+			else if (arg.startsWith("--selector="))
+				selectorOption = arg.substring("--selector=".length());
+			else if (arg.startsWith("--neighbourhood="))
+				neighbourhoodOption = arg.substring("--neighbourhood=".length());
+			else if (arg.startsWith("--time-budget-ms="))
+				terminationCriteria = terminationCriteria.withTimeBudget(Long.parseLong(arg.substring("--time-budget-ms=".length())), TimeUnit.MILLISECONDS);
+			else if (arg.startsWith("--iteration-budget="))
+				terminationCriteria = terminationCriteria.withIterationBudget(Integer.parseInt(arg.substring("--iteration-budget=".length())));
+			else if (arg.startsWith("--stagnation-budget="))
+				terminationCriteria = terminationCriteria.withStagnationBudget(Integer.parseInt(arg.substring("--stagnation-budget=".length())));
+			else if (arg.startsWith("--seed="))
+				seed = Long.parseLong(arg.substring("--seed=".length()));
+			else if (arg.startsWith("--bound-gap="))
+				boundGap = Double.parseDouble(arg.substring("--bound-gap=".length()));
+			else if (arg.startsWith("--problem="))
+				problemFile = new File(arg.substring("--problem=".length()));
+			else if (arg.startsWith("--write-problem="))
+				writeProblemOption = arg.substring("--write-problem=".length());
+			else if (arg.startsWith("--construct="))
+				constructOption = arg.substring("--construct=".length());
+			else if (arg.startsWith("--metrics="))
+				metricsFile = new File(arg.substring("--metrics=".length()));
+			else if (arg.equals("--metrics-jfr"))
+				metricsFlightRecorder = true;
+			else if (arg.equals("--slack-bounds"))
+				slackBounds = true;
+			else if (arg.equals("--adaptive-order"))
+				adaptiveOrder = true;
+			else if (arg.startsWith("--threads="))
+				threads = Integer.parseInt(arg.substring("--threads=".length()));
+			else if (arg.startsWith("--checkpoint="))
+				checkpointFile = new File(arg.substring("--checkpoint=".length()));
+			else if (arg.startsWith("--checkpoint-interval-ms="))
+				checkpointIntervalMillis = Long.parseLong(arg.substring("--checkpoint-interval-ms=".length()));
+			else if (arg.equals("--resume"))
+				resume = true;
+			else if (arg.equals("--serve"))
+				serveOption = "stdin";
+			else if (arg.startsWith("--serve="))
+				serveOption = arg.substring("--serve=".length());
+			else if (arg.startsWith("--service-threads="))
+				serviceThreads = Integer.parseInt(arg.substring("--service-threads=".length()));
+			else if (arg.startsWith("--service-queue="))
+				serviceQueue = Integer.parseInt(arg.substring("--service-queue=".length()));
+			else if (arg.startsWith("--coordinator="))
+				coordinatorOption = arg.substring("--coordinator=".length());
+			else if (arg.startsWith("--worker="))
+				workerOption = arg.substring("--worker=".length());
+			else if (arg.startsWith("--island-descents="))
+				islandDescents = Integer.parseInt(arg.substring("--island-descents=".length()));
+			else if (arg.startsWith("--migration-interval="))
+				migrationInterval = Integer.parseInt(arg.substring("--migration-interval=".length()));
+			else if (arg.startsWith("--perturbation="))
+				perturbation = Integer.parseInt(arg.substring("--perturbation=".length()));
+			else if (arg.startsWith("--worker-timeout-ms="))
+				workerTimeoutMillis = Integer.parseInt(arg.substring("--worker-timeout-ms=".length()));
+			else
+				throw new IllegalArgumentException("unknown argument " + arg + ", expected --trace=, --trace-file=, --selector=, --neighbourhood=, --time-budget-ms=, --iteration-budget=, --stagnation-budget=, --seed=, --bound-gap=, --problem=, --write-problem=, --construct=, --metrics=, --metrics-jfr, --slack-bounds, --adaptive-order, --threads=, --checkpoint=, --checkpoint-interval-ms=, --resume, --serve[=port], --service-threads=, --service-queue=, --coordinator=, --worker=, --island-descents=, --migration-interval=, --perturbation= or --worker-timeout-ms=");
+		}
+		if (resume && checkpointFile == null)
+			throw new IllegalArgumentException("--resume needs --checkpoint= to say which checkpoint to resume");
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be at least 1, was " + threads);
+		if (threads > 1 && (checkpointFile != null || !(traceOption.equals("off") || traceOption.equals("summary"))))
+			throw new IllegalArgumentException("--threads needs --trace=off or --trace=summary and no --checkpoint, the other traces and the checkpoint follow one descent at a time");
 
-		//set our constraints
-		ConstraintSet constraints = new ConstraintSet();
-		constraints.add(new Constraint(new ArrayList<>(Arrays.asList(3, 2, 1, 4, 3, 3, 1, 2, 2, 5)), Constraint.Operators.LESS_THAN_OR_EQUAL, 12));
+		//a service takes its problems from its clients
+		if (serveOption != null) {
+			try (SolverService service = new SolverService(serviceThreads, serviceQueue)) {
+				if (serveOption.equals("stdin"))
+					service.serve(System.in, System.out);
+				else
+					service.listen(Integer.parseInt(serveOption));
+			}
+			return;
+		}
 
-		//set our initial solutions to the problem
-		ArrayList<CandidateSolution> initialSolutions = new ArrayList<>();
-		initialSolutions.add(new CandidateSolution(intListToBoolean(new ArrayList<>(Arrays.asList(0, 0, 0, 0, 0, 0, 0, 0, 0, 0)))));
-		initialSolutions.add(new CandidateSolution(intListToBoolean(new ArrayList<>(Arrays.asList(0, 0, 0, 0, 0, 0, 0, 0, 1, 0)))));
-		initialSolutions.add(new CandidateSolution(intListToBoolean(new ArrayList<>(Arrays.asList(0, 1, 1, 1, 0, 1, 0, 1, 0, 0)))));
+		//a worker takes its problem from its coordinator
+		if (workerOption != null) {
+			int descents = IslandWorker.run(IslandProtocol.parseAddress(workerOption));
+			System.out.println("ran " + descents + " descents");
+			return;
+		}
+
+		//load the problem, or use the built in example
+		Problem problem = (problemFile == null) ? exampleProblem() : ProblemLoader.load(problemFile.toPath());
+		if (constructOption != null)
+			problem = withConstructedStarts(constructOption, problem, seed);
+		if (writeProblemOption != null) {
+			writeProblem(writeProblemOption, problem);
+			return;
+		}
 
-		//delete old output file
-		new File("output.txt").delete();
+		//a solution within the gap of the upper bound is good enough, so the run that finds it and every start after it can stop
+		if (boundGap >= 0) {
+			long upperBound = FitnessBound.upperBound(problem.getObjectiveFunction(), problem.getConstraints(), problem.getNumberOfDecisionVariables());
+			if (upperBound == FitnessBound.NO_FEASIBLE_SOLUTION) {
+				System.out.println("upper bound: no solution satisfies every constraint");
+			} else {
+				long fitnessTarget = upperBound - (long) Math.floor(boundGap * Math.abs(upperBound));
+				terminationCriteria = terminationCriteria.withFitnessTarget(fitnessTarget);
+				System.out.println("upper bound: z=" + upperBound + ", stopping at z=" + fitnessTarget);
+			}
+		} else if (boundGap != -1) {
+			throw new IllegalArgumentException("bound gap can't be negative, was " + boundGap);
+		}
 
-		//loop through all specified starts and run the optimisation process for each of them
-		for (CandidateSolution solution : initialSolutions) {
-			optimiseProcess(solution, objectiveFunction, constraints);
+		//hand the descents to the islands instead of running them here
+		if (coordinatorOption != null) {
+			int n = problem.getNumberOfDecisionVariables();
+			IslandCoordinator coordinator = new IslandCoordinator(problem, selectorOption, neighbourhoodOption, terminationCriteria, seed,
+					(islandDescents < 0) ? 4 * problem.getStartSolutions().size() : islandDescents, migrationInterval,
+					(perturbation < 0) ? Math.max(1, n / 10) : perturbation, workerTimeoutMillis);
+			MultiStartResult result = coordinator.run(IslandProtocol.parseAddress(coordinatorOption));
+			for (SearchResult descent : result.getPerStartResults()) {
+				System.out.println(descent);
+			}
+			if (coordinator.isTargetReached())
+				System.out.println("stopped after " + result.getPerStartResults().size() + " descents, a descent is within the bound gap");
+			System.out.println("best: " + ((result.getBestResult() == null) ? "none" : result.getBestResult()));
+			System.out.println(coordinator.numberOfIslands() + " islands, " + coordinator.getMigrations() + " migrations, "
+					+ coordinator.getReassignedUnits() + " reassigned descents, " + coordinator.getAbandonedUnits() + " abandoned descents, "
+					+ coordinator.getLostWorkers() + " lost workers");
+			return;
 		}
+		ObjectiveFunction objectiveFunction = problem.getObjectiveFunction();
+		ConstraintSet constraints = problem.getConstraints();
+		constraints.setSlackBounds(slackBounds);
+		constraints.setAdaptiveOrder(adaptiveOrder);
+
+		//only collect metrics if something is going to read them
+		SearchMetrics searchMetrics = (metricsFile != null || metricsFlightRecorder) ? new SearchMetrics(metricsFlightRecorder) : null;
+
+		//start a new checkpoint, or carry on from the old one
+		Checkpointer checkpointer = null;
+		if (checkpointFile != null) {
+			checkpointer = resume
+					? Checkpointer.resume(checkpointFile.toPath(), checkpointIntervalMillis, TimeUnit.MILLISECONDS, problem.getNumberOfDecisionVariables())
+					: new Checkpointer(checkpointFile.toPath(), checkpointIntervalMillis, TimeUnit.MILLISECONDS, problem.getNumberOfDecisionVariables());
+		}
+
+		//delete old output file, unless a resumed search is adding to it
+		if (!resume)
+			traceFile.delete();
+
+		//loop through all specified starts and run the optimisation process for each of them, all tracing into the same sink
+		int tracedRuns = (checkpointer != null && resume) ? checkpointer.getFinishedRuns().size() : 0;
+		try (TraceSink traceSink = createTraceSink(traceOption, traceFile, resume, tracedRuns)) {
+			if (threads > 1) {
+				runStartsInParallel(problem, objectiveFunction, constraints, selectorOption, neighbourhoodOption, terminationCriteria, seed, threads, traceSink, searchMetrics);
+			} else {
+				List<CandidateSolution> startSolutions = problem.getStartSolutions();
+				SearchResult incumbent = null;
+				if (checkpointer != null) {
+					for (SearchResult finishedRun : checkpointer.getFinishedRuns()) {
+						if (finishedRun.isBetterThan(incumbent))
+							incumbent = finishedRun;
+					}
+				}
+				for (int s = 0; s < startSolutions.size(); s++) {
+					if (incumbent != null && terminationCriteria.isTargetReached(incumbent.getBestFitness(), incumbent.isBestFeasible())) {
+						System.out.println("stopped after " + s + " of " + startSolutions.size() + " starts, z=" + incumbent.getBestFitness() + " is within the bound gap");
+						break;
+					}
+					CandidateSolution solution = startSolutions.get(s);
+					if (checkpointer != null && checkpointer.isFinished(s, solution))
+						continue;
+					NextSolutionSelector solutionSelector = createSelector(selectorOption, objectiveFunction, constraints, seed);
+					MoveNeighbourhoodGenerator neighbourhoodGenerator = createNeighbourhoodGenerator(neighbourhoodOption, problem);
+					SearchResult result = optimiseProcess(solution, objectiveFunction, constraints, solutionSelector, neighbourhoodGenerator, terminationCriteria, traceSink, searchMetrics, checkpointer);
+					if (result.isBetterThan(incumbent))
+						incumbent = result;
+				}
+			}
+		} finally {
+			if (checkpointer != null)
+				checkpointer.close();
+		}
+
+		if (metricsFile != null) {
+			try (Writer metricsWriter = new BufferedWriter(new FileWriter(metricsFile))) {
+				searchMetrics.writeJson(metricsWriter);
+			}
+		}
+	}
+
+	/**
+	 * runs a descent from every start on a pool of threads through MultiStartSearch and prints the best result.
+	 * every descent gets a selector with the same seed, as in the sequential loop, so each start gives the same result
+	 * whichever thread runs it
+	 *
+	 * @param problem             the problem, for its starts and the neighbourhood generators
+	 * @param objectiveFunction   the objective function which we aim to optimise for
+	 * @param constraints         the set of constraints which define the valid solution space
+	 * @param selectorOption      the value of the --selector option
+	 * @param neighbourhoodOption the value of the --neighbourhood option
+	 * @param terminationCriteria the budgets and fitness target of every descent
+	 * @param seed                the seed for the stochastic selectors
+	 * @param threads             the number of descents run at once
+	 * @param traceSink           the sink that every descent records into, from several threads at once
+	 * @param searchMetrics       where the metrics of every descent are recorded, or null to not record any
+	 * @throws IOException if the trace sink fails
+	 */
+	private static void runStartsInParallel(Problem problem, ObjectiveFunction objectiveFunction, ConstraintSet constraints, String selectorOption,
+											String neighbourhoodOption, TerminationCriteria terminationCriteria, long seed, int threads,
+											TraceSink traceSink, SearchMetrics searchMetrics) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			MultiStartSearch search = new MultiStartSearch(objectiveFunction, constraints,
+					(sharedObjectiveFunction, sharedConstraints, startIndex) -> createSelector(selectorOption, sharedObjectiveFunction, sharedConstraints, seed),
+					() -> createNeighbourhoodGenerator(neighbourhoodOption, problem), terminationCriteria, pool);
+			MultiStartResult result = search.run(problem.getStartSolutions(), traceSink, searchMetrics);
+			SearchResult best = result.getBestResult();
+			int startsRun = result.getPerStartResults().size();
+			if (startsRun < problem.getStartSolutions().size())
+				System.out.println("stopped after " + startsRun + " of " + problem.getStartSolutions().size() + " starts, z=" + best.getBestFitness() + " is within the bound gap");
+			System.out.println("best: " + ((best == null) ? "none" : best));
+			System.out.println(startsRun + " starts on " + threads + " threads in " + TimeUnit.NANOSECONDS.toMillis(result.getElapsedNanos()) + " ms, "
+					+ TimeUnit.NANOSECONDS.toMillis(result.getTotalDescentNanos()) + " ms of descents");
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * runs the optimisation process for one start, with the original ascii table trace appended to output.txt
+	 *
+	 * @param startSolution     the start solution for this set of solutions
+	 * @param objectiveFunction the objective function which we aim to optimise for
+	 * @param constraints       the set of constraints which define the valid solution space
+	 */
+	public static void optimiseProcess(CandidateSolution startSolution, ObjectiveFunction objectiveFunction, ConstraintSet constraints) throws IOException, InterruptedException {
+		optimiseProcess(startSolution, objectiveFunction, constraints, new AsciiTableTraceSink(new File("output.txt")));
 	}
 
 	/**
-	 * The bulk of everything is in here. Much functionality here could be moved into classes to make this function simpler.
-	 * however, in the interest of keeping code easy to follow, the optimisation is coordinated largely by this function.
+	 * The optimisation for one start is coordinated by this function.
 	 * this optimisation uses best improvement with single bit compliment, but is generalised in such a way that any
 	 * selection method could be used and any neighbourhood generator could be used.
+	 * the descent itself is run by LocalSearch, and what is recorded about it is up to the trace sink
 	 *
 	 * @param startSolution     the start solution for this set of solutions
 	 * @param objectiveFunction the objective function which we aim to optimise for
 	 * @param constraints       the set of constraints which define the valid solution space
+	 * @param traceSink         the sink that records the run
+	 * @return the result of the run
 	 */
-	public static void optimiseProcess(CandidateSolution startSolution, ObjectiveFunction objectiveFunction, ConstraintSet constraints) throws IOException, InterruptedException {
+	public static SearchResult optimiseProcess(CandidateSolution startSolution, ObjectiveFunction objectiveFunction, ConstraintSet constraints, TraceSink traceSink) throws IOException {
 
 		//create an instance of a next solution selector. We choose here to use best improvement as our selector type
 		NextSolutionSelector solutionSelector = new BestImprovementSelection(objectiveFunction, constraints);
 
 		//create an instance of a neighbourhood generator. We choose here to use single-bit compliment as our generator
-		NeighbourhoodGenerator neighbourhoodGenerator = new SingleBitComplimentGenerator();
-
-		//create table and add header to it
-		AsciiTable outputTable = new AsciiTable();
-		outputTable.addHeavyRule();
-		outputTable.addRow("t", "s^(t)", "z", "Neighbour", "Bit", "New z", " ");
-
-		//we create our candidate solution object from our initial solution decision variables
-		CandidateSolution currentSolution = startSolution;
-
-		int iterationCounter = 0;
-
-		//while our solution selector indicates that the search is not complete:
-		//  1.  add the current solution into the list of solutions
-		//  (first element thus is our initial solution, last is the solution before we can't find a new solution)
-		//  2.  generate a new neighbourhood
-		//  3.  select the best solution from that neighbourhood
-		while (!solutionSelector.isSearchComplete()) {
-			CandidateSolution oldSolution = currentSolution;
-			ArrayList<CandidateSolution> solutionNeighbourhood = neighbourhoodGenerator.generateSolutionNeighbourhood(currentSolution);
-			currentSolution = solutionSelector.getNewSolution(currentSolution, solutionNeighbourhood);
-			printIteration(outputTable, iterationCounter++, objectiveFunction, constraints, oldSolution, solutionNeighbourhood, currentSolution);
-
-			//search is over, print out the first half of the last step to indicate it is complete
-			if (currentSolution == null) {
-				outputTable.addLightRule();
-				outputTable.addRow(iterationCounter, oldSolution, objectiveFunction.evaluateFitness(oldSolution), "", "", "", "");
-				outputTable.addHeavyRule();
+		MoveNeighbourhoodGenerator neighbourhoodGenerator = new SingleBitComplimentGenerator();
+
+		return optimiseProcess(startSolution, objectiveFunction, constraints, solutionSelector, neighbourhoodGenerator, TerminationCriteria.NONE, traceSink);
+	}
+
+	/**
+	 * runs the optimisation for one start with the given selector, neighbourhood and budgets
+	 *
+	 * @param startSolution          the start solution for this set of solutions
+	 * @param objectiveFunction      the objective function which we aim to optimise for
+	 * @param constraints            the set of constraints which define the valid solution space
+	 * @param solutionSelector       the selector that picks each move, this must be new for each start
+	 * @param neighbourhoodGenerator the generator that describes the neighbourhood of each solution
+	 * @param terminationCriteria    the budgets that end the run before the selector does
+	 * @param traceSink              the sink that records the run
+	 * @return the result of the run
+	 */
+	public static SearchResult optimiseProcess(CandidateSolution startSolution, ObjectiveFunction objectiveFunction, ConstraintSet constraints,
+											   NextSolutionSelector solutionSelector, MoveNeighbourhoodGenerator neighbourhoodGenerator,
+											   TerminationCriteria terminationCriteria, TraceSink traceSink) throws IOException {
+		return optimiseProcess(startSolution, objectiveFunction, constraints, solutionSelector, neighbourhoodGenerator, terminationCriteria, traceSink, null);
+	}
+
+	/**
+	 * runs the optimisation for one start with the given selector, neighbourhood and budgets, recording its metrics
+	 *
+	 * @param startSolution          the start solution for this set of solutions
+	 * @param objectiveFunction      the objective function which we aim to optimise for
+	 * @param constraints            the set of constraints which define the valid solution space
+	 * @param solutionSelector       the selector that picks each move, this must be new for each start
+	 * @param neighbourhoodGenerator the generator that describes the neighbourhood of each solution
+	 * @param terminationCriteria    the budgets that end the run before the selector does
+	 * @param traceSink              the sink that records the run
+	 * @param searchMetrics          where the metrics of the run are recorded, or null to not record any
+	 * @return the result of the run
+	 */
+	public static SearchResult optimiseProcess(CandidateSolution startSolution, ObjectiveFunction objectiveFunction, ConstraintSet constraints,
+											   NextSolutionSelector solutionSelector, MoveNeighbourhoodGenerator neighbourhoodGenerator,
+											   TerminationCriteria terminationCriteria, TraceSink traceSink, SearchMetrics searchMetrics) throws IOException {
+		return optimiseProcess(startSolution, objectiveFunction, constraints, solutionSelector, neighbourhoodGenerator, terminationCriteria, traceSink, searchMetrics, null);
+	}
+
+	/**
+	 * runs the optimisation for one start with the given selector, neighbourhood and budgets, recording its metrics and
+	 * taking snapshots of it, or resuming it from the checkpoint if the checkpoint was part way through this start
+	 *
+	 * @param startSolution          the start solution for this set of solutions
+	 * @param objectiveFunction      the objective function which we aim to optimise for
+	 * @param constraints            the set of constraints which define the valid solution space
+	 * @param solutionSelector       the selector that picks each move, this must be new for each start
+	 * @param neighbourhoodGenerator the generator that describes the neighbourhood of each solution
+	 * @param terminationCriteria    the budgets that end the run before the selector does
+	 * @param traceSink              the sink that records the run
+	 * @param searchMetrics          where the metrics of the run are recorded, or null to not record any
+	 * @param checkpointer           where the snapshots of the run are sent, or null to not take any
+	 * @return the result of the run
+	 */
+	public static SearchResult optimiseProcess(CandidateSolution startSolution, ObjectiveFunction objectiveFunction, ConstraintSet constraints,
+											   NextSolutionSelector solutionSelector, MoveNeighbourhoodGenerator neighbourhoodGenerator,
+											   TerminationCriteria terminationCriteria, TraceSink traceSink, SearchMetrics searchMetrics,
+											   Checkpointer checkpointer) throws IOException {
+		return new LocalSearch(objectiveFunction, constraints, solutionSelector, neighbourhoodGenerator, terminationCriteria)
+				.run(startSolution, traceSink, searchMetrics, checkpointer);
+	}
+
+	/**
+	 * creates the selector for a --selector option.
+	 * annealing starts at a temperature of the largest objective weight, so that at first losing any one item is fairly likely
+	 * to be accepted, and cools geometrically to 0.01. late acceptance looks 50 steps back and stops after 100 steps per
+	 * decision variable without an improvement. Tabu keeps a flipped bit tabu for 7 steps, or the square root of the number of
+	 * decision variables if that is more, but never for more than a quarter of the neighbourhood, remembers the last 4096 solutions it visited, and stops after 100 steps per decision
+	 * variable or 10 per decision variable without a new best. first scans sequentially unless given random or resume
+	 *
+	 * @param selectorOption    the value of the --selector option
+	 * @param objectiveFunction the objective function
+	 * @param constraints       the set of constraints
+	 * @param seed              the seed for the stochastic selectors
+	 * @return a new selector
+	 */
+	static NextSolutionSelector createSelector(String selectorOption, ObjectiveFunction objectiveFunction, ConstraintSet constraints, long seed) {
+		String[] parts = selectorOption.toLowerCase(Locale.ROOT).split(":");
+		String mode = (parts.length == 1) ? parts[0] : "";
+		int n = Math.max(1, objectiveFunction.numberOfWeights());
+		if (mode.equals("best"))
+			return new BestImprovementSelection(objectiveFunction, constraints);
+		else if (mode.equals("parallel-best"))
+			return new ParallelBestImprovementSelection(objectiveFunction, constraints);
+		else if (parts[0].equals("first") && parts.length <= 2)
+			return new FirstImprovementSelection(objectiveFunction, constraints, scanOrder((parts.length == 2) ? parts[1] : "sequential", selectorOption), seed);
+		else if (mode.equals("tabu"))
+			return new TabuSearchSelection(objectiveFunction, constraints, Math.max(7, (int) Math.sqrt(n)), 100 * n, 10 * n, 4096, seed);
+		else if (mode.equals("annealing")) {
+			int largestWeight = 1;
+			for (int i = 0; i < objectiveFunction.numberOfWeights(); i++) {
+				largestWeight = Math.max(largestWeight, Math.abs(objectiveFunction.getIthWeight(i)));
 			}
-		}
+			return new SimulatedAnnealingSelection(objectiveFunction, constraints, largestWeight, 0.01, CoolingSchedule.geometric(0.999), seed);
+		} else if (mode.equals("late-acceptance"))
+			return new LateAcceptanceSelection(objectiveFunction, constraints, 50, 100 * n, seed);
+		throw new IllegalArgumentException("unknown selector " + selectorOption + ", expected best, parallel-best, first[:sequential|random|resume], tabu, annealing or late-acceptance");
+	}
 
-		//format the table, and print to console and output.txt
-		outputTable.getRenderer().setCWC(new CWC_LongestLine());
-		TA_Grid grid = TA_Grid.create("an ascii compliant grid")
-				.addCharacterMap(TA_GridConfig.RULESET_HEAVY, ' ', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#')
-				.addCharacterMap(TA_GridConfig.RULESET_NORMAL, ' ', '~', ' ', '+', '+', '+', '+', '~', '~', '~', ' ', ' ')
-				.addCharacterMap(TA_GridConfig.RULESET_LIGHT, ' ', '-', ' ', '+', '+', '+', '+', '-', '-', '-', ' ', ' ');
-		outputTable.getContext().setGrid(grid);
-		outputTable.setPaddingLeft(1);
-		outputTable.setPaddingRight(1);
-		outputTable.setTextAlignment(TextAlignment.CENTER);
-		FileWriter output = new FileWriter("output.txt", true);
-		output.append(outputTable.render()).append("\n\n").close();
-		System.out.println(outputTable.render() + "\n\n");
+	/**
+	 * reads the scan order of a first improvement --selector option
+	 *
+	 * @param order          the name of the order
+	 * @param selectorOption the whole --selector option, for the error message
+	 * @return the scan order
+	 */
+	private static FirstImprovementSelection.ScanOrder scanOrder(String order, String selectorOption) {
+		if (order.equals("sequential"))
+			return FirstImprovementSelection.ScanOrder.SEQUENTIAL;
+		else if (order.equals("random"))
+			return FirstImprovementSelection.ScanOrder.RANDOM_PERMUTATION;
+		else if (order.equals("resume"))
+			return FirstImprovementSelection.ScanOrder.RESUME_FROM_LAST_IMPROVEMENT;
+		throw new IllegalArgumentException("unknown selector " + selectorOption + ", expected first, first:sequential, first:random or first:resume");
 	}
 
 	/**
-	 * A simple function to convert an input integer arraylist into a boolean arraylist, thus preserving memory
+	 * creates the neighbourhood generator for a --neighbourhood option. The multi flip generators rank the variables of the problem
 	 *
-	 * @param intList the input integer arraylist
-	 * @return a Boolean ArrayList
+	 * @param neighbourhoodOption the value of the --neighbourhood option
+	 * @param problem             the problem being searched
+	 * @return a new generator
 	 */
-	private static ArrayList<Boolean> intListToBoolean(ArrayList<Integer> intList) {
-		return intList.stream().map((number) -> number != 0).collect(Collectors.toCollection(ArrayList::new));
+	static MoveNeighbourhoodGenerator createNeighbourhoodGenerator(String neighbourhoodOption, Problem problem) {
+		String[] parts = neighbourhoodOption.split(":");
+		String mode = parts[0].toLowerCase(Locale.ROOT);
+		if (mode.equals("single") && parts.length == 1)
+			return new SingleBitComplimentGenerator();
+
+		CandidateList candidateList = new CandidateList(problem.getObjectiveFunction(), problem.getConstraints(), problem.getNumberOfDecisionVariables());
+		if (mode.equals("swap") && parts.length == 1)
+			return new CombinedNeighbourhoodGenerator(new SingleBitComplimentGenerator(), new SwapGenerator(candidateList, DEFAULT_CANDIDATE_LIST_LENGTH));
+		else if (mode.equals("kflip") && (parts.length == 2 || parts.length == 3))
+			return new KFlipGenerator(candidateList, Integer.parseInt(parts[1]), (parts.length == 3) ? Integer.parseInt(parts[2]) : DEFAULT_CANDIDATE_LIST_LENGTH);
+		throw new IllegalArgumentException("unknown neighbourhood " + neighbourhoodOption + ", expected single, swap or kflip:K[:L]");
 	}
 
 	/**
-	 * this is a print function that generates a print table for elements in the following order:
-	 * t | s^(t) | z | Neighbour | Bit | New z |
+	 * the example problem: a knapsack of 10 items with one capacity constraint, searched from three starts
 	 *
-	 * @param table             the table object that holds all the data
-	 * @param iteration         the current iteration, t
-	 * @param currentSolution   the current solution that this iteration used as a starting point
-	 * @param neighbourhood     the neighbourhood found from the current solution
-	 * @param objectiveFunction the objective function, used to calculate the fitness value in the table
-	 * @param selectedNeighbour the solution contained in the neighbourhood that was selected
-	 */
-	private static void printIteration(AsciiTable table, int iteration, ObjectiveFunction objectiveFunction, ConstraintSet constraints, CandidateSolution currentSolution, ArrayList<CandidateSolution> neighbourhood, CandidateSolution selectedNeighbour) {
-		//add in a line to split off this iteration
-		table.addLightRule();
-
-		// loop through all neighbours and print them out nicely, with the first line being a full line
-		for (int i = 0; i < neighbourhood.size(); i++) {
-			//grab the neighbour from the neighbourhood
-			CandidateSolution neighbour = neighbourhood.get(i);
-			table.addRow(
-					//first row needs to contain iteration number, current solution, and fitness value, rest of rows they are blank
-					(i == 0) ? iteration : "",
-					(i == 0) ? currentSolution : "",
-					(i == 0) ? objectiveFunction.evaluateFitness(currentSolution) : "",
-					neighbour,
-					i + 1, // the 1-indexed (instead of 0 indexed) bit that was flipped
-					(constraints.isFeasible(neighbour)) ? objectiveFunction.evaluateFitness(neighbour) : "infeasible", //if feasible, the current fitness, otherwise "infeasible"
-					(selectedNeighbour == neighbour) ? "<---" : "" //if this neighbour is selected, put in arrow, else nothing
-			);
+	 * @return the example problem
+	 */
+	private static Problem exampleProblem() {
+		//set our objective function from the problem
+		ObjectiveFunction objectiveFunction = new ObjectiveFunction(new ArrayList<>(Arrays.asList(8, 12, 9, 14, 16, 10, 6, 7, 11, 13)));
 
-		}
+		//set our constraints
+		ConstraintSet constraints = new ConstraintSet();
+		constraints.add(new Constraint(new ArrayList<>(Arrays.asList(3, 2, 1, 4, 3, 3, 1, 2, 2, 5)), Constraint.Operators.LESS_THAN_OR_EQUAL, 12));
+
+		//set our initial solutions to the problem
+		ArrayList<CandidateSolution> initialSolutions = new ArrayList<>();
+		initialSolutions.add(new CandidateSolution(intListToBoolean(new ArrayList<>(Arrays.asList(0, 0, 0, 0, 0, 0, 0, 0, 0, 0)))));
+		initialSolutions.add(new CandidateSolution(intListToBoolean(new ArrayList<>(Arrays.asList(0, 0, 0, 0, 0, 0, 0, 0, 1, 0)))));
+		initialSolutions.add(new CandidateSolution(intListToBoolean(new ArrayList<>(Arrays.asList(0, 1, 1, 1, 0, 1, 0, 1, 0, 0)))));
+
+		return new Problem(10, objectiveFunction, constraints, initialSolutions);
+	}
+
+	/**
+	 * writes the problem for a --write-problem option
+	 *
+	 * @param writeProblemOption the value of the --write-problem option, the format and the path separated by a colon
+	 * @param problem            the problem to write
+	 * @throws IOException if the file can't be written
+	 */
+	private static void writeProblem(String writeProblemOption, Problem problem) throws IOException {
+		int colon = writeProblemOption.indexOf(':');
+		String format = (colon < 0) ? "" : writeProblemOption.substring(0, colon).toLowerCase(Locale.ROOT);
+		if (format.equals("text"))
+			ProblemLoader.writeText(problem, new File(writeProblemOption.substring(colon + 1)).toPath());
+		else if (format.equals("binary"))
+			ProblemLoader.writeBinary(problem, new File(writeProblemOption.substring(colon + 1)).toPath());
+		else
+			throw new IllegalArgumentException("unknown write problem option " + writeProblemOption + ", expected text:path or binary:path");
+	}
+
+	/**
+	 * builds starts from the problem and puts them before its own starts, see StartConstructor
+	 *
+	 * @param constructOption the option, greedy or grasp:N[:L]
+	 * @param problem         the problem
+	 * @param seed            the seed of the randomised constructions
+	 * @return the problem with the constructed starts first
+	 */
+	private static Problem withConstructedStarts(String constructOption, Problem problem, long seed) {
+		StartConstructor startConstructor = new StartConstructor(problem.getObjectiveFunction(), problem.getConstraints(),
+				new CandidateList(problem.getObjectiveFunction(), problem.getConstraints(), problem.getNumberOfDecisionVariables()));
+		String[] parts = constructOption.split(":");
+		List<CandidateSolution> startSolutions = new ArrayList<>();
+		if (constructOption.equals("greedy"))
+			startSolutions.add(startConstructor.greedy());
+		else if (parts[0].equals("grasp") && (parts.length == 2 || parts.length == 3))
+			startSolutions.addAll(startConstructor.construct(Integer.parseInt(parts[1]), (parts.length == 3) ? Integer.parseInt(parts[2]) : DEFAULT_RESTRICTED_LIST_LENGTH, seed));
+		else
+			throw new IllegalArgumentException("unknown construct option " + constructOption + ", expected greedy or grasp:N[:L]");
+		startSolutions.addAll(problem.getStartSolutions());
+		return problem.withStartSolutions(startSolutions);
+	}
+
+	/**
+	 * creates the trace sink for a --trace option
+	 *
+	 * @param traceOption the value of the --trace option
+	 * @param traceFile   the file the trace is written to
+	 * @param append      true to add to the trace file of a search that is being resumed, a binary trace can't be added to
+	 * @param tracedRuns  the number of runs already in the trace file, which a streamed trace numbers its runs on from
+	 * @return a new trace sink
+	 * @throws IOException if the trace file can't be opened
+	 */
+	private static TraceSink createTraceSink(String traceOption, File traceFile, boolean append, int tracedRuns) throws IOException {
+		String[] parts = traceOption.split(":");
+		String mode = parts[0].toLowerCase(Locale.ROOT);
+		if (mode.equals("table") && parts.length == 1)
+			return new AsciiTableTraceSink(traceFile);
+		else if (mode.equals("off") && parts.length == 1)
+			return TraceSink.OFF;
+		else if (mode.equals("summary") && parts.length == 1)
+			return new SummaryTraceSink(new FileWriter(traceFile, append));
+		else if (mode.equals("full") && parts.length <= 2)
+			return new StreamingTraceSink(traceFile.toPath(), traceFormat(parts, 1), append, tracedRuns);
+		else if (mode.equals("sampled") && (parts.length == 2 || parts.length == 3))
+			return new SampledTraceSink(new StreamingTraceSink(traceFile.toPath(), traceFormat(parts, 2), append, tracedRuns), Integer.parseInt(parts[1]));
+		throw new IllegalArgumentException("unknown trace option " + traceOption + ", expected table, off, summary, sampled:N[:format] or full[:format]");
+	}
+
+	/**
+	 * reads the optional format from a --trace option, text if it isn't given
+	 *
+	 * @param parts    the --trace option split on colons
+	 * @param position the position the format would be at
+	 * @return the format to stream the trace in
+	 */
+	private static StreamingTraceSink.Format traceFormat(String[] parts, int position) {
+		return (parts.length > position) ? StreamingTraceSink.Format.valueOf(parts[position].toUpperCase(Locale.ROOT)) : StreamingTraceSink.Format.TEXT;
+	}
+
+	/**
+	 * A simple function to convert an input integer arraylist into a boolean arraylist, thus preserving memory
+	 *
+	 * @param intList the input integer arraylist
+	 * @return a Boolean ArrayList
+	 */
+	private static ArrayList<Boolean> intListToBoolean(ArrayList<Integer> intList) {
+		return intList.stream().map((number) -> number != 0).collect(Collectors.toCollection(ArrayList::new));
 	}
 }
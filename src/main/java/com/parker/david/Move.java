@@ -0,0 +1,74 @@
+package com.parker.david;
+
+/**
+ * a lightweight description of a neighbour: the set of decision variables that are flipped to reach it from the current solution.
+ * a move is much cheaper to create than the neighbour itself, and can be scored with an IncrementalEvaluator
+ * without ever building the neighbour. The neighbour is only materialised with applyTo when it is actually needed.
+ * moves are immutable, so a generator can hand out the same move object every iteration
+ */
+public class Move {
+
+	/**
+	 * the indices of the decision variables that this move flips, each index appears at most once
+	 */
+	private final int[] flippedBits;
+
+	/**
+	 * the constructor, takes the indices of the bits to flip
+	 *
+	 * @param flippedBits the distinct indices of the decision variables that this move flips
+	 */
+	Move(int... flippedBits) {
+		this.flippedBits = flippedBits;
+	}
+
+	/**
+	 * the number of decision variables flipped by this move, 1 for a single bit compliment
+	 *
+	 * @return the number of flipped decision variables
+	 */
+	public int numberOfFlips() {
+		return flippedBits.length;
+	}
+
+	/**
+	 * get the index of the ith flipped decision variable
+	 *
+	 * @param i which of the flips to get, between 0 and numberOfFlips() - 1
+	 * @return the index of the decision variable
+	 */
+	public int getIthFlippedBit(int i) {
+		return flippedBits[i];
+	}
+
+	/**
+	 * materialises the neighbour that this move leads to. The given solution is not changed
+	 *
+	 * @param solution the solution to apply the move to
+	 * @return a new solution which is a copy of the given solution with this move's bits flipped
+	 */
+	public CandidateSolution applyTo(CandidateSolution solution) {
+		CandidateSolution neighbour = solution.copy();
+		for (int flippedBit : flippedBits) {
+			neighbour.flipIthDecisionVariable(flippedBit);
+		}
+		return neighbour;
+	}
+
+	/**
+	 * formats the move as the 1-indexed bits that it flips, the same numbering used in the output table.
+	 * example output: 3 or 3,7
+	 *
+	 * @return a string listing the flipped bits
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < flippedBits.length; i++) {
+			if (i > 0)
+				builder.append(',');
+			builder.append(flippedBits[i] + 1);
+		}
+		return builder.toString();
+	}
+}
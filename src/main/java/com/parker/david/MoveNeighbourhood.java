@@ -0,0 +1,119 @@
+package com.parker.david;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * the neighbourhood of a solution described as a list of moves instead of a list of neighbours.
+ * moves are indexed so that they can be visited in any order, sampled at random, or split between threads,
+ * and a neighbour is only built if it is asked for with materialise or Move.applyTo
+ */
+public interface MoveNeighbourhood extends Iterable<Move> {
+	/**
+	 * the number of moves in the neighbourhood
+	 *
+	 * @return the number of moves
+	 */
+	int size();
+
+	/**
+	 * get the ith move of the neighbourhood, the order is fixed for the life of the neighbourhood
+	 *
+	 * @param i the index of the move, between 0 and size() - 1
+	 * @return the ith move
+	 */
+	Move getIthMove(int i);
+
+	/**
+	 * iterates through the moves in index order
+	 *
+	 * @return an iterator over the moves
+	 */
+	@Override
+	default Iterator<Move> iterator() {
+		return new Iterator<Move>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < size();
+			}
+
+			@Override
+			public Move next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return getIthMove(next++);
+			}
+		};
+	}
+
+	/**
+	 * streams the moves in index order
+	 *
+	 * @return a stream of the moves
+	 */
+	default Stream<Move> stream() {
+		return IntStream.range(0, size()).mapToObj(this::getIthMove);
+	}
+
+	/**
+	 * builds every neighbour in the neighbourhood, in index order. This is what the list based
+	 * NeighbourhoodGenerator and NextSolutionSelector interfaces work with
+	 *
+	 * @param currentSolution the solution that the moves are applied to
+	 * @return an arraylist with one neighbour per move
+	 */
+	default ArrayList<CandidateSolution> materialise(CandidateSolution currentSolution) {
+		ArrayList<CandidateSolution> neighbourhood = new ArrayList<>(size());
+		for (int i = 0; i < size(); i++) {
+			neighbourhood.add(getIthMove(i).applyTo(currentSolution));
+		}
+		return neighbourhood;
+	}
+
+	/**
+	 * describes an already built list of neighbours as moves, the move for each neighbour flips exactly the bits that it
+	 * differs from the current solution in. This lets move based selectors work with the list based interfaces
+	 *
+	 * @param currentSolution the solution that the neighbours are around
+	 * @param neighbours      the neighbours, each with the same number of decision variables as the current solution
+	 * @return the moves to each neighbour, in the same order as the list
+	 */
+	static MoveNeighbourhood ofNeighbours(CandidateSolution currentSolution, List<CandidateSolution> neighbours) {
+		Move[] moves = new Move[neighbours.size()];
+		long[] currentWords = currentSolution.getWords();
+		for (int n = 0; n < moves.length; n++) {
+			long[] neighbourWords = neighbours.get(n).getWords();
+			int[] flippedBits = new int[0];
+			int flips = 0;
+			for (int w = 0; w < currentWords.length; w++) {
+				long difference = currentWords[w] ^ neighbourWords[w];
+				while (difference != 0) {
+					if (flips == flippedBits.length)
+						flippedBits = Arrays.copyOf(flippedBits, Math.max(4, flips * 2));
+					flippedBits[flips++] = w * CandidateSolution.BITS_PER_WORD + Long.numberOfTrailingZeros(difference);
+					difference &= difference - 1;
+				}
+			}
+			moves[n] = new Move(Arrays.copyOf(flippedBits, flips));
+		}
+
+		return new MoveNeighbourhood() {
+			@Override
+			public int size() {
+				return moves.length;
+			}
+
+			@Override
+			public Move getIthMove(int i) {
+				return moves[i];
+			}
+		};
+	}
+}
@@ -0,0 +1,35 @@
+package com.parker.david;
+
+import java.util.ArrayList;
+
+/**
+ * adapts a move based neighbourhood generator to the list based NeighbourhoodGenerator interface
+ * by materialising every move into a neighbour, so existing code that expects a list of neighbours still works
+ */
+public class MoveNeighbourhoodAdapter implements NeighbourhoodGenerator {
+
+	/**
+	 * the move based generator that the neighbourhood comes from
+	 */
+	private final MoveNeighbourhoodGenerator moveNeighbourhoodGenerator;
+
+	/**
+	 * the constructor, takes the move based generator to wrap
+	 *
+	 * @param moveNeighbourhoodGenerator the generator to adapt
+	 */
+	MoveNeighbourhoodAdapter(MoveNeighbourhoodGenerator moveNeighbourhoodGenerator) {
+		this.moveNeighbourhoodGenerator = moveNeighbourhoodGenerator;
+	}
+
+	/**
+	 * generates the moves and then builds the neighbour for every move, in move order
+	 *
+	 * @param currentSolution the solution around which we are searching for the neighbourhood
+	 * @return returns an arraylist of candidate solutions in the neighbourhood of the current solution
+	 */
+	@Override
+	public ArrayList<CandidateSolution> generateSolutionNeighbourhood(CandidateSolution currentSolution) {
+		return moveNeighbourhoodGenerator.generateMoveNeighbourhood(currentSolution).materialise(currentSolution);
+	}
+}
@@ -0,0 +1,15 @@
+package com.parker.david;
+
+/**
+ * an interface for a neighbourhood generation function that describes the neighbourhood as moves
+ * instead of building every neighbour. Use MoveNeighbourhoodAdapter where a list based NeighbourhoodGenerator is needed
+ */
+public interface MoveNeighbourhoodGenerator {
+	/**
+	 * this generates the moves around the current solution, implementation will be specific to the generation method
+	 *
+	 * @param currentSolution the solution around which we are searching for the neighbourhood
+	 * @return the moves that lead from the current solution to each of its neighbours
+	 */
+	MoveNeighbourhood generateMoveNeighbourhood(CandidateSolution currentSolution);
+}
@@ -0,0 +1,97 @@
+package com.parker.david;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * this is our data class that stores the outcome of a multi-start search: the result of every start,
+ * and the best result over all of them
+ */
+public class MultiStartResult {
+
+	/**
+	 * the result of each start, in the same order as the start solutions
+	 */
+	private final List<SearchResult> perStartResults;
+
+	/**
+	 * the best of the per start results
+	 */
+	private final SearchResult bestResult;
+
+	/**
+	 * the wall clock time the whole search took, in nanoseconds
+	 */
+	private final long elapsedNanos;
+
+	/**
+	 * the constructor, picks out the best result. On a tie the earliest start wins, so the result doesn't depend on thread timing
+	 *
+	 * @param perStartResults the result of each start, in start order
+	 * @param elapsedNanos    the wall clock time of the whole search in nanoseconds
+	 */
+	MultiStartResult(List<SearchResult> perStartResults, long elapsedNanos) {
+		this.perStartResults = Collections.unmodifiableList(perStartResults);
+		this.elapsedNanos = elapsedNanos;
+
+		SearchResult best = null;
+		for (SearchResult result : perStartResults) {
+			if (result.isBetterThan(best))
+				best = result;
+		}
+		this.bestResult = best;
+	}
+
+	/**
+	 * accessor, returns the best result over all starts, or null if there were no starts
+	 *
+	 * @return the best result over all starts, or null if there were no starts
+	 */
+	public SearchResult getBestResult() {
+		return bestResult;
+	}
+
+	/**
+	 * accessor, returns the result of each start, in the same order as the start solutions
+	 *
+	 * @return the result of each start, in the same order as the start solutions
+	 */
+	public List<SearchResult> getPerStartResults() {
+		return perStartResults;
+	}
+
+	/**
+	 * accessor, returns the wall clock time the whole search took, in nanoseconds
+	 *
+	 * @return the wall clock time the whole search took, in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * adds up the iterations of every start
+	 *
+	 * @return the number of iterations summed over every start
+	 */
+	public long getTotalIterations() {
+		long total = 0;
+		for (SearchResult result : perStartResults) {
+			total += result.getIterations();
+		}
+		return total;
+	}
+
+	/**
+	 * adds up the time spent in each descent, compare this to getElapsedNanos to see the speed up from running the starts in parallel
+	 *
+	 * @return the time spent in descents summed over every start in nanoseconds
+	 */
+	public long getTotalDescentNanos() {
+		long total = 0;
+		for (SearchResult result : perStartResults) {
+			total += result.getElapsedNanos();
+		}
+		return total;
+	}
+}
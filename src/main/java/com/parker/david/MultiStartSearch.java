@@ -0,0 +1,247 @@
+package com.parker.david;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * runs an independent descent from each of a list of start solutions, in parallel on a fork join pool.
+ * the objective function and constraints are only read during a search so they are shared by every descent,
+ * while each descent gets its own selector and neighbourhood generator from the factories.
+ * the starts are split recursively, so idle threads steal the remaining starts of busy ones and long descents don't hold up the rest.
+ * every descent runs under the same termination criteria, and once any of them reaches the fitness target the starts
+ * that haven't begun yet are skipped
+ */
+public class MultiStartSearch {
+
+	/**
+	 * the objective function which we aim to optimise for
+	 */
+	private final ObjectiveFunction objectiveFunction;
+
+	/**
+	 * the set of constraints which define the valid solution space
+	 */
+	private final ConstraintSet constraints;
+
+	/**
+	 * creates a new selector for each descent
+	 */
+	private final NextSolutionSelectorFactory selectorFactory;
+
+	/**
+	 * creates a new neighbourhood generator for each descent
+	 */
+	private final Supplier<MoveNeighbourhoodGenerator> neighbourhoodGeneratorFactory;
+
+	/**
+	 * the budgets and fitness target of every descent
+	 */
+	private final TerminationCriteria terminationCriteria;
+
+	/**
+	 * the pool the descents run on
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * the constructor, runs on the common fork join pool which has one thread per core
+	 *
+	 * @param objectiveFunction             the objective function which we aim to optimise for
+	 * @param constraints                   the set of constraints which define the valid solution space
+	 * @param selectorFactory               creates a new selector for each descent
+	 * @param neighbourhoodGeneratorFactory creates a new neighbourhood generator for each descent
+	 */
+	MultiStartSearch(ObjectiveFunction objectiveFunction, ConstraintSet constraints, NextSolutionSelectorFactory selectorFactory, Supplier<MoveNeighbourhoodGenerator> neighbourhoodGeneratorFactory) {
+		this(objectiveFunction, constraints, selectorFactory, neighbourhoodGeneratorFactory, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * the constructor, runs on the given pool
+	 *
+	 * @param objectiveFunction             the objective function which we aim to optimise for
+	 * @param constraints                   the set of constraints which define the valid solution space
+	 * @param selectorFactory               creates a new selector for each descent
+	 * @param neighbourhoodGeneratorFactory creates a new neighbourhood generator for each descent
+	 * @param pool                          the pool the descents run on
+	 */
+	MultiStartSearch(ObjectiveFunction objectiveFunction, ConstraintSet constraints, NextSolutionSelectorFactory selectorFactory, Supplier<MoveNeighbourhoodGenerator> neighbourhoodGeneratorFactory, ForkJoinPool pool) {
+		this(objectiveFunction, constraints, selectorFactory, neighbourhoodGeneratorFactory, TerminationCriteria.NONE, pool);
+	}
+
+	/**
+	 * the constructor, runs every descent under the given criteria on the given pool
+	 *
+	 * @param objectiveFunction             the objective function which we aim to optimise for
+	 * @param constraints                   the set of constraints which define the valid solution space
+	 * @param selectorFactory               creates a new selector for each descent
+	 * @param neighbourhoodGeneratorFactory creates a new neighbourhood generator for each descent
+	 * @param terminationCriteria           the budgets and fitness target of every descent
+	 * @param pool                          the pool the descents run on
+	 */
+	MultiStartSearch(ObjectiveFunction objectiveFunction, ConstraintSet constraints, NextSolutionSelectorFactory selectorFactory, Supplier<MoveNeighbourhoodGenerator> neighbourhoodGeneratorFactory,
+					 TerminationCriteria terminationCriteria, ForkJoinPool pool) {
+		this.objectiveFunction = objectiveFunction;
+		this.constraints = constraints;
+		this.selectorFactory = selectorFactory;
+		this.neighbourhoodGeneratorFactory = neighbourhoodGeneratorFactory;
+		this.terminationCriteria = terminationCriteria;
+		this.pool = pool;
+	}
+
+	/**
+	 * runs a descent from every start solution and waits for them all to finish
+	 *
+	 * @param startSolutions the solutions to start from, these are not changed
+	 * @return the result of every start that ran and the best result over all of them
+	 */
+	public MultiStartResult run(List<CandidateSolution> startSolutions) {
+		try {
+			return run(startSolutions, TraceSink.OFF, null);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * runs a descent from every start solution, tracing and recording the metrics of each, and waits for them all to finish
+	 *
+	 * @param startSolutions the solutions to start from, these are not changed
+	 * @param traceSink      the sink that every descent records into, this is called from several threads at once
+	 * @param searchMetrics  where the metrics of every descent are recorded, or null to not record any
+	 * @return the result of every start that ran, in start order, and the best result over all of them
+	 * @throws IOException if the trace sink fails
+	 */
+	public MultiStartResult run(List<CandidateSolution> startSolutions, TraceSink traceSink, SearchMetrics searchMetrics) throws IOException {
+		long startTime = System.nanoTime();
+		SearchResult[] results = new SearchResult[startSolutions.size()];
+		try {
+			pool.invoke(new StartRangeTask(startSolutions, results, new AtomicReference<>(), traceSink, searchMetrics, 0, startSolutions.size()));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		//starts that were skipped have no result
+		List<SearchResult> perStartResults = new ArrayList<>();
+		for (SearchResult result : results) {
+			if (result != null)
+				perStartResults.add(result);
+		}
+		return new MultiStartResult(perStartResults, System.nanoTime() - startTime);
+	}
+
+	/**
+	 * runs the descent for a single start, unless a descent has already reached the fitness target
+	 *
+	 * @param startSolution the solution to start from
+	 * @param startIndex    the index of the start, passed to the selector factory
+	 * @param incumbent     the best result so far, shared by every descent
+	 * @param traceSink     the sink that the descent records into
+	 * @param searchMetrics where the metrics of the descent are recorded, or null to not record any
+	 * @return the result of the descent, or null if it was skipped
+	 */
+	private SearchResult runStart(CandidateSolution startSolution, int startIndex, AtomicReference<SearchResult> incumbent, TraceSink traceSink, SearchMetrics searchMetrics) {
+		SearchResult best = incumbent.get();
+		if (best != null && terminationCriteria.isTargetReached(best.getBestFitness(), best.isBestFeasible()))
+			return null;
+		NextSolutionSelector solutionSelector = selectorFactory.create(objectiveFunction, constraints, startIndex);
+		SearchResult result;
+		try {
+			result = new LocalSearch(objectiveFunction, constraints, solutionSelector, neighbourhoodGeneratorFactory.get(), terminationCriteria)
+					.run(startSolution, traceSink, searchMetrics);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		incumbent.accumulateAndGet(result, (current, candidate) -> candidate.isBetterThan(current) ? candidate : current);
+		return result;
+	}
+
+	/**
+	 * a task for a range of starts. Ranges of more than one start are halved, and each half becomes a task
+	 * that any idle thread in the pool can steal
+	 */
+	private class StartRangeTask extends RecursiveAction {
+
+		/**
+		 * fork join tasks are serializable, this one is never serialised but declares the version so the compiler doesn't warn
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * every start solution
+		 */
+		private final List<CandidateSolution> startSolutions;
+
+		/**
+		 * the shared array that each task writes its results into, at the index of the start
+		 */
+		private final SearchResult[] results;
+
+		/**
+		 * the best result so far, shared by every task
+		 */
+		private final AtomicReference<SearchResult> incumbent;
+
+		/**
+		 * the sink that every descent records into
+		 */
+		private final TraceSink traceSink;
+
+		/**
+		 * where the metrics of every descent are recorded, or null
+		 */
+		private final SearchMetrics searchMetrics;
+
+		/**
+		 * the first start in this task's range
+		 */
+		private final int from;
+
+		/**
+		 * one past the last start in this task's range
+		 */
+		private final int to;
+
+		/**
+		 * the constructor, takes the range of starts
+		 *
+		 * @param startSolutions every start solution
+		 * @param results        the array to write the results into
+		 * @param incumbent      the best result so far, shared by every task
+		 * @param traceSink      the sink that every descent records into
+		 * @param searchMetrics  where the metrics of every descent are recorded, or null
+		 * @param from           the first start in the range
+		 * @param to             one past the last start in the range
+		 */
+		StartRangeTask(List<CandidateSolution> startSolutions, SearchResult[] results, AtomicReference<SearchResult> incumbent, TraceSink traceSink,
+					   SearchMetrics searchMetrics, int from, int to) {
+			this.startSolutions = startSolutions;
+			this.results = results;
+			this.incumbent = incumbent;
+			this.traceSink = traceSink;
+			this.searchMetrics = searchMetrics;
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * runs a single start directly, or splits the range in two
+		 */
+		@Override
+		protected void compute() {
+			if (to - from <= 1) {
+				if (to > from)
+					results[from] = runStart(startSolutions.get(from), from, incumbent, traceSink, searchMetrics);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new StartRangeTask(startSolutions, results, incumbent, traceSink, searchMetrics, from, middle),
+					new StartRangeTask(startSolutions, results, incumbent, traceSink, searchMetrics, middle, to));
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package com.parker.david;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 
 /**
@@ -17,10 +20,79 @@ public interface NextSolutionSelector {
 	 */
 	CandidateSolution getNewSolution(CandidateSolution currentSolution, ArrayList<CandidateSolution> neighbourhood);
 
+	/**
+	 * the move based form of getNewSolution, selects a move from the neighbourhood of the evaluator's current solution.
+	 * Should return null if no move is selected. The move is not applied, the caller applies it with evaluator.applyMove.
+	 * by default this materialises the neighbourhood and defers to getNewSolution, so every selector works with
+	 * move based neighbourhoods. Selectors should override this to score the moves with the evaluator instead
+	 *
+	 * @param evaluator     the evaluator holding the current solution around which the neighbourhood is generated
+	 * @param neighbourhood the moves leading to each neighbour
+	 * @return the selected move, or null if search is over
+	 */
+	default Move selectMove(IncrementalEvaluator evaluator, MoveNeighbourhood neighbourhood) {
+		ArrayList<CandidateSolution> neighbours = neighbourhood.materialise(evaluator.getCurrentSolution());
+		CandidateSolution selectedNeighbour = getNewSolution(evaluator.getCurrentSolution(), neighbours);
+		if (selectedNeighbour == null)
+			return null;
+
+		//the neighbours are in move order, so the position of the selected neighbour is the index of its move
+		for (int i = 0; i < neighbours.size(); i++) {
+			if (neighbours.get(i) == selectedNeighbour)
+				return neighbourhood.getIthMove(i);
+		}
+		throw new IllegalStateException("selected solution is not part of the neighbourhood");
+	}
+
 	/**
 	 * a function that indicates whether the search has terminated or if there are more iterations still left using this method
 	 *
 	 * @return a boolean function that returns true if we terminate our search, and false if we have yet to terminate the search
 	 */
 	boolean isSearchComplete();
+
+	/**
+	 * writes the memory the selector keeps between steps, so that a descent can be checkpointed and resumed.
+	 * selectors that only look at the current neighbourhood have nothing to write, which is the default.
+	 * this is only called between steps and while the search is not complete
+	 *
+	 * @param output where to write the state
+	 * @throws IOException if it can't be written
+	 */
+	default void writeState(DataOutput output) throws IOException {
+	}
+
+	/**
+	 * reads back the memory written by writeState, into a new selector with the same settings as the one that wrote it,
+	 * so that from then on it makes the same choices the one that wrote it would have made
+	 *
+	 * @param input where to read the state from
+	 * @throws IOException if it can't be read
+	 */
+	default void readState(DataInput input) throws IOException {
+	}
+
+	/**
+	 * the opposite of the default selectMove, for selectors that work on moves: describes a list of neighbours as moves,
+	 * lets the selector pick one, and returns the neighbour that it picked. Selectors whose selectMove is their real
+	 * implementation can use this as their getNewSolution
+	 *
+	 * @param selector          the selector to pick the move
+	 * @param objectiveFunction the objective function, used to evaluate the current solution
+	 * @param constraints       the set of constraints, used to evaluate the current solution
+	 * @param currentSolution   the current solution around which the neighbourhood is generated
+	 * @param neighbourhood     the neighbourhood of solutions
+	 * @return the selected neighbour, or null if no move was selected
+	 */
+	static CandidateSolution selectNeighbourByMove(NextSolutionSelector selector, ObjectiveFunction objectiveFunction, ConstraintSet constraints,
+												   CandidateSolution currentSolution, ArrayList<CandidateSolution> neighbourhood) {
+		IncrementalEvaluator evaluator = new IncrementalEvaluator(objectiveFunction, constraints, currentSolution);
+		MoveNeighbourhood moves = MoveNeighbourhood.ofNeighbours(currentSolution, neighbourhood);
+		Move selectedMove = selector.selectMove(evaluator, moves);
+		for (int i = 0; i < moves.size() && selectedMove != null; i++) {
+			if (moves.getIthMove(i) == selectedMove)
+				return neighbourhood.get(i);
+		}
+		return null;
+	}
 }
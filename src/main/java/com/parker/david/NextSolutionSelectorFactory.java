@@ -0,0 +1,18 @@
+package com.parker.david;
+
+/**
+ * creates a new selector for each descent. Selectors keep state between steps (eg: the search termination flag),
+ * so descents that run at the same time can't share one
+ */
+@FunctionalInterface
+public interface NextSolutionSelectorFactory {
+	/**
+	 * creates a selector for one descent
+	 *
+	 * @param objectiveFunction the objective function, shared by every descent
+	 * @param constraints       the set of constraints, shared by every descent
+	 * @param startIndex        the index of the start the selector is for, eg: to derive a seed that doesn't depend on thread scheduling
+	 * @return a new selector
+	 */
+	NextSolutionSelector create(ObjectiveFunction objectiveFunction, ConstraintSet constraints, int startIndex);
+}
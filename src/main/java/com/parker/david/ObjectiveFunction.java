@@ -1,15 +1,16 @@
 package com.parker.david;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * this is our objective function, it accepts a candidate solution and returns the fitness for that candidate solution
  */
 public class ObjectiveFunction {
 	/**
-	 * this is the internal storage for weights for each decision variable
+	 * this is the internal storage for weights for each decision variable, as a primitive array so evaluation never unboxes
 	 */
-	private final ArrayList<Integer> objectiveFunctionEncoded;
+	private final int[] objectiveFunctionEncoded;
 
 	/**
 	 * we initialise the objective function by defining each decision variable weight
@@ -18,24 +19,76 @@ public class ObjectiveFunction {
 	 * @param objectiveFunctionWeights an arraylist of integers with decision variable weights
 	 */
 	ObjectiveFunction(ArrayList<Integer> objectiveFunctionWeights) {
+		this(toIntArray(objectiveFunctionWeights));
+	}
+
+	/**
+	 * we initialise the objective function from an array of decision variable weights, the array is not copied
+	 *
+	 * @param objectiveFunctionWeights an array of integers with decision variable weights
+	 */
+	ObjectiveFunction(int[] objectiveFunctionWeights) {
 		objectiveFunctionEncoded = objectiveFunctionWeights;
 	}
 
 	/**
 	 * this is the function that is called to calculate the fitness of a particular solution.
+	 * for each decision variable that is not false/0, we add the value associated with that decision variable,
+	 * working through the packed solution a word at a time
 	 *
 	 * @param solution this is the candidate solution that we seek to find fitness for
 	 * @return the value of the fitness function for this solution
 	 */
 	public int evaluateFitness(CandidateSolution solution) {
-		//set an initial value of fitness to the minimum (0)
-		int totalFitnessValue = 0;
+		return (int) WeightKernels.maskedSum(objectiveFunctionEncoded, solution.getWords());
+	}
 
-		//for each decision variable that is not false/0, we add the value associated with that decision variable to totalFitnessValue
-		for (int i = 0; i < objectiveFunctionEncoded.size(); i++) {
-			if (solution.getIthDecisionVariable(i))
-				totalFitnessValue += objectiveFunctionEncoded.get(i);
+	/**
+	 * the weight of a single decision variable, used to work out how the fitness changes when that variable is flipped.
+	 * variables past the end of the weight list contribute nothing to the fitness, so their weight is 0
+	 *
+	 * @param i the index of the decision variable
+	 * @return the weight of the ith decision variable
+	 */
+	int getIthWeight(int i) {
+		return (i < objectiveFunctionEncoded.length) ? objectiveFunctionEncoded[i] : 0;
+	}
+
+	/**
+	 * checks if the fitness is the weighted sum of the set variables, so that flipping variable i changes it by exactly
+	 * the ith weight. A subclass that overrides evaluateFitness isn't taken to be one, so the incremental evaluator scores
+	 * its neighbours with evaluateFitness
+	 *
+	 * @return true if evaluateFitness is this class's weighted sum
+	 */
+	boolean isWeightedSum() {
+		try {
+			return getClass().getMethod("evaluateFitness", CandidateSolution.class).getDeclaringClass() == ObjectiveFunction.class;
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * the number of decision variables that have a weight
+	 *
+	 * @return the number of weights
+	 */
+	int numberOfWeights() {
+		return objectiveFunctionEncoded.length;
+	}
+
+	/**
+	 * unboxes a list of weights into a primitive array
+	 *
+	 * @param weights the weights to unbox
+	 * @return an array holding the same weights
+	 */
+	static int[] toIntArray(List<Integer> weights) {
+		int[] array = new int[weights.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = weights.get(i);
 		}
-		return totalFitnessValue;
+		return array;
 	}
 }
@@ -0,0 +1,336 @@
+package com.parker.david;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An implementation of a solution selection interface.
+ * selects the same neighbour as BestImprovementSelection, but splits the scan of the neighbourhood across the threads of a
+ * fork join pool and then reduces the halves to the best feasible neighbour. This speeds up a single descent on a large problem,
+ * where a multi-start search would not help.
+ * ties are broken towards the lowest index, which is the neighbour the sequential scan would have kept, so the
+ * result is the same as BestImprovementSelection no matter how the work was split.
+ * only a neighbour that would replace the best of its range, and is no worse than the best any range has found, has its
+ * feasibility checked, so a split scan checks little more than the sequential one.
+ * neighbourhoods smaller than the threshold are scanned on the calling thread, as the fork join overhead would outweigh the gain.
+ * when the run's metrics are recorded, the bytes a pool thread allocates while scanning a range are added to them
+ */
+public class ParallelBestImprovementSelection implements NextSolutionSelector {
+
+	/**
+	 * the default number of neighbours below which a scan is not split any further
+	 */
+	static final int DEFAULT_SEQUENTIAL_THRESHOLD = 1024;
+
+	/**
+	 * the score given to neighbours that can't be selected, lower than any score a selectable neighbour can have
+	 */
+	private static final int NOT_SELECTABLE = Integer.MIN_VALUE;
+
+	/**
+	 * this flag is set to true once a scan finds no improving neighbour
+	 */
+	private boolean searchTerminationFlag = false;
+
+	/**
+	 * this is the objective function, used for evaluating fitness of the candidate solution
+	 */
+	private final ObjectiveFunction objectiveFunction;
+
+	/**
+	 * this is the set of constraints which we use to determine if a solution is feasible
+	 */
+	private final ConstraintSet constraints;
+
+	/**
+	 * neighbourhoods of this size or smaller are scanned sequentially, as are the ranges that a larger scan is split into
+	 */
+	private final int sequentialThreshold;
+
+	/**
+	 * the pool the scan runs on
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * the constructor, runs on the common fork join pool with the default threshold
+	 *
+	 * @param objectiveFunction the objective function
+	 * @param constraints       the set of constraints
+	 */
+	ParallelBestImprovementSelection(ObjectiveFunction objectiveFunction, ConstraintSet constraints) {
+		this(objectiveFunction, constraints, DEFAULT_SEQUENTIAL_THRESHOLD, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * the constructor, takes the threshold and pool to use
+	 *
+	 * @param objectiveFunction   the objective function
+	 * @param constraints         the set of constraints
+	 * @param sequentialThreshold the number of neighbours below which a scan is not split
+	 * @param pool                the pool the scan runs on
+	 */
+	ParallelBestImprovementSelection(ObjectiveFunction objectiveFunction, ConstraintSet constraints, int sequentialThreshold, ForkJoinPool pool) {
+		if (sequentialThreshold < 1)
+			throw new IllegalArgumentException("sequential threshold must be at least 1, was " + sequentialThreshold);
+		this.objectiveFunction = objectiveFunction;
+		this.constraints = constraints;
+		this.sequentialThreshold = sequentialThreshold;
+		this.pool = pool;
+	}
+
+	/**
+	 * our function to get a new solution from the neighbourhood given the current solution, evaluating each neighbour in full.
+	 * returns null if there is no solution better than the current best solution
+	 * also sets searchTerminationFlag to true if we have found the best solution
+	 *
+	 * @param currentSolution the current selected solution
+	 * @param neighbourhood   the neighbourhood of solutions around the current solution as found by some neighbourhood function
+	 * @return the new best solution from the neighbourhood or null
+	 */
+	@Override
+	public CandidateSolution getNewSolution(CandidateSolution currentSolution, ArrayList<CandidateSolution> neighbourhood) {
+		int scoreToBeat = objectiveFunction.evaluateFitness(currentSolution);
+		int bestIndex = findBest(neighbourhood.size(), (i, rangeScoreToBeat) -> {
+			CandidateSolution neighbour = neighbourhood.get(i);
+			int neighbourScore = objectiveFunction.evaluateFitness(neighbour);
+			return (neighbourScore > rangeScoreToBeat && constraints.isFeasible(neighbour)) ? neighbourScore : NOT_SELECTABLE;
+		}, scoreToBeat, null);
+		return (bestIndex < 0) ? null : neighbourhood.get(bestIndex);
+	}
+
+	/**
+	 * the move based form of getNewSolution, scoring each move with the evaluator's cached sums.
+	 * the evaluator is only read during the scan, so the threads can share it. As in BestImprovementSelection only a move
+	 * that beats the best found so far in its range has its feasibility checked
+	 *
+	 * @param evaluator     the evaluator holding the current solution
+	 * @param neighbourhood the moves leading to each neighbour
+	 * @return the move to the best neighbour, or null
+	 */
+	@Override
+	public Move selectMove(IncrementalEvaluator evaluator, MoveNeighbourhood neighbourhood) {
+		int scoreToBeat = evaluator.getCurrentFitness();
+		int bestIndex = findBest(neighbourhood.size(), (i, rangeScoreToBeat) -> {
+			Move move = neighbourhood.getIthMove(i);
+			//the fitness check is cheap, so only check feasibility of moves that would replace the best of the range
+			int neighbourScore = evaluator.fitnessAfter(move);
+			return (neighbourScore > rangeScoreToBeat && evaluator.isFeasibleAfter(move)) ? neighbourScore : NOT_SELECTABLE;
+		}, scoreToBeat, evaluator.getMetrics());
+		return (bestIndex < 0) ? null : neighbourhood.getIthMove(bestIndex);
+	}
+
+	/**
+	 * scans the neighbourhood, in parallel if it is big enough, and sets searchTerminationFlag if nothing beats the current solution
+	 *
+	 * @param size        the size of the neighbourhood
+	 * @param scorer      scores a neighbour by index
+	 * @param scoreToBeat the score of the current solution
+	 * @param metrics     where the allocation of the pool threads is recorded, or null to not record it
+	 * @return the index of the best neighbour, or -1 if none is better than the current solution
+	 */
+	private int findBest(int size, NeighbourScorer scorer, int scoreToBeat, RunMetrics metrics) {
+		AtomicInteger bestOfAllRanges = new AtomicInteger(scoreToBeat);
+		BestNeighbour best = (size <= sequentialThreshold)
+				? scanRange(scorer, 0, size, scoreToBeat, bestOfAllRanges)
+				: pool.invoke(new ScanTask(scorer, 0, size, scoreToBeat, bestOfAllRanges, metrics, Thread.currentThread()));
+
+		if (best == null) {
+			//we can't improve the solution, terminate the search
+			searchTerminationFlag = true;
+			return -1;
+		}
+		return best.index;
+	}
+
+	/**
+	 * the sequential scan of a range of the neighbourhood. Only a strictly better score replaces the best so far,
+	 * so the lowest index wins a tie, just like BestImprovementSelection. The scorer is given the best score so far,
+	 * so it can skip the feasibility check of a neighbour that wouldn't replace it. A neighbour that scores below the best
+	 * of another range is skipped too, but one that ties it isn't, as it may be at a lower index
+	 *
+	 * @param scorer          scores a neighbour by index
+	 * @param from            the first index in the range
+	 * @param to              one past the last index in the range
+	 * @param scoreToBeat     the score of the current solution
+	 * @param bestOfAllRanges the best score found by any range of this scan so far
+	 * @return the best neighbour in the range, or null if none of them are selectable and better than the current solution
+	 */
+	private static BestNeighbour scanRange(NeighbourScorer scorer, int from, int to, int scoreToBeat, AtomicInteger bestOfAllRanges) {
+		int bestIndex = -1;
+		int bestScore = scoreToBeat;
+		for (int i = from; i < to; i++) {
+			int score = scorer.score(i, (int) Math.max(bestScore, bestOfAllRanges.get() - 1L));
+			if (score > bestScore) {
+				bestIndex = i;
+				bestScore = score;
+				bestOfAllRanges.accumulateAndGet(score, Math::max);
+			}
+		}
+		return (bestIndex < 0) ? null : new BestNeighbour(bestIndex, bestScore);
+	}
+
+	/**
+	 * scores a neighbour by its index in the neighbourhood
+	 */
+	@FunctionalInterface
+	private interface NeighbourScorer {
+		/**
+		 * scores a neighbour
+		 *
+		 * @param i           the index of the neighbour
+		 * @param scoreToBeat the score the neighbour has to beat to be worth a feasibility check
+		 * @return the fitness of the neighbour, or NOT_SELECTABLE if it is infeasible or no better than scoreToBeat
+		 */
+		int score(int i, int scoreToBeat);
+	}
+
+	/**
+	 * the best neighbour found in a range of the neighbourhood
+	 */
+	private static class BestNeighbour {
+
+		/**
+		 * the index of the neighbour
+		 */
+		final int index;
+
+		/**
+		 * the fitness of the neighbour
+		 */
+		final int score;
+
+		/**
+		 * the constructor
+		 *
+		 * @param index the index of the neighbour
+		 * @param score the fitness of the neighbour
+		 */
+		BestNeighbour(int index, int score) {
+			this.index = index;
+			this.score = score;
+		}
+
+		/**
+		 * picks the better of a neighbour from a lower range and one from a higher range.
+		 * the lower one is kept on a tie, as the sequential scan would have reached it first
+		 *
+		 * @param lower  the best of the lower range, may be null
+		 * @param higher the best of the higher range, may be null
+		 * @return the better of the two
+		 */
+		static BestNeighbour reduce(BestNeighbour lower, BestNeighbour higher) {
+			if (lower == null)
+				return higher;
+			if (higher == null)
+				return lower;
+			return (higher.score > lower.score) ? higher : lower;
+		}
+	}
+
+	/**
+	 * a task for a range of the neighbourhood. Ranges larger than the threshold are halved,
+	 * and each half becomes a task that any idle thread in the pool can steal
+	 */
+	private class ScanTask extends RecursiveTask<BestNeighbour> {
+
+		/**
+		 * RecursiveTask is serializable. A scan task only lives for one scan and is never written out
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * scores a neighbour by index
+		 */
+		private final NeighbourScorer scorer;
+
+		/**
+		 * the first index in this task's range
+		 */
+		private final int from;
+
+		/**
+		 * one past the last index in this task's range
+		 */
+		private final int to;
+
+		/**
+		 * the score of the current solution
+		 */
+		private final int scoreToBeat;
+
+		/**
+		 * the best score found by any range of the scan so far
+		 */
+		private final AtomicInteger bestOfAllRanges;
+
+		/**
+		 * where the allocation of the pool threads is recorded, or null to not record it
+		 */
+		private final RunMetrics metrics;
+
+		/**
+		 * the thread running the descent, whose own allocation the descent already measures
+		 */
+		private final Thread searchThread;
+
+		/**
+		 * the constructor, takes the range to scan
+		 *
+		 * @param scorer          scores a neighbour by index
+		 * @param from            the first index in the range
+		 * @param to              one past the last index in the range
+		 * @param scoreToBeat     the score of the current solution
+		 * @param bestOfAllRanges the best score found by any range of the scan so far
+		 * @param metrics         where the allocation of the pool threads is recorded, or null to not record it
+		 * @param searchThread    the thread running the descent
+		 */
+		ScanTask(NeighbourScorer scorer, int from, int to, int scoreToBeat, AtomicInteger bestOfAllRanges, RunMetrics metrics, Thread searchThread) {
+			this.scorer = scorer;
+			this.from = from;
+			this.to = to;
+			this.scoreToBeat = scoreToBeat;
+			this.bestOfAllRanges = bestOfAllRanges;
+			this.metrics = metrics;
+			this.searchThread = searchThread;
+		}
+
+		/**
+		 * scans the range directly, or splits it in two and reduces the halves
+		 *
+		 * @return the best neighbour in the range, or null
+		 */
+		@Override
+		protected BestNeighbour compute() {
+			if (to - from <= sequentialThreshold) {
+				if (metrics == null || Thread.currentThread() == searchThread)
+					return scanRange(scorer, from, to, scoreToBeat, bestOfAllRanges);
+
+				//a range scanned on a pool thread isn't in the descent thread's allocation, so measure it here
+				long allocatedAtStart = SearchMetrics.currentThreadAllocatedBytes();
+				BestNeighbour best = scanRange(scorer, from, to, scoreToBeat, bestOfAllRanges);
+				if (allocatedAtStart >= 0)
+					metrics.allocatedOnPoolThread(SearchMetrics.currentThreadAllocatedBytes() - allocatedAtStart);
+				return best;
+			}
+
+			int middle = (from + to) >>> 1;
+			ScanTask higher = new ScanTask(scorer, middle, to, scoreToBeat, bestOfAllRanges, metrics, searchThread);
+			higher.fork();
+			BestNeighbour lowerBest = new ScanTask(scorer, from, middle, scoreToBeat, bestOfAllRanges, metrics, searchThread).compute();
+			return BestNeighbour.reduce(lowerBest, higher.join());
+		}
+	}
+
+	/**
+	 * accessor for searchTerminationFlag, returns true when the search has completed
+	 *
+	 * @return a boolean, true if no more better solutions are found, false if there are still better solutions
+	 */
+	@Override
+	public boolean isSearchComplete() {
+		return searchTerminationFlag;
+	}
+}
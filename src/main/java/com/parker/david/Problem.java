@@ -0,0 +1,96 @@
+package com.parker.david;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * this is our data class that holds everything that defines a problem: the objective function, the constraints,
+ * and the start solutions to search from
+ */
+public class Problem {
+
+	/**
+	 * the number of decision variables, every start solution has this many
+	 */
+	private final int numberOfDecisionVariables;
+
+	/**
+	 * the objective function which we aim to optimise for
+	 */
+	private final ObjectiveFunction objectiveFunction;
+
+	/**
+	 * the set of constraints which define the valid solution space
+	 */
+	private final ConstraintSet constraints;
+
+	/**
+	 * the start solutions, unmodifiable
+	 */
+	private final List<CandidateSolution> startSolutions;
+
+	/**
+	 * the constructor
+	 *
+	 * @param numberOfDecisionVariables the number of decision variables
+	 * @param objectiveFunction         the objective function
+	 * @param constraints               the set of constraints
+	 * @param startSolutions            the start solutions, each with numberOfDecisionVariables decision variables
+	 */
+	Problem(int numberOfDecisionVariables, ObjectiveFunction objectiveFunction, ConstraintSet constraints, List<CandidateSolution> startSolutions) {
+		for (CandidateSolution startSolution : startSolutions) {
+			if (startSolution.numberOfDecisionVariables() != numberOfDecisionVariables)
+				throw new IllegalArgumentException("start solution " + startSolution + " does not have " + numberOfDecisionVariables + " decision variables");
+		}
+		this.numberOfDecisionVariables = numberOfDecisionVariables;
+		this.objectiveFunction = objectiveFunction;
+		this.constraints = constraints;
+		this.startSolutions = Collections.unmodifiableList(startSolutions);
+	}
+
+	/**
+	 * accessor, returns the number of decision variables
+	 *
+	 * @return the number of decision variables
+	 */
+	public int getNumberOfDecisionVariables() {
+		return numberOfDecisionVariables;
+	}
+
+	/**
+	 * accessor, returns the objective function
+	 *
+	 * @return the objective function
+	 */
+	public ObjectiveFunction getObjectiveFunction() {
+		return objectiveFunction;
+	}
+
+	/**
+	 * accessor, returns the set of constraints
+	 *
+	 * @return the set of constraints
+	 */
+	public ConstraintSet getConstraints() {
+		return constraints;
+	}
+
+	/**
+	 * accessor, returns the start solutions
+	 *
+	 * @return the start solutions, unmodifiable
+	 */
+	public List<CandidateSolution> getStartSolutions() {
+		return startSolutions;
+	}
+
+	/**
+	 * a copy of this problem with other start solutions, sharing the objective function and constraints
+	 *
+	 * @param startSolutions the start solutions, each with numberOfDecisionVariables decision variables
+	 * @return the problem with those starts
+	 */
+	public Problem withStartSolutions(List<CandidateSolution> startSolutions) {
+		return new Problem(numberOfDecisionVariables, objectiveFunction, constraints, startSolutions);
+	}
+}
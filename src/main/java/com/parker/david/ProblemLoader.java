@@ -0,0 +1,599 @@
+package com.parker.david;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * reads and writes problem files. A file is memory mapped and parsed straight from the mapped bytes, numbers are read
+ * digit by digit into primitive arrays, so loading never builds strings or boxed lists per value and the file is paged in
+ * by the operating system as it is read instead of being copied onto the heap first.
+ * two formats are understood, and load tells them apart by the first four bytes.
+ * the text format is a sequence of whitespace separated records, with # starting a comment that runs to the end of the line:
+ * <pre>
+ * variables n                               must come first
+ * objective w1 w2 ... wn                    exactly once
+ * constraint op rhs w1 w2 ... wn            a dense constraint, op is one of &lt; &gt; &lt;= &gt;=
+ * sparse op rhs k i1:w1 i2:w2 ... ik:wk     a sparse constraint with k non zero weights, indices count from 0 and ascend
+ * start 0110...                             a start solution, n characters of 0 or 1
+ * </pre>
+ * the binary format is big endian, as written by a DataOutputStream:
+ * <pre>
+ * header:     int magic ("LSPB"), int version, int n, int number of constraints, int number of starts
+ * objective:  int per variable
+ * constraint: byte operator (its position in Constraint.Operators), int rhs, byte 0 for dense or 1 for sparse,
+ *             then dense: int per variable, sparse: int k, k ints of indices, k ints of weights
+ * start:      the packed words of the solution as longs, bit i of the solution is bit i % 64 of word i / 64
+ * </pre>
+ * files must be smaller than 2GB, the most a single mapping can hold
+ */
+public final class ProblemLoader {
+
+	/**
+	 * the first int of a binary problem file, "LSPB" in ascii
+	 */
+	static final int BINARY_MAGIC = 0x4c535042;
+
+	/**
+	 * the version of the binary format
+	 */
+	static final int BINARY_VERSION = 1;
+
+	/**
+	 * the size of the write buffer in bytes
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * this class only has static methods
+	 */
+	private ProblemLoader() {
+	}
+
+	/**
+	 * loads a problem file in either format
+	 *
+	 * @param file the file to load
+	 * @return the problem
+	 * @throws IOException if the file can't be read or is not a valid problem
+	 */
+	public static Problem load(Path file) throws IOException {
+		return parse(map(file), file);
+	}
+
+	/**
+	 * parses a problem in either format that is already in memory, eg one sent to the solver service
+	 *
+	 * @param bytes  the problem, from its position to its limit
+	 * @param source where the problem came from, for error messages
+	 * @return the problem
+	 * @throws IOException if the bytes are not a valid problem
+	 */
+	static Problem parse(ByteBuffer bytes, Path source) throws IOException {
+		if (bytes.remaining() >= 4 && bytes.getInt(bytes.position()) == BINARY_MAGIC)
+			return parseBinary(bytes, source);
+		return new TextParser(bytes, source).parse();
+	}
+
+	/**
+	 * maps a whole file read only. The mapping stays valid after the channel is closed
+	 *
+	 * @param file the file to map
+	 * @return the mapped bytes
+	 * @throws IOException if the file can't be read or is too big to map
+	 */
+	private static ByteBuffer map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException(file + " is " + size + " bytes, problem files must be smaller than 2GB");
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+	}
+
+	/**
+	 * parses a binary problem file, reading each array in bulk through a view of the mapped bytes
+	 *
+	 * @param bytes the mapped file, starting at the magic number
+	 * @param file  the file, for error messages
+	 * @return the problem
+	 * @throws IOException if the file is not a valid binary problem
+	 */
+	private static Problem parseBinary(ByteBuffer bytes, Path file) throws IOException {
+		try {
+			bytes.getInt();
+			int version = bytes.getInt();
+			if (version != BINARY_VERSION)
+				throw new IOException(file + " is binary problem version " + version + ", only version " + BINARY_VERSION + " can be read");
+			int numberOfDecisionVariables = readCount(bytes, file, "decision variables");
+			int numberOfConstraints = readCount(bytes, file, "constraints");
+			int numberOfStarts = readCount(bytes, file, "start solutions");
+
+			ObjectiveFunction objectiveFunction = new ObjectiveFunction(readInts(bytes, numberOfDecisionVariables, file));
+
+			ConstraintSet constraints = new ConstraintSet();
+			Constraint.Operators[] operators = Constraint.Operators.values();
+			for (int c = 0; c < numberOfConstraints; c++) {
+				int operator = bytes.get();
+				if (operator < 0 || operator >= operators.length)
+					throw new IOException(file + ": constraint " + c + " has unknown operator " + operator);
+				int valueThreshold = bytes.getInt();
+				byte storage = bytes.get();
+				if (storage == 0) {
+					constraints.add(new Constraint(readInts(bytes, numberOfDecisionVariables, file), operators[operator], valueThreshold));
+				} else if (storage == 1) {
+					int nonZeroCount = readCount(bytes, file, "non zero weights");
+					int[] nonZeroVariables = readInts(bytes, nonZeroCount, file);
+					int[] nonZeroWeights = readInts(bytes, nonZeroCount, file);
+					if (nonZeroCount > 0 && nonZeroVariables[nonZeroCount - 1] >= numberOfDecisionVariables)
+						throw new IOException(file + ": constraint " + c + " has a weight for variable " + nonZeroVariables[nonZeroCount - 1] + " of " + numberOfDecisionVariables);
+					constraints.add(new Constraint(nonZeroVariables, nonZeroWeights, operators[operator], valueThreshold));
+				} else
+					throw new IOException(file + ": constraint " + c + " has unknown storage " + storage);
+			}
+
+			int words = CandidateSolution.wordsFor(numberOfDecisionVariables);
+			ArrayList<CandidateSolution> startSolutions = new ArrayList<>(numberOfStarts);
+			for (int s = 0; s < numberOfStarts; s++) {
+				startSolutions.add(CandidateSolution.fromWords(readLongs(bytes, words, file), numberOfDecisionVariables));
+			}
+			return new Problem(numberOfDecisionVariables, objectiveFunction, constraints, startSolutions);
+		} catch (BufferUnderflowException e) {
+			throw new IOException(file + " ends part way through the problem", e);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(file + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * reads a count from a binary file
+	 *
+	 * @param bytes the mapped file
+	 * @param file  the file, for error messages
+	 * @param what  what is being counted, for error messages
+	 * @return the count
+	 * @throws IOException if the count is negative
+	 */
+	private static int readCount(ByteBuffer bytes, Path file, String what) throws IOException {
+		int count = bytes.getInt();
+		if (count < 0)
+			throw new IOException(file + " has a negative number of " + what);
+		return count;
+	}
+
+	/**
+	 * bulk reads ints from a binary file. The length is checked against what is left first, so a corrupt count fails
+	 * instead of allocating a huge array
+	 *
+	 * @param bytes  the mapped file
+	 * @param length the number of ints
+	 * @param file   the file, for error messages
+	 * @return the ints
+	 * @throws IOException if the file ends first
+	 */
+	private static int[] readInts(ByteBuffer bytes, int length, Path file) throws IOException {
+		if (bytes.remaining() / Integer.BYTES < length)
+			throw new IOException(file + " ends part way through the problem");
+		int[] values = new int[length];
+		bytes.asIntBuffer().get(values);
+		bytes.position(bytes.position() + length * Integer.BYTES);
+		return values;
+	}
+
+	/**
+	 * bulk reads longs from a binary file
+	 *
+	 * @param bytes  the mapped file
+	 * @param length the number of longs
+	 * @param file   the file, for error messages
+	 * @return the longs
+	 * @throws IOException if the file ends first
+	 */
+	private static long[] readLongs(ByteBuffer bytes, int length, Path file) throws IOException {
+		if (bytes.remaining() / Long.BYTES < length)
+			throw new IOException(file + " ends part way through the problem");
+		long[] values = new long[length];
+		bytes.asLongBuffer().get(values);
+		bytes.position(bytes.position() + length * Long.BYTES);
+		return values;
+	}
+
+	/**
+	 * writes a problem in the binary format
+	 *
+	 * @param problem the problem
+	 * @param file    the file to write, created or truncated
+	 * @throws IOException if the file can't be written
+	 */
+	public static void writeBinary(Problem problem, Path file) throws IOException {
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(file,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)), BUFFER_SIZE))) {
+			writeBinary(problem, output);
+		}
+	}
+
+	/**
+	 * writes a problem in the binary format to a stream, eg to send it to another process. The stream is not closed
+	 *
+	 * @param problem the problem
+	 * @param output  where to write it
+	 * @throws IOException if it can't be written
+	 */
+	static void writeBinary(Problem problem, DataOutputStream output) throws IOException {
+		int n = problem.getNumberOfDecisionVariables();
+		ConstraintSet constraints = problem.getConstraints();
+		output.writeInt(BINARY_MAGIC);
+		output.writeInt(BINARY_VERSION);
+		output.writeInt(n);
+		output.writeInt(constraints.size());
+		output.writeInt(problem.getStartSolutions().size());
+
+		for (int i = 0; i < n; i++) {
+			output.writeInt(problem.getObjectiveFunction().getIthWeight(i));
+		}
+
+		for (int c = 0; c < constraints.size(); c++) {
+			Constraint constraint = constraints.getIthConstraint(c);
+			int[] nonZeroVariables = constraint.getNonZeroVariables();
+			int[] nonZeroWeights = constraint.getNonZeroWeights();
+			output.writeByte(constraint.getOperator().ordinal());
+			output.writeInt(constraint.getValueThreshold());
+			//the same rule as Constraint uses to pick its storage, sparse takes two ints per non zero weight
+			if (nonZeroVariables.length * 2 < n) {
+				output.writeByte(1);
+				output.writeInt(nonZeroVariables.length);
+				for (int variable : nonZeroVariables) {
+					output.writeInt(variable);
+				}
+				for (int weight : nonZeroWeights) {
+					output.writeInt(weight);
+				}
+			} else {
+				output.writeByte(0);
+				for (int i = 0; i < n; i++) {
+					output.writeInt(constraint.getIthWeight(i));
+				}
+			}
+		}
+
+		for (CandidateSolution startSolution : problem.getStartSolutions()) {
+			for (long word : startSolution.getWords()) {
+				output.writeLong(word);
+			}
+		}
+	}
+
+	/**
+	 * writes a problem in the text format, sparse constraints are written as sparse records
+	 *
+	 * @param problem the problem
+	 * @param file    the file to write, created or truncated
+	 * @throws IOException if the file can't be written
+	 */
+	public static void writeText(Problem problem, Path file) throws IOException {
+		try (BufferedWriter output = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(FileChannel.open(file,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)), StandardCharsets.US_ASCII), BUFFER_SIZE)) {
+			int n = problem.getNumberOfDecisionVariables();
+			output.write("variables " + n);
+			output.newLine();
+
+			output.write("objective");
+			for (int i = 0; i < n; i++) {
+				output.write(" " + problem.getObjectiveFunction().getIthWeight(i));
+			}
+			output.newLine();
+
+			ConstraintSet constraints = problem.getConstraints();
+			for (int c = 0; c < constraints.size(); c++) {
+				Constraint constraint = constraints.getIthConstraint(c);
+				int[] nonZeroVariables = constraint.getNonZeroVariables();
+				int[] nonZeroWeights = constraint.getNonZeroWeights();
+				String operator = operatorSymbol(constraint.getOperator());
+				if (nonZeroVariables.length * 2 < n) {
+					output.write("sparse " + operator + " " + constraint.getValueThreshold() + " " + nonZeroVariables.length);
+					for (int k = 0; k < nonZeroVariables.length; k++) {
+						output.write(" " + nonZeroVariables[k] + ":" + nonZeroWeights[k]);
+					}
+				} else {
+					output.write("constraint " + operator + " " + constraint.getValueThreshold());
+					for (int i = 0; i < n; i++) {
+						output.write(" " + constraint.getIthWeight(i));
+					}
+				}
+				output.newLine();
+			}
+
+			for (CandidateSolution startSolution : problem.getStartSolutions()) {
+				output.write("start ");
+				for (int i = 0; i < n; i++) {
+					output.write(startSolution.getIthDecisionVariable(i) ? '1' : '0');
+				}
+				output.newLine();
+			}
+		}
+	}
+
+	/**
+	 * the text form of an operator
+	 *
+	 * @param operator the operator
+	 * @return its symbol, eg: &lt;=
+	 */
+	private static String operatorSymbol(Constraint.Operators operator) {
+		if (operator == Constraint.Operators.LESS_THAN)
+			return "<";
+		else if (operator == Constraint.Operators.GREATER_THAN)
+			return ">";
+		else if (operator == Constraint.Operators.LESS_THAN_OR_EQUAL)
+			return "<=";
+		else if (operator == Constraint.Operators.GREATER_THAN_OR_EQUAL)
+			return ">=";
+		else throw new ExceptionInInitializerError("no operator selected, this should never happen");
+	}
+
+	/**
+	 * a parser for the text format that reads tokens straight from the mapped bytes
+	 */
+	private static class TextParser {
+
+		/**
+		 * the mapped file
+		 */
+		private final ByteBuffer bytes;
+
+		/**
+		 * the file, for error messages
+		 */
+		private final Path file;
+
+		/**
+		 * the line the parser is on, counting from 1
+		 */
+		private int line = 1;
+
+		/**
+		 * the constructor
+		 *
+		 * @param bytes the mapped file
+		 * @param file  the file, for error messages
+		 */
+		TextParser(ByteBuffer bytes, Path file) {
+			this.bytes = bytes;
+			this.file = file;
+		}
+
+		/**
+		 * parses the whole file
+		 *
+		 * @return the problem
+		 * @throws IOException if the file is not a valid text problem
+		 */
+		Problem parse() throws IOException {
+			if (!"variables".equals(nextKeyword()))
+				throw error("a problem must start with: variables n");
+			int n = nextInt();
+			if (n < 0)
+				throw error("the number of variables can't be negative");
+
+			ObjectiveFunction objectiveFunction = null;
+			ConstraintSet constraints = new ConstraintSet();
+			ArrayList<CandidateSolution> startSolutions = new ArrayList<>();
+			for (String keyword = nextKeyword(); keyword != null; keyword = nextKeyword()) {
+				if (keyword.equals("objective")) {
+					if (objectiveFunction != null)
+						throw error("there can only be one objective");
+					objectiveFunction = new ObjectiveFunction(nextInts(n));
+				} else if (keyword.equals("constraint")) {
+					Constraint.Operators operator = nextOperator();
+					int valueThreshold = nextInt();
+					constraints.add(new Constraint(nextInts(n), operator, valueThreshold));
+				} else if (keyword.equals("sparse")) {
+					constraints.add(nextSparseConstraint(n));
+				} else if (keyword.equals("start")) {
+					startSolutions.add(nextSolution(n));
+				} else
+					throw error("unknown record " + keyword + ", expected objective, constraint, sparse or start");
+			}
+
+			if (objectiveFunction == null)
+				throw error("there is no objective");
+			return new Problem(n, objectiveFunction, constraints, startSolutions);
+		}
+
+		/**
+		 * reads the rest of a sparse constraint record
+		 *
+		 * @param n the number of decision variables
+		 * @return the constraint
+		 * @throws IOException if the record is not valid
+		 */
+		private Constraint nextSparseConstraint(int n) throws IOException {
+			Constraint.Operators operator = nextOperator();
+			int valueThreshold = nextInt();
+			int nonZeroCount = nextInt();
+			if (nonZeroCount < 0 || nonZeroCount > n)
+				throw error("a sparse constraint must have between 0 and " + n + " non zero weights, not " + nonZeroCount);
+			int[] nonZeroVariables = new int[nonZeroCount];
+			int[] nonZeroWeights = new int[nonZeroCount];
+			for (int k = 0; k < nonZeroCount; k++) {
+				nonZeroVariables[k] = nextInt();
+				if (nonZeroVariables[k] >= n || (k > 0 && nonZeroVariables[k] <= nonZeroVariables[k - 1]) || nonZeroVariables[k] < 0)
+					throw error("sparse indices must ascend and be between 0 and " + (n - 1) + ", found " + nonZeroVariables[k]);
+				expect(':');
+				nonZeroWeights[k] = nextInt();
+			}
+			return new Constraint(nonZeroVariables, nonZeroWeights, operator, valueThreshold);
+		}
+
+		/**
+		 * reads a start solution written as a run of 0 and 1 characters
+		 *
+		 * @param n the number of decision variables
+		 * @return the solution
+		 * @throws IOException if there are not exactly n bits
+		 */
+		private CandidateSolution nextSolution(int n) throws IOException {
+			skipWhitespace();
+			CandidateSolution solution = new CandidateSolution(n);
+			int i = 0;
+			while (bytes.hasRemaining() && !isSeparator(bytes.get(bytes.position()))) {
+				byte bit = bytes.get();
+				if (bit != '0' && bit != '1')
+					throw error("a start solution can only contain 0 and 1, found " + (char) bit);
+				if (i >= n)
+					throw error("a start solution has more than " + n + " bits");
+				if (bit == '1')
+					solution.setIthDecisionVariable(i, true);
+				i++;
+			}
+			if (i != n)
+				throw error("a start solution has " + i + " bits, expected " + n);
+			return solution;
+		}
+
+		/**
+		 * reads n ints into a new array
+		 *
+		 * @param n the number of ints
+		 * @return the ints
+		 * @throws IOException if there aren't n ints
+		 */
+		private int[] nextInts(int n) throws IOException {
+			int[] values = new int[n];
+			for (int i = 0; i < n; i++) {
+				values[i] = nextInt();
+			}
+			return values;
+		}
+
+		/**
+		 * reads a keyword. Keywords are the only tokens that become strings, there is one per record
+		 *
+		 * @return the keyword, or null at the end of the file
+		 * @throws IOException if the next token is not a word
+		 */
+		private String nextKeyword() throws IOException {
+			skipWhitespace();
+			if (!bytes.hasRemaining())
+				return null;
+			StringBuilder keyword = new StringBuilder();
+			while (bytes.hasRemaining() && !isSeparator(bytes.get(bytes.position()))) {
+				keyword.append((char) bytes.get());
+			}
+			return keyword.toString();
+		}
+
+		/**
+		 * reads an operator, one of &lt; &gt; &lt;= &gt;=
+		 *
+		 * @return the operator
+		 * @throws IOException if the next token is not an operator
+		 */
+		private Constraint.Operators nextOperator() throws IOException {
+			skipWhitespace();
+			byte first = bytes.hasRemaining() ? bytes.get() : 0;
+			boolean orEqual = bytes.hasRemaining() && bytes.get(bytes.position()) == '=';
+			if (orEqual)
+				bytes.get();
+			if (bytes.hasRemaining() && !isSeparator(bytes.get(bytes.position())))
+				throw error("expected an operator, one of < > <= >=");
+			if (first == '<')
+				return orEqual ? Constraint.Operators.LESS_THAN_OR_EQUAL : Constraint.Operators.LESS_THAN;
+			else if (first == '>')
+				return orEqual ? Constraint.Operators.GREATER_THAN_OR_EQUAL : Constraint.Operators.GREATER_THAN;
+			throw error("expected an operator, one of < > <= >=");
+		}
+
+		/**
+		 * reads an int digit by digit, with an optional sign
+		 *
+		 * @return the int
+		 * @throws IOException if the next token is not an int, or is too big for one
+		 */
+		private int nextInt() throws IOException {
+			skipWhitespace();
+			boolean negative = false;
+			if (bytes.hasRemaining() && (bytes.get(bytes.position()) == '-' || bytes.get(bytes.position()) == '+'))
+				negative = bytes.get() == '-';
+
+			//accumulate negatively, so that Integer.MIN_VALUE can be read
+			long value = 0;
+			int digits = 0;
+			while (bytes.hasRemaining()) {
+				byte digit = bytes.get(bytes.position());
+				if (digit < '0' || digit > '9')
+					break;
+				bytes.get();
+				value = value * 10 - (digit - '0');
+				if (value < Integer.MIN_VALUE)
+					throw error("number is too big for an int");
+				digits++;
+			}
+			if (digits == 0 || (bytes.hasRemaining() && !isSeparator(bytes.get(bytes.position())) && bytes.get(bytes.position()) != ':'))
+				throw error("expected a number");
+			if (!negative && value == Integer.MIN_VALUE)
+				throw error("number is too big for an int");
+			return (int) (negative ? value : -value);
+		}
+
+		/**
+		 * reads a single expected character, such as the colon between a sparse index and weight
+		 *
+		 * @param expected the character
+		 * @throws IOException if the next character is something else
+		 */
+		private void expect(char expected) throws IOException {
+			if (!bytes.hasRemaining() || bytes.get() != expected)
+				throw error("expected " + expected);
+		}
+
+		/**
+		 * skips whitespace and comments, counting lines
+		 */
+		private void skipWhitespace() {
+			while (bytes.hasRemaining()) {
+				byte next = bytes.get(bytes.position());
+				if (next == '#') {
+					while (bytes.hasRemaining() && bytes.get(bytes.position()) != '\n') {
+						bytes.get();
+					}
+				} else if (isSeparator(next)) {
+					if (next == '\n')
+						line++;
+					bytes.get();
+				} else
+					return;
+			}
+		}
+
+		/**
+		 * checks if a byte ends a token
+		 *
+		 * @param b the byte
+		 * @return true for whitespace and the start of a comment
+		 */
+		private static boolean isSeparator(byte b) {
+			return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '#';
+		}
+
+		/**
+		 * an error at the current line
+		 *
+		 * @param message what is wrong
+		 * @return the exception to throw
+		 */
+		private IOException error(String message) {
+			return new IOException(file + " line " + line + ": " + message);
+		}
+	}
+}
@@ -0,0 +1,377 @@
+package com.parker.david;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * the metrics of a single run: how much work each phase did and took, which constraints rejected neighbours,
+ * how much was allocated, and how the best solution improved over time.
+ * a run's metrics are only written by the thread running it, apart from the evaluation, feasibility and rejection counts
+ * and the allocation of the pool threads, which the parallel selector adds to from several threads at once and so are
+ * kept in LongAdders.
+ * create these through SearchMetrics.startRun
+ */
+public class RunMetrics {
+
+	/**
+	 * the aggregate these metrics belong to, which is told when the run improves and when it ends
+	 */
+	private final SearchMetrics searchMetrics;
+
+	/**
+	 * the number of this run, in the order runs were started
+	 */
+	private final int runNumber;
+
+	/**
+	 * the number of iterations
+	 */
+	private long iterations;
+
+	/**
+	 * the total size of every neighbourhood generated
+	 */
+	private long neighboursGenerated;
+
+	/**
+	 * the number of neighbours whose fitness the selector worked out
+	 */
+	private final LongAdder neighboursEvaluated = new LongAdder();
+
+	/**
+	 * the number of neighbours the selector checked for feasibility
+	 */
+	private final LongAdder feasibilityChecks = new LongAdder();
+
+	/**
+	 * constraintRejections[c] is the number of feasibility checks that constraint c failed. The last entry counts checks
+	 * that failed because constraints the current solution already violates are not fixed by the move, which can't be pinned on one constraint
+	 */
+	private final LongAdder[] constraintRejections;
+
+	/**
+	 * the time spent generating neighbourhoods, in nanoseconds
+	 */
+	private long generateNanos;
+
+	/**
+	 * the time spent selecting moves, in nanoseconds
+	 */
+	private long selectNanos;
+
+	/**
+	 * the time spent applying moves and keeping the best solution, in nanoseconds
+	 */
+	private long applyNanos;
+
+	/**
+	 * the time spent in the trace sink, in nanoseconds
+	 */
+	private long traceNanos;
+
+	/**
+	 * the wall clock time of the whole run, in nanoseconds
+	 */
+	private long elapsedNanos;
+
+	/**
+	 * the bytes allocated by the thread running the descent, -1 if the jvm can't measure it
+	 */
+	private long allocatedBytes = -1;
+
+	/**
+	 * the bytes allocated by pool threads scanning part of a neighbourhood for the descent
+	 */
+	private final LongAdder poolAllocatedBytes = new LongAdder();
+
+	/**
+	 * the iteration at which each new best feasible solution was found
+	 */
+	private int[] trajectoryIterations = new int[8];
+
+	/**
+	 * the time into the run at which each new best feasible solution was found, in nanoseconds
+	 */
+	private long[] trajectoryNanos = new long[8];
+
+	/**
+	 * the fitness of each new best feasible solution
+	 */
+	private int[] trajectoryFitness = new int[8];
+
+	/**
+	 * the number of points in the trajectory
+	 */
+	private int trajectorySize;
+
+	/**
+	 * the result of the run, null until it ends
+	 */
+	private SearchResult result;
+
+	/**
+	 * the constructor
+	 *
+	 * @param searchMetrics       the aggregate these metrics belong to
+	 * @param runNumber           the number of this run
+	 * @param numberOfConstraints the number of constraints in the problem
+	 */
+	RunMetrics(SearchMetrics searchMetrics, int runNumber, int numberOfConstraints) {
+		this.searchMetrics = searchMetrics;
+		this.runNumber = runNumber;
+		this.constraintRejections = new LongAdder[numberOfConstraints + 1];
+		for (int c = 0; c < constraintRejections.length; c++) {
+			constraintRejections[c] = new LongAdder();
+		}
+	}
+
+	/**
+	 * records an iteration and how long each of its phases took
+	 *
+	 * @param neighbourhoodSize the size of the neighbourhood generated
+	 * @param generateNanos     the time taken to generate it
+	 * @param selectNanos       the time taken to select a move
+	 * @param traceNanos        the time taken by the trace sink
+	 * @param applyNanos        the time taken to apply the move
+	 */
+	void iteration(int neighbourhoodSize, long generateNanos, long selectNanos, long traceNanos, long applyNanos) {
+		iterations++;
+		neighboursGenerated += neighbourhoodSize;
+		this.generateNanos += generateNanos;
+		this.selectNanos += selectNanos;
+		this.traceNanos += traceNanos;
+		this.applyNanos += applyNanos;
+	}
+
+	/**
+	 * records that the fitness of a neighbour was worked out
+	 */
+	void neighbourEvaluated() {
+		neighboursEvaluated.increment();
+	}
+
+	/**
+	 * records that a neighbour was checked for feasibility
+	 */
+	void feasibilityChecked() {
+		feasibilityChecks.increment();
+	}
+
+	/**
+	 * records that a neighbour was infeasible
+	 *
+	 * @param constraint the index of the constraint it failed, or -1 if it failed because already violated constraints stay violated
+	 */
+	void rejectedBy(int constraint) {
+		constraintRejections[(constraint < 0) ? constraintRejections.length - 1 : constraint].increment();
+	}
+
+	/**
+	 * records the bytes a pool thread allocated while scanning part of a neighbourhood for this run
+	 *
+	 * @param bytes the bytes allocated
+	 */
+	void allocatedOnPoolThread(long bytes) {
+		poolAllocatedBytes.add(bytes);
+	}
+
+	/**
+	 * records a new best feasible solution
+	 *
+	 * @param iteration    the iteration it was found at
+	 * @param elapsedNanos the time into the run it was found at
+	 * @param fitness      its fitness
+	 */
+	void newBest(int iteration, long elapsedNanos, int fitness) {
+		if (trajectorySize == trajectoryFitness.length) {
+			trajectoryIterations = Arrays.copyOf(trajectoryIterations, trajectorySize * 2);
+			trajectoryNanos = Arrays.copyOf(trajectoryNanos, trajectorySize * 2);
+			trajectoryFitness = Arrays.copyOf(trajectoryFitness, trajectorySize * 2);
+		}
+		trajectoryIterations[trajectorySize] = iteration;
+		trajectoryNanos[trajectorySize] = elapsedNanos;
+		trajectoryFitness[trajectorySize] = fitness;
+		trajectorySize++;
+		searchMetrics.newBest(this, iteration, fitness);
+	}
+
+	/**
+	 * records the end of the run
+	 *
+	 * @param result         the result of the run
+	 * @param allocatedBytes the bytes allocated by the thread running it, -1 if unknown
+	 */
+	void endRun(SearchResult result, long allocatedBytes) {
+		this.result = result;
+		this.elapsedNanos = result.getElapsedNanos();
+		this.allocatedBytes = allocatedBytes;
+		searchMetrics.endRun(this);
+	}
+
+	/**
+	 * accessor, returns the number of this run, in the order runs were started
+	 *
+	 * @return the run number
+	 */
+	public int getRunNumber() {
+		return runNumber;
+	}
+
+	/**
+	 * accessor, returns the number of iterations
+	 *
+	 * @return the number of iterations
+	 */
+	public long getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * accessor, returns the total size of every neighbourhood generated
+	 *
+	 * @return the number of neighbours generated
+	 */
+	public long getNeighboursGenerated() {
+		return neighboursGenerated;
+	}
+
+	/**
+	 * accessor, returns the number of neighbours whose fitness the selector worked out
+	 *
+	 * @return the number of neighbours evaluated
+	 */
+	public long getNeighboursEvaluated() {
+		return neighboursEvaluated.sum();
+	}
+
+	/**
+	 * accessor, returns the number of neighbours the selector checked for feasibility
+	 *
+	 * @return the number of feasibility checks
+	 */
+	public long getFeasibilityChecks() {
+		return feasibilityChecks.sum();
+	}
+
+	/**
+	 * the number of feasibility checks a constraint failed
+	 *
+	 * @param constraint the index of the constraint, or -1 for checks that failed because already violated constraints stay violated
+	 * @return the number of rejections
+	 */
+	public long getRejections(int constraint) {
+		return constraintRejections[(constraint < 0) ? constraintRejections.length - 1 : constraint].sum();
+	}
+
+	/**
+	 * the number of constraints rejections are counted for
+	 *
+	 * @return the number of constraints
+	 */
+	public int numberOfConstraints() {
+		return constraintRejections.length - 1;
+	}
+
+	/**
+	 * accessor, returns the time spent generating neighbourhoods
+	 *
+	 * @return the time in nanoseconds
+	 */
+	public long getGenerateNanos() {
+		return generateNanos;
+	}
+
+	/**
+	 * accessor, returns the time spent selecting moves
+	 *
+	 * @return the time in nanoseconds
+	 */
+	public long getSelectNanos() {
+		return selectNanos;
+	}
+
+	/**
+	 * accessor, returns the time spent applying moves
+	 *
+	 * @return the time in nanoseconds
+	 */
+	public long getApplyNanos() {
+		return applyNanos;
+	}
+
+	/**
+	 * accessor, returns the time spent in the trace sink
+	 *
+	 * @return the time in nanoseconds
+	 */
+	public long getTraceNanos() {
+		return traceNanos;
+	}
+
+	/**
+	 * accessor, returns the wall clock time of the whole run
+	 *
+	 * @return the time in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * accessor, returns the bytes allocated by the thread running the descent and by any pool threads that scanned part of
+	 * a neighbourhood for it
+	 *
+	 * @return the bytes allocated, -1 if the jvm can't measure it
+	 */
+	public long getAllocatedBytes() {
+		return (allocatedBytes < 0) ? -1 : allocatedBytes + poolAllocatedBytes.sum();
+	}
+
+	/**
+	 * the number of times the best feasible solution improved
+	 *
+	 * @return the number of points in the trajectory
+	 */
+	public int trajectorySize() {
+		return trajectorySize;
+	}
+
+	/**
+	 * the iteration at which the ith best feasible solution was found
+	 *
+	 * @param i the point in the trajectory
+	 * @return the iteration
+	 */
+	public int getIthTrajectoryIteration(int i) {
+		return trajectoryIterations[i];
+	}
+
+	/**
+	 * the time into the run at which the ith best feasible solution was found
+	 *
+	 * @param i the point in the trajectory
+	 * @return the time in nanoseconds
+	 */
+	public long getIthTrajectoryNanos(int i) {
+		return trajectoryNanos[i];
+	}
+
+	/**
+	 * the fitness of the ith best feasible solution
+	 *
+	 * @param i the point in the trajectory
+	 * @return the fitness
+	 */
+	public int getIthTrajectoryFitness(int i) {
+		return trajectoryFitness[i];
+	}
+
+	/**
+	 * accessor, returns the result of the run
+	 *
+	 * @return the result, null if the run hasn't ended
+	 */
+	public SearchResult getResult() {
+		return result;
+	}
+}
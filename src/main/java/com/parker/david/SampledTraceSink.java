@@ -0,0 +1,81 @@
+package com.parker.david;
+
+import java.io.IOException;
+
+/**
+ * wraps another sink and only passes on every nth iteration, so a long run can be traced at a fraction of the cost.
+ * the start and end of every run are always passed on
+ */
+public class SampledTraceSink implements TraceSink {
+
+	/**
+	 * the sink that the sampled iterations go to
+	 */
+	private final TraceSink sampledSink;
+
+	/**
+	 * only iterations that are a multiple of this are passed on
+	 */
+	private final int sampleInterval;
+
+	/**
+	 * the constructor, takes the sink to sample into and how often to sample
+	 *
+	 * @param sampledSink    the sink that the sampled iterations go to
+	 * @param sampleInterval pass on one iteration in this many, must be at least 1
+	 */
+	SampledTraceSink(TraceSink sampledSink, int sampleInterval) {
+		if (sampleInterval < 1)
+			throw new IllegalArgumentException("sample interval must be at least 1, was " + sampleInterval);
+		this.sampledSink = sampledSink;
+		this.sampleInterval = sampleInterval;
+	}
+
+	/**
+	 * passes on the start of the run
+	 *
+	 * @param evaluator the evaluator holding the start solution
+	 * @throws IOException if the trace can't be written
+	 */
+	@Override
+	public void startRun(IncrementalEvaluator evaluator) throws IOException {
+		sampledSink.startRun(evaluator);
+	}
+
+	/**
+	 * passes on the iteration if it is one of the sampled ones
+	 *
+	 * @param iteration     the iteration number
+	 * @param evaluator     the evaluator holding the current solution
+	 * @param neighbourhood the moves to each neighbour
+	 * @param selectedMove  the selected move
+	 * @throws IOException if the trace can't be written
+	 */
+	@Override
+	public void iteration(int iteration, IncrementalEvaluator evaluator, MoveNeighbourhood neighbourhood, Move selectedMove) throws IOException {
+		if (iteration % sampleInterval == 0)
+			sampledSink.iteration(iteration, evaluator, neighbourhood, selectedMove);
+	}
+
+	/**
+	 * passes on the end of the run
+	 *
+	 * @param result    the result of the run
+	 * @param evaluator the evaluator holding the solution the run finished on
+	 * @throws IOException if the trace can't be written
+	 */
+	@Override
+	public void endRun(SearchResult result, IncrementalEvaluator evaluator) throws IOException {
+		sampledSink.endRun(result, evaluator);
+	}
+
+	/**
+	 * closes the sampled sink
+	 *
+	 * @throws IOException if the trace can't be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		sampledSink.close();
+	}
+}
@@ -0,0 +1,426 @@
+package com.parker.david;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * a snapshot of a multi-start search: the result of every start that has finished and, if a start was part way through,
+ * everything its descent needs to carry on from where it was. A descent resumed from a snapshot makes the same moves it
+ * would have made had it never stopped, as long as it is given the same problem, selector and neighbourhood, because the
+ * selector's memory and random number generator are part of the snapshot.
+ * the binary format is big endian, as written by a DataOutputStream:
+ * <pre>
+ * header:     int magic ("LSCK"), int version, int n, int number of finished starts, byte 1 if a start is part way through else 0
+ * finished:   start words, best words, int best fitness, byte best feasible, int iterations, long elapsed nanos
+ * part way:   start words, current words, best words, int best fitness, byte best feasible, int iterations,
+ *             int iterations since improvement, long elapsed nanos, utf selector class name, int state length, state bytes
+ * </pre>
+ * where each solution is its packed words as longs, as in the binary problem format
+ */
+public final class SearchCheckpoint {
+
+	/**
+	 * the first four bytes of a checkpoint file, "LSCK"
+	 */
+	static final int MAGIC = 0x4c53434b;
+
+	/**
+	 * the version of the format that is written
+	 */
+	static final int VERSION = 2;
+
+	/**
+	 * the number of decision variables of the problem the snapshot is of
+	 */
+	private final int numberOfDecisionVariables;
+
+	/**
+	 * the results of the starts that have finished, in the order they were run
+	 */
+	private final List<SearchResult> finishedRuns;
+
+	/**
+	 * the start solution of the descent that was part way through, null if there wasn't one
+	 */
+	private final CandidateSolution startSolution;
+
+	/**
+	 * the solution the descent was at
+	 */
+	private final CandidateSolution currentSolution;
+
+	/**
+	 * the best solution the descent had seen
+	 */
+	private final CandidateSolution bestSolution;
+
+	/**
+	 * the fitness of the best solution
+	 */
+	private final int bestFitness;
+
+	/**
+	 * whether the best solution is feasible
+	 */
+	private final boolean bestFeasible;
+
+	/**
+	 * the number of iterations the descent had made
+	 */
+	private final int iterations;
+
+	/**
+	 * the number of iterations since the descent last found a new best feasible solution
+	 */
+	private final int iterationsSinceImprovement;
+
+	/**
+	 * the time the descent had run for, which is carried on so that time budgets count the time before the snapshot
+	 */
+	private final long elapsedNanos;
+
+	/**
+	 * the class name of the selector, so that the state isn't given to a different kind of selector
+	 */
+	private final String selectorName;
+
+	/**
+	 * the state the selector wrote with writeState
+	 */
+	private final byte[] selectorState;
+
+	/**
+	 * the constructor for a snapshot taken between starts
+	 *
+	 * @param numberOfDecisionVariables the number of decision variables of the problem
+	 * @param finishedRuns              the results of the starts that have finished
+	 */
+	SearchCheckpoint(int numberOfDecisionVariables, List<SearchResult> finishedRuns) {
+		this(numberOfDecisionVariables, finishedRuns, null, null, null, 0, false, 0, 0, 0, null, null);
+	}
+
+	/**
+	 * the constructor for a snapshot taken part way through a start. The solutions are kept, so they must not be changed afterwards
+	 *
+	 * @param numberOfDecisionVariables  the number of decision variables of the problem
+	 * @param finishedRuns               the results of the starts that have finished
+	 * @param startSolution              the start solution of the descent, null if no start is part way through
+	 * @param currentSolution            the solution the descent is at
+	 * @param bestSolution               the best solution the descent has seen
+	 * @param bestFitness                the fitness of the best solution
+	 * @param bestFeasible               whether the best solution is feasible
+	 * @param iterations                 the number of iterations the descent has made
+	 * @param iterationsSinceImprovement the number of iterations since the last new best feasible solution
+	 * @param elapsedNanos               the time the descent has run for
+	 * @param selectorName               the class name of the selector
+	 * @param selectorState              the state the selector wrote
+	 */
+	SearchCheckpoint(int numberOfDecisionVariables, List<SearchResult> finishedRuns, CandidateSolution startSolution, CandidateSolution currentSolution,
+					 CandidateSolution bestSolution, int bestFitness, boolean bestFeasible, int iterations, int iterationsSinceImprovement, long elapsedNanos,
+					 String selectorName, byte[] selectorState) {
+		this.numberOfDecisionVariables = numberOfDecisionVariables;
+		this.finishedRuns = Collections.unmodifiableList(new ArrayList<>(finishedRuns));
+		this.startSolution = startSolution;
+		this.currentSolution = currentSolution;
+		this.bestSolution = bestSolution;
+		this.bestFitness = bestFitness;
+		this.bestFeasible = bestFeasible;
+		this.iterations = iterations;
+		this.iterationsSinceImprovement = iterationsSinceImprovement;
+		this.elapsedNanos = elapsedNanos;
+		this.selectorName = selectorName;
+		this.selectorState = selectorState;
+	}
+
+	/**
+	 * reads a snapshot from a file
+	 *
+	 * @param file the checkpoint file
+	 * @return the snapshot
+	 * @throws IOException if the file can't be read or isn't a checkpoint
+	 */
+	public static SearchCheckpoint read(Path file) throws IOException {
+		byte[] bytes = Files.readAllBytes(file);
+		try {
+			return fromBytes(bytes);
+		} catch (EOFException e) {
+			throw new IOException(file + ": the checkpoint is truncated", e);
+		} catch (IOException e) {
+			throw new IOException(file + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * reads a snapshot from the bytes of a checkpoint file
+	 *
+	 * @param bytes the bytes
+	 * @return the snapshot
+	 * @throws IOException if the bytes aren't a checkpoint
+	 */
+	static SearchCheckpoint fromBytes(byte[] bytes) throws IOException {
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+		if (input.readInt() != MAGIC)
+			throw new IOException("not a checkpoint file");
+		int version = input.readInt();
+		if (version != VERSION)
+			throw new IOException("unsupported checkpoint version " + version);
+		int n = input.readInt();
+		int numberOfFinishedRuns = input.readInt();
+		boolean partWay = input.readBoolean();
+		if (n < 0 || numberOfFinishedRuns < 0)
+			throw new IOException("negative number of variables or finished starts");
+
+		List<SearchResult> finishedRuns = new ArrayList<>();
+		for (int r = 0; r < numberOfFinishedRuns; r++) {
+			CandidateSolution start = readSolution(input, n);
+			CandidateSolution best = readSolution(input, n);
+			finishedRuns.add(new SearchResult(start, best, input.readInt(), input.readBoolean(), input.readInt(), input.readLong()));
+		}
+		if (!partWay)
+			return new SearchCheckpoint(n, finishedRuns);
+
+		CandidateSolution start = readSolution(input, n);
+		CandidateSolution current = readSolution(input, n);
+		CandidateSolution best = readSolution(input, n);
+		int bestFitness = input.readInt();
+		boolean bestFeasible = input.readBoolean();
+		int iterations = input.readInt();
+		int iterationsSinceImprovement = input.readInt();
+		long elapsedNanos = input.readLong();
+		String selectorName = input.readUTF();
+		int stateLength = input.readInt();
+		if (stateLength < 0 || stateLength > input.available())
+			throw new IOException("selector state of " + stateLength + " bytes doesn't fit in the file");
+		byte[] selectorState = new byte[stateLength];
+		input.readFully(selectorState);
+		return new SearchCheckpoint(n, finishedRuns, start, current, best, bestFitness, bestFeasible, iterations, iterationsSinceImprovement, elapsedNanos,
+				selectorName, selectorState);
+	}
+
+	/**
+	 * the snapshot in the binary format
+	 *
+	 * @return the bytes of a checkpoint file
+	 */
+	byte[] toBytes() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(numberOfDecisionVariables);
+			output.writeInt(finishedRuns.size());
+			output.writeBoolean(isPartWay());
+			for (SearchResult result : finishedRuns) {
+				writeSolution(output, result.getStartSolution());
+				writeSolution(output, result.getBestSolution());
+				output.writeInt(result.getBestFitness());
+				output.writeBoolean(result.isBestFeasible());
+				output.writeInt(result.getIterations());
+				output.writeLong(result.getElapsedNanos());
+			}
+			if (isPartWay()) {
+				writeSolution(output, startSolution);
+				writeSolution(output, currentSolution);
+				writeSolution(output, bestSolution);
+				output.writeInt(bestFitness);
+				output.writeBoolean(bestFeasible);
+				output.writeInt(iterations);
+				output.writeInt(iterationsSinceImprovement);
+				output.writeLong(elapsedNanos);
+				output.writeUTF(selectorName);
+				output.writeInt(selectorState.length);
+				output.write(selectorState);
+			}
+		} catch (IOException e) {
+			//a byte array never throws
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * gives the selector state in this snapshot back to a selector
+	 *
+	 * @param selector a new selector of the same class and with the same settings as the one the snapshot was taken from
+	 * @throws IOException if the selector is of a different class or can't read the state
+	 */
+	void restoreSelector(NextSolutionSelector selector) throws IOException {
+		if (!selector.getClass().getName().equals(selectorName))
+			throw new IOException("the checkpoint was taken with a " + selectorName + " but is being resumed with a " + selector.getClass().getName());
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(selectorState));
+		selector.readState(input);
+		if (input.available() != 0)
+			throw new IOException(selectorName + " left " + input.available() + " bytes of its state unread");
+	}
+
+	/**
+	 * accessor, returns the number of decision variables of the problem the snapshot is of
+	 *
+	 * @return the number of decision variables
+	 */
+	public int numberOfDecisionVariables() {
+		return numberOfDecisionVariables;
+	}
+
+	/**
+	 * accessor, returns the results of the starts that had finished
+	 *
+	 * @return the results, in the order the starts were run
+	 */
+	public List<SearchResult> getFinishedRuns() {
+		return finishedRuns;
+	}
+
+	/**
+	 * whether a start was part way through when the snapshot was taken
+	 *
+	 * @return true if there is a descent to resume
+	 */
+	public boolean isPartWay() {
+		return startSolution != null;
+	}
+
+	/**
+	 * accessor, returns the start solution of the descent that was part way through
+	 *
+	 * @return the start solution, null if no start was part way through
+	 */
+	public CandidateSolution getStartSolution() {
+		return startSolution;
+	}
+
+	/**
+	 * accessor, returns the solution the descent was at
+	 *
+	 * @return the current solution
+	 */
+	CandidateSolution getCurrentSolution() {
+		return currentSolution;
+	}
+
+	/**
+	 * accessor, returns the best solution the descent had seen
+	 *
+	 * @return the best solution
+	 */
+	CandidateSolution getBestSolution() {
+		return bestSolution;
+	}
+
+	/**
+	 * accessor, returns the fitness of the best solution
+	 *
+	 * @return the best fitness
+	 */
+	int getBestFitness() {
+		return bestFitness;
+	}
+
+	/**
+	 * accessor, returns whether the best solution is feasible
+	 *
+	 * @return true if it is
+	 */
+	boolean isBestFeasible() {
+		return bestFeasible;
+	}
+
+	/**
+	 * accessor, returns the number of iterations the descent had made
+	 *
+	 * @return the number of iterations
+	 */
+	int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * accessor, returns the number of iterations since the descent last found a new best feasible solution
+	 *
+	 * @return the number of iterations
+	 */
+	int getIterationsSinceImprovement() {
+		return iterationsSinceImprovement;
+	}
+
+	/**
+	 * accessor, returns the time the descent had run for
+	 *
+	 * @return the time in nanoseconds
+	 */
+	long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * writes the state of a random number generator, so that a generator read back gives the same numbers from then on.
+	 * the whole state is one long
+	 *
+	 * @param output where to write the state
+	 * @param random the generator
+	 * @throws IOException if it can't be written
+	 */
+	static void writeRandom(DataOutput output, CheckpointableRandom random) throws IOException {
+		output.writeLong(random.getState());
+	}
+
+	/**
+	 * reads the state of a random number generator written by writeRandom
+	 *
+	 * @param input where to read the state from
+	 * @return a generator that carries on where the written one was
+	 * @throws IOException if it can't be read, or isn't the state of a generator
+	 */
+	static CheckpointableRandom readRandom(DataInput input) throws IOException {
+		long state = input.readLong();
+		if (state >>> 48 != 0)
+			throw new IOException("expected the 48 bit state of a random number generator, found " + Long.toHexString(state));
+		CheckpointableRandom random = new CheckpointableRandom(0);
+		random.setState(state);
+		return random;
+	}
+
+	/**
+	 * writes the packed words of a solution
+	 *
+	 * @param output   where to write the solution
+	 * @param solution the solution
+	 * @throws IOException if it can't be written
+	 */
+	private static void writeSolution(DataOutput output, CandidateSolution solution) throws IOException {
+		for (long word : solution.getWords()) {
+			output.writeLong(word);
+		}
+	}
+
+	/**
+	 * reads the packed words of a solution
+	 *
+	 * @param input where to read the solution from
+	 * @param n     the number of decision variables
+	 * @return the solution
+	 * @throws IOException if it can't be read or has bits set past the last decision variable
+	 */
+	private static CandidateSolution readSolution(DataInput input, int n) throws IOException {
+		long[] words = new long[CandidateSolution.wordsFor(n)];
+		for (int w = 0; w < words.length; w++) {
+			words[w] = input.readLong();
+		}
+		try {
+			return CandidateSolution.fromWords(words, n);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+}
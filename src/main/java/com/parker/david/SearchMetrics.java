@@ -0,0 +1,275 @@
+package com.parker.david;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * collects the metrics of every run of a search, and gives the totals across them.
+ * metrics are switched on by passing a SearchMetrics to LocalSearch.run, without one the hooks in the search are a null check each.
+ * several runs can record into the same SearchMetrics at once from different threads, each into its own RunMetrics.
+ * the metrics can be written out as a json summary, and can also be sent to java flight recorder as custom events,
+ * one per run and one per new best solution, which show up in a recording started with -XX:StartFlightRecording
+ */
+public class SearchMetrics {
+
+	/**
+	 * the thread mx bean, looked up once as each lookup allocates, which would show up in the allocation it measures
+	 */
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * the metrics of each run, in the order they were started
+	 */
+	private final List<RunMetrics> runs = new ArrayList<>();
+
+	/**
+	 * whether to send flight recorder events
+	 */
+	private final boolean flightRecorderEvents;
+
+	/**
+	 * the constructor, without flight recorder events
+	 */
+	SearchMetrics() {
+		this(false);
+	}
+
+	/**
+	 * the constructor
+	 *
+	 * @param flightRecorderEvents true to send flight recorder events, which needs a jvm with jdk.jfr
+	 */
+	SearchMetrics(boolean flightRecorderEvents) {
+		if (flightRecorderEvents && !FlightRecorderEvents.isAvailable())
+			throw new IllegalStateException("flight recorder events need a jvm with the jdk.jfr module");
+		this.flightRecorderEvents = flightRecorderEvents;
+	}
+
+	/**
+	 * starts recording a new run
+	 *
+	 * @param numberOfConstraints the number of constraints in the problem
+	 * @return the metrics for the run
+	 */
+	synchronized RunMetrics startRun(int numberOfConstraints) {
+		RunMetrics run = new RunMetrics(this, runs.size(), numberOfConstraints);
+		runs.add(run);
+		return run;
+	}
+
+	/**
+	 * called by a run when it finds a new best feasible solution
+	 *
+	 * @param run       the run
+	 * @param iteration the iteration it was found at
+	 * @param fitness   its fitness
+	 */
+	void newBest(RunMetrics run, int iteration, int fitness) {
+		if (flightRecorderEvents)
+			FlightRecorderEvents.newBest(run, iteration, fitness);
+	}
+
+	/**
+	 * called by a run when it ends
+	 *
+	 * @param run the run
+	 */
+	void endRun(RunMetrics run) {
+		if (flightRecorderEvents)
+			FlightRecorderEvents.endRun(run);
+	}
+
+	/**
+	 * the metrics of each run so far
+	 *
+	 * @return a copy of the list of runs, in the order they were started
+	 */
+	public synchronized List<RunMetrics> getRuns() {
+		return Collections.unmodifiableList(new ArrayList<>(runs));
+	}
+
+	/**
+	 * the bytes allocated so far by the current thread, from the hotspot extension of the thread mx bean
+	 *
+	 * @return the bytes allocated, or -1 if the jvm can't measure it
+	 */
+	static long currentThreadAllocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemoryEnabled())
+			return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return -1;
+	}
+
+	/**
+	 * writes the totals and every run as json
+	 *
+	 * @param output where to write the json
+	 * @throws IOException if it can't be written
+	 */
+	public void writeJson(Writer output) throws IOException {
+		List<RunMetrics> finishedRuns = new ArrayList<>();
+		for (RunMetrics run : getRuns()) {
+			if (run.getResult() != null)
+				finishedRuns.add(run);
+		}
+
+		long iterations = 0;
+		long neighboursGenerated = 0;
+		long neighboursEvaluated = 0;
+		long feasibilityChecks = 0;
+		long generateNanos = 0;
+		long selectNanos = 0;
+		long applyNanos = 0;
+		long traceNanos = 0;
+		long elapsedNanos = 0;
+		long allocatedBytes = 0;
+		int numberOfConstraints = finishedRuns.isEmpty() ? 0 : finishedRuns.get(0).numberOfConstraints();
+		long[] rejections = new long[numberOfConstraints + 1];
+		for (RunMetrics run : finishedRuns) {
+			iterations += run.getIterations();
+			neighboursGenerated += run.getNeighboursGenerated();
+			neighboursEvaluated += run.getNeighboursEvaluated();
+			feasibilityChecks += run.getFeasibilityChecks();
+			generateNanos += run.getGenerateNanos();
+			selectNanos += run.getSelectNanos();
+			applyNanos += run.getApplyNanos();
+			traceNanos += run.getTraceNanos();
+			elapsedNanos += run.getElapsedNanos();
+			allocatedBytes = (allocatedBytes < 0 || run.getAllocatedBytes() < 0) ? -1 : allocatedBytes + run.getAllocatedBytes();
+			for (int c = 0; c < numberOfConstraints; c++) {
+				rejections[c] += run.getRejections(c);
+			}
+			rejections[numberOfConstraints] += run.getRejections(-1);
+		}
+
+		output.write("{\n");
+		output.write("  \"runs\": " + finishedRuns.size() + ",\n");
+		writeCounters(output, "  ", iterations, neighboursGenerated, neighboursEvaluated, feasibilityChecks, rejections);
+		writeTimes(output, "  ", generateNanos, selectNanos, applyNanos, traceNanos, elapsedNanos, allocatedBytes);
+		output.write(",\n  \"runDetails\": [");
+		for (int r = 0; r < finishedRuns.size(); r++) {
+			output.write((r == 0) ? "\n" : ",\n");
+			writeRun(output, finishedRuns.get(r));
+		}
+		output.write(finishedRuns.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+		output.flush();
+	}
+
+	/**
+	 * the json summary as a string
+	 *
+	 * @return the json
+	 */
+	public String toJson() {
+		StringWriter json = new StringWriter();
+		try {
+			writeJson(json);
+		} catch (IOException e) {
+			//a string writer never throws
+			throw new UncheckedIOException(e);
+		}
+		return json.toString();
+	}
+
+	/**
+	 * writes one run as a json object
+	 *
+	 * @param output where to write the json
+	 * @param run    the run
+	 * @throws IOException if it can't be written
+	 */
+	private static void writeRun(Writer output, RunMetrics run) throws IOException {
+		SearchResult result = run.getResult();
+		long[] rejections = new long[run.numberOfConstraints() + 1];
+		for (int c = 0; c < run.numberOfConstraints(); c++) {
+			rejections[c] = run.getRejections(c);
+		}
+		rejections[run.numberOfConstraints()] = run.getRejections(-1);
+
+		output.write("    {\n");
+		output.write("      \"run\": " + run.getRunNumber() + ",\n");
+		output.write("      \"start\": \"" + result.getStartSolution() + "\",\n");
+		output.write("      \"best\": \"" + result.getBestSolution() + "\",\n");
+		output.write("      \"bestFitness\": " + result.getBestFitness() + ",\n");
+		output.write("      \"bestFeasible\": " + result.isBestFeasible() + ",\n");
+		writeCounters(output, "      ", run.getIterations(), run.getNeighboursGenerated(), run.getNeighboursEvaluated(), run.getFeasibilityChecks(), rejections);
+		writeTimes(output, "      ", run.getGenerateNanos(), run.getSelectNanos(), run.getApplyNanos(), run.getTraceNanos(), run.getElapsedNanos(), run.getAllocatedBytes());
+		output.write(",\n      \"trajectory\": [");
+		for (int i = 0; i < run.trajectorySize(); i++) {
+			output.write(((i == 0) ? "" : ", ") + "{\"iteration\": " + run.getIthTrajectoryIteration(i) + ", \"nanos\": " + run.getIthTrajectoryNanos(i)
+					+ ", \"fitness\": " + run.getIthTrajectoryFitness(i) + "}");
+		}
+		output.write("]\n    }");
+	}
+
+	/**
+	 * writes the work counters and the rejection rate of each constraint as json fields, followed by a comma
+	 *
+	 * @param output              where to write the json
+	 * @param indent              the indent of each field
+	 * @param iterations          the number of iterations
+	 * @param neighboursGenerated the number of neighbours generated
+	 * @param neighboursEvaluated the number of neighbours evaluated
+	 * @param feasibilityChecks   the number of feasibility checks
+	 * @param rejections          the rejections per constraint, the last being the ones not pinned on a constraint
+	 * @throws IOException if it can't be written
+	 */
+	private static void writeCounters(Writer output, String indent, long iterations, long neighboursGenerated, long neighboursEvaluated,
+									  long feasibilityChecks, long[] rejections) throws IOException {
+		long rejected = 0;
+		StringBuilder rates = new StringBuilder();
+		for (int c = 0; c < rejections.length - 1; c++) {
+			rejected += rejections[c];
+			rates.append((c == 0) ? "" : ", ").append(rate(rejections[c], feasibilityChecks));
+		}
+		rejected += rejections[rejections.length - 1];
+
+		output.write(indent + "\"iterations\": " + iterations + ",\n");
+		output.write(indent + "\"neighboursGenerated\": " + neighboursGenerated + ",\n");
+		output.write(indent + "\"neighboursEvaluated\": " + neighboursEvaluated + ",\n");
+		output.write(indent + "\"feasibilityChecks\": " + feasibilityChecks + ",\n");
+		output.write(indent + "\"infeasible\": " + rejected + ",\n");
+		output.write(indent + "\"rejectionRateByConstraint\": [" + rates + "],\n");
+		output.write(indent + "\"rejectionRateAlreadyViolated\": " + rate(rejections[rejections.length - 1], feasibilityChecks) + ",\n");
+	}
+
+	/**
+	 * writes the phase times and allocation as json fields, with no comma after the last one
+	 *
+	 * @param output         where to write the json
+	 * @param indent         the indent of each field
+	 * @param generateNanos  the time spent generating neighbourhoods
+	 * @param selectNanos    the time spent selecting moves
+	 * @param applyNanos     the time spent applying moves
+	 * @param traceNanos     the time spent tracing
+	 * @param elapsedNanos   the wall clock time
+	 * @param allocatedBytes the bytes allocated, -1 if unknown
+	 * @throws IOException if it can't be written
+	 */
+	private static void writeTimes(Writer output, String indent, long generateNanos, long selectNanos, long applyNanos, long traceNanos,
+								   long elapsedNanos, long allocatedBytes) throws IOException {
+		output.write(indent + "\"phaseNanos\": {\"generate\": " + generateNanos + ", \"select\": " + selectNanos + ", \"apply\": " + applyNanos
+				+ ", \"trace\": " + traceNanos + "},\n");
+		output.write(indent + "\"elapsedNanos\": " + elapsedNanos + ",\n");
+		output.write(indent + "\"allocatedBytes\": " + allocatedBytes + ",\n");
+		output.write(indent + "\"allocationRateBytesPerSecond\": " + ((allocatedBytes < 0 || elapsedNanos == 0) ? -1 : (long) (allocatedBytes / (elapsedNanos / 1e9))));
+	}
+
+	/**
+	 * a fraction formatted for json
+	 *
+	 * @param count the count
+	 * @param total the total it is a fraction of
+	 * @return the fraction to 6 decimal places, 0 if the total is 0
+	 */
+	private static String rate(long count, long total) {
+		return (total == 0) ? "0" : String.format(Locale.ROOT, "%.6f", (double) count / total);
+	}
+}
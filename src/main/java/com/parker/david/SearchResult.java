@@ -0,0 +1,150 @@
+package com.parker.david;
+
+/**
+ * this is our data class that stores the outcome of a single descent: where it started, the best solution it found,
+ * and how much work it took to get there
+ */
+public class SearchResult {
+
+	/**
+	 * the solution the descent started from
+	 */
+	private final CandidateSolution startSolution;
+
+	/**
+	 * the best solution found by the descent
+	 */
+	private final CandidateSolution bestSolution;
+
+	/**
+	 * the fitness of the best solution
+	 */
+	private final int bestFitness;
+
+	/**
+	 * whether the best solution is feasible, only false when the descent never reached a feasible solution
+	 */
+	private final boolean bestFeasible;
+
+	/**
+	 * the number of iterations, one per neighbourhood generated
+	 */
+	private final int iterations;
+
+	/**
+	 * the wall clock time the descent took, in nanoseconds
+	 */
+	private final long elapsedNanos;
+
+	/**
+	 * the constructor, takes everything the descent found
+	 *
+	 * @param startSolution the solution the descent started from
+	 * @param bestSolution  the best solution found
+	 * @param bestFitness   the fitness of the best solution
+	 * @param bestFeasible  whether the best solution is feasible
+	 * @param iterations    the number of iterations performed
+	 * @param elapsedNanos  the time taken in nanoseconds
+	 */
+	SearchResult(CandidateSolution startSolution, CandidateSolution bestSolution, int bestFitness, boolean bestFeasible, int iterations, long elapsedNanos) {
+		this.startSolution = startSolution;
+		this.bestSolution = bestSolution;
+		this.bestFitness = bestFitness;
+		this.bestFeasible = bestFeasible;
+		this.iterations = iterations;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * accessor, returns the solution the descent started from
+	 *
+	 * @return the solution the descent started from
+	 */
+	public CandidateSolution getStartSolution() {
+		return startSolution;
+	}
+
+	/**
+	 * accessor, returns the best solution found by the descent
+	 *
+	 * @return the best solution found by the descent
+	 */
+	public CandidateSolution getBestSolution() {
+		return bestSolution;
+	}
+
+	/**
+	 * accessor, returns the fitness of the best solution
+	 *
+	 * @return the fitness of the best solution
+	 */
+	public int getBestFitness() {
+		return bestFitness;
+	}
+
+	/**
+	 * accessor, returns true if the best solution is feasible
+	 *
+	 * @return true if the best solution is feasible
+	 */
+	public boolean isBestFeasible() {
+		return bestFeasible;
+	}
+
+	/**
+	 * accessor, returns the number of iterations performed
+	 *
+	 * @return the number of iterations performed
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * accessor, returns the wall clock time the descent took, in nanoseconds
+	 *
+	 * @return the wall clock time the descent took, in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * checks if this result should be preferred over another. Feasible solutions beat infeasible ones, then higher fitness wins.
+	 * on a tie neither is better, so the result that was seen first is kept
+	 *
+	 * @param other the result to compare to, may be null
+	 * @return true if this result is strictly better than other
+	 */
+	boolean isBetterThan(SearchResult other) {
+		return isBetter(bestFitness, bestFeasible, other);
+	}
+
+	/**
+	 * checks if a solution should be preferred over the best of a result, by the same rule as isBetterThan, so that a
+	 * solution can be compared while a descent is still running without building a result for it first
+	 *
+	 * @param fitness  the fitness of the solution
+	 * @param feasible whether the solution is feasible
+	 * @param other    the result to compare to, may be null
+	 * @return true if the solution is strictly better than the best of other
+	 */
+	static boolean isBetter(int fitness, boolean feasible, SearchResult other) {
+		if (other == null)
+			return true;
+		if (feasible != other.bestFeasible)
+			return feasible;
+		return fitness > other.bestFitness;
+	}
+
+	/**
+	 * formats the result on one line.
+	 * example output: [0000100000] -> [0101110001] z=56 after 5 iterations
+	 *
+	 * @return a string describing the result
+	 */
+	@Override
+	public String toString() {
+		return startSolution + " -> " + bestSolution + " z=" + bestFitness + (bestFeasible ? "" : " (infeasible)") + " after " + iterations + " iterations";
+	}
+}
@@ -0,0 +1,206 @@
+package com.parker.david;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * An implementation of a solution selection interface for simulated annealing.
+ * instead of looking at the whole neighbourhood, each step samples one neighbour at random and only scores that one.
+ * a feasible neighbour that is no worse than the current solution is always accepted, and a worse one is accepted with
+ * probability exp(delta / temperature), so the search can climb out of local optima while it is hot and settles as it cools.
+ * a rejected neighbour is reported as no move, and the current solution stays as it is for that step.
+ * the temperature drops every step following the cooling schedule, and the search ends once it is below the final temperature.
+ * run this under a LocalSearch with TerminationCriteria to put a hard limit on the time it takes
+ */
+public class SimulatedAnnealingSelection implements NextSolutionSelector {
+
+	/**
+	 * this flag is set to true once the temperature has fallen below the final temperature
+	 */
+	private boolean searchTerminationFlag = false;
+
+	/**
+	 * this is the objective function, used for evaluating fitness of the candidate solution
+	 */
+	private final ObjectiveFunction objectiveFunction;
+
+	/**
+	 * this is the set of constraints which we use to determine if a solution is feasible
+	 */
+	private final ConstraintSet constraints;
+
+	/**
+	 * how the temperature drops each step
+	 */
+	private final CoolingSchedule coolingSchedule;
+
+	/**
+	 * the search ends once the temperature is below this
+	 */
+	private final double finalTemperature;
+
+	/**
+	 * the random number generator used to sample neighbours and to accept worse ones
+	 */
+	private CheckpointableRandom random;
+
+	/**
+	 * the current temperature
+	 */
+	private double temperature;
+
+	/**
+	 * the number of steps taken so far
+	 */
+	private int numberOfSteps = 0;
+
+	/**
+	 * the number of sampled neighbours that were accepted
+	 */
+	private int acceptedMoves = 0;
+
+	/**
+	 * the constructor
+	 *
+	 * @param objectiveFunction  the objective function
+	 * @param constraints        the set of constraints
+	 * @param initialTemperature the temperature of the first step, in units of fitness
+	 * @param finalTemperature   the temperature below which the search ends, must be positive and less than the initial temperature,
+	 *                           as geometric and lundy and mees cooling never get below 0 and linear cooling stops at it
+	 * @param coolingSchedule    how the temperature drops each step
+	 * @param seed               the seed for the random number generator, so that a run can be repeated
+	 */
+	SimulatedAnnealingSelection(ObjectiveFunction objectiveFunction, ConstraintSet constraints, double initialTemperature, double finalTemperature,
+								CoolingSchedule coolingSchedule, long seed) {
+		if (!(finalTemperature > 0 && initialTemperature > finalTemperature))
+			throw new IllegalArgumentException("temperatures must satisfy initial > final > 0, were " + initialTemperature + " and " + finalTemperature);
+		this.objectiveFunction = objectiveFunction;
+		this.constraints = constraints;
+		this.temperature = initialTemperature;
+		this.finalTemperature = finalTemperature;
+		this.coolingSchedule = coolingSchedule;
+		this.random = new CheckpointableRandom(seed);
+	}
+
+	/**
+	 * our function to get a new solution from the neighbourhood given the current solution.
+	 * the neighbours are turned into moves and the selection is made by selectMove
+	 *
+	 * @param currentSolution the current selected solution
+	 * @param neighbourhood   the neighbourhood of solutions around the current solution as found by some neighbourhood function
+	 * @return the accepted neighbour, or null if the sampled neighbour was rejected
+	 */
+	@Override
+	public CandidateSolution getNewSolution(CandidateSolution currentSolution, ArrayList<CandidateSolution> neighbourhood) {
+		return NextSolutionSelector.selectNeighbourByMove(this, objectiveFunction, constraints, currentSolution, neighbourhood);
+	}
+
+	/**
+	 * samples one move from the neighbourhood and accepts or rejects it, then cools
+	 *
+	 * @param evaluator     the evaluator holding the current solution
+	 * @param neighbourhood the moves leading to each neighbour, only one of which is looked at
+	 * @return the sampled move if it was accepted, or null
+	 */
+	@Override
+	public Move selectMove(IncrementalEvaluator evaluator, MoveNeighbourhood neighbourhood) {
+		if (neighbourhood.size() == 0) {
+			//there is nowhere to go, terminate the search
+			searchTerminationFlag = true;
+			return null;
+		}
+
+		Move move = neighbourhood.getIthMove(random.nextInt(neighbourhood.size()));
+		int delta = evaluator.fitnessAfter(move) - evaluator.getCurrentFitness();
+		boolean accepted = isAccepted(delta) && evaluator.isFeasibleAfter(move);
+
+		numberOfSteps++;
+		temperature = coolingSchedule.nextTemperature(temperature, numberOfSteps);
+		if (temperature < finalTemperature)
+			searchTerminationFlag = true;
+
+		if (!accepted)
+			return null;
+		acceptedMoves++;
+		return move;
+	}
+
+	/**
+	 * the metropolis criterion. An improvement or a sideways move is always accepted, and a worse move with probability exp(delta / temperature)
+	 *
+	 * @param delta the change in fitness the move would make
+	 * @return true if the move is accepted, as far as fitness goes
+	 */
+	private boolean isAccepted(int delta) {
+		if (delta >= 0)
+			return true;
+		return temperature > 0 && random.nextDouble() < Math.exp(delta / temperature);
+	}
+
+	/**
+	 * the temperature of the next step
+	 *
+	 * @return the current temperature
+	 */
+	public double getTemperature() {
+		return temperature;
+	}
+
+	/**
+	 * the number of steps taken so far
+	 *
+	 * @return the number of steps
+	 */
+	public int getNumberOfSteps() {
+		return numberOfSteps;
+	}
+
+	/**
+	 * the number of sampled neighbours that were accepted so far
+	 *
+	 * @return the number of accepted moves
+	 */
+	public int getAcceptedMoves() {
+		return acceptedMoves;
+	}
+
+	/**
+	 * accessor for searchTerminationFlag, returns true when the search has completed
+	 *
+	 * @return a boolean, true if the search has cooled to the final temperature, false if it is still running
+	 */
+	@Override
+	public boolean isSearchComplete() {
+		return searchTerminationFlag;
+	}
+
+	/**
+	 * writes the temperature, the step counts and the random number generator
+	 *
+	 * @param output where to write the state
+	 * @throws IOException if it can't be written
+	 */
+	@Override
+	public void writeState(DataOutput output) throws IOException {
+		output.writeDouble(temperature);
+		output.writeInt(numberOfSteps);
+		output.writeInt(acceptedMoves);
+		SearchCheckpoint.writeRandom(output, random);
+	}
+
+	/**
+	 * reads the temperature, the step counts and the random number generator
+	 *
+	 * @param input where to read the state from
+	 * @throws IOException if it can't be read
+	 */
+	@Override
+	public void readState(DataInput input) throws IOException {
+		temperature = input.readDouble();
+		numberOfSteps = input.readInt();
+		acceptedMoves = input.readInt();
+		random = SearchCheckpoint.readRandom(input);
+	}
+}
@@ -6,7 +6,14 @@ import java.util.ArrayList;
  * this is an implementation of a neighbourhood generation strategy.
  * In particular, it calculates the single bit compliment for each decision variable (encoded as a boolean)
  */
-public class SingleBitComplimentGenerator implements NeighbourhoodGenerator {
+public class SingleBitComplimentGenerator implements NeighbourhoodGenerator, MoveNeighbourhoodGenerator {
+
+	/**
+	 * the moves of a single bit compliment neighbourhood only depend on the number of decision variables,
+	 * so the last neighbourhood is kept and handed out again as long as that number doesn't change
+	 */
+	private SingleBitMoveNeighbourhood cachedNeighbourhood;
+
 	/**
 	 * this function loops through i times, where i is the number of decision variables in the current solution.
 	 * it makes a copy of the current solution, compliments the ith bit, and adds that new solution to the neighbourhood
@@ -18,16 +25,67 @@ public class SingleBitComplimentGenerator implements NeighbourhoodGenerator {
 	 */
 	@Override
 	public ArrayList<CandidateSolution> generateSolutionNeighbourhood(CandidateSolution currentSolution) {
-		ArrayList<CandidateSolution> neighbourhood = new ArrayList<>();
-
-		//loop through all decision variables
-		for (int i = 0; i < currentSolution.numberOfDecisionVariables(); i++) {
+		return generateMoveNeighbourhood(currentSolution).materialise(currentSolution);
+	}
 
-			//create a copy, flip the ith bit, and add to the neighbourhood
-			CandidateSolution neighbour = currentSolution.copy();
-			neighbour.setIthDecisionVariable(i, !neighbour.getIthDecisionVariable(i));
-			neighbourhood.add(neighbour);
+	/**
+	 * the move form of the single bit compliment neighbourhood, move i flips bit i.
+	 * after the first call for a given problem size this allocates nothing
+	 *
+	 * @param currentSolution the solution for which a new neighbourhood needs to be found
+	 * @return the n single bit flip moves
+	 */
+	@Override
+	public MoveNeighbourhood generateMoveNeighbourhood(CandidateSolution currentSolution) {
+		SingleBitMoveNeighbourhood neighbourhood = cachedNeighbourhood;
+		if (neighbourhood == null || neighbourhood.size() != currentSolution.numberOfDecisionVariables()) {
+			neighbourhood = new SingleBitMoveNeighbourhood(currentSolution.numberOfDecisionVariables());
+			cachedNeighbourhood = neighbourhood;
 		}
 		return neighbourhood;
 	}
+
+	/**
+	 * the neighbourhood of every single bit flip, holding one immutable move per decision variable
+	 */
+	private static class SingleBitMoveNeighbourhood implements MoveNeighbourhood {
+
+		/**
+		 * move i flips bit i
+		 */
+		private final Move[] moves;
+
+		/**
+		 * creates the flip move for each decision variable
+		 *
+		 * @param numberOfDecisionVariables the number of decision variables in the problem
+		 */
+		SingleBitMoveNeighbourhood(int numberOfDecisionVariables) {
+			moves = new Move[numberOfDecisionVariables];
+			for (int i = 0; i < numberOfDecisionVariables; i++) {
+				moves[i] = new Move(i);
+			}
+		}
+
+		/**
+		 * there is one move per decision variable
+		 *
+		 * @return the number of decision variables
+		 */
+		@Override
+		public int size() {
+			return moves.length;
+		}
+
+		/**
+		 * the move that flips bit i
+		 *
+		 * @param i the index of the decision variable to flip
+		 * @return the move flipping that decision variable
+		 */
+		@Override
+		public Move getIthMove(int i) {
+			return moves[i];
+		}
+	}
 }
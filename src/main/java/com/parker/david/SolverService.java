@@ -0,0 +1,558 @@
+package com.parker.david;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * a long lived solver that takes problems over a line based protocol on stdin or a local socket and solves them as jobs,
+ * so that every solve after the first runs on a warm, jit compiled search instead of paying for a new jvm.
+ * jobs run on a fixed number of threads with a bounded queue in front of them, a job that arrives when the queue is full
+ * is rejected straight away rather than waiting, so a client can back off or go elsewhere. Each job may have a deadline,
+ * counted from when it was accepted, after which its current descent stops and no more of its starts are run.
+ * a job runs its starts one after another, and whenever a descent finds a solution that beats the best of the job so far
+ * it is sent back while the descent is still running, at most once every 100 ms, with the last one sent when the descent ends.
+ * requests, one per line apart from the problem itself:
+ * <pre>
+ * solve id [selector=best|parallel-best|first[:order]|tabu|annealing|late-acceptance] [neighbourhood=single|swap|kflip:K[:L]] [seed=N]
+ *          [deadline-ms=N] [iteration-budget=N] [stagnation-budget=N]
+ *   followed by the problem in the text format of ProblemLoader, ended by a line holding only: end
+ * status
+ * quit      waits for the jobs of this connection to finish, then closes it. So does the end of the input
+ * </pre>
+ * responses, one per line, lines of different jobs can be interleaved:
+ * <pre>
+ * accepted id
+ * rejected id reason
+ * best id start fitness feasible solution      the descent of that start found a new best solution for the job
+ * done id ok|deadline fitness feasible solution starts=run/total ms=elapsed
+ * error id message
+ * status running=N queued=N accepted=N rejected=N completed=N
+ * </pre>
+ */
+public class SolverService implements Closeable {
+
+	/**
+	 * the largest problem that is read for a job, in bytes of problem text
+	 */
+	private static final int MAX_PROBLEM_BYTES = 64 << 20;
+
+	/**
+	 * the least time between two best lines sent from inside a descent, so that a descent that improves every step
+	 * doesn't flood the connection with solutions
+	 */
+	private static final long BEST_REPORT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	/**
+	 * the threads that run the jobs, and the bounded queue of jobs waiting for a thread
+	 */
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * the number of jobs accepted
+	 */
+	private final AtomicLong acceptedJobs = new AtomicLong();
+
+	/**
+	 * the number of jobs rejected, because the queue was full or the request was invalid
+	 */
+	private final AtomicLong rejectedJobs = new AtomicLong();
+
+	/**
+	 * the number of jobs that have finished
+	 */
+	private final AtomicLong completedJobs = new AtomicLong();
+
+	/**
+	 * the constructor, starts the job threads
+	 *
+	 * @param threads       the number of jobs that run at once
+	 * @param queueCapacity the number of jobs that can wait for a thread, any more are rejected
+	 */
+	SolverService(int threads, int queueCapacity) {
+		if (threads < 1 || queueCapacity < 1)
+			throw new IllegalArgumentException("the service needs at least 1 thread and a queue of at least 1, was " + threads + " and " + queueCapacity);
+		AtomicInteger threadNumber = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+			Thread thread = new Thread(runnable, "solver-job-" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * accepts connections on a loopback port, serving each on its own thread, until the thread calling this is interrupted
+	 * or the socket fails. Every connection shares the same job threads and queue
+	 *
+	 * @param port the port to listen on, only connections from this host are accepted
+	 * @throws IOException if the port can't be listened on
+	 */
+	public void listen(int port) throws IOException {
+		try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			int connectionNumber = 0;
+			while (!Thread.currentThread().isInterrupted()) {
+				Socket socket = server.accept();
+				Thread connection = new Thread(() -> {
+					try (Socket client = socket) {
+						serve(client.getInputStream(), client.getOutputStream());
+					} catch (IOException e) {
+						//the client went away, its jobs have already been told to stop
+					}
+				}, "solver-connection-" + connectionNumber++);
+				connection.setDaemon(true);
+				connection.start();
+			}
+		}
+	}
+
+	/**
+	 * serves one connection: reads its requests, queues its jobs and sends back their results, until it quits or its input ends,
+	 * and then waits for its jobs to finish
+	 *
+	 * @param input  where the requests come from
+	 * @param output where the responses go
+	 * @throws IOException if the requests can't be read or the responses can't be written
+	 */
+	public void serve(InputStream input, OutputStream output) throws IOException {
+		BufferedReader requests = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+		Connection connection = new Connection(new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8)));
+		List<Future<?>> jobs = new ArrayList<>();
+		try {
+			String line;
+			while ((line = requests.readLine()) != null) {
+				String[] words = line.trim().split("\\s+");
+				if (words[0].isEmpty() || words[0].startsWith("#"))
+					continue;
+				if (words[0].equals("quit"))
+					break;
+				if (words[0].equals("status")) {
+					connection.send("status running=" + executor.getActiveCount() + " queued=" + executor.getQueue().size() + " accepted=" + acceptedJobs.get()
+							+ " rejected=" + rejectedJobs.get() + " completed=" + completedJobs.get());
+				} else if (words[0].equals("solve") && words.length >= 2) {
+					Future<?> job = submit(words, readProblem(requests), connection);
+					if (job != null)
+						jobs.add(job);
+				} else {
+					connection.send("error - unknown request " + line + ", expected solve id [options], status or quit");
+				}
+			}
+			for (Future<?> job : jobs) {
+				job.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			//jobs catch their own failures and report them as errors, so this is a bug
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * reads the problem text of a solve request up to its end line
+	 *
+	 * @param requests where the requests come from
+	 * @return the problem text, or null if it was bigger than the service accepts
+	 * @throws IOException if the input ends before the end line
+	 */
+	private static byte[] readProblem(BufferedReader requests) throws IOException {
+		ByteArrayOutputStream problem = new ByteArrayOutputStream();
+		boolean tooBig = false;
+		String line;
+		while ((line = requests.readLine()) != null) {
+			if (line.trim().equals("end"))
+				return tooBig ? null : problem.toByteArray();
+			if (problem.size() + line.length() + 1 > MAX_PROBLEM_BYTES) {
+				tooBig = true;
+				problem.reset();
+			}
+			if (!tooBig) {
+				problem.write(line.getBytes(StandardCharsets.UTF_8));
+				problem.write('\n');
+			}
+		}
+		throw new IOException("the input ended part way through a problem, expected a line holding only: end");
+	}
+
+	/**
+	 * parses a solve request and queues its job, answering with accepted, rejected or error
+	 *
+	 * @param words      the words of the solve line
+	 * @param problem    the problem text, null if it was too big
+	 * @param connection where the responses go
+	 * @return the queued job, or null if it wasn't queued
+	 * @throws IOException if the response can't be written
+	 */
+	private Future<?> submit(String[] words, byte[] problem, Connection connection) throws IOException {
+		String id = words[1];
+		Job job;
+		try {
+			if (problem == null)
+				throw new IllegalArgumentException("the problem is bigger than " + MAX_PROBLEM_BYTES + " bytes");
+			Map<String, String> options = new HashMap<>();
+			for (int w = 2; w < words.length; w++) {
+				int equals = words[w].indexOf('=');
+				if (equals < 1)
+					throw new IllegalArgumentException("expected option=value, found " + words[w]);
+				options.put(words[w].substring(0, equals), words[w].substring(equals + 1));
+			}
+			job = new Job(id, ProblemLoader.parse(ByteBuffer.wrap(problem), Paths.get(id)), options, connection);
+		} catch (IOException | RuntimeException e) {
+			rejectedJobs.incrementAndGet();
+			connection.send("error " + id + " " + e.getMessage());
+			return null;
+		}
+
+		try {
+			//holding the connection keeps the job from sending anything before it has been accepted
+			synchronized (connection) {
+				Future<?> queued = executor.submit(job);
+				acceptedJobs.incrementAndGet();
+				connection.send("accepted " + id);
+				return queued;
+			}
+		} catch (RejectedExecutionException e) {
+			rejectedJobs.incrementAndGet();
+			connection.send("rejected " + id + " " + (executor.isShutdown() ? "the service is shutting down" : "the queue is full"));
+			return null;
+		}
+	}
+
+	/**
+	 * stops taking jobs, waits for the jobs that have been accepted, and stops the job threads
+	 *
+	 * @throws IOException if interrupted while waiting
+	 */
+	@Override
+	public void close() throws IOException {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while waiting for the jobs to finish", e);
+		}
+	}
+
+	/**
+	 * the responses of one connection, which the jobs of the connection write to from their own threads
+	 */
+	private static class Connection {
+
+		/**
+		 * where the responses go
+		 */
+		private final BufferedWriter output;
+
+		/**
+		 * set once the responses can't be written, after which the jobs of the connection stop early
+		 */
+		private volatile boolean closed;
+
+		/**
+		 * the constructor
+		 *
+		 * @param output where the responses go
+		 */
+		Connection(BufferedWriter output) {
+			this.output = output;
+		}
+
+		/**
+		 * writes one response line and flushes it, so the client sees it straight away
+		 *
+		 * @param line the response
+		 * @throws IOException if it can't be written, which closes the connection
+		 */
+		synchronized void send(String line) throws IOException {
+			try {
+				output.write(line);
+				output.newLine();
+				output.flush();
+			} catch (IOException e) {
+				closed = true;
+				throw e;
+			}
+		}
+
+		/**
+		 * whether the responses can still be written
+		 *
+		 * @return true once a write has failed or the connection has ended
+		 */
+		boolean isClosed() {
+			return closed;
+		}
+
+		/**
+		 * flushes whatever is left, the stream itself belongs to whoever opened it
+		 */
+		synchronized void close() {
+			closed = true;
+			try {
+				output.flush();
+			} catch (IOException e) {
+				//nothing more can be sent
+			}
+		}
+	}
+
+	/**
+	 * one solve request: each start of the problem is searched in turn until the starts run out or the deadline passes
+	 */
+	private class Job implements Runnable {
+
+		/**
+		 * the id the client gave the job, sent back with every response about it
+		 */
+		private final String id;
+
+		/**
+		 * the problem to solve
+		 */
+		private final Problem problem;
+
+		/**
+		 * the --selector style option for each descent
+		 */
+		private final String selectorOption;
+
+		/**
+		 * the --neighbourhood style option for each descent
+		 */
+		private final String neighbourhoodOption;
+
+		/**
+		 * the seed for the stochastic selectors
+		 */
+		private final long seed;
+
+		/**
+		 * the budgets of each descent, apart from the deadline
+		 */
+		private final TerminationCriteria terminationCriteria;
+
+		/**
+		 * the System.nanoTime after which the job stops, Long.MAX_VALUE if it has no deadline
+		 */
+		private final long deadline;
+
+		/**
+		 * where the results go
+		 */
+		private final Connection connection;
+
+		/**
+		 * the constructor, reads the options of the request. The deadline starts now
+		 *
+		 * @param id         the id of the job
+		 * @param problem    the problem to solve
+		 * @param options    the options of the solve request
+		 * @param connection where the results go
+		 * @throws IllegalArgumentException if an option is unknown or has a bad value
+		 */
+		Job(String id, Problem problem, Map<String, String> options, Connection connection) {
+			this.id = id;
+			this.problem = problem;
+			this.connection = connection;
+			Map<String, String> remaining = new HashMap<>(options);
+			selectorOption = remaining.getOrDefault("selector", "best");
+			neighbourhoodOption = remaining.getOrDefault("neighbourhood", "single");
+			seed = Long.parseLong(remaining.getOrDefault("seed", "0"));
+			TerminationCriteria criteria = TerminationCriteria.NONE;
+			if (remaining.containsKey("iteration-budget"))
+				criteria = criteria.withIterationBudget(Integer.parseInt(remaining.get("iteration-budget")));
+			if (remaining.containsKey("stagnation-budget"))
+				criteria = criteria.withStagnationBudget(Integer.parseInt(remaining.get("stagnation-budget")));
+			terminationCriteria = criteria;
+			long deadlineMillis = Long.parseLong(remaining.getOrDefault("deadline-ms", "-1"));
+			deadline = (deadlineMillis < 0) ? Long.MAX_VALUE : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+			remaining.keySet().removeAll(Arrays.asList("selector", "neighbourhood", "seed", "iteration-budget", "stagnation-budget", "deadline-ms"));
+			if (!remaining.isEmpty())
+				throw new IllegalArgumentException("unknown options " + remaining.keySet() + ", expected selector, neighbourhood, seed, deadline-ms, iteration-budget or stagnation-budget");
+
+			//build one of each now so that a bad strategy is an error for the request rather than for the job
+			Main.createSelector(selectorOption, problem.getObjectiveFunction(), problem.getConstraints(), seed);
+			Main.createNeighbourhoodGenerator(neighbourhoodOption, problem);
+		}
+
+		/**
+		 * runs the starts, sending each new best solution and then the final result
+		 */
+		@Override
+		public void run() {
+			long startTime = System.nanoTime();
+			try {
+				List<CandidateSolution> startSolutions = problem.getStartSolutions();
+				BestReporter bestReporter = new BestReporter();
+				int startsRun = 0;
+				boolean deadlinePassed = false;
+				for (CandidateSolution startSolution : startSolutions) {
+					long remainingNanos = deadline - System.nanoTime();
+					if (remainingNanos <= 0 || connection.isClosed()) {
+						deadlinePassed = remainingNanos <= 0;
+						break;
+					}
+					TerminationCriteria criteria = (deadline == Long.MAX_VALUE) ? terminationCriteria : terminationCriteria.withTimeBudget(remainingNanos, TimeUnit.NANOSECONDS);
+					bestReporter.startNumber = startsRun;
+					new LocalSearch(problem.getObjectiveFunction(), problem.getConstraints(),
+							Main.createSelector(selectorOption, problem.getObjectiveFunction(), problem.getConstraints(), seed),
+							Main.createNeighbourhoodGenerator(neighbourhoodOption, problem), criteria).run(startSolution, bestReporter);
+					startsRun++;
+				}
+				SearchResult best = bestReporter.best;
+				deadlinePassed |= System.nanoTime() >= deadline;
+				connection.send("done " + id + " " + (deadlinePassed ? "deadline" : "ok") + " " + ((best == null) ? "- - -" : describe(best))
+						+ " starts=" + startsRun + "/" + startSolutions.size() + " ms=" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+			} catch (IOException e) {
+				//the connection is gone, there is no one to tell
+			} catch (RuntimeException e) {
+				try {
+					connection.send("error " + id + " " + e);
+				} catch (IOException ignored) {
+					//the connection is gone, there is no one to tell
+				}
+			} finally {
+				completedJobs.incrementAndGet();
+			}
+		}
+
+		/**
+		 * the fitness, feasibility and solution of a result, as sent in the responses
+		 *
+		 * @param result the result
+		 * @return the fields
+		 */
+		private String describe(SearchResult result) {
+			return result.getBestFitness() + " " + result.isBestFeasible() + " " + result.getBestSolution();
+		}
+
+		/**
+		 * the trace sink of the job's descents: it follows the solutions each descent keeps as its best, the start and
+		 * then every feasible solution it moves to, and sends the job's new best solutions as they are found.
+		 * looking at each iteration is O(1), and a solution is only copied when it beats the job's best
+		 */
+		private class BestReporter implements TraceSink {
+
+			/**
+			 * the best solution of the job so far, null before the first descent starts
+			 */
+			private SearchResult best;
+
+			/**
+			 * the number of the start that the running descent began from
+			 */
+			private int startNumber;
+
+			/**
+			 * whether best has changed since it was last sent
+			 */
+			private boolean unsent;
+
+			/**
+			 * the System.nanoTime that a best line was last sent
+			 */
+			private long lastSentNanos = System.nanoTime() - BEST_REPORT_INTERVAL_NANOS;
+
+			/**
+			 * the start of a descent is its first best solution
+			 *
+			 * @param evaluator the evaluator holding the start solution
+			 * @throws IOException if the connection is gone
+			 */
+			@Override
+			public void startRun(IncrementalEvaluator evaluator) throws IOException {
+				consider(evaluator, 0);
+			}
+
+			/**
+			 * the current solution is the one the last step moved to, which the descent keeps as its best if it is feasible and better
+			 *
+			 * @param iteration     the iteration number
+			 * @param evaluator     the evaluator holding the current solution
+			 * @param neighbourhood the moves to each neighbour of the current solution
+			 * @param selectedMove  the move that was selected, or null
+			 * @throws IOException if the connection is gone
+			 */
+			@Override
+			public void iteration(int iteration, IncrementalEvaluator evaluator, MoveNeighbourhood neighbourhood, Move selectedMove) throws IOException {
+				if (evaluator.isCurrentSolutionFeasible())
+					consider(evaluator, iteration);
+			}
+
+			/**
+			 * takes the best of the descent, which also covers the solution its last step moved to, and sends the job's best if it hasn't been
+			 *
+			 * @param result    the result of the descent
+			 * @param evaluator the evaluator holding the solution the descent finished on
+			 * @throws IOException if the connection is gone
+			 */
+			@Override
+			public void endRun(SearchResult result, IncrementalEvaluator evaluator) throws IOException {
+				if (result.isBetterThan(best)) {
+					best = result;
+					unsent = true;
+				}
+				if (unsent)
+					send(System.nanoTime());
+			}
+
+			/**
+			 * keeps the current solution if it beats the job's best, and sends it if the last line was long enough ago
+			 *
+			 * @param evaluator the evaluator holding the current solution
+			 * @param iteration the iteration the solution was reached at
+			 * @throws IOException if the connection is gone
+			 */
+			private void consider(IncrementalEvaluator evaluator, int iteration) throws IOException {
+				if (!SearchResult.isBetter(evaluator.getCurrentFitness(), evaluator.isCurrentSolutionFeasible(), best))
+					return;
+				CandidateSolution solution = evaluator.getCurrentSolution().copy();
+				best = new SearchResult(solution, solution, evaluator.getCurrentFitness(), evaluator.isCurrentSolutionFeasible(), iteration, 0);
+				unsent = true;
+				long now = System.nanoTime();
+				if (now - lastSentNanos >= BEST_REPORT_INTERVAL_NANOS)
+					send(now);
+			}
+
+			/**
+			 * sends the job's best solution
+			 *
+			 * @param now the System.nanoTime
+			 * @throws IOException if the connection is gone
+			 */
+			private void send(long now) throws IOException {
+				connection.send("best " + id + " " + startNumber + " " + describe(best));
+				unsent = false;
+				lastSentNanos = now;
+			}
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package com.parker.david;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * builds start solutions from the problem rather than from hand written vectors, so that a descent starts close to a
+ * local optimum instead of spending most of its iterations setting items one at a time.
+ * the greedy construction walks the variables in candidate list order, best objective per constraint weight first, and sets
+ * each one that doesn't break a constraint the solution still satisfies. The randomised construction, as in GRASP, instead
+ * picks at random among the first few variables in that order that can still be set, so that repeated constructions
+ * give different starts that are all nearly as good as the greedy one.
+ * the left hand side of each constraint is kept up to date as variables are set, so checking a variable only reads its
+ * column of the variable index. On a knapsack the constructions are always feasible; with greater than constraints that
+ * start out violated they are only as feasible as setting the best ratio variables makes them
+ */
+public class StartConstructor {
+
+	/**
+	 * the objective function, variables that add nothing to it are only set to help a violated constraint
+	 */
+	private final ObjectiveFunction objectiveFunction;
+
+	/**
+	 * the constraints that the constructions keep satisfied
+	 */
+	private final ConstraintSet constraints;
+
+	/**
+	 * the order the variables are considered in
+	 */
+	private final CandidateList candidateList;
+
+	/**
+	 * the constraints each variable has a non zero weight in
+	 */
+	private final VariableConstraintIndex variableIndex;
+
+	/**
+	 * the left hand side of each constraint for the empty solution, always 0, copied at the start of each construction
+	 */
+	private final long[] emptyLeftHandSides;
+
+	/**
+	 * the constructor
+	 *
+	 * @param objectiveFunction the objective function
+	 * @param constraints       the constraints that the constructions keep satisfied
+	 * @param candidateList     the order the variables are considered in
+	 */
+	StartConstructor(ObjectiveFunction objectiveFunction, ConstraintSet constraints, CandidateList candidateList) {
+		this.objectiveFunction = objectiveFunction;
+		this.constraints = constraints;
+		this.candidateList = candidateList;
+		this.variableIndex = constraints.getVariableIndex();
+		this.emptyLeftHandSides = new long[constraints.size()];
+	}
+
+	/**
+	 * builds the greedy start, setting every variable in candidate list order that can be set
+	 *
+	 * @return the greedy start
+	 */
+	public CandidateSolution greedy() {
+		CandidateSolution solution = new CandidateSolution(candidateList.size());
+		long[] leftHandSides = emptyLeftHandSides.clone();
+		for (int rank = 0; rank < candidateList.size(); rank++) {
+			int variable = candidateList.getVariableAtRank(rank);
+			if (canSet(variable, leftHandSides))
+				set(variable, solution, leftHandSides);
+		}
+		return solution;
+	}
+
+	/**
+	 * builds a randomised greedy start: each step sets a variable picked at random from the restricted candidate list,
+	 * the first restrictedListLength unset variables in candidate list order that can be set, until none can be set.
+	 * a length of 1 gives the greedy start
+	 *
+	 * @param random               the source of the random picks
+	 * @param restrictedListLength the most variables picked between at each step, at least 1
+	 * @return the start
+	 */
+	public CandidateSolution randomisedGreedy(Random random, int restrictedListLength) {
+		if (restrictedListLength < 1)
+			throw new IllegalArgumentException("restricted candidate list length must be at least 1, was " + restrictedListLength);
+		CandidateSolution solution = new CandidateSolution(candidateList.size());
+		long[] leftHandSides = emptyLeftHandSides.clone();
+		int[] restrictedList = new int[restrictedListLength];
+
+		//the ranks before firstUnsetRank are all set, and stay set, so each scan starts after them.
+		//a variable that can't be set is scanned again, as a negative weight set later can make room for it
+		int firstUnsetRank = 0;
+		while (true) {
+			while (firstUnsetRank < candidateList.size() && solution.getIthDecisionVariable(candidateList.getVariableAtRank(firstUnsetRank))) {
+				firstUnsetRank++;
+			}
+			int found = 0;
+			for (int rank = firstUnsetRank; rank < candidateList.size() && found < restrictedListLength; rank++) {
+				int variable = candidateList.getVariableAtRank(rank);
+				if (!solution.getIthDecisionVariable(variable) && canSet(variable, leftHandSides))
+					restrictedList[found++] = variable;
+			}
+			if (found == 0)
+				return solution;
+			set(restrictedList[random.nextInt(found)], solution, leftHandSides);
+		}
+	}
+
+	/**
+	 * builds a number of distinct starts: the greedy start, then randomised greedy starts until there are that many or
+	 * the attempts run out, as a small problem may not have that many distinct constructions
+	 *
+	 * @param numberOfStarts       the most starts to build
+	 * @param restrictedListLength the restricted candidate list length of the randomised starts
+	 * @param seed                 the seed of the random picks
+	 * @return the distinct starts, greedy first
+	 */
+	public List<CandidateSolution> construct(int numberOfStarts, int restrictedListLength, long seed) {
+		Set<CandidateSolution> starts = new LinkedHashSet<>();
+		if (numberOfStarts > 0)
+			starts.add(greedy());
+		Random random = new Random(seed);
+		for (long attempt = 0; starts.size() < numberOfStarts && attempt < 4L * numberOfStarts; attempt++) {
+			starts.add(randomisedGreedy(random, restrictedListLength));
+		}
+		return new ArrayList<>(starts);
+	}
+
+	/**
+	 * checks that setting a variable doesn't make any constraint that is satisfied become violated, or any constraint that
+	 * is violated more violated, and that it is worth setting, either for its objective weight or because it makes a
+	 * violated constraint less violated, which lets greater than constraints fill up
+	 *
+	 * @param variable      the index of the variable, which is unset
+	 * @param leftHandSides the left hand side of each constraint for the solution being built
+	 * @return true if the variable can be set
+	 */
+	private boolean canSet(int variable, long[] leftHandSides) {
+		boolean worthSetting = objectiveFunction.getIthWeight(variable) > 0;
+		for (int k = variableIndex.columnStart(variable); k < variableIndex.columnEnd(variable); k++) {
+			int c = variableIndex.getIthConstraintIndex(k);
+			Constraint constraint = constraints.getIthConstraint(c);
+			if (constraint.isSatisfiedBy(leftHandSides[c])) {
+				if (!constraint.isSatisfiedBy(leftHandSides[c] + variableIndex.getIthWeight(k)))
+					return false;
+			} else if ((long) constraint.getSign() * variableIndex.getIthWeight(k) > 0) {
+				return false;
+			} else {
+				worthSetting = true;
+			}
+		}
+		return worthSetting;
+	}
+
+	/**
+	 * sets a variable and adds its weights to the left hand sides
+	 *
+	 * @param variable      the index of the variable, which is unset
+	 * @param solution      the solution being built
+	 * @param leftHandSides the left hand side of each constraint for the solution being built
+	 */
+	private void set(int variable, CandidateSolution solution, long[] leftHandSides) {
+		solution.setIthDecisionVariable(variable, true);
+		for (int k = variableIndex.columnStart(variable); k < variableIndex.columnEnd(variable); k++) {
+			leftHandSides[variableIndex.getIthConstraintIndex(k)] += variableIndex.getIthWeight(k);
+		}
+	}
+}
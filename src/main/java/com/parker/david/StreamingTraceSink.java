@@ -0,0 +1,297 @@
+package com.parker.david;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * a full trace, with every neighbour of every iteration, that is written out as the search goes instead of being kept in memory.
+ * rows go through a buffer onto a file channel, so memory use stays the same however long the run is and the trace can be
+ * read while the search is still going. Each run is flushed when it ends.
+ * the trace can be written as plain text, as csv, or in a compact binary format:
+ * <pre>
+ * header:    int magic ("LSTR"), int version
+ * run start: byte 'S', int run, int number of decision variables, int fitness, the start solution's packed words as longs
+ * iteration: byte 'I', int t, int fitness, int neighbourhood size, int index of the selected move or -1,
+ *            then per move: byte number of flips, int per flipped bit, int fitness after the move, byte 1 if feasible else 0
+ * run end:   byte 'E', int iterations, int best fitness, byte 1 if feasible else 0, the best solution's packed words, long elapsed nanoseconds
+ * </pre>
+ * the binary format never writes the current solution of an iteration, it can be rebuilt by applying the selected moves to the start solution.
+ * a text or csv trace can be added to the end of an existing one, for a search that is resumed from a checkpoint. A binary
+ * trace can't, as a search that stopped part way through a write leaves a partial record that nothing after it could be read past
+ */
+public class StreamingTraceSink implements TraceSink {
+
+	/**
+	 * the formats that the trace can be written in
+	 */
+	public enum Format {
+		/**
+		 * one line per neighbour, readable without any tools
+		 */
+		TEXT,
+		/**
+		 * comma separated values with a header line, for loading into a spreadsheet or dataframe
+		 */
+		CSV,
+		/**
+		 * the compact binary format described above
+		 */
+		BINARY
+	}
+
+	/**
+	 * the first int of a binary trace, "LSTR" in ascii
+	 */
+	static final int BINARY_MAGIC = 0x4c535452;
+
+	/**
+	 * the version of the binary format
+	 */
+	static final int BINARY_VERSION = 1;
+
+	/**
+	 * the size of the write buffer in bytes
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * the format the trace is written in
+	 */
+	private final Format format;
+
+	/**
+	 * where text and csv traces are written, null for binary traces
+	 */
+	private final BufferedWriter textOutput;
+
+	/**
+	 * where binary traces are written, null for text and csv traces
+	 */
+	private final DataOutputStream binaryOutput;
+
+	/**
+	 * the number of the current run, counting from 0
+	 */
+	private int run;
+
+	/**
+	 * the constructor, creates or truncates the trace file and writes the header for the format
+	 *
+	 * @param traceFile the file to write the trace to
+	 * @param format    the format to write the trace in
+	 * @throws IOException if the file can't be opened
+	 */
+	StreamingTraceSink(Path traceFile, Format format) throws IOException {
+		this(traceFile, format, false, 0);
+	}
+
+	/**
+	 * the constructor, creates or truncates the trace file and writes the header for the format, or adds to the end of
+	 * the trace that is already there. An added trace has no second header, and starts on a new line if the old one
+	 * stopped part way through a line
+	 *
+	 * @param traceFile the file to write the trace to
+	 * @param format    the format to write the trace in
+	 * @param append    true to add to the end of an existing text or csv trace
+	 * @param firstRun  the number of the first run traced, the number of runs already in the trace when appending
+	 * @throws IOException if the file can't be opened
+	 * @throws IllegalArgumentException if a binary trace is to be appended to
+	 */
+	StreamingTraceSink(Path traceFile, Format format, boolean append, int firstRun) throws IOException {
+		if (append && format == Format.BINARY)
+			throw new IllegalArgumentException("a binary trace can't be appended to, a search that stopped part way through a write leaves a record that can't be read past");
+		this.format = format;
+		this.run = firstRun - 1;
+		boolean continuing = append && Files.exists(traceFile) && Files.size(traceFile) > 0;
+		boolean endsPartWayThroughLine = continuing && !endsWithNewLine(traceFile);
+		OutputStream stream = new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(traceFile, StandardOpenOption.CREATE,
+				continuing ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)), BUFFER_SIZE);
+
+		if (format == Format.BINARY) {
+			textOutput = null;
+			binaryOutput = new DataOutputStream(stream);
+			binaryOutput.writeInt(BINARY_MAGIC);
+			binaryOutput.writeInt(BINARY_VERSION);
+		} else {
+			textOutput = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+			binaryOutput = null;
+			if (endsPartWayThroughLine)
+				textOutput.newLine();
+			if (format == Format.CSV && !continuing) {
+				textOutput.write("run,t,s,z,neighbour,bits,new_z,feasible,selected");
+				textOutput.newLine();
+			}
+		}
+	}
+
+	/**
+	 * checks if a file ends with a line separator, by reading its last byte
+	 *
+	 * @param file the file, which is not empty
+	 * @return true if the last byte is a new line
+	 * @throws IOException if the file can't be read
+	 */
+	private static boolean endsWithNewLine(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer lastByte = ByteBuffer.allocate(1);
+			channel.read(lastByte, channel.size() - 1);
+			return lastByte.get(0) == '\n';
+		}
+	}
+
+	/**
+	 * records the start solution of a new run
+	 *
+	 * @param evaluator the evaluator holding the start solution
+	 * @throws IOException if the trace can't be written
+	 */
+	@Override
+	public void startRun(IncrementalEvaluator evaluator) throws IOException {
+		run++;
+		if (format == Format.BINARY) {
+			binaryOutput.writeByte('S');
+			binaryOutput.writeInt(run);
+			binaryOutput.writeInt(evaluator.getCurrentSolution().numberOfDecisionVariables());
+			binaryOutput.writeInt(evaluator.getCurrentFitness());
+			writeWords(evaluator.getCurrentSolution());
+		} else if (format == Format.TEXT) {
+			textOutput.write("run " + run + " start " + evaluator.getCurrentSolution() + " z=" + evaluator.getCurrentFitness());
+			textOutput.newLine();
+		}
+	}
+
+	/**
+	 * records every neighbour of the iteration, scoring each one with the evaluator
+	 *
+	 * @param iteration     the iteration number
+	 * @param evaluator     the evaluator holding the current solution
+	 * @param neighbourhood the moves to each neighbour
+	 * @param selectedMove  the selected move, or null
+	 * @throws IOException if the trace can't be written
+	 */
+	@Override
+	public void iteration(int iteration, IncrementalEvaluator evaluator, MoveNeighbourhood neighbourhood, Move selectedMove) throws IOException {
+		if (format == Format.BINARY) {
+			writeBinaryIteration(iteration, evaluator, neighbourhood, selectedMove);
+			return;
+		}
+
+		CandidateSolution currentSolution = evaluator.getCurrentSolution();
+		String current = currentSolution.toString();
+		if (format == Format.TEXT) {
+			textOutput.write("t " + iteration + " " + current + " z=" + evaluator.getCurrentFitness());
+			textOutput.newLine();
+		}
+
+		for (int i = 0; i < neighbourhood.size(); i++) {
+			Move move = neighbourhood.getIthMove(i);
+			boolean feasible = evaluator.isFeasibleAfter(move);
+			String neighbour = move.applyTo(currentSolution).toString();
+			if (format == Format.TEXT) {
+				textOutput.write("    " + neighbour + " " + move + " " + (feasible ? Integer.toString(evaluator.fitnessAfter(move)) : "infeasible") + ((move == selectedMove) ? " <---" : ""));
+			} else {
+				//moves that flip several bits list them with commas, so the bits column is quoted
+				textOutput.write(run + "," + iteration + "," + current + "," + evaluator.getCurrentFitness() + "," + neighbour + ",\"" + move + "\","
+						+ evaluator.fitnessAfter(move) + "," + feasible + "," + (move == selectedMove));
+			}
+			textOutput.newLine();
+		}
+	}
+
+	/**
+	 * records the result of the run and flushes the trace so far
+	 *
+	 * @param result    the result of the run
+	 * @param evaluator the evaluator holding the solution the run finished on
+	 * @throws IOException if the trace can't be written
+	 */
+	@Override
+	public void endRun(SearchResult result, IncrementalEvaluator evaluator) throws IOException {
+		if (format == Format.BINARY) {
+			binaryOutput.writeByte('E');
+			binaryOutput.writeInt(result.getIterations());
+			binaryOutput.writeInt(result.getBestFitness());
+			binaryOutput.writeByte(result.isBestFeasible() ? 1 : 0);
+			writeWords(result.getBestSolution());
+			binaryOutput.writeLong(result.getElapsedNanos());
+			binaryOutput.flush();
+		} else {
+			if (format == Format.TEXT)
+				textOutput.write("run " + run + " end " + result);
+			else
+				textOutput.write(run + "," + result.getIterations() + "," + result.getBestSolution() + "," + result.getBestFitness() + ",,,,,");
+			textOutput.newLine();
+			textOutput.flush();
+		}
+	}
+
+	/**
+	 * writes an iteration record in the binary format
+	 *
+	 * @param iteration     the iteration number
+	 * @param evaluator     the evaluator holding the current solution
+	 * @param neighbourhood the moves to each neighbour
+	 * @param selectedMove  the selected move, or null
+	 * @throws IOException if the trace can't be written
+	 */
+	private void writeBinaryIteration(int iteration, IncrementalEvaluator evaluator, MoveNeighbourhood neighbourhood, Move selectedMove) throws IOException {
+		int selectedIndex = -1;
+		for (int i = 0; i < neighbourhood.size() && selectedMove != null; i++) {
+			if (neighbourhood.getIthMove(i) == selectedMove) {
+				selectedIndex = i;
+				break;
+			}
+		}
+
+		binaryOutput.writeByte('I');
+		binaryOutput.writeInt(iteration);
+		binaryOutput.writeInt(evaluator.getCurrentFitness());
+		binaryOutput.writeInt(neighbourhood.size());
+		binaryOutput.writeInt(selectedIndex);
+		for (int i = 0; i < neighbourhood.size(); i++) {
+			Move move = neighbourhood.getIthMove(i);
+			binaryOutput.writeByte(move.numberOfFlips());
+			for (int f = 0; f < move.numberOfFlips(); f++) {
+				binaryOutput.writeInt(move.getIthFlippedBit(f));
+			}
+			binaryOutput.writeInt(evaluator.fitnessAfter(move));
+			binaryOutput.writeByte(evaluator.isFeasibleAfter(move) ? 1 : 0);
+		}
+	}
+
+	/**
+	 * writes the packed words of a solution to the binary trace
+	 *
+	 * @param solution the solution to write
+	 * @throws IOException if the trace can't be written
+	 */
+	private void writeWords(CandidateSolution solution) throws IOException {
+		for (long word : solution.getWords()) {
+			binaryOutput.writeLong(word);
+		}
+	}
+
+	/**
+	 * flushes and closes the trace file
+	 *
+	 * @throws IOException if the file can't be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		if (format == Format.BINARY)
+			binaryOutput.close();
+		else
+			textOutput.close();
+	}
+}
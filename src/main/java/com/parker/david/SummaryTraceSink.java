@@ -0,0 +1,72 @@
+package com.parker.david;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * a trace that keeps one line per run and nothing about the iterations in between.
+ * example line: [0000000000] -> [1101110001] z=69 after 6 iterations in 0.412 ms
+ * each line is written whole, so descents running at the same time can share one sink
+ */
+public class SummaryTraceSink implements TraceSink {
+
+	/**
+	 * where the summary lines are written
+	 */
+	private final BufferedWriter output;
+
+	/**
+	 * the constructor, takes where to write to. The writer is closed when this sink is closed
+	 *
+	 * @param output where the summary lines are written
+	 */
+	SummaryTraceSink(Writer output) {
+		this.output = (output instanceof BufferedWriter) ? (BufferedWriter) output : new BufferedWriter(output);
+	}
+
+	/**
+	 * nothing is recorded at the start of a run
+	 *
+	 * @param evaluator the evaluator holding the start solution
+	 */
+	@Override
+	public void startRun(IncrementalEvaluator evaluator) {
+	}
+
+	/**
+	 * nothing is recorded for an iteration
+	 *
+	 * @param iteration     the iteration number
+	 * @param evaluator     the evaluator holding the current solution
+	 * @param neighbourhood the moves to each neighbour
+	 * @param selectedMove  the selected move
+	 */
+	@Override
+	public void iteration(int iteration, IncrementalEvaluator evaluator, MoveNeighbourhood neighbourhood, Move selectedMove) {
+	}
+
+	/**
+	 * writes the summary line for the run, and flushes it so that it can be seen while later runs are still going
+	 *
+	 * @param result    the result of the run
+	 * @param evaluator the evaluator holding the solution the run finished on
+	 * @throws IOException if the line can't be written
+	 */
+	@Override
+	public synchronized void endRun(SearchResult result, IncrementalEvaluator evaluator) throws IOException {
+		output.write(result + " in " + String.format("%.3f", result.getElapsedNanos() / 1e6) + " ms");
+		output.newLine();
+		output.flush();
+	}
+
+	/**
+	 * closes the writer
+	 *
+	 * @throws IOException if the writer can't be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		output.close();
+	}
+}
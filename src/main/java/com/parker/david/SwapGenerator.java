@@ -0,0 +1,69 @@
+package com.parker.david;
+
+import java.util.ArrayList;
+
+/**
+ * this is an implementation of a neighbourhood generation strategy that swaps items: each move sets one unset decision
+ * variable and unsets one set decision variable. On a tight knapsack a swap is often the only way to improve, as the
+ * single flip that sets an item is infeasible and the single flip that removes one is worse.
+ * there are O(n^2) swaps, so only the candidateListLength unset variables with the best ratio and the candidateListLength
+ * set variables with the worst ratio are paired, giving at most candidateListLength^2 moves however large the problem is
+ */
+public class SwapGenerator implements NeighbourhoodGenerator, MoveNeighbourhoodGenerator {
+
+	/**
+	 * the ranking the candidates are taken from
+	 */
+	private final CandidateList candidateList;
+
+	/**
+	 * the most variables considered for setting, and the most for unsetting
+	 */
+	private final int candidateListLength;
+
+	/**
+	 * the constructor
+	 *
+	 * @param candidateList       the ranking the candidates are taken from
+	 * @param candidateListLength the most variables considered on each side of the swap, at least 1
+	 */
+	SwapGenerator(CandidateList candidateList, int candidateListLength) {
+		if (candidateListLength < 1 || (long) candidateListLength * candidateListLength > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("candidate list length must be between 1 and 46340, was " + candidateListLength);
+		this.candidateList = candidateList;
+		this.candidateListLength = candidateListLength;
+	}
+
+	/**
+	 * builds every swap neighbour
+	 *
+	 * @param currentSolution the solution for which a new neighbourhood needs to be found
+	 * @return an array of candidate solutions that are in the neighbourhood of the current solution
+	 */
+	@Override
+	public ArrayList<CandidateSolution> generateSolutionNeighbourhood(CandidateSolution currentSolution) {
+		return generateMoveNeighbourhood(currentSolution).materialise(currentSolution);
+	}
+
+	/**
+	 * the swap moves between the candidates for the current solution. Move i sets the (i / unsetCount)th candidate to set
+	 * and unsets the (i % unsetCount)th candidate to unset, so the most promising swaps have the lowest indices
+	 *
+	 * @param currentSolution the solution for which a new neighbourhood needs to be found
+	 * @return the swap moves
+	 */
+	@Override
+	public MoveNeighbourhood generateMoveNeighbourhood(CandidateSolution currentSolution) {
+		int[] toSet = new int[candidateListLength];
+		int[] toUnset = new int[candidateListLength];
+		int setCount = candidateList.bestUnset(currentSolution, toSet);
+		int unsetCount = candidateList.worstSet(currentSolution, toUnset);
+
+		return new LazyMoveNeighbourhood(setCount * unsetCount) {
+			@Override
+			Move createIthMove(int i) {
+				return new Move(toSet[i / unsetCount], toUnset[i % unsetCount]);
+			}
+		};
+	}
+}
@@ -0,0 +1,411 @@
+package com.parker.david;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * An implementation of a solution selection interface for tabu search.
+ * each step moves to the best feasible neighbour that is allowed, even if it is worse than the current solution, so the search
+ * can walk out of a local optimum instead of stopping at it. To stop it walking straight back, a bit that has just been flipped
+ * is tabu (can't be flipped again) for the next tabuTenure steps, or a quarter of the size of the neighbourhood if that is
+ * fewer, so that a small neighbourhood isn't left with nothing allowed. A tabu move is still allowed if it would give a better
+ * solution than any seen so far (the aspiration criterion).
+ * optionally, the hashes of visited solutions are kept in a bounded set as a long term memory, and neighbours that have
+ * already been visited are not allowed either. The hash is a zobrist hash that is updated from each selected move, so this
+ * selector assumes that every move it returns is applied before it is asked for the next one.
+ * when every feasible neighbour is tabu the best one that hasn't been visited is taken anyway, and when all of those have
+ * been visited too the one whose tabu ends soonest is taken, so the walk only stops when no neighbour is feasible.
+ * the search ends after a fixed number of steps, after a number of steps without finding a new best solution,
+ * or when every neighbour is infeasible
+ */
+public class TabuSearchSelection implements NextSolutionSelector {
+
+	/**
+	 * this flag is set to true once the search has used up its steps or has no feasible neighbours
+	 */
+	private boolean searchTerminationFlag = false;
+
+	/**
+	 * this is the objective function, used for evaluating fitness of the candidate solution
+	 */
+	private final ObjectiveFunction objectiveFunction;
+
+	/**
+	 * this is the set of constraints which we use to determine if a solution is feasible
+	 */
+	private final ConstraintSet constraints;
+
+	/**
+	 * the number of steps a flipped bit stays tabu for
+	 */
+	private final int tabuTenure;
+
+	/**
+	 * the most steps the search will take
+	 */
+	private final int maxIterations;
+
+	/**
+	 * the search stops after this many steps in a row without a new best solution
+	 */
+	private final int maxNonImprovingIterations;
+
+	/**
+	 * the seed for the zobrist keys
+	 */
+	private final long seed;
+
+	/**
+	 * the capacity of the visited solution memory, 0 to not keep one
+	 */
+	private final int visitedMemoryCapacity;
+
+	/**
+	 * tabuUntil[i] is the first step at which bit i may be flipped again. Created at the first step, once the problem size is known
+	 */
+	private int[] tabuUntil;
+
+	/**
+	 * the hasher for the visited solution memory, null if there is no memory
+	 */
+	private ZobristHasher hasher;
+
+	/**
+	 * the hashes of visited solutions, null if there is no memory
+	 */
+	private VisitedSolutionSet visitedSolutions;
+
+	/**
+	 * the zobrist hash of the current solution
+	 */
+	private long currentHash;
+
+	/**
+	 * the number of steps taken so far
+	 */
+	private int iteration = 0;
+
+	/**
+	 * the number of steps since the last new best solution
+	 */
+	private int nonImprovingIterations = 0;
+
+	/**
+	 * the fitness of the best feasible solution seen so far, used for the aspiration criterion
+	 */
+	private long bestFitness = Long.MIN_VALUE;
+
+	/**
+	 * the constructor, without a visited solution memory
+	 *
+	 * @param objectiveFunction         the objective function
+	 * @param constraints               the set of constraints
+	 * @param tabuTenure                the number of steps a flipped bit stays tabu for
+	 * @param maxIterations             the most steps the search will take
+	 * @param maxNonImprovingIterations the number of steps in a row without a new best solution after which the search stops
+	 */
+	TabuSearchSelection(ObjectiveFunction objectiveFunction, ConstraintSet constraints, int tabuTenure, int maxIterations, int maxNonImprovingIterations) {
+		this(objectiveFunction, constraints, tabuTenure, maxIterations, maxNonImprovingIterations, 0, 0);
+	}
+
+	/**
+	 * the constructor
+	 *
+	 * @param objectiveFunction         the objective function
+	 * @param constraints               the set of constraints
+	 * @param tabuTenure                the number of steps a flipped bit stays tabu for
+	 * @param maxIterations             the most steps the search will take
+	 * @param maxNonImprovingIterations the number of steps in a row without a new best solution after which the search stops
+	 * @param visitedMemoryCapacity     the number of visited solutions to remember, 0 to not remember any
+	 * @param seed                      the seed for the zobrist keys of the visited solution memory
+	 */
+	TabuSearchSelection(ObjectiveFunction objectiveFunction, ConstraintSet constraints, int tabuTenure, int maxIterations, int maxNonImprovingIterations,
+						int visitedMemoryCapacity, long seed) {
+		if (tabuTenure < 0 || maxIterations < 1 || maxNonImprovingIterations < 1 || visitedMemoryCapacity < 0)
+			throw new IllegalArgumentException("tabu tenure and visited memory capacity can't be negative, and the iteration limits must be at least 1");
+		this.objectiveFunction = objectiveFunction;
+		this.constraints = constraints;
+		this.tabuTenure = tabuTenure;
+		this.maxIterations = maxIterations;
+		this.maxNonImprovingIterations = maxNonImprovingIterations;
+		this.visitedMemoryCapacity = visitedMemoryCapacity;
+		this.seed = seed;
+	}
+
+	/**
+	 * our function to get a new solution from the neighbourhood given the current solution.
+	 * the neighbours are turned into moves and the selection is made by selectMove
+	 *
+	 * @param currentSolution the current selected solution
+	 * @param neighbourhood   the neighbourhood of solutions around the current solution as found by some neighbourhood function
+	 * @return the best allowed neighbour, or null
+	 */
+	@Override
+	public CandidateSolution getNewSolution(CandidateSolution currentSolution, ArrayList<CandidateSolution> neighbourhood) {
+		return NextSolutionSelector.selectNeighbourByMove(this, objectiveFunction, constraints, currentSolution, neighbourhood);
+	}
+
+	/**
+	 * selects the best feasible move that is allowed: either none of its bits are tabu and it doesn't lead back to a
+	 * visited solution, or it leads to a new best solution. Ties go to the lowest index.
+	 * if no move is allowed, the best feasible tabu move that doesn't lead back to a visited solution is selected instead,
+	 * and failing that the feasible move whose tabu ends soonest.
+	 * the selected move is recorded as if it has been applied: its bits become tabu and the solution it leads to is remembered
+	 *
+	 * @param evaluator     the evaluator holding the current solution
+	 * @param neighbourhood the moves leading to each neighbour
+	 * @return the selected move, or null if no neighbour is feasible
+	 */
+	@Override
+	public Move selectMove(IncrementalEvaluator evaluator, MoveNeighbourhood neighbourhood) {
+		if (tabuUntil == null)
+			startSearch(evaluator);
+
+		Move selectedMove = null;
+		long selectedFitness = Long.MIN_VALUE;
+		Move bestTabuMove = null;
+		long bestTabuFitness = Long.MIN_VALUE;
+		boolean anyFeasible = false;
+		for (int i = 0; i < neighbourhood.size(); i++) {
+			Move move = neighbourhood.getIthMove(i);
+
+			//cheapest checks first: a move that can't beat the best move so far doesn't need checking for feasibility or tabu.
+			//until an allowed move is found, tabu moves are kept as a fallback, so one that beats the best fallback is checked too
+			int neighbourFitness = evaluator.fitnessAfter(move);
+			if (neighbourFitness <= selectedFitness)
+				continue;
+			if (selectedMove == null && neighbourFitness <= bestTabuFitness && anyFeasible)
+				continue;
+			if (!evaluator.isFeasibleAfter(move))
+				continue;
+			anyFeasible = true;
+
+			//a new best solution is always allowed
+			boolean aspiration = neighbourFitness > bestFitness;
+			boolean visited = !aspiration && isVisited(move);
+			if (!aspiration && (visited || isTabu(move))) {
+				if (!visited && selectedMove == null && neighbourFitness > bestTabuFitness) {
+					bestTabuMove = move;
+					bestTabuFitness = neighbourFitness;
+				}
+				continue;
+			}
+
+			selectedMove = move;
+			selectedFitness = neighbourFitness;
+		}
+
+		if (selectedMove == null && bestTabuMove != null) {
+			selectedMove = bestTabuMove;
+			selectedFitness = bestTabuFitness;
+		}
+		if (selectedMove == null && anyFeasible) {
+			selectedMove = soonestEndingTabuMove(evaluator, neighbourhood);
+			selectedFitness = evaluator.fitnessAfter(selectedMove);
+		}
+		if (selectedMove == null) {
+			//every neighbour is infeasible, terminate the search
+			searchTerminationFlag = true;
+			return null;
+		}
+
+		recordMove(selectedMove, selectedFitness, neighbourhood.size());
+		return selectedMove;
+	}
+
+	/**
+	 * finds the feasible move whose tabu ends soonest, for when every feasible move leads back to a visited solution.
+	 * ties go to the fitter move, and then to the lowest index
+	 *
+	 * @param evaluator     the evaluator holding the current solution
+	 * @param neighbourhood the moves leading to each neighbour, at least one of which is feasible
+	 * @return the move
+	 */
+	private Move soonestEndingTabuMove(IncrementalEvaluator evaluator, MoveNeighbourhood neighbourhood) {
+		Move soonestMove = null;
+		int soonestEnd = Integer.MAX_VALUE;
+		int soonestFitness = Integer.MIN_VALUE;
+		for (int i = 0; i < neighbourhood.size(); i++) {
+			Move move = neighbourhood.getIthMove(i);
+			int tabuEnd = tabuEnd(move);
+			if (tabuEnd > soonestEnd)
+				continue;
+			int neighbourFitness = evaluator.fitnessAfter(move);
+			if (tabuEnd == soonestEnd && neighbourFitness <= soonestFitness)
+				continue;
+			if (!evaluator.isFeasibleAfter(move))
+				continue;
+			soonestMove = move;
+			soonestEnd = tabuEnd;
+			soonestFitness = neighbourFitness;
+		}
+		return soonestMove;
+	}
+
+	/**
+	 * sets up the per bit tenure and the memory at the first step, once the size of the problem is known
+	 *
+	 * @param evaluator the evaluator holding the start solution
+	 */
+	private void startSearch(IncrementalEvaluator evaluator) {
+		CandidateSolution startSolution = evaluator.getCurrentSolution();
+		tabuUntil = new int[startSolution.numberOfDecisionVariables()];
+		if (evaluator.isCurrentSolutionFeasible())
+			bestFitness = evaluator.getCurrentFitness();
+		if (visitedMemoryCapacity > 0) {
+			hasher = new ZobristHasher(startSolution.numberOfDecisionVariables(), seed);
+			visitedSolutions = new VisitedSolutionSet(visitedMemoryCapacity);
+			currentHash = hasher.hash(startSolution);
+			visitedSolutions.add(currentHash);
+		}
+	}
+
+	/**
+	 * checks if any of the bits a move flips is tabu
+	 *
+	 * @param move the move to check
+	 * @return true if the move is tabu
+	 */
+	private boolean isTabu(Move move) {
+		return tabuEnd(move) > iteration;
+	}
+
+	/**
+	 * the first step at which every bit a move flips may be flipped again
+	 *
+	 * @param move the move
+	 * @return the step its tabu ends at, which is in the past if it isn't tabu
+	 */
+	private int tabuEnd(Move move) {
+		int end = 0;
+		for (int f = 0; f < move.numberOfFlips(); f++) {
+			end = Math.max(end, tabuUntil[move.getIthFlippedBit(f)]);
+		}
+		return end;
+	}
+
+	/**
+	 * checks if a move leads to a solution in the visited memory
+	 *
+	 * @param move the move to check
+	 * @return true if the neighbour has been visited, always false if there is no memory
+	 */
+	private boolean isVisited(Move move) {
+		return visitedSolutions != null && visitedSolutions.contains(hasher.hashAfter(currentHash, move));
+	}
+
+	/**
+	 * records a selected move: makes its bits tabu, remembers the solution it leads to, tracks the best fitness,
+	 * and ends the search if it has run out of steps
+	 *
+	 * @param move              the selected move
+	 * @param fitness           the fitness of the solution it leads to
+	 * @param neighbourhoodSize the number of moves it was selected from, which caps the tenure
+	 */
+	private void recordMove(Move move, long fitness, int neighbourhoodSize) {
+		iteration++;
+		int tenure = Math.min(tabuTenure, Math.max(1, neighbourhoodSize / 4));
+		for (int f = 0; f < move.numberOfFlips(); f++) {
+			tabuUntil[move.getIthFlippedBit(f)] = iteration + tenure;
+		}
+		if (visitedSolutions != null) {
+			currentHash = hasher.hashAfter(currentHash, move);
+			visitedSolutions.add(currentHash);
+		}
+
+		//only feasible moves are selected, so the fitness is of a feasible solution
+		if (fitness > bestFitness) {
+			bestFitness = fitness;
+			nonImprovingIterations = 0;
+		} else {
+			nonImprovingIterations++;
+		}
+
+		if (iteration >= maxIterations || nonImprovingIterations >= maxNonImprovingIterations)
+			searchTerminationFlag = true;
+	}
+
+	/**
+	 * the number of steps taken so far
+	 *
+	 * @return the number of steps
+	 */
+	public int getIteration() {
+		return iteration;
+	}
+
+	/**
+	 * the number of visited solutions currently remembered
+	 *
+	 * @return the size of the visited memory, 0 if there is none
+	 */
+	public int getVisitedMemorySize() {
+		return (visitedSolutions == null) ? 0 : visitedSolutions.size();
+	}
+
+	/**
+	 * accessor for searchTerminationFlag, returns true when the search has completed
+	 *
+	 * @return a boolean, true if the search has ended, false if there are still steps to take
+	 */
+	@Override
+	public boolean isSearchComplete() {
+		return searchTerminationFlag;
+	}
+
+	/**
+	 * writes the tabu list, the counters, the best fitness and the visited memory. The hasher isn't written, as it is
+	 * made again from the seed
+	 *
+	 * @param output where to write the state
+	 * @throws IOException if it can't be written
+	 */
+	@Override
+	public void writeState(DataOutput output) throws IOException {
+		output.writeBoolean(tabuUntil != null);
+		if (tabuUntil == null)
+			return;
+		output.writeInt(tabuUntil.length);
+		for (int until : tabuUntil) {
+			output.writeInt(until);
+		}
+		output.writeInt(iteration);
+		output.writeInt(nonImprovingIterations);
+		output.writeLong(bestFitness);
+		output.writeBoolean(visitedSolutions != null);
+		if (visitedSolutions != null) {
+			output.writeLong(currentHash);
+			visitedSolutions.writeTo(output);
+		}
+	}
+
+	/**
+	 * reads the tabu list, the counters, the best fitness and the visited memory
+	 *
+	 * @param input where to read the state from
+	 * @throws IOException if it can't be read, or the visited memory doesn't match this selector's settings
+	 */
+	@Override
+	public void readState(DataInput input) throws IOException {
+		if (!input.readBoolean())
+			return;
+		tabuUntil = new int[input.readInt()];
+		for (int i = 0; i < tabuUntil.length; i++) {
+			tabuUntil[i] = input.readInt();
+		}
+		iteration = input.readInt();
+		nonImprovingIterations = input.readInt();
+		bestFitness = input.readLong();
+		boolean hasVisitedMemory = input.readBoolean();
+		if (hasVisitedMemory != (visitedMemoryCapacity > 0))
+			throw new IOException("the saved state " + (hasVisitedMemory ? "has" : "doesn't have") + " a visited memory, this selector's settings don't match");
+		if (hasVisitedMemory) {
+			hasher = new ZobristHasher(tabuUntil.length, seed);
+			visitedSolutions = new VisitedSolutionSet(visitedMemoryCapacity);
+			currentHash = input.readLong();
+			visitedSolutions.readFrom(input);
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package com.parker.david;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the budgets that end a run early, whatever the selector thinks: a wall clock time, a number of iterations, and a number of
+ * iterations in a row without a new best feasible solution, and a fitness target that is good enough to stop at.
+ * a run stops at whichever is reached first, or when the selector says the search is complete. This is what guarantees an answer in a fixed time for selectors such as simulated annealing
+ * that would otherwise run for as long as their own schedule says.
+ * instances are immutable, each with method returns a copy with one budget changed
+ */
+public final class TerminationCriteria {
+
+	/**
+	 * no budgets at all, the run ends only when the selector says so
+	 */
+	public static final TerminationCriteria NONE = new TerminationCriteria(Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+	/**
+	 * the most wall clock time a run can take, in nanoseconds
+	 */
+	private final long timeBudgetNanos;
+
+	/**
+	 * the most iterations a run can take
+	 */
+	private final int iterationBudget;
+
+	/**
+	 * the most iterations in a row a run can take without finding a new best feasible solution
+	 */
+	private final int stagnationBudget;
+
+	/**
+	 * the fitness of a feasible solution that ends the run once found, as a long so that no fitness reaches the default
+	 */
+	private final long fitnessTarget;
+
+	/**
+	 * the constructor, use NONE and the with methods to create criteria
+	 *
+	 * @param timeBudgetNanos  the most wall clock time a run can take, in nanoseconds
+	 * @param iterationBudget  the most iterations a run can take
+	 * @param stagnationBudget the most iterations in a row without a new best feasible solution
+	 * @param fitnessTarget    the fitness of a feasible solution that ends the run
+	 */
+	private TerminationCriteria(long timeBudgetNanos, int iterationBudget, int stagnationBudget, long fitnessTarget) {
+		this.timeBudgetNanos = timeBudgetNanos;
+		this.iterationBudget = iterationBudget;
+		this.stagnationBudget = stagnationBudget;
+		this.fitnessTarget = fitnessTarget;
+	}
+
+	/**
+	 * a copy of these criteria with a wall clock budget
+	 *
+	 * @param budget the most time a run can take, must be positive
+	 * @param unit   the unit of the budget
+	 * @return the new criteria
+	 */
+	public TerminationCriteria withTimeBudget(long budget, TimeUnit unit) {
+		if (budget <= 0)
+			throw new IllegalArgumentException("time budget must be positive, was " + budget);
+		return new TerminationCriteria(unit.toNanos(budget), iterationBudget, stagnationBudget, fitnessTarget);
+	}
+
+	/**
+	 * a copy of these criteria with an iteration budget
+	 *
+	 * @param budget the most iterations a run can take, must be positive
+	 * @return the new criteria
+	 */
+	public TerminationCriteria withIterationBudget(int budget) {
+		if (budget <= 0)
+			throw new IllegalArgumentException("iteration budget must be positive, was " + budget);
+		return new TerminationCriteria(timeBudgetNanos, budget, stagnationBudget, fitnessTarget);
+	}
+
+	/**
+	 * a copy of these criteria with a stagnation budget
+	 *
+	 * @param budget the most iterations in a row a run can take without a new best feasible solution, must be positive
+	 * @return the new criteria
+	 */
+	public TerminationCriteria withStagnationBudget(int budget) {
+		if (budget <= 0)
+			throw new IllegalArgumentException("stagnation budget must be positive, was " + budget);
+		return new TerminationCriteria(timeBudgetNanos, iterationBudget, budget, fitnessTarget);
+	}
+
+	/**
+	 * a copy of these criteria with a fitness target, typically an upper bound on the fitness less an acceptable gap
+	 *
+	 * @param target the fitness of a feasible solution that ends the run once found
+	 * @return the new criteria
+	 */
+	public TerminationCriteria withFitnessTarget(long target) {
+		return new TerminationCriteria(timeBudgetNanos, iterationBudget, stagnationBudget, target);
+	}
+
+	/**
+	 * checks if a best solution is good enough to stop at
+	 *
+	 * @param bestFitness  the fitness of the best solution so far
+	 * @param bestFeasible whether the best solution is feasible
+	 * @return true if it is feasible and reaches the fitness target
+	 */
+	public boolean isTargetReached(int bestFitness, boolean bestFeasible) {
+		return bestFeasible && bestFitness >= fitnessTarget;
+	}
+
+	/**
+	 * checks if the clock needs reading at all, so that runs without a time budget don't pay for System.nanoTime every iteration
+	 *
+	 * @return true if there is a wall clock budget
+	 */
+	public boolean hasTimeBudget() {
+		return timeBudgetNanos != Long.MAX_VALUE;
+	}
+
+	/**
+	 * checks if any of the budgets has been used up
+	 *
+	 * @param iterations                 the number of iterations so far
+	 * @param iterationsSinceImprovement the number of iterations since the last new best feasible solution
+	 * @param elapsedNanos               the time the run has taken so far, only looked at if there is a time budget
+	 * @return true if the run should stop
+	 */
+	public boolean isReached(int iterations, int iterationsSinceImprovement, long elapsedNanos) {
+		return iterations >= iterationBudget || iterationsSinceImprovement >= stagnationBudget || (hasTimeBudget() && elapsedNanos >= timeBudgetNanos);
+	}
+
+	/**
+	 * writes every budget and the target, so that the criteria can be sent to another process
+	 *
+	 * @param output where to write the criteria
+	 * @throws IOException if they can't be written
+	 */
+	void writeTo(DataOutput output) throws IOException {
+		output.writeLong(timeBudgetNanos);
+		output.writeInt(iterationBudget);
+		output.writeInt(stagnationBudget);
+		output.writeLong(fitnessTarget);
+	}
+
+	/**
+	 * reads criteria written by writeTo
+	 *
+	 * @param input where to read the criteria from
+	 * @return the criteria
+	 * @throws IOException if they can't be read or a budget isn't positive
+	 */
+	static TerminationCriteria readFrom(DataInput input) throws IOException {
+		long timeBudgetNanos = input.readLong();
+		int iterationBudget = input.readInt();
+		int stagnationBudget = input.readInt();
+		long fitnessTarget = input.readLong();
+		if (timeBudgetNanos <= 0 || iterationBudget <= 0 || stagnationBudget <= 0)
+			throw new IOException("termination budgets must be positive, were " + timeBudgetNanos + "ns, " + iterationBudget + " and " + stagnationBudget);
+		return new TerminationCriteria(timeBudgetNanos, iterationBudget, stagnationBudget, fitnessTarget);
+	}
+
+	/**
+	 * the budgets in a readable form, eg: time=50ms iterations=10000
+	 *
+	 * @return the budgets that are set, or none
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		if (hasTimeBudget())
+			builder.append(" time=").append(TimeUnit.NANOSECONDS.toMillis(timeBudgetNanos)).append("ms");
+		if (iterationBudget != Integer.MAX_VALUE)
+			builder.append(" iterations=").append(iterationBudget);
+		if (stagnationBudget != Integer.MAX_VALUE)
+			builder.append(" stagnation=").append(stagnationBudget);
+		if (fitnessTarget != Long.MAX_VALUE)
+			builder.append(" target=").append(fitnessTarget);
+		return (builder.length() == 0) ? "none" : builder.substring(1);
+	}
+}
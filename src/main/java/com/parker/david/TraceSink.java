@@ -0,0 +1,68 @@
+package com.parker.david;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * an interface for recording what a descent does, allowing the trace to be kept in full, sampled, summarised, or switched off.
+ * a sink is told about the start of each run, every iteration, and the end of each run. One sink can be used for several runs
+ * one after the other, and is closed once all of them are done.
+ * the evaluator passed in holds the current solution and can score any move in the neighbourhood cheaply, so a sink only
+ * pays for the neighbours it actually records
+ */
+public interface TraceSink extends Closeable {
+
+	/**
+	 * a sink that records nothing
+	 */
+	TraceSink OFF = new TraceSink() {
+		@Override
+		public void startRun(IncrementalEvaluator evaluator) {
+		}
+
+		@Override
+		public void iteration(int iteration, IncrementalEvaluator evaluator, MoveNeighbourhood neighbourhood, Move selectedMove) {
+		}
+
+		@Override
+		public void endRun(SearchResult result, IncrementalEvaluator evaluator) {
+		}
+	};
+
+	/**
+	 * called once at the start of a run, before the first iteration
+	 *
+	 * @param evaluator the evaluator holding the start solution
+	 * @throws IOException if the trace can't be written
+	 */
+	void startRun(IncrementalEvaluator evaluator) throws IOException;
+
+	/**
+	 * called once per iteration, after the move is selected but before it is applied
+	 *
+	 * @param iteration     the iteration number, starting at 0
+	 * @param evaluator     the evaluator holding the solution that this iteration started from
+	 * @param neighbourhood the moves to each neighbour of that solution
+	 * @param selectedMove  the move that was selected, or null if none was
+	 * @throws IOException if the trace can't be written
+	 */
+	void iteration(int iteration, IncrementalEvaluator evaluator, MoveNeighbourhood neighbourhood, Move selectedMove) throws IOException;
+
+	/**
+	 * called once at the end of a run
+	 *
+	 * @param result    the result of the run
+	 * @param evaluator the evaluator holding the solution the run finished on
+	 * @throws IOException if the trace can't be written
+	 */
+	void endRun(SearchResult result, IncrementalEvaluator evaluator) throws IOException;
+
+	/**
+	 * called once all runs are done, by default there is nothing to release
+	 *
+	 * @throws IOException if the trace can't be written
+	 */
+	@Override
+	default void close() throws IOException {
+	}
+}
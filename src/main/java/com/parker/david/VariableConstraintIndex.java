@@ -0,0 +1,160 @@
+package com.parker.david;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * the reverse index of a constraint set: for each decision variable, the constraints that it has a non zero weight in
+ * and its weight in each of them (the columns of a compressed sparse column matrix).
+ * flipping a bit only changes the left hand side of the constraints in that bit's column,
+ * so with this index only those constraints need to be rechecked. memory scales with the number of non zero weights.
+ * each column lists its constraints in constraint set order. A permutation of the entries can list them in another order
+ * without building a second index
+ */
+class VariableConstraintIndex {
+
+	/**
+	 * the entries for decision variable i are at positions columnStarts[i] to columnStarts[i + 1] - 1
+	 */
+	private final int[] columnStarts;
+
+	/**
+	 * the index of the constraint, in constraint set order, for each entry
+	 */
+	private final int[] constraintIndices;
+
+	/**
+	 * the weight of the decision variable in that constraint for each entry
+	 */
+	private final int[] weights;
+
+	/**
+	 * the entries of constraint c, in the order of its non zero variables, are at positions rowEntries[rowStarts[c]] to
+	 * rowEntries[rowStarts[c + 1] - 1]. This lets the entries be listed in another order of the constraints without a search
+	 */
+	private final int[] rowStarts;
+
+	/**
+	 * the position of each entry, listed constraint by constraint
+	 */
+	private final int[] rowEntries;
+
+	/**
+	 * builds the index in two passes over the non zero weights of each constraint, one to size each column and one to fill them
+	 *
+	 * @param constraints the constraints to index, in constraint set order
+	 */
+	VariableConstraintIndex(List<Constraint> constraints) {
+		int numberOfVariables = 0;
+		int numberOfEntries = 0;
+		rowStarts = new int[constraints.size() + 1];
+		for (int c = 0; c < constraints.size(); c++) {
+			int[] variables = constraints.get(c).getNonZeroVariables();
+			if (variables.length > 0)
+				numberOfVariables = Math.max(numberOfVariables, variables[variables.length - 1] + 1);
+			numberOfEntries += variables.length;
+			rowStarts[c + 1] = numberOfEntries;
+		}
+
+		//count the entries in each column, then turn the counts into start positions
+		columnStarts = new int[numberOfVariables + 1];
+		for (Constraint constraint : constraints) {
+			for (int variable : constraint.getNonZeroVariables()) {
+				columnStarts[variable + 1]++;
+			}
+		}
+		for (int i = 0; i < numberOfVariables; i++) {
+			columnStarts[i + 1] += columnStarts[i];
+		}
+
+		//fill each column, constraints are visited in order so each column lists its constraints in ascending order
+		constraintIndices = new int[numberOfEntries];
+		weights = new int[numberOfEntries];
+		rowEntries = new int[numberOfEntries];
+		int[] nextFree = new int[numberOfVariables];
+		System.arraycopy(columnStarts, 0, nextFree, 0, numberOfVariables);
+		for (int c = 0; c < constraints.size(); c++) {
+			int[] variables = constraints.get(c).getNonZeroVariables();
+			int[] variableWeights = constraints.get(c).getNonZeroWeights();
+			for (int k = 0; k < variables.length; k++) {
+				int position = nextFree[variables[k]]++;
+				constraintIndices[position] = c;
+				weights[position] = variableWeights[k];
+				rowEntries[rowStarts[c] + k] = position;
+			}
+		}
+	}
+
+	/**
+	 * the first entry for a decision variable
+	 *
+	 * @param i the index of the decision variable
+	 * @return the position of the first entry of the column
+	 */
+	int columnStart(int i) {
+		return (i < columnStarts.length - 1) ? columnStarts[i] : constraintIndices.length;
+	}
+
+	/**
+	 * one past the last entry for a decision variable, variables that are in no constraint have an empty column
+	 *
+	 * @param i the index of the decision variable
+	 * @return the position after the last entry of the column
+	 */
+	int columnEnd(int i) {
+		return (i < columnStarts.length - 1) ? columnStarts[i + 1] : constraintIndices.length;
+	}
+
+	/**
+	 * checks if a constraint is in the column of a decision variable, by a binary search as each column is in constraint order
+	 *
+	 * @param i the index of the decision variable
+	 * @param c the index of the constraint in constraint set order
+	 * @return true if the variable has a non zero weight in the constraint
+	 */
+	boolean isInColumn(int i, int c) {
+		return Arrays.binarySearch(constraintIndices, columnStart(i), columnEnd(i), c) >= 0;
+	}
+
+	/**
+	 * lists the entries of every column in the given order of the constraints. This walks the entries constraint by
+	 * constraint in that order, so it takes one pass and only allocates the permutation itself
+	 *
+	 * @param constraints the constraints the index was built from, in constraint set order
+	 * @param order       the indices of the constraints in the order each column should list them
+	 * @return the positions of the entries, so that positions[columnStart(i)] to positions[columnEnd(i) - 1] are the
+	 * entries of column i in that order
+	 */
+	int[] entriesInOrder(List<Constraint> constraints, int[] order) {
+		int[] positions = new int[constraintIndices.length];
+		int[] nextFree = new int[columnStarts.length];
+		System.arraycopy(columnStarts, 0, nextFree, 0, columnStarts.length);
+		for (int c : order) {
+			int[] variables = constraints.get(c).getNonZeroVariables();
+			for (int k = 0; k < variables.length; k++) {
+				positions[nextFree[variables[k]]++] = rowEntries[rowStarts[c] + k];
+			}
+		}
+		return positions;
+	}
+
+	/**
+	 * the constraint that an entry belongs to
+	 *
+	 * @param k the position of the entry
+	 * @return the index of the constraint in constraint set order
+	 */
+	int getIthConstraintIndex(int k) {
+		return constraintIndices[k];
+	}
+
+	/**
+	 * the weight of an entry
+	 *
+	 * @param k the position of the entry
+	 * @return the weight of the entry's decision variable in the entry's constraint
+	 */
+	int getIthWeight(int k) {
+		return weights[k];
+	}
+}
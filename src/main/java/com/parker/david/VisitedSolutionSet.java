@@ -0,0 +1,153 @@
+package com.parker.david;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * a set of solution hashes with a fixed memory footprint, for remembering which solutions a search has already visited.
+ * hashes are kept in a primitive long array with open addressing, so there are no boxed Longs or entry objects.
+ * the set never grows: when every slot near a hash's home slot is taken, the hash overwrites its home slot and the old hash
+ * is forgotten. This makes the set lossy (old visits can be forgotten, newer ones are kept) but it can never run out of memory
+ */
+public class VisitedSolutionSet {
+
+	/**
+	 * the number of slots looked at from a hash's home slot before overwriting it
+	 */
+	private static final int MAX_PROBES = 8;
+
+	/**
+	 * 0 marks an empty slot, so a hash of 0 is stored as this instead
+	 */
+	private static final long ZERO_HASH_REPLACEMENT = 0x9e3779b97f4a7c15L;
+
+	/**
+	 * the slots, 0 is an empty slot
+	 */
+	private final long[] slots;
+
+	/**
+	 * slots.length - 1, the length is a power of two so this maps a hash onto a slot
+	 */
+	private final int mask;
+
+	/**
+	 * the number of occupied slots
+	 */
+	private int size;
+
+	/**
+	 * the constructor, allocates all of the memory that the set will ever use
+	 *
+	 * @param capacity the number of hashes to hold, rounded up to a power of two
+	 */
+	VisitedSolutionSet(int capacity) {
+		if (capacity < 1 || capacity > (1 << 30))
+			throw new IllegalArgumentException("capacity must be between 1 and 2^30, was " + capacity);
+		int length = Integer.highestOneBit(capacity);
+		if (length < capacity)
+			length <<= 1;
+		slots = new long[length];
+		mask = length - 1;
+	}
+
+	/**
+	 * checks if a hash is in the set
+	 *
+	 * @param hash the hash of a solution
+	 * @return true if the hash has been added and not yet forgotten
+	 */
+	public boolean contains(long hash) {
+		long key = (hash == 0) ? ZERO_HASH_REPLACEMENT : hash;
+		int home = homeSlot(key);
+		for (int probe = 0; probe < MAX_PROBES; probe++) {
+			long slot = slots[(home + probe) & mask];
+			if (slot == key)
+				return true;
+			if (slot == 0)
+				return false;
+		}
+		return false;
+	}
+
+	/**
+	 * adds a hash to the set, overwriting the hash in its home slot if every slot it could go in is taken
+	 *
+	 * @param hash the hash of a solution
+	 */
+	public void add(long hash) {
+		long key = (hash == 0) ? ZERO_HASH_REPLACEMENT : hash;
+		int home = homeSlot(key);
+		for (int probe = 0; probe < MAX_PROBES; probe++) {
+			int index = (home + probe) & mask;
+			if (slots[index] == key)
+				return;
+			if (slots[index] == 0) {
+				slots[index] = key;
+				size++;
+				return;
+			}
+		}
+		slots[home] = key;
+	}
+
+	/**
+	 * the number of hashes currently held
+	 *
+	 * @return the number of occupied slots
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * the number of hashes the set can hold
+	 *
+	 * @return the number of slots
+	 */
+	public int capacity() {
+		return slots.length;
+	}
+
+	/**
+	 * writes every slot, so that the set can be read back with the same hashes in the same places
+	 *
+	 * @param output where to write the set
+	 * @throws IOException if it can't be written
+	 */
+	void writeTo(DataOutput output) throws IOException {
+		output.writeInt(slots.length);
+		output.writeInt(size);
+		for (long slot : slots) {
+			output.writeLong(slot);
+		}
+	}
+
+	/**
+	 * replaces the contents of the set with a set written by writeTo
+	 *
+	 * @param input where to read the set from
+	 * @throws IOException if it can't be read, or was written by a set with a different capacity
+	 */
+	void readFrom(DataInput input) throws IOException {
+		int length = input.readInt();
+		if (length != slots.length)
+			throw new IOException("the saved set has " + length + " slots, this one has " + slots.length);
+		size = input.readInt();
+		for (int s = 0; s < length; s++) {
+			slots[s] = input.readLong();
+		}
+	}
+
+	/**
+	 * the home slot of a hash. Zobrist hashes are already uniform, but mixing in the high bits keeps
+	 * small tables from only using the low bits of the hash
+	 *
+	 * @param key the hash
+	 * @return the index of the home slot
+	 */
+	private int homeSlot(long key) {
+		return (int) (key ^ (key >>> 32)) & mask;
+	}
+}
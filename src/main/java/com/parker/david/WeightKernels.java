@@ -0,0 +1,87 @@
+package com.parker.david;
+
+/**
+ * the inner loops that sum a weight vector over the set decision variables of a packed solution.
+ * these are shared by the objective function and the constraints, which only differ in what they do with the sum.
+ * each word of the solution is handled by whichever loop suits how many of its bits are set:
+ * empty words are skipped, full words are a plain sum, sparse words visit only their set bits,
+ * and everything else uses a branch free masked sum that the JIT can unroll without mispredicted branches
+ */
+final class WeightKernels {
+
+	/**
+	 * words with fewer set bits than this are summed by visiting the set bits one at a time,
+	 * below this the masked sum spends most of its time adding zeros
+	 */
+	static final int SPARSE_WORD_LIMIT = 12;
+
+	/**
+	 * not to be created, this only holds static kernels
+	 */
+	private WeightKernels() {
+	}
+
+	/**
+	 * sums weights[i] for every i where decision variable i is set.
+	 * variables past the end of the weights have no weight, and weights past the end of the solution are never set
+	 *
+	 * @param weights the weight of each decision variable
+	 * @param words   the packed decision variables of a solution
+	 * @return the sum of the weights of the set decision variables
+	 */
+	static long maskedSum(int[] weights, long[] words) {
+		long sum = 0;
+		int lastWord = Math.min(words.length, CandidateSolution.wordsFor(weights.length));
+		for (int w = 0; w < lastWord; w++) {
+			long word = words[w];
+			if (word == 0)
+				continue;
+
+			int base = w * CandidateSolution.BITS_PER_WORD;
+			int bitsInWord = Math.min(CandidateSolution.BITS_PER_WORD, weights.length - base);
+			int setBits = Long.bitCount(word);
+
+			if (setBits == CandidateSolution.BITS_PER_WORD && bitsInWord == CandidateSolution.BITS_PER_WORD) {
+				//every variable is set, no masking needed
+				for (int j = 0; j < CandidateSolution.BITS_PER_WORD; j++) {
+					sum += weights[base + j];
+				}
+			} else if (setBits < SPARSE_WORD_LIMIT) {
+				//few variables are set, visit only those, stopping at the end of the weights
+				while (word != 0) {
+					int j = Long.numberOfTrailingZeros(word);
+					if (j >= bitsInWord)
+						break;
+					sum += weights[base + j];
+					word &= word - 1;
+				}
+			} else {
+				//the bit for variable j becomes a mask of all 0s or all 1s, which selects the weight without a branch
+				for (int j = 0; j < bitsInWord; j++) {
+					sum += weights[base + j] & (int) -((word >>> j) & 1L);
+				}
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * the sparse form of maskedSum, sums weights[k] for every k where decision variable variables[k] is set.
+	 * the variables are in ascending order, so the sum stops at the first variable past the end of the solution
+	 *
+	 * @param variables the indices of the decision variables with a weight, in ascending order
+	 * @param weights   the weight of each of those decision variables
+	 * @param words     the packed decision variables of a solution
+	 * @return the sum of the weights of the set decision variables
+	 */
+	static long sparseMaskedSum(int[] variables, int[] weights, long[] words) {
+		long sum = 0;
+		for (int k = 0; k < variables.length; k++) {
+			int i = variables[k];
+			if ((i >>> 6) >= words.length)
+				break;
+			sum += weights[k] & (int) -((words[i >>> 6] >>> i) & 1L);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,59 @@
+package com.parker.david;
+
+import java.util.SplittableRandom;
+
+/**
+ * zobrist hashing of candidate solutions: each decision variable gets a random 64 bit key, and the hash of a solution
+ * is the exclusive or of the keys of its set variables. Flipping a bit toggles its key in or out, so the hash of a
+ * neighbour is the current hash xor the keys of the flipped bits, in O(1) per flip instead of O(n)
+ */
+public class ZobristHasher {
+
+	/**
+	 * the random key of each decision variable
+	 */
+	private final long[] keys;
+
+	/**
+	 * the constructor, draws a key for each decision variable
+	 *
+	 * @param numberOfDecisionVariables the number of decision variables
+	 * @param seed                      the seed for the keys, the same seed always gives the same hashes
+	 */
+	ZobristHasher(int numberOfDecisionVariables, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		keys = new long[numberOfDecisionVariables];
+		for (int i = 0; i < numberOfDecisionVariables; i++) {
+			keys[i] = random.nextLong();
+		}
+	}
+
+	/**
+	 * hashes a whole solution, in O(set bits)
+	 *
+	 * @param solution the solution to hash
+	 * @return the hash of the solution
+	 */
+	public long hash(CandidateSolution solution) {
+		long hash = 0;
+		for (int i = solution.nextSetDecisionVariable(0); i >= 0; i = solution.nextSetDecisionVariable(i + 1)) {
+			hash ^= keys[i];
+		}
+		return hash;
+	}
+
+	/**
+	 * the hash of the neighbour that a move leads to, from the hash of the current solution
+	 *
+	 * @param currentHash the hash of the current solution
+	 * @param move        the move to the neighbour
+	 * @return the hash of the neighbour
+	 */
+	public long hashAfter(long currentHash, Move move) {
+		long hash = currentHash;
+		for (int f = 0; f < move.numberOfFlips(); f++) {
+			hash ^= keys[move.getIthFlippedBit(f)];
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,285 @@
+package com.parker.david;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.fail;
+
+/**
+ * checks the shortcuts the search takes against the slow way of getting the same answer, on small random problems whose
+ * every solution can be listed:
+ * the incremental evaluator's fitness and feasibility of each neighbour against evaluating a copy of the neighbour in full,
+ * the fitness upper bound against the best feasible solution found by trying all of them, and the start constructions
+ * against the constraints of a knapsack, which they must always satisfy.
+ * each check runs on 2000 problems from seed 1, which can be changed with -DbruteForce.problems=N and -DbruteForce.seed=S
+ */
+public class BruteForceCheckTest {
+
+	/**
+	 * the most decision variables a problem is given, so that every solution of it can be listed
+	 */
+	private static final int MAXIMUM_DECISION_VARIABLES = 12;
+
+	/**
+	 * the number of moves each incremental evaluator is asked about
+	 */
+	private static final int MOVES_PER_PROBLEM = 200;
+
+	/**
+	 * the number of random problems each check is run on
+	 */
+	private final int problems = Integer.getInteger("bruteForce.problems", 2000);
+
+	/**
+	 * the random number generator that every problem, solution and move is drawn from
+	 */
+	private final Random random = new Random(Long.getLong("bruteForce.seed", 1));
+
+	@Test
+	public void incrementalEvaluationMatchesFullEvaluation() {
+		for (int p = 0; p < problems; p++) {
+			checkIncrementalEvaluation();
+		}
+	}
+
+	@Test
+	public void fitnessBoundIsAtLeastTheOptimum() {
+		for (int p = 0; p < problems; p++) {
+			checkFitnessBound();
+		}
+	}
+
+	@Test
+	public void startConstructionsAreFeasible() {
+		for (int p = 0; p < problems; p++) {
+			checkStartConstructions();
+		}
+	}
+
+	/**
+	 * asks an incremental evaluator for the fitness and feasibility after random moves of one to three flips, applying
+	 * about half of them, and compares every answer with evaluating the neighbour in full. The problems have every
+	 * operator, zero weights in the dense constraints, sparse constraints, and sometimes an objective that isn't a
+	 * weighted sum. Both with and without the slack bounds and the adaptive order
+	 */
+	private void checkIncrementalEvaluation() {
+		int n = 1 + random.nextInt(MAXIMUM_DECISION_VARIABLES);
+		ObjectiveFunction objectiveFunction = random.nextInt(4) == 0 ? squaredObjective(n) : randomObjective(n, -20, 20);
+		ConstraintSet constraints = randomConstraints(n, random.nextInt(5), true);
+		constraints.setSlackBounds(random.nextBoolean());
+		constraints.setAdaptiveOrder(random.nextBoolean());
+
+		IncrementalEvaluator evaluator = new IncrementalEvaluator(objectiveFunction, constraints, randomSolution(n));
+		for (int q = 0; q < MOVES_PER_PROBLEM; q++) {
+			Move move = randomMove(n);
+			CandidateSolution neighbour = move.applyTo(evaluator.getCurrentSolution());
+			expect(evaluator.fitnessAfter(move) == objectiveFunction.evaluateFitness(neighbour), "fitness after " + move, neighbour);
+			expect(evaluator.isFeasibleAfter(move) == constraints.isFeasible(neighbour), "feasibility after " + move, neighbour);
+			if (move.numberOfFlips() == 1) {
+				int i = move.getIthFlippedBit(0);
+				expect(evaluator.fitnessAfterFlip(i) == objectiveFunction.evaluateFitness(neighbour), "fitness after flipping " + i, neighbour);
+				expect(evaluator.isFeasibleAfterFlip(i) == constraints.isFeasible(neighbour), "feasibility after flipping " + i, neighbour);
+			}
+			if (random.nextBoolean()) {
+				evaluator.applyMove(move);
+				CandidateSolution current = evaluator.getCurrentSolution();
+				expect(evaluator.getCurrentFitness() == objectiveFunction.evaluateFitness(current), "current fitness", current);
+				expect(evaluator.isCurrentSolutionFeasible() == constraints.isFeasible(current), "current feasibility", current);
+			}
+		}
+	}
+
+	/**
+	 * compares the fitness upper bound with the best feasible solution, found by trying every solution. The bound must
+	 * be at least the best fitness, and may only say that no solution is feasible when none is
+	 */
+	private void checkFitnessBound() {
+		int n = 1 + random.nextInt(MAXIMUM_DECISION_VARIABLES);
+		ObjectiveFunction objectiveFunction = randomObjective(n, -10, 30);
+		ConstraintSet constraints = randomConstraints(n, random.nextInt(4), false);
+
+		long best = FitnessBound.NO_FEASIBLE_SOLUTION;
+		CandidateSolution bestSolution = null;
+		for (int bits = 0; bits < (1 << n); bits++) {
+			CandidateSolution solution = solutionOf(bits, n);
+			if (constraints.isFeasible(solution) && objectiveFunction.evaluateFitness(solution) > best) {
+				best = objectiveFunction.evaluateFitness(solution);
+				bestSolution = solution;
+			}
+		}
+		long upperBound = FitnessBound.upperBound(objectiveFunction, constraints, n);
+		if (upperBound == FitnessBound.NO_FEASIBLE_SOLUTION)
+			expect(bestSolution == null, "no feasible solution claimed", bestSolution);
+		else
+			expect(upperBound >= best, "upper bound " + upperBound + " below the optimum " + best, bestSolution);
+	}
+
+	/**
+	 * builds the greedy start and a few randomised ones for a knapsack, with positive objective weights and less than
+	 * or equal constraints on non negative weights. Every start must be feasible, and the greedy start can't leave out
+	 * a variable that would still fit
+	 */
+	private void checkStartConstructions() {
+		int n = 1 + random.nextInt(MAXIMUM_DECISION_VARIABLES);
+		ObjectiveFunction objectiveFunction = randomObjective(n, 1, 100);
+		ConstraintSet constraints = new ConstraintSet();
+		for (int c = random.nextInt(4); c > 0; c--) {
+			int[] weights = new int[n];
+			for (int i = 0; i < n; i++) {
+				weights[i] = (random.nextInt(4) == 0) ? 0 : 1 + random.nextInt(20);
+			}
+			constraints.add(new Constraint(weights, Constraint.Operators.LESS_THAN_OR_EQUAL, random.nextInt(10 * n + 1)));
+		}
+
+		StartConstructor constructor = new StartConstructor(objectiveFunction, constraints, new CandidateList(objectiveFunction, constraints, n));
+		CandidateSolution greedy = constructor.greedy();
+		expect(constraints.isFeasible(greedy), "greedy start infeasible", greedy);
+		for (int i = 0; i < n; i++) {
+			if (!greedy.getIthDecisionVariable(i)) {
+				CandidateSolution withVariable = greedy.copy();
+				withVariable.flipIthDecisionVariable(i);
+				expect(!constraints.isFeasible(withVariable), "greedy start leaves out " + i + ", which fits", greedy);
+			}
+		}
+		for (CandidateSolution start : constructor.construct(4, 1 + random.nextInt(4), random.nextLong())) {
+			expect(constraints.isFeasible(start), "randomised start infeasible", start);
+		}
+	}
+
+	/**
+	 * fails the test if a condition doesn't hold
+	 *
+	 * @param condition the condition
+	 * @param what      what was being checked
+	 * @param solution  the solution it was checked on, or null
+	 */
+	private static void expect(boolean condition, String what, CandidateSolution solution) {
+		if (!condition)
+			fail(what + ((solution == null) ? "" : " on " + solution));
+	}
+
+	/**
+	 * builds a weighted sum objective
+	 *
+	 * @param n       the number of decision variables
+	 * @param minimum the smallest weight
+	 * @param maximum the largest weight
+	 * @return the objective function
+	 */
+	private ObjectiveFunction randomObjective(int n, int minimum, int maximum) {
+		int[] weights = new int[n];
+		for (int i = 0; i < n; i++) {
+			weights[i] = minimum + random.nextInt(maximum - minimum + 1);
+		}
+		return new ObjectiveFunction(weights);
+	}
+
+	/**
+	 * builds an objective that isn't a weighted sum, the square of the weighted sum, so the incremental evaluator has to
+	 * score each neighbour with evaluateFitness
+	 *
+	 * @param n the number of decision variables
+	 * @return the objective function
+	 */
+	private ObjectiveFunction squaredObjective(int n) {
+		ObjectiveFunction weightedSum = randomObjective(n, -5, 5);
+		return new ObjectiveFunction(new int[n]) {
+			@Override
+			public int evaluateFitness(CandidateSolution solution) {
+				int sum = weightedSum.evaluateFitness(solution);
+				return sum * sum;
+			}
+		};
+	}
+
+	/**
+	 * builds constraints with random operators and thresholds
+	 *
+	 * @param n            the number of decision variables
+	 * @param count        the number of constraints
+	 * @param allowSparse  true to build some of them from only their non zero weights
+	 * @return the constraints
+	 */
+	private ConstraintSet randomConstraints(int n, int count, boolean allowSparse) {
+		ConstraintSet constraints = new ConstraintSet();
+		for (int c = 0; c < count; c++) {
+			Constraint.Operators operator = Constraint.Operators.values()[random.nextInt(Constraint.Operators.values().length)];
+			int threshold = random.nextInt(80) - 10;
+			int[] weights = new int[n];
+			int nonZero = 0;
+			for (int i = 0; i < n; i++) {
+				weights[i] = (random.nextInt(4) == 0) ? 0 : random.nextInt(31) - 8;
+				if (weights[i] != 0)
+					nonZero++;
+			}
+			if (allowSparse && random.nextBoolean()) {
+				int[] variables = new int[nonZero];
+				int[] nonZeroWeights = new int[nonZero];
+				for (int i = 0, k = 0; i < n; i++) {
+					if (weights[i] != 0) {
+						variables[k] = i;
+						nonZeroWeights[k++] = weights[i];
+					}
+				}
+				constraints.add(new Constraint(variables, nonZeroWeights, operator, threshold));
+			} else {
+				constraints.add(new Constraint(weights, operator, threshold));
+			}
+		}
+		return constraints;
+	}
+
+	/**
+	 * builds a random solution, each variable set with a random chance picked for the solution
+	 *
+	 * @param n the number of decision variables
+	 * @return the solution
+	 */
+	private CandidateSolution randomSolution(int n) {
+		CandidateSolution solution = new CandidateSolution(n);
+		double fillRatio = random.nextDouble();
+		for (int i = 0; i < n; i++) {
+			if (random.nextDouble() < fillRatio)
+				solution.flipIthDecisionVariable(i);
+		}
+		return solution;
+	}
+
+	/**
+	 * builds a move of one to three distinct flips, never more than there are decision variables
+	 *
+	 * @param n the number of decision variables
+	 * @return the move
+	 */
+	private Move randomMove(int n) {
+		int[] bits = new int[Math.min(n, 1 + random.nextInt(3))];
+		for (int f = 0; f < bits.length; f++) {
+			boolean repeated;
+			do {
+				bits[f] = random.nextInt(n);
+				repeated = false;
+				for (int g = 0; g < f; g++) {
+					repeated |= bits[g] == bits[f];
+				}
+			} while (repeated);
+		}
+		return new Move(bits);
+	}
+
+	/**
+	 * builds the solution whose set variables are the set bits of a number
+	 *
+	 * @param bits the number, bit i for decision variable i
+	 * @param n    the number of decision variables
+	 * @return the solution
+	 */
+	private static CandidateSolution solutionOf(int bits, int n) {
+		CandidateSolution solution = new CandidateSolution(n);
+		for (int i = 0; i < n; i++) {
+			if ((bits >> i & 1) == 1)
+				solution.flipIthDecisionVariable(i);
+		}
+		return solution;
+	}
+}
@@ -0,0 +1,206 @@
+package com.parker.david;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * stops descents part way, resumes them from the checkpoint they left, and checks that they end exactly where an
+ * uninterrupted descent ends, for every selector that keeps state between steps
+ */
+public class CheckpointTest {
+
+	/**
+	 * the number of decision variables of the test problem
+	 */
+	private static final int N = 120;
+
+	/**
+	 * where the checkpoint files are written
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * a knapsack with 5 capacity constraints
+	 */
+	private final ObjectiveFunction objectiveFunction;
+
+	/**
+	 * the constraints of the knapsack
+	 */
+	private final ConstraintSet constraints = new ConstraintSet();
+
+	/**
+	 * the constructor, builds the knapsack
+	 */
+	public CheckpointTest() {
+		Random random = new Random(5);
+		int[] weights = new int[N];
+		for (int i = 0; i < N; i++) {
+			weights[i] = 1 + random.nextInt(50);
+		}
+		objectiveFunction = new ObjectiveFunction(weights);
+		for (int c = 0; c < 5; c++) {
+			int[] constraintWeights = new int[N];
+			for (int i = 0; i < N; i++) {
+				constraintWeights[i] = random.nextInt(30);
+			}
+			constraints.add(new Constraint(constraintWeights, Constraint.Operators.LESS_THAN_OR_EQUAL, 600));
+		}
+	}
+
+	@Test
+	public void resumedDescentEndsWhereAnUninterruptedOneDoes() throws IOException {
+		Map<String, Supplier<NextSolutionSelector>> selectors = new LinkedHashMap<>();
+		selectors.put("annealing", () -> new SimulatedAnnealingSelection(objectiveFunction, constraints, 50, 0.01, CoolingSchedule.geometric(0.999), 7));
+		selectors.put("late acceptance", () -> new LateAcceptanceSelection(objectiveFunction, constraints, 50, 2000, 7));
+		selectors.put("tabu", () -> new TabuSearchSelection(objectiveFunction, constraints, 7, 400, 100, 1024, 7));
+		selectors.put("first random", () -> new FirstImprovementSelection(objectiveFunction, constraints, FirstImprovementSelection.ScanOrder.RANDOM_PERMUTATION, 7));
+		selectors.put("best", () -> new BestImprovementSelection(objectiveFunction, constraints));
+
+		CandidateSolution start = new CandidateSolution(N);
+		for (Map.Entry<String, Supplier<NextSolutionSelector>> selector : selectors.entrySet()) {
+			SearchResult uninterrupted = descent(selector.getValue().get()).run(start);
+
+			//snapshot every iteration, and crash half way through
+			Path file = folder.newFile().toPath();
+			Files.delete(file);
+			int crashAt = Math.max(2, uninterrupted.getIterations() / 2);
+			try (Checkpointer checkpointer = new Checkpointer(file, 0, TimeUnit.MILLISECONDS, N)) {
+				descent(selector.getValue().get()).run(start, crashingAt(crashAt), null, checkpointer);
+			} catch (Crash expected) {
+				//the descent stopped part way, as intended
+			}
+			assertTrue(selector.getKey(), SearchCheckpoint.read(file).isPartWay());
+
+			SearchResult resumed;
+			try (Checkpointer checkpointer = Checkpointer.resume(file, 0, TimeUnit.MILLISECONDS, N)) {
+				resumed = descent(selector.getValue().get()).run(start, TraceSink.OFF, null, checkpointer);
+			}
+			assertEquals(selector.getKey(), uninterrupted.getBestSolution(), resumed.getBestSolution());
+			assertEquals(selector.getKey(), uninterrupted.getBestFitness(), resumed.getBestFitness());
+			assertEquals(selector.getKey(), uninterrupted.getIterations(), resumed.getIterations());
+
+			SearchCheckpoint finished = SearchCheckpoint.read(file);
+			assertFalse(selector.getKey(), finished.isPartWay());
+			assertEquals(selector.getKey(), 1, finished.getFinishedRuns().size());
+			assertEquals(selector.getKey(), resumed.getBestSolution(), finished.getFinishedRuns().get(0).getBestSolution());
+		}
+	}
+
+	@Test
+	public void finishedStartsAreSkippedOnResume() throws IOException {
+		Path file = folder.newFile().toPath();
+		Files.delete(file);
+		CandidateSolution first = new CandidateSolution(N);
+		CandidateSolution second = new CandidateSolution(N);
+		second.flipIthDecisionVariable(3);
+
+		SearchResult firstResult;
+		try (Checkpointer checkpointer = new Checkpointer(file, 1, TimeUnit.HOURS, N)) {
+			firstResult = descent(new BestImprovementSelection(objectiveFunction, constraints)).run(first, TraceSink.OFF, null, checkpointer);
+		}
+
+		try (Checkpointer checkpointer = Checkpointer.resume(file, 1, TimeUnit.HOURS, N)) {
+			assertTrue(checkpointer.isFinished(0, first));
+			assertFalse(checkpointer.isFinished(1, second));
+			assertThrows(IllegalStateException.class, () -> checkpointer.isFinished(0, second));
+			assertEquals(firstResult.getBestSolution(), checkpointer.getFinishedRuns().get(0).getBestSolution());
+			assertEquals(firstResult.getBestFitness(), checkpointer.getFinishedRuns().get(0).getBestFitness());
+		}
+	}
+
+	@Test
+	public void rejectsCheckpointsThatDontFit() throws IOException {
+		Path file = folder.newFile().toPath();
+		Files.delete(file);
+		try (Checkpointer checkpointer = new Checkpointer(file, 0, TimeUnit.MILLISECONDS, N)) {
+			descent(new TabuSearchSelection(objectiveFunction, constraints, 7, 400, 100, 1024, 7)).run(new CandidateSolution(N), crashingAt(5), null, checkpointer);
+		} catch (Crash expected) {
+			//the descent stopped part way, as intended
+		}
+		byte[] bytes = Files.readAllBytes(file);
+
+		//another problem size, another selector, and a file cut short
+		assertThrows(IOException.class, () -> Checkpointer.resume(file, 0, TimeUnit.MILLISECONDS, N + 1));
+		try (Checkpointer checkpointer = Checkpointer.resume(file, 0, TimeUnit.MILLISECONDS, N)) {
+			assertThrows(IOException.class, () -> descent(new BestImprovementSelection(objectiveFunction, constraints)).run(new CandidateSolution(N), TraceSink.OFF, null, checkpointer));
+		}
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+		assertThrows(IOException.class, () -> SearchCheckpoint.read(file));
+		Files.write(file, new byte[]{1, 2, 3});
+		assertThrows(IOException.class, () -> SearchCheckpoint.read(file));
+	}
+
+	@Test
+	public void checkpointableRandomGivesTheNumbersRandomDoes() {
+		Random expected = new Random(42);
+		CheckpointableRandom random = new CheckpointableRandom(42);
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(expected.nextInt(1 + i), random.nextInt(1 + i));
+			assertEquals(expected.nextLong(), random.nextLong());
+			assertEquals(expected.nextDouble(), random.nextDouble(), 0);
+		}
+	}
+
+	/**
+	 * a descent of at most 3000 iterations with the single bit flip neighbourhood
+	 *
+	 * @param selector the selector
+	 * @return the descent
+	 */
+	private LocalSearch descent(NextSolutionSelector selector) {
+		return new LocalSearch(objectiveFunction, constraints, selector, new SingleBitComplimentGenerator(), TerminationCriteria.NONE.withIterationBudget(3000));
+	}
+
+	/**
+	 * thrown by the crashing trace sink to stop a descent part way
+	 */
+	private static class Crash extends RuntimeException {
+
+		/**
+		 * exceptions are serializable, this one is never serialised
+		 */
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * a trace sink that stops the descent at an iteration, as if the process had been killed there
+	 *
+	 * @param iteration the iteration to stop at
+	 * @return the trace sink
+	 */
+	private static TraceSink crashingAt(int iteration) {
+		return new TraceSink() {
+			@Override
+			public void startRun(IncrementalEvaluator evaluator) {
+			}
+
+			@Override
+			public void iteration(int i, IncrementalEvaluator evaluator, MoveNeighbourhood neighbourhood, Move move) {
+				if (i == iteration)
+					throw new Crash();
+			}
+
+			@Override
+			public void endRun(SearchResult result, IncrementalEvaluator evaluator) {
+			}
+		};
+	}
+}
@@ -0,0 +1,177 @@
+package com.parker.david;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * round trips the messages of the island protocol, and runs a coordinator with workers over the loopback address
+ */
+public class IslandProtocolTest {
+
+	@Test
+	public void solutionsRoundTrip() throws IOException {
+		Random random = new Random(1);
+		for (int n : new int[]{0, 1, 63, 64, 65, 130}) {
+			CandidateSolution solution = new CandidateSolution(n);
+			for (int i = 0; i < n; i++) {
+				solution.setIthDecisionVariable(i, random.nextBoolean());
+			}
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			IslandProtocol.writeSolution(new DataOutputStream(bytes), solution);
+			assertEquals(8 * CandidateSolution.wordsFor(n), bytes.size());
+			assertEquals(solution, IslandProtocol.readSolution(input(bytes.toByteArray()), n));
+		}
+	}
+
+	@Test
+	public void rejectsSolutionsWithBitsPastTheEnd() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new DataOutputStream(bytes).writeLong(1L << 10);
+		assertThrows(IOException.class, () -> IslandProtocol.readSolution(input(bytes.toByteArray()), 10));
+		assertThrows(IOException.class, () -> IslandProtocol.readSolution(input(new byte[4]), 10));
+	}
+
+	@Test
+	public void terminationCriteriaRoundTrip() throws IOException {
+		TerminationCriteria criteria = TerminationCriteria.NONE.withTimeBudget(250, TimeUnit.MILLISECONDS)
+				.withIterationBudget(1000).withStagnationBudget(50).withFitnessTarget(64);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		criteria.writeTo(new DataOutputStream(bytes));
+		assertEquals(criteria.toString(), TerminationCriteria.readFrom(input(bytes.toByteArray())).toString());
+
+		ByteArrayOutputStream none = new ByteArrayOutputStream();
+		TerminationCriteria.NONE.writeTo(new DataOutputStream(none));
+		assertEquals("none", TerminationCriteria.readFrom(input(none.toByteArray())).toString());
+
+		ByteArrayOutputStream negative = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(negative);
+		output.writeLong(-1);
+		output.writeInt(1);
+		output.writeInt(1);
+		output.writeLong(0);
+		assertThrows(IOException.class, () -> TerminationCriteria.readFrom(input(negative.toByteArray())));
+	}
+
+	@Test
+	public void expectChecksTheMessageType() throws IOException {
+		IslandProtocol.expect(input(new byte[]{IslandProtocol.UNIT}), IslandProtocol.UNIT);
+		assertThrows(IOException.class, () -> IslandProtocol.expect(input(new byte[]{IslandProtocol.STOP}), IslandProtocol.UNIT));
+	}
+
+	@Test
+	public void parsesAddresses() {
+		assertEquals(new InetSocketAddress(InetAddress.getLoopbackAddress(), 7000), IslandProtocol.parseAddress("7000"));
+		InetSocketAddress address = IslandProtocol.parseAddress("localhost:7001");
+		assertEquals("localhost", address.getHostString());
+		assertEquals(7001, address.getPort());
+		assertThrows(IllegalArgumentException.class, () -> IslandProtocol.parseAddress("localhost:port"));
+	}
+
+	@Test(timeout = 60000)
+	public void workersRunEveryDescentOfTheCoordinator() throws Exception {
+		Problem problem = ProblemLoader.load(Paths.get("problems", "example.txt"));
+		IslandCoordinator coordinator = new IslandCoordinator(problem, "best", "single", TerminationCriteria.NONE, 1, 12, 2, 2, 0);
+		InetSocketAddress address = freeLoopbackAddress();
+
+		ExecutorService threads = Executors.newCachedThreadPool();
+		try {
+			Future<MultiStartResult> result = threads.submit(() -> coordinator.run(address));
+
+			//a worker of another version is dropped without costing a descent
+			try (Socket stranger = connect(address)) {
+				DataOutputStream output = new DataOutputStream(stranger.getOutputStream());
+				output.writeInt(IslandProtocol.MAGIC);
+				output.writeInt(IslandProtocol.VERSION + 1);
+				output.flush();
+				assertEquals(-1, stranger.getInputStream().read());
+			}
+
+			List<Future<Integer>> workers = new ArrayList<>();
+			for (int w = 0; w < 2; w++) {
+				workers.add(threads.submit(() -> IslandWorker.run(address)));
+			}
+			MultiStartResult results = result.get();
+			int descents = 0;
+			for (Future<Integer> worker : workers) {
+				descents += worker.get();
+			}
+
+			assertEquals(12, results.getPerStartResults().size());
+			assertEquals(12, descents);
+			assertEquals(0, coordinator.getAbandonedUnits());
+			assertTrue(results.getBestResult().isBestFeasible());
+			assertTrue(results.getBestResult().getBestFitness() <= 64);
+			for (SearchResult descent : results.getPerStartResults()) {
+				assertTrue(problem.getConstraints().isFeasible(descent.getBestSolution()) || !descent.isBestFeasible());
+				assertEquals(problem.getObjectiveFunction().evaluateFitness(descent.getBestSolution()), descent.getBestFitness());
+			}
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+
+	/**
+	 * wraps bytes for reading
+	 *
+	 * @param bytes the bytes
+	 * @return a stream over them
+	 */
+	private static DataInputStream input(byte[] bytes) {
+		return new DataInputStream(new ByteArrayInputStream(bytes));
+	}
+
+	/**
+	 * finds a loopback port that nothing is listening on
+	 *
+	 * @return the address
+	 * @throws IOException if no port can be found
+	 */
+	private static InetSocketAddress freeLoopbackAddress() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+			return new InetSocketAddress(InetAddress.getLoopbackAddress(), socket.getLocalPort());
+		}
+	}
+
+	/**
+	 * connects to the coordinator, waiting for it to start listening
+	 *
+	 * @param address the address of the coordinator
+	 * @return the connection
+	 * @throws IOException          if it can't be connected to
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	private static Socket connect(InetSocketAddress address) throws IOException, InterruptedException {
+		while (true) {
+			Socket socket = new Socket();
+			try {
+				socket.connect(address);
+				return socket;
+			} catch (ConnectException e) {
+				socket.close();
+				Thread.sleep(20);
+			}
+		}
+	}
+}
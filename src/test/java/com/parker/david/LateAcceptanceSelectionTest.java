@@ -0,0 +1,115 @@
+package com.parker.david;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * drives the late acceptance selector one step at a time, and runs it on the example problem
+ */
+public class LateAcceptanceSelectionTest {
+
+	@Test
+	public void historyHoldsTheFitnessOfEachStep() throws IOException {
+		int n = 40;
+		int historyLength = 5;
+		Random random = new Random(1);
+		int[] weights = new int[n];
+		for (int i = 0; i < n; i++) {
+			weights[i] = random.nextInt(41) - 20;
+		}
+		ObjectiveFunction objectiveFunction = new ObjectiveFunction(weights);
+		ConstraintSet constraints = new ConstraintSet();
+		LateAcceptanceSelection selector = new LateAcceptanceSelection(objectiveFunction, constraints, historyLength, 10000, 3);
+		IncrementalEvaluator evaluator = new IncrementalEvaluator(objectiveFunction, constraints, new CandidateSolution(n));
+
+		int[] fitnessAfterStep = new int[500];
+		int worseThanTheSlot = 0;
+		for (int s = 0; s < fitnessAfterStep.length; s++) {
+			Move move = selector.selectMove(evaluator, new SingleBitComplimentGenerator().generateMoveNeighbourhood(evaluator.getCurrentSolution()));
+			if (move != null)
+				evaluator.applyMove(move);
+			fitnessAfterStep[s] = evaluator.getCurrentFitness();
+			if (s >= historyLength && fitnessAfterStep[s] < fitnessAfterStep[s - historyLength])
+				worseThanTheSlot++;
+
+			//the slot of this step holds the fitness after it, even when that is lower than the slot held before
+			int[] history = history(selector);
+			for (int back = 0; back <= Math.min(s, historyLength - 1); back++) {
+				assertEquals("step " + s + ", " + back + " back", fitnessAfterStep[s - back], history[(s - back) % historyLength]);
+			}
+		}
+		assertTrue("the walk never went below the level of its history", worseThanTheSlot > 0);
+	}
+
+	@Test
+	public void onlyAcceptsFeasibleMovesAndEndsAfterTheIdleSteps() throws IOException {
+		Problem problem = ProblemLoader.load(Paths.get("problems", "example.txt"));
+		ObjectiveFunction objectiveFunction = problem.getObjectiveFunction();
+		ConstraintSet constraints = problem.getConstraints();
+		for (CandidateSolution start : problem.getStartSolutions()) {
+			LateAcceptanceSelection selector = new LateAcceptanceSelection(objectiveFunction, constraints, 10, 500, 7);
+			IncrementalEvaluator evaluator = new IncrementalEvaluator(objectiveFunction, constraints, start);
+			int idleSteps = 0;
+			while (!selector.isSearchComplete()) {
+				int fitnessBefore = evaluator.getCurrentFitness();
+				Move move = selector.selectMove(evaluator, new SingleBitComplimentGenerator().generateMoveNeighbourhood(evaluator.getCurrentSolution()));
+				if (move != null) {
+					evaluator.applyMove(move);
+					assertTrue(evaluator.isCurrentSolutionFeasible());
+				}
+				idleSteps = (evaluator.getCurrentFitness() > fitnessBefore) ? 0 : idleSteps + 1;
+			}
+			assertEquals(500, idleSteps);
+		}
+	}
+
+	@Test
+	public void sameSeedGivesTheSameRun() throws IOException {
+		Problem problem = ProblemLoader.load(Paths.get("problems", "example.txt"));
+		SearchResult[] results = new SearchResult[2];
+		for (int r = 0; r < results.length; r++) {
+			LateAcceptanceSelection selector = new LateAcceptanceSelection(problem.getObjectiveFunction(), problem.getConstraints(), 50, 1000, 11);
+			results[r] = new LocalSearch(problem.getObjectiveFunction(), problem.getConstraints(), selector, new SingleBitComplimentGenerator(), TerminationCriteria.NONE)
+					.run(problem.getStartSolutions().get(0));
+		}
+		assertEquals(results[0].getBestSolution(), results[1].getBestSolution());
+		assertEquals(results[0].getIterations(), results[1].getIterations());
+	}
+
+	@Test
+	public void rejectsAnEmptyHistory() {
+		assertThrows(IllegalArgumentException.class, () -> new LateAcceptanceSelection(new ObjectiveFunction(new int[1]), new ConstraintSet(), 0, 10, 1));
+		assertThrows(IllegalArgumentException.class, () -> new LateAcceptanceSelection(new ObjectiveFunction(new int[1]), new ConstraintSet(), 10, 0, 1));
+	}
+
+	/**
+	 * reads the fitness history out of the selector's checkpoint state
+	 *
+	 * @param selector the selector
+	 * @return the history, indexed by step modulo its length
+	 * @throws IOException if the state can't be written
+	 */
+	private static int[] history(LateAcceptanceSelection selector) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		selector.writeState(new DataOutputStream(bytes));
+		DataInputStream state = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		state.readInt();
+		state.readInt();
+		int[] history = new int[state.readInt()];
+		for (int v = 0; v < history.length; v++) {
+			history[v] = state.readInt();
+		}
+		return history;
+	}
+}
@@ -0,0 +1,209 @@
+package com.parker.david;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * writes problems in both formats and loads them back, and checks that malformed problems are rejected with an IOException
+ */
+public class ProblemLoaderTest {
+
+	/**
+	 * where the problem files are written
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void textRoundTripKeepsEveryValue() throws IOException {
+		Problem problem = randomProblem(new Random(1), 130);
+		Path file = folder.newFile("problem.txt").toPath();
+		ProblemLoader.writeText(problem, file);
+		assertSameProblem(problem, ProblemLoader.load(file));
+	}
+
+	@Test
+	public void binaryRoundTripKeepsEveryValue() throws IOException {
+		Problem problem = randomProblem(new Random(2), 130);
+		Path file = folder.newFile("problem.bin").toPath();
+		ProblemLoader.writeBinary(problem, file);
+		assertSameProblem(problem, ProblemLoader.load(file));
+	}
+
+	@Test
+	public void roundTripsKeepAnEmptyProblem() throws IOException {
+		Problem problem = new Problem(0, new ObjectiveFunction(new int[0]), new ConstraintSet(), new ArrayList<>());
+		Path text = folder.newFile("empty.txt").toPath();
+		Path binary = folder.newFile("empty.bin").toPath();
+		ProblemLoader.writeText(problem, text);
+		ProblemLoader.writeBinary(problem, binary);
+		assertSameProblem(problem, ProblemLoader.load(text));
+		assertSameProblem(problem, ProblemLoader.load(binary));
+	}
+
+	@Test
+	public void parsesTextWithCommentsAndSparseRecords() throws IOException {
+		Problem problem = parse("# a comment line\n"
+				+ "variables 4 # the size\n"
+				+ "objective 5 -3 0 7\n"
+				+ "constraint <= 10 1 2 3 4\n"
+				+ "sparse > -2 2 1:6 3:-1\n"
+				+ "start 0110\n");
+
+		assertEquals(4, problem.getNumberOfDecisionVariables());
+		assertEquals(-3, problem.getObjectiveFunction().getIthWeight(1));
+		assertEquals(2, problem.getConstraints().size());
+		Constraint sparse = problem.getConstraints().getIthConstraint(1);
+		assertEquals(Constraint.Operators.GREATER_THAN, sparse.getOperator());
+		assertEquals(-2, sparse.getValueThreshold());
+		assertArrayEquals(new int[]{1, 3}, sparse.getNonZeroVariables());
+		assertArrayEquals(new int[]{6, -1}, sparse.getNonZeroWeights());
+		assertEquals(Arrays.asList(solutionOf("0110")), problem.getStartSolutions());
+	}
+
+	@Test
+	public void rejectsMalformedText() {
+		assertThrows(IOException.class, () -> parse("objective 1 2\n"));
+		assertThrows(IOException.class, () -> parse("variables 2\nconstraint <= 3 1 1\n"));
+		assertThrows(IOException.class, () -> parse("variables 2\nobjective 1\n"));
+		assertThrows(IOException.class, () -> parse("variables 2\nobjective 1 2\nobjective 1 2\n"));
+		assertThrows(IOException.class, () -> parse("variables 2\nobjective 1 2\nconstraint =< 3 1 1\n"));
+		assertThrows(IOException.class, () -> parse("variables 2\nobjective 1 2\nsparse <= 3 2 1:1 0:1\n"));
+		assertThrows(IOException.class, () -> parse("variables 2\nobjective 1 2\nstart 012\n"));
+		assertThrows(IOException.class, () -> parse("variables 2\nobjective 1 2\nstart 1\n"));
+		assertThrows(IOException.class, () -> parse("variables 2\nobjective 1 99999999999\n"));
+		assertThrows(IOException.class, () -> parse("variables 2\nobjective 1 2\nfinish\n"));
+	}
+
+	@Test
+	public void rejectsTruncatedOrNewerBinary() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ProblemLoader.writeBinary(randomProblem(new Random(3), 70), new DataOutputStream(bytes));
+		byte[] whole = bytes.toByteArray();
+
+		for (int length : new int[]{8, 20, whole.length / 2, whole.length - 1}) {
+			ByteBuffer truncated = ByteBuffer.wrap(Arrays.copyOf(whole, length));
+			assertThrows(IOException.class, () -> ProblemLoader.parse(truncated, Paths.get("truncated")));
+		}
+
+		byte[] newer = whole.clone();
+		newer[7] = ProblemLoader.BINARY_VERSION + 1;
+		assertThrows(IOException.class, () -> ProblemLoader.parse(ByteBuffer.wrap(newer), Paths.get("newer")));
+	}
+
+	@Test
+	public void loadsTheExampleProblem() throws IOException {
+		Path example = Paths.get("problems", "example.txt");
+		assertTrue(Files.exists(example));
+		Problem problem = ProblemLoader.load(example);
+		assertEquals(10, problem.getNumberOfDecisionVariables());
+		assertEquals(1, problem.getConstraints().size());
+		assertEquals(3, problem.getStartSolutions().size());
+	}
+
+	/**
+	 * parses a text problem held in a string
+	 *
+	 * @param text the problem
+	 * @return the problem
+	 * @throws IOException if it is not a valid problem
+	 */
+	private static Problem parse(String text) throws IOException {
+		return ProblemLoader.parse(ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)), Paths.get("test"));
+	}
+
+	/**
+	 * checks that two problems have the same variables, objective, constraints and starts
+	 *
+	 * @param expected the problem that was written
+	 * @param actual   the problem that was read back
+	 */
+	private static void assertSameProblem(Problem expected, Problem actual) {
+		int n = expected.getNumberOfDecisionVariables();
+		assertEquals(n, actual.getNumberOfDecisionVariables());
+		for (int i = 0; i < n; i++) {
+			assertEquals("objective weight " + i, expected.getObjectiveFunction().getIthWeight(i), actual.getObjectiveFunction().getIthWeight(i));
+		}
+
+		assertEquals(expected.getConstraints().size(), actual.getConstraints().size());
+		for (int c = 0; c < expected.getConstraints().size(); c++) {
+			Constraint expectedConstraint = expected.getConstraints().getIthConstraint(c);
+			Constraint actualConstraint = actual.getConstraints().getIthConstraint(c);
+			assertEquals("operator of " + c, expectedConstraint.getOperator(), actualConstraint.getOperator());
+			assertEquals("threshold of " + c, expectedConstraint.getValueThreshold(), actualConstraint.getValueThreshold());
+			for (int i = 0; i < n; i++) {
+				assertEquals("weight " + i + " of " + c, expectedConstraint.getIthWeight(i), actualConstraint.getIthWeight(i));
+			}
+		}
+
+		assertEquals(expected.getStartSolutions(), actual.getStartSolutions());
+	}
+
+	/**
+	 * builds a problem with every operator, dense and sparse constraints, negative weights and thresholds, and starts
+	 * that span more than one word
+	 *
+	 * @param random where the values are drawn from
+	 * @param n      the number of decision variables
+	 * @return the problem
+	 */
+	private static Problem randomProblem(Random random, int n) {
+		int[] objectiveWeights = new int[n];
+		for (int i = 0; i < n; i++) {
+			objectiveWeights[i] = random.nextInt(201) - 100;
+		}
+
+		ConstraintSet constraints = new ConstraintSet();
+		for (Constraint.Operators operator : Constraint.Operators.values()) {
+			int[] weights = new int[n];
+			for (int i = 0; i < n; i++) {
+				weights[i] = (random.nextInt(4) == 0) ? 0 : random.nextInt(61) - 20;
+			}
+			constraints.add(new Constraint(weights, operator, random.nextInt(1000) - 100));
+			constraints.add(new Constraint(new int[]{3, 64, n - 1}, new int[]{random.nextInt(50) + 1, -7, 12}, operator, random.nextInt(40)));
+		}
+
+		List<CandidateSolution> starts = new ArrayList<>();
+		for (int s = 0; s < 3; s++) {
+			CandidateSolution start = new CandidateSolution(n);
+			for (int i = 0; i < n; i++) {
+				start.setIthDecisionVariable(i, random.nextBoolean());
+			}
+			starts.add(start);
+		}
+		return new Problem(n, new ObjectiveFunction(objectiveWeights), constraints, starts);
+	}
+
+	/**
+	 * builds a solution from a string of 0 and 1
+	 *
+	 * @param bits the bits, one per decision variable
+	 * @return the solution
+	 */
+	private static CandidateSolution solutionOf(String bits) {
+		CandidateSolution solution = new CandidateSolution(bits.length());
+		for (int i = 0; i < bits.length(); i++) {
+			solution.setIthDecisionVariable(i, bits.charAt(i) == '1');
+		}
+		return solution;
+	}
+}
@@ -0,0 +1,148 @@
+package com.parker.david;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * sends requests to a solver service through serve and checks the responses
+ */
+public class SolverServiceTest {
+
+	/**
+	 * the example problem in the text format
+	 */
+	private final String example;
+
+	/**
+	 * the constructor, reads the example problem
+	 *
+	 * @throws IOException if it can't be read
+	 */
+	public SolverServiceTest() throws IOException {
+		example = new String(Files.readAllBytes(Paths.get("problems", "example.txt")), StandardCharsets.US_ASCII);
+	}
+
+	@Test
+	public void solvesAndReportsEachNewBest() throws IOException {
+		List<String> responses = serve(new SolverService(1, 4), "solve a selector=tabu seed=3\n" + example + "end\n");
+
+		assertEquals("accepted a", responses.get(0));
+		String done = responses.get(responses.size() - 1);
+		assertTrue(done, done.matches("done a ok -?\\d+ true \\[[01]{10}] starts=3/3 ms=\\d+"));
+
+		//every best line beats the one before it, and the last is the result
+		int previous = Integer.MIN_VALUE;
+		for (String best : responses.subList(1, responses.size() - 1)) {
+			String[] fields = best.split(" ");
+			assertEquals(best, "best", fields[0]);
+			assertEquals(best, "a", fields[1]);
+			assertTrue(best, Integer.parseInt(fields[3]) > previous);
+			previous = Integer.parseInt(fields[3]);
+		}
+		assertEquals(previous, Integer.parseInt(done.split(" ")[3]));
+		assertEquals(64, previous);
+	}
+
+	@Test
+	public void reportsBadRequestsAsErrors() throws IOException {
+		List<String> responses = serve(new SolverService(1, 4), "# a comment\n"
+				+ "\n"
+				+ "optimise b\n"
+				+ "solve c colour=red\n" + example + "end\n"
+				+ "solve d seed\n" + example + "end\n"
+				+ "solve e selector=greedy\n" + example + "end\n"
+				+ "solve f\nvariables 2\nobjective 1\nend\n"
+				+ "status\n");
+
+		assertEquals(6, responses.size());
+		assertTrue(responses.get(0), responses.get(0).startsWith("error - unknown request optimise b"));
+		assertTrue(responses.get(1), responses.get(1).startsWith("error c unknown options [colour]"));
+		assertTrue(responses.get(2), responses.get(2).startsWith("error d expected option=value"));
+		assertTrue(responses.get(3), responses.get(3).startsWith("error e unknown selector greedy"));
+		assertTrue(responses.get(4), responses.get(4).startsWith("error f f line 3"));
+		assertEquals("status running=0 queued=0 accepted=0 rejected=4 completed=0", responses.get(5));
+	}
+
+	@Test
+	public void stopsAtTheDeadline() throws IOException {
+		List<String> responses = serve(new SolverService(1, 4), "solve g deadline-ms=0\n" + example + "end\n");
+		assertEquals(Arrays.asList("accepted g"), responses.subList(0, 1));
+		assertTrue(responses.get(1), responses.get(1).matches("done g deadline - - - starts=0/3 ms=\\d+"));
+	}
+
+	@Test
+	public void rejectsJobsWhenTheQueueIsFull() throws IOException {
+		//one thread and a queue of one, so while the first job runs the second waits and the third is turned away
+		String slow = "selector=tabu deadline-ms=1000\n" + largeProblem() + "end\n";
+		List<String> responses = serve(new SolverService(1, 1), "solve h " + slow + "solve i " + slow + "solve j " + slow + "quit\n");
+
+		//the best lines of the running job can come between the answers to the requests
+		List<String> answers = new ArrayList<>();
+		List<String> done = new ArrayList<>();
+		for (String response : responses) {
+			if (response.startsWith("accepted ") || response.startsWith("rejected "))
+				answers.add(response);
+			else if (response.startsWith("done "))
+				done.add(response.substring(0, 6));
+		}
+		assertEquals(Arrays.asList("accepted h", "accepted i", "rejected j the queue is full"), answers);
+		assertEquals(Arrays.asList("done h", "done i"), done);
+	}
+
+	@Test
+	public void failsWhenTheInputEndsPartWayThroughAProblem() {
+		SolverService service = new SolverService(1, 4);
+		assertThrows(IOException.class, () -> serve(service, "solve l\nvariables 2\n"));
+	}
+
+	/**
+	 * serves one connection's requests and closes the service once its jobs are done
+	 *
+	 * @param service  the service
+	 * @param requests the requests
+	 * @return the response lines
+	 * @throws IOException if serve fails
+	 */
+	private static List<String> serve(SolverService service, String requests) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (SolverService closing = service) {
+			closing.serve(new ByteArrayInputStream(requests.getBytes(StandardCharsets.UTF_8)), output);
+		}
+		return new ArrayList<>(Arrays.asList(new String(output.toByteArray(), StandardCharsets.UTF_8).split("\\R")));
+	}
+
+	/**
+	 * a knapsack of 3000 items, big enough that a tabu search of it runs past a one second deadline
+	 *
+	 * @return the problem in the text format
+	 */
+	private static String largeProblem() {
+		int n = 3000;
+		StringBuilder problem = new StringBuilder("variables " + n + "\nobjective");
+		for (int i = 0; i < n; i++) {
+			problem.append(' ').append(1 + i % 97);
+		}
+		problem.append("\nconstraint <= ").append(20 * n);
+		for (int i = 0; i < n; i++) {
+			problem.append(' ').append(1 + i % 61);
+		}
+		problem.append("\nstart ");
+		for (int i = 0; i < n; i++) {
+			problem.append('0');
+		}
+		return problem.append('\n').toString();
+	}
+}
@@ -0,0 +1,113 @@
+package com.parker.david;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * drives the tabu search selector one move at a time, and runs it on the example problem
+ */
+public class TabuSearchSelectionTest {
+
+	@Test
+	public void reachesTheOptimumOfTheExampleFromEveryStart() throws IOException {
+		Problem problem = ProblemLoader.load(Paths.get("problems", "example.txt"));
+		ObjectiveFunction objectiveFunction = problem.getObjectiveFunction();
+		ConstraintSet constraints = problem.getConstraints();
+		for (CandidateSolution start : problem.getStartSolutions()) {
+			TabuSearchSelection selector = new TabuSearchSelection(objectiveFunction, constraints, 7, 1000, 100, 4096, 1);
+			SearchResult result = new LocalSearch(objectiveFunction, constraints, selector, new SingleBitComplimentGenerator(), TerminationCriteria.NONE).run(start);
+			assertTrue(result.isBestFeasible());
+			assertEquals(start.toString(), 64, result.getBestFitness());
+		}
+	}
+
+	@Test
+	public void doesNotFlipATabuBitBack() {
+		//every bit is already set, so each move is worse and flipping the last bit back would only return to the best
+		ObjectiveFunction objectiveFunction = new ObjectiveFunction(new int[]{5, 4, 3, 2, 1, 6, 7, 8, 9, 10});
+		TabuSearchSelection selector = new TabuSearchSelection(objectiveFunction, new ConstraintSet(), 7, 100, 100);
+		CandidateSolution start = new CandidateSolution(10);
+		for (int i = 0; i < 10; i++) {
+			start.flipIthDecisionVariable(i);
+		}
+		IncrementalEvaluator evaluator = new IncrementalEvaluator(objectiveFunction, new ConstraintSet(), start);
+
+		Move first = step(selector, evaluator);
+		assertEquals(4, first.getIthFlippedBit(0));
+		Move second = step(selector, evaluator);
+		assertNotEquals(4, second.getIthFlippedBit(0));
+	}
+
+	@Test
+	public void keepsMovingWhenEveryFeasibleMoveIsTabu() {
+		//two variables and a tenure far longer than the neighbourhood: the tenure is capped, and a tabu move is taken
+		//rather than stopping while moves are still feasible
+		ObjectiveFunction objectiveFunction = new ObjectiveFunction(new int[]{3, -2});
+		ConstraintSet constraints = new ConstraintSet();
+		TabuSearchSelection selector = new TabuSearchSelection(objectiveFunction, constraints, 50, 40, 40);
+		IncrementalEvaluator evaluator = new IncrementalEvaluator(objectiveFunction, constraints, new CandidateSolution(2));
+
+		int steps = 0;
+		while (!selector.isSearchComplete()) {
+			assertNotNull("stopped after " + steps + " steps", step(selector, evaluator));
+			steps++;
+		}
+		assertEquals(40, steps);
+	}
+
+	@Test
+	public void stopsWhenNoNeighbourIsFeasible() {
+		//only the empty solution fits a capacity of 0
+		ObjectiveFunction objectiveFunction = new ObjectiveFunction(new int[]{1, 2, 3});
+		ConstraintSet constraints = new ConstraintSet();
+		constraints.add(new Constraint(new int[]{1, 1, 1}, Constraint.Operators.LESS_THAN_OR_EQUAL, 0));
+		TabuSearchSelection selector = new TabuSearchSelection(objectiveFunction, constraints, 7, 100, 100);
+		IncrementalEvaluator evaluator = new IncrementalEvaluator(objectiveFunction, constraints, new CandidateSolution(3));
+
+		assertFalse(selector.isSearchComplete());
+		assertNull(selector.selectMove(evaluator, new SingleBitComplimentGenerator().generateMoveNeighbourhood(evaluator.getCurrentSolution())));
+		assertTrue(selector.isSearchComplete());
+	}
+
+	@Test
+	public void avoidsVisitedSolutions() {
+		//with the tenure at 0 only the visited memory stops the search flipping the same bit back and forth
+		ObjectiveFunction objectiveFunction = new ObjectiveFunction(new int[]{1, 1, 1, 1});
+		ConstraintSet constraints = new ConstraintSet();
+		constraints.add(new Constraint(new int[]{1, 1, 1, 1}, Constraint.Operators.LESS_THAN_OR_EQUAL, 1));
+		TabuSearchSelection selector = new TabuSearchSelection(objectiveFunction, constraints, 0, 100, 100, 64, 1);
+		IncrementalEvaluator evaluator = new IncrementalEvaluator(objectiveFunction, constraints, new CandidateSolution(4));
+
+		int[] flips = new int[4];
+		for (int s = 0; s < 4; s++) {
+			flips[s] = step(selector, evaluator).getIthFlippedBit(0);
+		}
+		//set one bit, unset it, and then set a different one
+		assertEquals(flips[0], flips[1]);
+		assertNotEquals(Arrays.toString(flips), flips[0], flips[2]);
+	}
+
+	/**
+	 * selects a move from the single flip neighbourhood of the current solution and applies it
+	 *
+	 * @param selector  the selector
+	 * @param evaluator the evaluator holding the current solution
+	 * @return the move, or null if the selector returned none
+	 */
+	private static Move step(TabuSearchSelection selector, IncrementalEvaluator evaluator) {
+		Move move = selector.selectMove(evaluator, new SingleBitComplimentGenerator().generateMoveNeighbourhood(evaluator.getCurrentSolution()));
+		if (move != null)
+			evaluator.applyMove(move);
+		return move;
+	}
+}